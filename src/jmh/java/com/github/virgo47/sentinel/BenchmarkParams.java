@@ -0,0 +1,24 @@
+package com.github.virgo47.sentinel;
+
+/** Parsing of string benchmark parameters shared by landscape benchmarks. */
+final class BenchmarkParams {
+
+	private BenchmarkParams() {
+	}
+
+	/** Parses size in format "32x24" to {sizeX, sizeY}. */
+	static int[] size(String size) {
+		String[] parts = size.split("x");
+		return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+	}
+
+	/** Parses config in format "maxHeight:maxHeightDifference:maxPatchSize:changesCount". */
+	static Landscape.Config config(String config) {
+		String[] parts = config.split(":");
+		return new Landscape.Config(
+			Integer.parseInt(parts[0]),
+			Integer.parseInt(parts[1]),
+			Integer.parseInt(parts[2]),
+			Integer.parseInt(parts[3]));
+	}
+}
@@ -0,0 +1,116 @@
+package com.github.virgo47.sentinel;
+
+import java.util.concurrent.TimeUnit;
+
+import com.sun.javafx.application.PlatformImpl;
+import javafx.geometry.Point3D;
+import javafx.scene.Group;
+import javafx.scene.transform.NonInvertibleTransformException;
+import javafx.scene.transform.Rotate;
+import javafx.scene.transform.Translate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-frame camera update - move forward and turn a bit, like walking with the mouse moving.
+ * {@link #cameraXform()} updates the single affine transform once, {@link #transformChain()} is the way
+ * it was done before - separate translate and rotate transforms of the node, each property change
+ * invalidating the node transform. With sliders, the position and angles are bound to {@link DoubleControl}s
+ * like in the game (controls need the JavaFX toolkit, so it is started).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dsentinel.trace=false"})
+public class CameraBenchmark {
+
+	@Param({"false", "true"})
+	public boolean sliders;
+
+	private CameraXform cameraXform;
+
+	private Group chainNode;
+	private Translate chainPos;
+	private Rotate chainYaw;
+	private Rotate chainPitch;
+
+	private final double[] delta = new double[3];
+	private double turn = 1;
+
+	@Setup
+	public void setup() throws NonInvertibleTransformException {
+		cameraXform = new CameraXform();
+		chainNode = new Group();
+		chainPos = new Translate();
+		chainYaw = new Rotate(0, new Point3D(0, 0, -1));
+		chainPitch = new Rotate(0, Rotate.X_AXIS);
+		chainNode.getTransforms().addAll(chainPos, chainYaw, chainPitch, new Rotate(0, Rotate.Y_AXIS),
+			new Rotate(-90, Rotate.X_AXIS));
+
+		if (sliders) {
+			PlatformImpl.startup(() -> {
+			});
+			cameraXform.pos.xProperty().bindBidirectional(new DoubleControl("X", -1000, 1000, 0).valueProperty());
+			cameraXform.pos.yProperty().bindBidirectional(new DoubleControl("Y", -1000, 1000, 0).valueProperty());
+			cameraXform.pos.zProperty().bindBidirectional(new DoubleControl("Z", -1000, 1000, 0).valueProperty());
+			cameraXform.yaw.angleProperty().bindBidirectional(new DoubleControl("Yaw", -200, 200, 0).valueProperty());
+			cameraXform.pitch.angleProperty().bindBidirectional(new DoubleControl("Pitch", -200, 200, 0).valueProperty());
+			chainPos.xProperty().bindBidirectional(new DoubleControl("X", -1000, 1000, 0).valueProperty());
+			chainPos.yProperty().bindBidirectional(new DoubleControl("Y", -1000, 1000, 0).valueProperty());
+			chainPos.zProperty().bindBidirectional(new DoubleControl("Z", -1000, 1000, 0).valueProperty());
+			chainYaw.angleProperty().bindBidirectional(new DoubleControl("Yaw", -200, 200, 0).valueProperty());
+			chainPitch.angleProperty().bindBidirectional(new DoubleControl("Pitch", -200, 200, 0).valueProperty());
+		}
+	}
+
+	@Benchmark
+	public boolean cameraXform() {
+		turn = -turn;
+		cameraXform.rotate(turn, turn);
+		cameraXform.moveWithYaw(0.5, 0.1);
+		cameraXform.updateTransform();
+		return cameraXform.getLocalToParentTransform().isIdentity();
+	}
+
+	/** The same like {@link CameraXform#rotate(double, double)} and {@link CameraXform#moveWithYaw(double, double)} used to do. */
+	@Benchmark
+	public boolean transformChain() {
+		turn = -turn;
+		chainYaw.setAngle(((chainYaw.getAngle() + turn * 0.1 - CameraXform.WRAP_YAW_AT) % 360 + 360) % 360
+			- CameraXform.WRAP_YAW_COMPLEMENT);
+		chainPitch.setAngle(Math.max(Math.min(chainPitch.getAngle() + turn * 0.1, CameraXform.PITCH_MAX),
+			CameraXform.PITCH_MIN));
+
+		double yawRadian = Math.toRadians(chainYaw.getAngle());
+		double pitchRadian = Math.toRadians(chainPitch.getAngle());
+		double cosPitch = Math.cos(pitchRadian);
+		double sinYaw = Math.sin(yawRadian);
+		double cosYaw = Math.cos(yawRadian);
+		delta[0] = sinYaw * cosPitch * 0.5 + cosYaw * 0.1;
+		delta[1] = cosYaw * cosPitch * 0.5 - sinYaw * 0.1;
+		delta[2] = Math.sin(pitchRadian) * 0.5;
+		chainPos.setX(chainPos.getX() + delta[0]);
+		chainPos.setY(chainPos.getY() + delta[1]);
+		chainPos.setZ(chainPos.getZ() + delta[2]);
+		return chainNode.getLocalToParentTransform().isIdentity();
+	}
+
+	/** Only moving, the angles (and their sine and cosine) stay the same. */
+	@Benchmark
+	public boolean cameraXformMoveOnly() {
+		cameraXform.moveWithYaw(0.5, 0.1);
+		cameraXform.updateTransform();
+		return cameraXform.getLocalToParentTransform().isIdentity();
+	}
+}
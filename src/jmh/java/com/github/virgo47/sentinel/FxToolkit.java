@@ -0,0 +1,16 @@
+package com.github.virgo47.sentinel;
+
+import javafx.embed.swing.JFXPanel;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Initializes JavaFX toolkit, required for benchmarks creating mesh views (texture image). */
+@State(Scope.Benchmark)
+public class FxToolkit {
+
+	@Setup
+	public void setup() {
+		new JFXPanel();
+	}
+}
@@ -0,0 +1,102 @@
+package com.github.virgo47.sentinel;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Landscape generation across map sizes and configs. Sizes go from 32x24 (used by
+ * {@link SentinelFx}) up to 4096x4096. Configs are "maxHeight:maxHeightDifference:maxPatchSize:changesCount",
+ * the first one is the one used by {@link SentinelFx}.
+ * <p>
+ * {@link #generatePhases(PhaseCounters)} runs in a fork with {@link PhaseTimings} enabled and reports
+ * nanoseconds spent in patch walk and cascade as secondary results - divide them by the operations
+ * counter to get time per generation. Use {@link #generate()} for the throughput, phase timing adds
+ * its own overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dsentinel.trace=false"})
+public class LandscapeBenchmark {
+
+	private static final int TILE_SIZE = 256;
+
+	@Param({"32x24", "256x256", "1024x1024", "4096x4096"})
+	public String size;
+
+	@Param({"1:1:30:30", "3:1:100:400", "8:2:200:2000"})
+	public String config;
+
+	private int sizeX;
+	private int sizeY;
+	private Landscape.Config landscapeConfig;
+	private int seed;
+
+	@Setup
+	public void setup() {
+		int[] sizes = BenchmarkParams.size(size);
+		sizeX = sizes[0];
+		sizeY = sizes[1];
+		landscapeConfig = BenchmarkParams.config(config);
+	}
+
+	@Benchmark
+	public Landscape generate() {
+		Landscape landscape = new Landscape(sizeX, sizeY, landscapeConfig);
+		landscape.generate(seed++);
+		return landscape;
+	}
+
+	/** Parallel tiled generation on the common pool, note that config applies to each tile. */
+	@Benchmark
+	public Landscape generateTiled() {
+		Landscape landscape = new Landscape(sizeX, sizeY, landscapeConfig);
+		landscape.generate(seed++, TILE_SIZE, ForkJoinPool.commonPool());
+		return landscape;
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dsentinel.trace=false", "-Dsentinel.phaseTimings=true"})
+	public Landscape generatePhases(PhaseCounters counters) {
+		Landscape landscape = generate();
+		counters.operations += 1;
+		counters.patchWalkNanos += landscape.phaseTimings().nanos(PhaseTimings.Phase.PATCH_WALK);
+		counters.cascadeNanos += landscape.phaseTimings().nanos(PhaseTimings.Phase.CASCADE);
+		counters.cascadedFixes += landscape.totalCounters().getCascadedFixes();
+		return landscape;
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class PhaseCounters {
+
+		public long operations;
+		public long patchWalkNanos;
+		public long cascadeNanos;
+		public long cascadedFixes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			operations = 0;
+			patchWalkNanos = 0;
+			cascadeNanos = 0;
+			cascadedFixes = 0;
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.github.virgo47.sentinel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading of landscape files compared with each other, compare with {@link LandscapeBenchmark} for
+ * the generation of the same landscape. Opening of the raw file only maps it, so {@link #readRawAndScan()}
+ * shows the cost of actually touching all the heights.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dsentinel.trace=false"})
+public class LandscapeFileBenchmark {
+
+	@Param({"256x256", "1024x1024", "4096x4096"})
+	public String size;
+
+	@Param({"8:2:200:2000"})
+	public String config;
+
+	private Landscape landscape;
+	private Path rawFile;
+	private Path varintFile;
+
+	@Setup
+	public void setup() throws IOException {
+		int[] sizes = BenchmarkParams.size(size);
+		landscape = new Landscape(sizes[0], sizes[1], BenchmarkParams.config(config));
+		landscape.generate(0, 256, ForkJoinPool.commonPool());
+		rawFile = Files.createTempFile("landscape", ".raw");
+		varintFile = Files.createTempFile("landscape", ".varint");
+		LandscapeFile.write(landscape, rawFile, LandscapeFile.Encoding.RAW);
+		LandscapeFile.write(landscape, varintFile, LandscapeFile.Encoding.VARINT);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(rawFile);
+		Files.deleteIfExists(varintFile);
+	}
+
+	@Benchmark
+	public void writeRaw() throws IOException {
+		LandscapeFile.write(landscape, rawFile, LandscapeFile.Encoding.RAW);
+	}
+
+	@Benchmark
+	public void writeVarint() throws IOException {
+		LandscapeFile.write(landscape, varintFile, LandscapeFile.Encoding.VARINT);
+	}
+
+	@Benchmark
+	public Landscape readRaw() throws IOException {
+		return LandscapeFile.read(rawFile);
+	}
+
+	@Benchmark
+	public long readRawAndScan() throws IOException {
+		return scan(LandscapeFile.read(rawFile));
+	}
+
+	@Benchmark
+	public Landscape readVarint() throws IOException {
+		return LandscapeFile.read(varintFile);
+	}
+
+	private long scan(Landscape loaded) {
+		HeightGrid points = loaded.pointGrid();
+		long sum = 0;
+		for (int i = 0; i < points.size(); i++) {
+			sum += points.get(i);
+		}
+		return sum;
+	}
+}
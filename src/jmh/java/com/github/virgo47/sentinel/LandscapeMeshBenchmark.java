@@ -0,0 +1,105 @@
+package com.github.virgo47.sentinel;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mesh building of generated landscapes. The biggest maps need a lot of heap for the observable
+ * arrays of the mesh, hence -Xmx8g.
+ * <p>
+ * {@link #setLandscapePhases(FxToolkit, PhaseCounters)} reports nanoseconds spent in points, faces,
+ * upload and material phases as secondary results, see {@link LandscapeBenchmark} for details.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Dsentinel.trace=false"})
+public class LandscapeMeshBenchmark {
+
+	@Param({"32x24", "256x256", "1024x1024", "4096x4096"})
+	public String size;
+
+	@Param({"1:1:30:30", "8:2:200:2000"})
+	public String config;
+
+	private Landscape landscape;
+
+	@Setup
+	public void setup() {
+		int[] sizes = BenchmarkParams.size(size);
+		landscape = new Landscape(sizes[0], sizes[1], BenchmarkParams.config(config));
+		landscape.generate(0);
+	}
+
+	/** Headless part of the mesh building, no JavaFX involved. */
+	@Benchmark
+	public LandscapeMeshBuilder build() {
+		return new LandscapeMeshBuilder().build(landscape);
+	}
+
+	/** Headless mesh building with merged plain squares, fewer faces for more work. */
+	@Benchmark
+	public LandscapeMeshBuilder buildMerged() {
+		return new LandscapeMeshBuilder(true).build(landscape);
+	}
+
+	/** Headless mesh building with normals, the same faces with a normal index per vertex. */
+	@Benchmark
+	public LandscapeMeshBuilder buildNormals() {
+		return new LandscapeMeshBuilder(null, true).build(landscape);
+	}
+
+	@Benchmark
+	public LandscapeMeshView setLandscape(FxToolkit toolkit) {
+		LandscapeMeshView meshView = new LandscapeMeshView();
+		meshView.setLandscape(landscape);
+		return meshView;
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = {"-Xmx8g", "-Dsentinel.trace=false", "-Dsentinel.phaseTimings=true"})
+	public LandscapeMeshView setLandscapePhases(FxToolkit toolkit, PhaseCounters counters) {
+		LandscapeMeshView meshView = setLandscape(toolkit);
+		counters.operations += 1;
+		counters.meshPointsNanos += meshView.phaseTimings().nanos(PhaseTimings.Phase.MESH_POINTS);
+		counters.meshFacesNanos += meshView.phaseTimings().nanos(PhaseTimings.Phase.MESH_FACES);
+		counters.meshUploadNanos += meshView.phaseTimings().nanos(PhaseTimings.Phase.MESH_UPLOAD);
+		counters.meshMaterialNanos += meshView.phaseTimings().nanos(PhaseTimings.Phase.MESH_MATERIAL);
+		return meshView;
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class PhaseCounters {
+
+		public long operations;
+		public long meshPointsNanos;
+		public long meshFacesNanos;
+		public long meshUploadNanos;
+		public long meshMaterialNanos;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			operations = 0;
+			meshPointsNanos = 0;
+			meshFacesNanos = 0;
+			meshUploadNanos = 0;
+			meshMaterialNanos = 0;
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package com.github.virgo47.sentinel;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Placement of the sentinel, sentries and the player start on generated landscapes, generation itself
+ * is not measured. Big maps are generated tiled (like in {@link LandscapeBenchmark#generateTiled()})
+ * to keep the setup time reasonable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dsentinel.trace=false"})
+public class PlacementBenchmark {
+
+	private static final int TILE_SIZE = 256;
+
+	@Param({"32x24", "256x256", "1024x1024", "4096x4096"})
+	public String size;
+
+	@Param({"1:1:30:30", "8:2:200:2000"})
+	public String config;
+
+	@Param({"4", "16"})
+	public int sentries;
+
+	private Landscape landscape;
+	private int seed;
+
+	@Setup
+	public void setup() {
+		int[] sizes = BenchmarkParams.size(size);
+		landscape = new Landscape(sizes[0], sizes[1], BenchmarkParams.config(config));
+		landscape.generate(0, TILE_SIZE, ForkJoinPool.commonPool());
+	}
+
+	@Benchmark
+	public Landscape.Position placePositions() {
+		landscape.placePositions(seed++, sentries);
+		return landscape.getPlayerStart();
+	}
+}
@@ -0,0 +1,62 @@
+package com.github.virgo47.sentinel;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Walk through {@link RegionWorld} in a straight line, touching regions around the walker like the camera would.
+ * {@link #walkStep()} mostly hits resident regions and generates a new row of regions once per region size,
+ * {@link #query()} measures the point height lookup in a resident region.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dsentinel.trace=false"})
+public class RegionWorldBenchmark {
+
+	private static final int TOUCH_RADIUS = 1;
+
+	@Param({"64", "256"})
+	public int regionSize;
+
+	@Param({"8:2:200:2000"})
+	public String config;
+
+	private RegionWorld world;
+	private int x;
+	private int y;
+
+	@Setup
+	public void setup() {
+		// enough for the touched neighbourhood, the region left behind is evicted
+		int resident = (2 * TOUCH_RADIUS + 1) * (2 * TOUCH_RADIUS + 2);
+		world = new RegionWorld(BenchmarkParams.config(config), 0, regionSize, resident, null);
+		world.touch(0, 0, TOUCH_RADIUS);
+	}
+
+	@Benchmark
+	public int walkStep() {
+		x++;
+		world.touch(x, 0, TOUCH_RADIUS);
+		return world.pointHeight(x, 0);
+	}
+
+	@Benchmark
+	public int query() {
+		y = (y + 7) % regionSize;
+		return world.pointHeight(y, regionSize - y);
+	}
+}
@@ -0,0 +1,96 @@
+package com.github.virgo47.sentinel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Line-of-sight queries of {@link TerrainQuery} compared with testing all the triangles of the landscape,
+ * which is what the mesh picking does. Segments go from an eye above a random square to the center
+ * of another random square, like the sentinel looking at the squares, one segment per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dsentinel.trace=false"})
+public class TerrainQueryBenchmark {
+
+	private static final int SEGMENTS = 1024;
+	private static final double EYE_HEIGHT = 1.5;
+
+	@Param({"32x24", "256x256", "1024x1024"})
+	public String size;
+
+	@Param({"1:1:30:30", "8:2:200:2000"})
+	public String config;
+
+	private TerrainQuery query;
+	/** Start and end points of the segments, 6 values per segment. */
+	private double[] segments;
+	private int segment;
+
+	@Setup
+	public void setup() {
+		int[] sizes = BenchmarkParams.size(size);
+		Landscape landscape = new Landscape(sizes[0], sizes[1], BenchmarkParams.config(config));
+		landscape.generate(0);
+		query = new TerrainQuery(landscape);
+
+		Random random = new Random(0);
+		segments = new double[SEGMENTS * 6];
+		for (int i = 0; i < SEGMENTS; i++) {
+			int eyeX = random.nextInt(landscape.sizeX);
+			int eyeY = random.nextInt(landscape.sizeY);
+			int targetX = random.nextInt(landscape.sizeX);
+			int targetY = random.nextInt(landscape.sizeY);
+			segments[i * 6] = eyeX + 0.5;
+			segments[i * 6 + 1] = eyeY + 0.5;
+			segments[i * 6 + 2] = landscape.pointHeight(eyeX, eyeY) + EYE_HEIGHT;
+			segments[i * 6 + 3] = targetX + 0.5;
+			segments[i * 6 + 4] = targetY + 0.5;
+			segments[i * 6 + 5] = landscape.pointHeight(targetX, targetY);
+		}
+	}
+
+	@Benchmark
+	public boolean isVisible() {
+		int offset = nextSegment();
+		return query.isVisible(segments[offset], segments[offset + 1], segments[offset + 2],
+			segments[offset + 3], segments[offset + 4], segments[offset + 5]);
+	}
+
+	@Benchmark
+	public int firstHit() {
+		int offset = nextSegment();
+		return query.firstHit(segments[offset], segments[offset + 1], segments[offset + 2],
+			segments[offset + 3] - segments[offset], segments[offset + 4] - segments[offset + 1],
+			segments[offset + 5] - segments[offset + 2]);
+	}
+
+	/** Every triangle of the landscape tested, as the picking of the whole mesh does. */
+	@Benchmark
+	public int firstHitBruteForce() {
+		int offset = nextSegment();
+		return query.firstHitBruteForce(segments[offset], segments[offset + 1], segments[offset + 2],
+			segments[offset + 3] - segments[offset], segments[offset + 4] - segments[offset + 1],
+			segments[offset + 5] - segments[offset + 2], 0, Double.POSITIVE_INFINITY);
+	}
+
+	private int nextSegment() {
+		segment = (segment + 1) % SEGMENTS;
+		return segment * 6;
+	}
+}
@@ -0,0 +1,110 @@
+package com.github.virgo47.sentinel;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares landscape generation and mesh building with trace logging switched off statically
+ * ({@link TraceLogger#TRACE}) and switched on. With trace on, logger level decides whether the
+ * messages are actually built (ALL) or only level checks are performed (INFO). Messages are
+ * discarded by the handler, so we measure the cost of building them, not the output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TraceBenchmark {
+
+	private static final String TRACE_OFF = "-Dsentinel.trace=false";
+	private static final String TRACE_ON = "-Dsentinel.trace=true";
+
+	@Param({"128"})
+	public int size;
+
+	@Param({"INFO", "ALL"})
+	public String level;
+
+	private Landscape.Config config;
+	private Landscape landscape;
+
+	@Setup
+	public void setup() {
+		Logger topLogger = Logger.getLogger("com.github.virgo47");
+		topLogger.setUseParentHandlers(false);
+		topLogger.setLevel(Level.parse(level));
+		for (Handler handler : topLogger.getHandlers()) {
+			topLogger.removeHandler(handler);
+		}
+		topLogger.addHandler(new DiscardingHandler());
+
+		config = new Landscape.Config(3, 1, 100, size * 2);
+		landscape = new Landscape(size, size, config);
+		landscape.generate(0);
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = TRACE_OFF)
+	public Landscape generateTraceOff() {
+		return generate();
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = TRACE_ON)
+	public Landscape generateTraceOn() {
+		return generate();
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = TRACE_OFF)
+	public LandscapeMeshView meshTraceOff(FxToolkit toolkit) {
+		return mesh();
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = TRACE_ON)
+	public LandscapeMeshView meshTraceOn(FxToolkit toolkit) {
+		return mesh();
+	}
+
+	private Landscape generate() {
+		Landscape generated = new Landscape(size, size, config);
+		generated.generate(1);
+		return generated;
+	}
+
+	private LandscapeMeshView mesh() {
+		LandscapeMeshView meshView = new LandscapeMeshView();
+		meshView.setLandscape(landscape);
+		return meshView;
+	}
+
+	private static class DiscardingHandler extends Handler {
+		@Override
+		public void publish(LogRecord record) {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
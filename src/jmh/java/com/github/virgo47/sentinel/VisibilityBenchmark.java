@@ -0,0 +1,76 @@
+package com.github.virgo47.sentinel;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Ticks of {@link VisibilityEngine} with growing number of watchers. {@link #tickRotate()} rotates all
+ * watchers (sector update only), {@link #tickLandscapeChanged()} forces casting of all lines of sight
+ * on the common pool, like after the player changed the landscape.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dsentinel.trace=false"})
+public class VisibilityBenchmark {
+
+	private static final double ROTATION_STEP = 15;
+
+	@Param({"32x24", "256x256"})
+	public String size;
+
+	@Param({"1", "8", "64"})
+	public int watchers;
+
+	private Landscape landscape;
+	private VisibilityEngine engine;
+
+	@Setup
+	public void setup() {
+		int[] sizes = BenchmarkParams.size(size);
+		landscape = new Landscape(sizes[0], sizes[1], BenchmarkParams.config("8:2:200:2000"));
+		landscape.generate(0);
+		engine = new VisibilityEngine(landscape);
+		Random random = new Random(0);
+		for (int i = 0; i < watchers; i++) {
+			engine.addWatcher(new Watcher(random.nextInt(landscape.sizeX), random.nextInt(landscape.sizeY),
+				random.nextInt(360), 1, 90, 64));
+		}
+		engine.update(ForkJoinPool.commonPool());
+	}
+
+	/** Nothing changed, nothing to do. */
+	@Benchmark
+	public int tickStatic() {
+		return engine.update(ForkJoinPool.commonPool());
+	}
+
+	@Benchmark
+	public int tickRotate() {
+		for (Watcher watcher : engine.getWatchers()) {
+			watcher.rotate(ROTATION_STEP);
+		}
+		return engine.update(ForkJoinPool.commonPool());
+	}
+
+	@Benchmark
+	public int tickLandscapeChanged() {
+		landscape.markAllDirty();
+		return engine.update(ForkJoinPool.commonPool());
+	}
+}
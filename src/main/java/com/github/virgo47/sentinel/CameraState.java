@@ -0,0 +1,159 @@
+package com.github.virgo47.sentinel;
+
+/**
+ * Position and orientation of the camera with cached sine and cosine of the angles - they are computed
+ * again only when the angle changes, which is rare compared to moves. Computes the matrix of the whole
+ * camera transformation (translation, yaw, pitch, roll and the pitch offset, in this order, the same like
+ * the transforms {@link CameraXform} used to have), so it can be applied as a single affine transform.
+ * Nothing allocates, the state is meant to be used from one thread.
+ */
+public final class CameraState {
+
+	/** Camera looks along -Z without rotation, this rotates it to look along +Y (north) instead. */
+	public static final double PITCH_OFFSET = -90;
+
+	private double x;
+	private double y;
+	private double z;
+
+	private double yaw = Double.NaN;
+	private double pitch = Double.NaN;
+	private double roll = Double.NaN;
+	private double sinYaw;
+	private double cosYaw;
+	private double sinPitch;
+	private double cosPitch;
+	private double sinRoll;
+	private double cosRoll;
+
+	/** Number of sine/cosine pairs computed, for tests and benchmarks. */
+	private int trigUpdates;
+
+	public CameraState() {
+		setAngles(0, 0, 0);
+	}
+
+	public void setPosition(double x, double y, double z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+
+	/** Sets the angles in degrees, sine and cosine are computed only for the changed ones. */
+	public void setAngles(double yaw, double pitch, double roll) {
+		if (yaw != this.yaw) {
+			this.yaw = yaw;
+			double radians = Math.toRadians(yaw);
+			sinYaw = Math.sin(radians);
+			cosYaw = Math.cos(radians);
+			trigUpdates++;
+		}
+		if (pitch != this.pitch) {
+			this.pitch = pitch;
+			double radians = Math.toRadians(pitch);
+			sinPitch = Math.sin(radians);
+			cosPitch = Math.cos(radians);
+			trigUpdates++;
+		}
+		if (roll != this.roll) {
+			this.roll = roll;
+			double radians = Math.toRadians(roll);
+			sinRoll = Math.sin(radians);
+			cosRoll = Math.cos(radians);
+			trigUpdates++;
+		}
+	}
+
+	/**
+	 * Computes the move forward (in the look direction, including pitch) and right (horizontal) into
+	 * the delta array (x, y, z), yaw 0 looks north (+Y) and goes clockwise like compass.
+	 */
+	public void moveDelta(double forwardSpeed, double rightSpeed, double[] delta) {
+		delta[0] = sinYaw * cosPitch * forwardSpeed + cosYaw * rightSpeed;
+		delta[1] = cosYaw * cosPitch * forwardSpeed - sinYaw * rightSpeed;
+		delta[2] = sinPitch * forwardSpeed;
+	}
+
+	/** Like {@link #moveDelta(double, double, double[])}, but horizontal only, the pitch does not slow the move down. */
+	public void horizontalMoveDelta(double forwardSpeed, double rightSpeed, double[] delta) {
+		delta[0] = sinYaw * forwardSpeed + cosYaw * rightSpeed;
+		delta[1] = cosYaw * forwardSpeed - sinYaw * rightSpeed;
+		delta[2] = 0;
+	}
+
+	/**
+	 * Writes the 3x4 matrix (rows mxx, mxy, mxz, tx, then y and z rows) of the transformation
+	 * translate * yaw * pitch * roll * pitch offset into the array.
+	 * Yaw rotates around -Z, pitch around X, roll around Y and the offset around X.
+	 */
+	public void matrix(double[] m) {
+		// yaw around -Z is the rotation by -yaw around Z
+		double a00 = cosYaw;
+		double a01 = sinYaw;
+		double a10 = -sinYaw;
+		double a11 = cosYaw;
+
+		// yaw * pitch (around X)
+		double b00 = a00;
+		double b01 = a01 * cosPitch;
+		double b02 = -a01 * sinPitch;
+		double b10 = a10;
+		double b11 = a11 * cosPitch;
+		double b12 = -a11 * sinPitch;
+		double b21 = sinPitch;
+		double b22 = cosPitch;
+
+		// * roll (around Y)
+		double c00 = b00 * cosRoll - b02 * sinRoll;
+		double c01 = b01;
+		double c02 = b00 * sinRoll + b02 * cosRoll;
+		double c10 = b10 * cosRoll - b12 * sinRoll;
+		double c11 = b11;
+		double c12 = b10 * sinRoll + b12 * cosRoll;
+		double c20 = -b22 * sinRoll;
+		double c21 = b21;
+		double c22 = b22 * cosRoll;
+
+		// * offset (-90 around X) maps columns: new1 = -old2, new2 = old1
+		m[0] = c00;
+		m[1] = -c02;
+		m[2] = c01;
+		m[3] = x;
+		m[4] = c10;
+		m[5] = -c12;
+		m[6] = c11;
+		m[7] = y;
+		m[8] = c20;
+		m[9] = -c22;
+		m[10] = c21;
+		m[11] = z;
+	}
+
+	public double getX() {
+		return x;
+	}
+
+	public double getY() {
+		return y;
+	}
+
+	public double getZ() {
+		return z;
+	}
+
+	public double getYaw() {
+		return yaw;
+	}
+
+	public double getPitch() {
+		return pitch;
+	}
+
+	public double getRoll() {
+		return roll;
+	}
+
+	int trigUpdates() {
+		return trigUpdates;
+	}
+}
@@ -1,7 +1,9 @@
 package com.github.virgo47.sentinel;
 
+import javafx.beans.InvalidationListener;
 import javafx.geometry.Point3D;
 import javafx.scene.Group;
+import javafx.scene.transform.Affine;
 import javafx.scene.transform.NonInvertibleTransformException;
 import javafx.scene.transform.Rotate;
 import javafx.scene.transform.Translate;
@@ -15,8 +17,11 @@ public class CameraXform extends Group {
 	public static final double WRAP_YAW_AT = 180;
 	public static final double WRAP_YAW_COMPLEMENT = 360 - WRAP_YAW_AT;
 
-	private static final Rotate PITCH_OFFSET = new Rotate(-90, Rotate.X_AXIS);
-
+	/*
+	 * Position and rotations are only holders of the values (and properties for binding), they are not
+	 * transforms of the node. The node has a single affine transform combining them all, updated by
+	 * updateTransform() once per frame.
+	 */
 	public Rotate yaw = new Rotate(0, new Point3D(0, 0, -1)); // Z axis, but clockwise, so that it goes like compass
 	public Rotate pitch = new Rotate(0, Rotate.X_AXIS );
 	public Rotate roll = new Rotate(0, Rotate.Y_AXIS);
@@ -26,13 +31,52 @@ public class CameraXform extends Group {
 	public double sensitivityPitch = 0.1;
 	public boolean invertMouse = false;
 
+	private final CameraState state = new CameraState();
+	private final Affine transform = new Affine();
+	private boolean transformDirty = true;
+
+	/** Reused by {@link #moveWithYaw(double, double)} and {@link #updateTransform()}, camera is used only from the FX thread. */
+	private final double[] moveDelta = new double[3];
+	private final double[] matrix = new double[12];
+
 	public CameraXform() throws NonInvertibleTransformException {
-		getTransforms().addAll(
-			pos,
-			yaw,
-			pitch,
-			roll,
-			PITCH_OFFSET);
+		InvalidationListener markDirty = observable -> transformDirty = true;
+		pos.xProperty().addListener(markDirty);
+		pos.yProperty().addListener(markDirty);
+		pos.zProperty().addListener(markDirty);
+		yaw.angleProperty().addListener(markDirty);
+		pitch.angleProperty().addListener(markDirty);
+		roll.angleProperty().addListener(markDirty);
+		getTransforms().add(transform);
+		updateTransform();
+	}
+
+	/**
+	 * Applies position and rotations changed since the last call to the node as a single transform change,
+	 * meant to be called once per frame. Returns false if nothing changed.
+	 */
+	public boolean updateTransform() {
+		if (!transformDirty) return false;
+
+		syncState();
+		state.matrix(matrix);
+		transform.setToTransform(
+			matrix[0], matrix[1], matrix[2], matrix[3],
+			matrix[4], matrix[5], matrix[6], matrix[7],
+			matrix[8], matrix[9], matrix[10], matrix[11]);
+		transformDirty = false;
+		return true;
+	}
+
+	/** Camera state with the current position and angles, sine and cosine are computed only for changed angles. */
+	public CameraState getState() {
+		syncState();
+		return state;
+	}
+
+	private void syncState() {
+		state.setPosition(pos.getX(), pos.getY(), pos.getZ());
+		state.setAngles(yaw.getAngle(), pitch.getAngle(), roll.getAngle());
 	}
 
 	public void moveTo(double x, double y, double z) {
@@ -50,22 +94,23 @@ public class CameraXform extends Group {
 	public void moveWithYaw(double forwardSpeed, double rightSpeed) {
 		if (forwardSpeed == 0 && rightSpeed == 0) return;
 
-		double yawRadian = Math.toRadians(yaw.getAngle());
-		double pitchRadian = Math.toRadians(pitch.getAngle());
-
-		double cosPitch = Math.cos(pitchRadian);
-		double sinYaw = Math.sin(yawRadian);
-		double cosYaw = Math.cos(yawRadian);
+		moveDelta(forwardSpeed, rightSpeed, moveDelta);
+		move(moveDelta[0], moveDelta[1], moveDelta[2]);
+	}
 
-		double xForwardFactor = sinYaw * cosPitch * forwardSpeed;
-		double xRightFactor = cosYaw * rightSpeed;
-		double yForwardFactor = cosYaw * cosPitch * forwardSpeed;
-		double yRightFactor = sinYaw * rightSpeed;
+	/**
+	 * Computes the move of {@link #moveWithYaw(double, double)} into the delta array (x, y, z) without moving,
+	 * so the caller can interpolate it.
+	 */
+	public void moveDelta(double forwardSpeed, double rightSpeed, double[] delta) {
+		state.setAngles(yaw.getAngle(), pitch.getAngle(), roll.getAngle());
+		state.moveDelta(forwardSpeed, rightSpeed, delta);
+	}
 
-		double deltaX = xForwardFactor + xRightFactor;
-		double deltaY = yForwardFactor - yRightFactor;
-		double deltaZ = Math.sin(pitchRadian) * forwardSpeed;
-		move(deltaX, deltaY, deltaZ);
+	/** Computes the horizontal move (e.g. walking on the surface) into the delta array, z is always 0. */
+	public void horizontalMoveDelta(double forwardSpeed, double rightSpeed, double[] delta) {
+		state.setAngles(yaw.getAngle(), pitch.getAngle(), roll.getAngle());
+		state.horizontalMoveDelta(forwardSpeed, rightSpeed, delta);
 	}
 
 	public void setRotate(double yw, double ptch, double rll) {
@@ -75,7 +120,11 @@ public class CameraXform extends Group {
 	}
 
 	public void setYaw(double yw) {
-		yaw.setAngle(((yw - WRAP_YAW_AT) % 360 + 360) % 360 - WRAP_YAW_COMPLEMENT);
+		// floating point remainder is slow, mouse moves keep the angle in range most of the time
+		if (yw < -WRAP_YAW_COMPLEMENT || yw >= WRAP_YAW_AT) {
+			yw = ((yw - WRAP_YAW_AT) % 360 + 360) % 360 - WRAP_YAW_COMPLEMENT;
+		}
+		yaw.setAngle(yw);
 	}
 
 	public void setPitch(double ptch) {
@@ -0,0 +1,59 @@
+package com.github.virgo47.sentinel;
+
+/**
+ * Counts squares changed by the cascade of fixes in {@link Landscape} - that is changes that were
+ * not requested directly, but were necessary to respect maximal height difference or to join patches
+ * of the same height. Counters are updated by the landscape, they are read-only from outside.
+ */
+public final class CascadeCounters {
+
+	int heightFixes;
+	int joins;
+	int maxDepth;
+
+	/** Squares changed to respect {@link Landscape.Config#maxHeightDifference}. */
+	public int getHeightFixes() {
+		return heightFixes;
+	}
+
+	/** Squares changed to join patches of the same height across a single square gap. */
+	public int getJoins() {
+		return joins;
+	}
+
+	public int getCascadedFixes() {
+		return heightFixes + joins;
+	}
+
+	/** Maximal number of squares waiting in the cascade at once - depth the recursion would have. */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	void updateMaxDepth(int depth) {
+		if (depth > maxDepth) {
+			maxDepth = depth;
+		}
+	}
+
+	void add(CascadeCounters other) {
+		heightFixes += other.heightFixes;
+		joins += other.joins;
+		updateMaxDepth(other.maxDepth);
+	}
+
+	void reset() {
+		heightFixes = 0;
+		joins = 0;
+		maxDepth = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "CascadeCounters{" +
+			"heightFixes=" + heightFixes +
+			", joins=" + joins +
+			", maxDepth=" + maxDepth +
+			'}';
+	}
+}
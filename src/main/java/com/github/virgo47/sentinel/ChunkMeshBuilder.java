@@ -0,0 +1,152 @@
+package com.github.virgo47.sentinel;
+
+/**
+ * Builds mesh data for a rectangular chunk of the {@link Landscape} at the given level of detail (LOD).
+ * LOD 0 has all the points of the chunk, every next level takes only every 2^lod-th point in both directions
+ * (plus the last one on the chunk border). Points have landscape coordinates, so all chunks can share
+ * the same transformation. Data format is the same like {@link LandscapeMeshBuilder}'s.
+ * <p>
+ * Neighbouring chunks with different LOD do not share all border points, which would leave cracks,
+ * so every chunk has a "skirt" - vertical strip going down from its border below the lowest point
+ * of the chunk. Builder does not depend on JavaFX.
+ */
+public class ChunkMeshBuilder {
+
+	/** How deep below the lowest chunk point the skirt goes. */
+	private static final int SKIRT_DEPTH = 1;
+
+	private float[] points;
+	private int[] faces;
+	private int faceOffset;
+
+	/**
+	 * Builds the chunk from square minX,minY to maxX,maxY (exclusive) - that is points from minX,minY
+	 * to maxX,maxY inclusive.
+	 */
+	public ChunkMeshBuilder build(Landscape landscape, int minX, int minY, int maxX, int maxY, int lod) {
+		int[] xs = samples(minX, maxX, 1 << lod);
+		int[] ys = samples(minY, maxY, 1 << lod);
+		HeightGrid heights = landscape.pointGrid();
+
+		int surfacePoints = xs.length * ys.length;
+		int borderPoints = 2 * (xs.length + ys.length) - 4;
+		points = new float[(surfacePoints + borderPoints) * 3];
+		int minHeight = Integer.MAX_VALUE;
+		for (int i = 0; i < xs.length; i++) {
+			for (int j = 0; j < ys.length; j++) {
+				int height = heights.get(xs[i], ys[j]);
+				setPoint(i * ys.length + j, xs[i], ys[j], height);
+				minHeight = Math.min(minHeight, height);
+			}
+		}
+
+		int squares = (xs.length - 1) * (ys.length - 1);
+		int skirtSegments = borderPoints;
+		faces = new int[(squares + skirtSegments) * LandscapeMeshBuilder.FACES_PER_SQUARE * LandscapeMeshBuilder.FACE_SIZE];
+		faceOffset = 0;
+		for (int i = 0; i < xs.length - 1; i++) {
+			for (int j = 0; j < ys.length - 1; j++) {
+				int pointSW = i * ys.length + j;
+				int pointNW = pointSW + 1;
+				int pointSE = pointSW + ys.length;
+				int pointNE = pointSE + 1;
+				buildSquare(pointSW, pointSE, pointNE, pointNW, i + j);
+			}
+		}
+
+		// skirt points are under the border points, going around the chunk counter-clockwise from SW corner
+		int skirtHeight = minHeight - SKIRT_DEPTH;
+		int[] border = borderPointIndexes(xs.length, ys.length);
+		for (int k = 0; k < border.length; k++) {
+			int surfacePoint = border[k];
+			setPoint(surfacePoints + k, points[surfacePoint * 3], points[surfacePoint * 3 + 1], skirtHeight);
+		}
+		for (int k = 0; k < border.length; k++) {
+			int next = (k + 1) % border.length;
+			// top edge on the surface, bottom edge on the skirt
+			buildQuad(border[k], border[next], surfacePoints + next, surfacePoints + k, LandscapeMeshBuilder.TEXTURE_SLOPE);
+		}
+		return this;
+	}
+
+	/** Sample coordinates from min to max with the step, max is always included. */
+	static int[] samples(int min, int max, int step) {
+		int count = (max - min + step - 1) / step + 1;
+		int[] samples = new int[count];
+		for (int i = 0; i < count - 1; i++) {
+			samples[i] = min + i * step;
+		}
+		samples[count - 1] = max;
+		return samples;
+	}
+
+	private int[] borderPointIndexes(int sizeI, int sizeJ) {
+		int[] border = new int[2 * (sizeI + sizeJ) - 4];
+		int k = 0;
+		for (int i = 0; i < sizeI - 1; i++) {
+			border[k++] = i * sizeJ; // south edge, going east
+		}
+		for (int j = 0; j < sizeJ - 1; j++) {
+			border[k++] = (sizeI - 1) * sizeJ + j; // east edge, going north
+		}
+		for (int i = sizeI - 1; i > 0; i--) {
+			border[k++] = i * sizeJ + sizeJ - 1; // north edge, going west
+		}
+		for (int j = sizeJ - 1; j > 0; j--) {
+			border[k++] = j; // west edge, going south
+		}
+		return border;
+	}
+
+	private void setPoint(int index, float x, float y, float z) {
+		points[index * 3] = x;
+		points[index * 3 + 1] = y;
+		points[index * 3 + 2] = z;
+	}
+
+	private void buildSquare(int pointSW, int pointSE, int pointNE, int pointNW, int parity) {
+		int zsw = (int) points[pointSW * 3 + 2];
+		int zse = (int) points[pointSE * 3 + 2];
+		int zne = (int) points[pointNE * 3 + 2];
+		int znw = (int) points[pointNW * 3 + 2];
+		boolean plainSquare = zsw == zse && zsw == zne && zsw == znw;
+		int textureIndex = plainSquare ? parity % 2 * 4 : LandscapeMeshBuilder.TEXTURE_SLOPE;
+		if (LandscapeMeshBuilder.isInverseTriangulation(zsw, zse, zne, znw)) {
+			setFace(pointSW, textureIndex, pointSE, textureIndex + 1, pointNW, textureIndex + 3);
+			setFace(pointSE, textureIndex + 1, pointNE, textureIndex + 2, pointNW, textureIndex + 3);
+		} else {
+			buildQuad(pointSW, pointSE, pointNE, pointNW, textureIndex);
+		}
+	}
+
+	private void buildQuad(int point0, int point1, int point2, int point3, int textureIndex) {
+		setFace(point0, textureIndex, point1, textureIndex + 1, point2, textureIndex + 2);
+		setFace(point0, textureIndex, point2, textureIndex + 2, point3, textureIndex + 3);
+	}
+
+	private void setFace(int p0, int t0, int p1, int t1, int p2, int t2) {
+		faces[faceOffset] = p0;
+		faces[faceOffset + 1] = t0;
+		faces[faceOffset + 2] = p1;
+		faces[faceOffset + 3] = t1;
+		faces[faceOffset + 4] = p2;
+		faces[faceOffset + 5] = t2;
+		faceOffset += LandscapeMeshBuilder.FACE_SIZE;
+	}
+
+	public float[] getPoints() {
+		return points;
+	}
+
+	public float[] getTexCoords() {
+		return LandscapeMeshBuilder.TEX_COORDS.clone();
+	}
+
+	public int[] getFaces() {
+		return faces;
+	}
+
+	public int getFaceCount() {
+		return faces.length / LandscapeMeshBuilder.FACE_SIZE;
+	}
+}
@@ -0,0 +1,50 @@
+package com.github.virgo47.sentinel;
+
+/**
+ * Rectangular region of landscape squares (bounds inclusive) that were changed since the last time
+ * somebody took the region from the {@link Landscape}. Points affected by the change are in the range
+ * from min to max + 1 in both directions.
+ */
+public final class DirtyRegion {
+
+	public final int minX;
+	public final int minY;
+	public final int maxX;
+	public final int maxY;
+
+	public DirtyRegion(int minX, int minY, int maxX, int maxY) {
+		if (minX > maxX || minY > maxY) {
+			throw new IllegalArgumentException("Empty region " + minX + ',' + minY + " - " + maxX + ',' + maxY);
+		}
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+	}
+
+	/** Returns region grown by the distance in all directions, but still within 0 and size - 1. */
+	public DirtyRegion expand(int distance, int sizeX, int sizeY) {
+		return new DirtyRegion(
+			Math.max(minX - distance, 0),
+			Math.max(minY - distance, 0),
+			Math.min(maxX + distance, sizeX - 1),
+			Math.min(maxY + distance, sizeY - 1));
+	}
+
+	public int width() {
+		return maxX - minX + 1;
+	}
+
+	public int height() {
+		return maxY - minY + 1;
+	}
+
+	public boolean contains(int x, int y) {
+		return x >= minX && x <= maxX && y >= minY && y <= maxY;
+	}
+
+	@Override
+	public String toString() {
+		return "DirtyRegion{" + minX + ',' + minY + " - " + maxX + ',' + maxY + '}';
+	}
+}
@@ -0,0 +1,143 @@
+package com.github.virgo47.sentinel;
+
+import java.util.Arrays;
+
+/**
+ * Frame times of the last {@link #WINDOW} frames and counters since the start. Recording does not allocate,
+ * percentile is computed on demand by sorting a reused copy of the window. Frame longer than 1.5 of the target
+ * frame time counts as dropped frames - as many as target frames would fit into it, minus the one rendered.
+ * Methods are synchronized, so the stats can be read from other threads than the one recording them.
+ */
+public final class FrameStats {
+
+	public static final int WINDOW = 1024;
+
+	private final long targetFrameNanos;
+	private final long[] frameNanos = new long[WINDOW];
+	private final long[] sorted = new long[WINDOW];
+	private int next;
+	private int count;
+
+	private long totalFrames;
+	private long droppedFrames;
+	private long maxFrameNanos;
+
+	public FrameStats(long targetFrameNanos) {
+		if (targetFrameNanos <= 0) {
+			throw new IllegalArgumentException("targetFrameNanos must be higher than 0, is " + targetFrameNanos);
+		}
+		this.targetFrameNanos = targetFrameNanos;
+	}
+
+	public synchronized void record(long nanos) {
+		frameNanos[next] = nanos;
+		next = (next + 1) % WINDOW;
+		count = Math.min(count + 1, WINDOW);
+		totalFrames++;
+		maxFrameNanos = Math.max(maxFrameNanos, nanos);
+		if (nanos * 2 > targetFrameNanos * 3) {
+			droppedFrames += (nanos + targetFrameNanos / 2) / targetFrameNanos - 1;
+		}
+	}
+
+	/** Shortest frame in the window, 0 if there is none. */
+	public synchronized long minNanos() {
+		long min = Long.MAX_VALUE;
+		for (int i = 0; i < count; i++) {
+			min = Math.min(min, frameNanos[i]);
+		}
+		return count > 0 ? min : 0;
+	}
+
+	/** Average frame in the window, 0 if there is none. */
+	public synchronized long avgNanos() {
+		long sum = 0;
+		for (int i = 0; i < count; i++) {
+			sum += frameNanos[i];
+		}
+		return count > 0 ? sum / count : 0;
+	}
+
+	/** Frame time that the percentile of frames in the window does not exceed, 0 if there is none. */
+	public synchronized long percentileNanos(double percentile) {
+		if (count == 0) return 0;
+
+		System.arraycopy(frameNanos, 0, sorted, 0, count);
+		Arrays.sort(sorted, 0, count);
+		int index = (int) Math.ceil(percentile / 100 * count) - 1;
+		return sorted[Math.max(0, Math.min(count - 1, index))];
+	}
+
+	public long p99Nanos() {
+		return percentileNanos(99);
+	}
+
+	/** Longest frame since the start (or reset), unlike the others it is not limited to the window. */
+	public synchronized long maxNanos() {
+		return maxFrameNanos;
+	}
+
+	public synchronized long totalFrames() {
+		return totalFrames;
+	}
+
+	public synchronized long droppedFrames() {
+		return droppedFrames;
+	}
+
+	/** Number of frames in the window. */
+	public synchronized int windowSize() {
+		return count;
+	}
+
+	public long targetFrameNanos() {
+		return targetFrameNanos;
+	}
+
+	/**
+	 * Counts frames of the window into buckets by upper limits (exclusive, ascending) in milliseconds,
+	 * counts must have one more bucket for longer frames. Returns the counts.
+	 */
+	public synchronized int[] histogram(double[] limitsMs, int[] counts) {
+		Arrays.fill(counts, 0);
+		for (int i = 0; i < count; i++) {
+			double ms = frameNanos[i] / 1e6;
+			int bucket = 0;
+			while (bucket < limitsMs.length && ms >= limitsMs[bucket]) {
+				bucket++;
+			}
+			counts[bucket]++;
+		}
+		return counts;
+	}
+
+	/** Copies frame times in the window into the array (oldest first), returns their count. */
+	public synchronized int copyWindow(long[] target) {
+		int copied = Math.min(count, target.length);
+		int start = (next - count + WINDOW) % WINDOW;
+		for (int i = 0; i < copied; i++) {
+			target[i] = frameNanos[(start + i) % WINDOW];
+		}
+		return copied;
+	}
+
+	public synchronized void reset() {
+		next = 0;
+		count = 0;
+		totalFrames = 0;
+		droppedFrames = 0;
+		maxFrameNanos = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "FrameStats{" +
+			"min=" + minNanos() / 1000 + "us" +
+			", avg=" + avgNanos() / 1000 + "us" +
+			", p99=" + p99Nanos() / 1000 + "us" +
+			", max=" + maxFrameNanos / 1000 + "us" +
+			", frames=" + totalFrames +
+			", dropped=" + droppedFrames +
+			'}';
+	}
+}
@@ -0,0 +1,103 @@
+package com.github.virgo47.sentinel;
+
+/**
+ * Fixed timestep game loop driven by frame timestamps (e.g. from {@code AnimationTimer.handle}).
+ * Elapsed time is accumulated and the simulation steps by exactly {@link #stepNanos} as many times as
+ * fits into it, then the frame is rendered with interpolation between the last two simulation states.
+ * Movement speed then does not depend on the frame rate or timer drift. After a long pause (debugger,
+ * window drag) at most {@link #maxStepsPerFrame} steps are run and the rest of the time is skipped, so
+ * the loop does not spiral trying to catch up. Frames do not allocate.
+ */
+public final class GameLoop {
+
+	/** Simulation driven by the loop, both methods are called on the thread calling {@link #frame(long)}. */
+	public interface Simulation {
+
+		/** Advances the simulation by one fixed step. */
+		void step(double stepSeconds);
+
+		/**
+		 * Renders the state between the previous and the current step, alpha 0 is the previous state,
+		 * 1 the current one.
+		 */
+		void render(double alpha);
+	}
+
+	public final long stepNanos;
+	public final int maxStepsPerFrame;
+
+	private final Simulation simulation;
+	private final FrameStats frameStats;
+
+	private long lastFrameNanos = -1;
+	private long accumulatorNanos;
+	// read by other threads for metrics
+	private volatile long ticks;
+	private volatile long skippedTicks;
+
+	public GameLoop(Simulation simulation, long stepNanos, int maxStepsPerFrame, long targetFrameNanos) {
+		if (stepNanos <= 0) throw new IllegalArgumentException("stepNanos must be higher than 0, is " + stepNanos);
+		if (maxStepsPerFrame <= 0) {
+			throw new IllegalArgumentException("maxStepsPerFrame must be higher than 0, is " + maxStepsPerFrame);
+		}
+		this.simulation = simulation;
+		this.stepNanos = stepNanos;
+		this.maxStepsPerFrame = maxStepsPerFrame;
+		this.frameStats = new FrameStats(targetFrameNanos);
+	}
+
+	/** Runs the steps due until the time of the frame and renders it, first frame only renders. */
+	public void frame(long nowNanos) {
+		if (lastFrameNanos >= 0) {
+			long elapsed = nowNanos - lastFrameNanos;
+			frameStats.record(elapsed);
+			accumulatorNanos += elapsed;
+		}
+		lastFrameNanos = nowNanos;
+
+		double stepSeconds = stepNanos / 1e9;
+		int steps = 0;
+		while (accumulatorNanos >= stepNanos) {
+			if (steps == maxStepsPerFrame) {
+				long skipped = accumulatorNanos / stepNanos;
+				skippedTicks += skipped;
+				accumulatorNanos -= skipped * stepNanos;
+				break;
+			}
+			simulation.step(stepSeconds);
+			accumulatorNanos -= stepNanos;
+			steps++;
+			ticks++;
+		}
+		simulation.render((double) accumulatorNanos / stepNanos);
+	}
+
+	/** Forgets the last frame time, e.g. after the loop was stopped, so the pause is not simulated. */
+	public void pause() {
+		lastFrameNanos = -1;
+	}
+
+	/** Frame times measured between calls of {@link #frame(long)}. */
+	public FrameStats frameStats() {
+		return frameStats;
+	}
+
+	/** Number of simulation steps run. */
+	public long ticks() {
+		return ticks;
+	}
+
+	/** Number of simulation steps skipped because of {@link #maxStepsPerFrame}. */
+	public long skippedTicks() {
+		return skippedTicks;
+	}
+
+	@Override
+	public String toString() {
+		return "GameLoop{" +
+			"ticks=" + ticks +
+			", skippedTicks=" + skippedTicks +
+			", " + frameStats +
+			'}';
+	}
+}
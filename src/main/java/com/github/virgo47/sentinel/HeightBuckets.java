@@ -0,0 +1,94 @@
+package com.github.virgo47.sentinel;
+
+import java.util.Arrays;
+
+/**
+ * Indexes of playable squares grouped by their height, so that squares of the highest or lowest heights
+ * can be listed without scanning the whole map. Each height is a doubly linked list threaded through
+ * arrays indexed by square, so adding and removing a square is O(1) and does not allocate (only when
+ * a height out of the current range comes). Square index is the same like for {@link Landscape#gameplanGrid()}.
+ */
+final class HeightBuckets {
+
+	/** Returned by {@link #first(int)} and {@link #next(int)} when there is no other square. */
+	static final int NONE = -1;
+
+	/** First square of each height, index is height - {@link #minHeight}. */
+	private int[] heads;
+	private int minHeight;
+	private final int[] next;
+	private final int[] previous;
+
+	HeightBuckets(int squareCount, int minHeight, int maxHeight) {
+		this.minHeight = minHeight;
+		heads = new int[maxHeight - minHeight + 1];
+		Arrays.fill(heads, NONE);
+		next = new int[squareCount];
+		previous = new int[squareCount];
+	}
+
+	/** Buckets with all playable squares of the gameplan. */
+	static HeightBuckets of(HeightGrid gameplan, int minHeight, int maxHeight) {
+		HeightBuckets buckets = new HeightBuckets(gameplan.size(), minHeight, maxHeight);
+		for (int index = gameplan.size() - 1; index >= 0; index--) {
+			buckets.add(index, gameplan.get(index));
+		}
+		return buckets;
+	}
+
+	/** Adds the square as the first one of the height, unplayable squares are ignored. */
+	void add(int square, int height) {
+		if (height == Landscape.SQUARE_UNPLAYABLE) return;
+
+		int bucket = bucket(height);
+		int head = heads[bucket];
+		next[square] = head;
+		previous[square] = NONE;
+		if (head != NONE) {
+			previous[head] = square;
+		}
+		heads[bucket] = square;
+	}
+
+	/** Removes the square added with the same height before, unplayable squares are ignored. */
+	void remove(int square, int height) {
+		if (height == Landscape.SQUARE_UNPLAYABLE) return;
+
+		int following = next[square];
+		int preceding = previous[square];
+		if (preceding == NONE) {
+			heads[height - minHeight] = following;
+		} else {
+			next[preceding] = following;
+		}
+		if (following != NONE) {
+			previous[following] = preceding;
+		}
+	}
+
+	/** First square of the height or {@link #NONE}. */
+	int first(int height) {
+		int bucket = height - minHeight;
+		return bucket < 0 || bucket >= heads.length ? NONE : heads[bucket];
+	}
+
+	/** Next square of the same height or {@link #NONE}. */
+	int next(int square) {
+		return next[square];
+	}
+
+	private int bucket(int height) {
+		int bucket = height - minHeight;
+		if (bucket < 0 || bucket >= heads.length) {
+			int newMin = Math.min(height, minHeight);
+			int newMax = Math.max(height, minHeight + heads.length - 1);
+			int[] newHeads = new int[newMax - newMin + 1];
+			Arrays.fill(newHeads, NONE);
+			System.arraycopy(heads, 0, newHeads, minHeight - newMin, heads.length);
+			heads = newHeads;
+			minHeight = newMin;
+			bucket = height - minHeight;
+		}
+		return bucket;
+	}
+}
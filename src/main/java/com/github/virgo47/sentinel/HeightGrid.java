@@ -0,0 +1,302 @@
+package com.github.virgo47.sentinel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Flat storage for a rectangular grid of heights, used for both gameplan squares and points.
+ * Values are kept in a single array indexed as {@code x * sizeY + y} (same ordering as points
+ * of {@link LandscapeMeshView}), element type is the narrowest that can hold requested heights.
+ * <p>
+ * Value {@link Integer#MAX_VALUE} ({@link Landscape#SQUARE_UNPLAYABLE}) is always representable,
+ * narrow storages map it to their own maximum value.
+ * <p>
+ * Grid is read-only for code outside of this package, it is modified only by {@link Landscape}.
+ * Consumers reading many cells (e.g. {@link LandscapeMeshBuilder}) can read whole ranges with
+ * {@link #readInto(int, int[], int, int)} - e.g. a column of the grid, which is continuous in the flat
+ * index order - with a single call instead of a call per cell.
+ */
+public abstract class HeightGrid {
+
+	public final int sizeX;
+	public final int sizeY;
+
+	HeightGrid(int sizeX, int sizeY) {
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+	}
+
+	/** Creates grid with the narrowest storage able to hold heights from -maxHeight to +maxHeight. */
+	static HeightGrid create(int sizeX, int sizeY, int maxHeight) {
+		if (maxHeight < Byte.MAX_VALUE) {
+			return new ByteGrid(sizeX, sizeY);
+		}
+		if (maxHeight < Short.MAX_VALUE) {
+			return new ShortGrid(sizeX, sizeY);
+		}
+		return new IntGrid(sizeX, sizeY);
+	}
+
+	/**
+	 * Creates grid backed by the buffer (e.g. memory-mapped file) with cells of 1, 2 or 4 bytes
+	 * encoded the same way like the narrow grids. Buffer position 0 is the first cell.
+	 */
+	static HeightGrid wrap(int sizeX, int sizeY, ByteBuffer buffer, int bytesPerCell) {
+		return new BufferGrid(sizeX, sizeY, buffer, bytesPerCell);
+	}
+
+	/** Copy of the grid on the heap with the same cell size. */
+	HeightGrid copy() {
+		HeightGrid copy;
+		switch (bytesPerCell()) {
+			case Byte.BYTES:
+				copy = new ByteGrid(sizeX, sizeY);
+				break;
+			case Short.BYTES:
+				copy = new ShortGrid(sizeX, sizeY);
+				break;
+			default:
+				copy = new IntGrid(sizeX, sizeY);
+		}
+		for (int i = 0; i < size(); i++) {
+			copy.set(i, get(i));
+		}
+		return copy;
+	}
+
+	public final int index(int x, int y) {
+		return x * sizeY + y;
+	}
+
+	public final int size() {
+		return sizeX * sizeY;
+	}
+
+	public final int get(int x, int y) {
+		return get(index(x, y));
+	}
+
+	/** Returns value at flat index, see {@link #index(int, int)}. */
+	public abstract int get(int index);
+
+	/** Bytes used by one grid cell, useful for memory estimations. */
+	public abstract int bytesPerCell();
+
+	/** Copies all values into the target array (from its start) in the flat index order. */
+	public final void copyTo(int[] target) {
+		int size = size();
+		if (target.length < size) {
+			throw new IllegalArgumentException("Target array too small: " + target.length + " < " + size);
+		}
+		read(0, target, 0, size);
+	}
+
+	/**
+	 * Copies length values from the flat index into the target array at the offset, the same values
+	 * like {@link #get(int)} returns. Grid's storage is not exposed, so it stays read-only.
+	 */
+	public final void readInto(int index, int[] target, int offset, int length) {
+		if (index < 0 || length < 0 || index + length > size() || offset < 0 || offset + length > target.length) {
+			throw new IndexOutOfBoundsException("Can't read " + length + " values from " + index + " of " + size()
+				+ " into array of " + target.length + " at " + offset);
+		}
+		read(index, target, offset, length);
+	}
+
+	/** Bulk read without bounds checks, storages read their values in a single loop. */
+	abstract void read(int index, int[] target, int offset, int length);
+
+	final void set(int x, int y, int value) {
+		set(index(x, y), value);
+	}
+
+	abstract void set(int index, int value);
+
+	static final class IntGrid extends HeightGrid {
+
+		private final int[] values;
+
+		IntGrid(int sizeX, int sizeY) {
+			super(sizeX, sizeY);
+			values = new int[sizeX * sizeY];
+		}
+
+		@Override
+		public int get(int index) {
+			return values[index];
+		}
+
+		@Override
+		void set(int index, int value) {
+			values[index] = value;
+		}
+
+		@Override
+		public int bytesPerCell() {
+			return Integer.BYTES;
+		}
+
+		@Override
+		void read(int index, int[] target, int offset, int length) {
+			System.arraycopy(values, index, target, offset, length);
+		}
+	}
+
+	static final class ShortGrid extends HeightGrid {
+
+		private final short[] values;
+
+		ShortGrid(int sizeX, int sizeY) {
+			super(sizeX, sizeY);
+			values = new short[sizeX * sizeY];
+		}
+
+		@Override
+		public int get(int index) {
+			short value = values[index];
+			return value == Short.MAX_VALUE ? Integer.MAX_VALUE : value;
+		}
+
+		@Override
+		void set(int index, int value) {
+			if (value == Integer.MAX_VALUE) {
+				values[index] = Short.MAX_VALUE;
+			} else if (value >= Short.MAX_VALUE || value < Short.MIN_VALUE) {
+				throw new IllegalArgumentException("Value " + value + " does not fit into short grid");
+			} else {
+				values[index] = (short) value;
+			}
+		}
+
+		@Override
+		void read(int index, int[] target, int offset, int length) {
+			for (int i = 0; i < length; i++) {
+				short value = values[index + i];
+				target[offset + i] = value == Short.MAX_VALUE ? Integer.MAX_VALUE : value;
+			}
+		}
+
+		@Override
+		public int bytesPerCell() {
+			return Short.BYTES;
+		}
+	}
+
+	static final class ByteGrid extends HeightGrid {
+
+		private final byte[] values;
+
+		ByteGrid(int sizeX, int sizeY) {
+			super(sizeX, sizeY);
+			values = new byte[sizeX * sizeY];
+		}
+
+		@Override
+		public int get(int index) {
+			byte value = values[index];
+			return value == Byte.MAX_VALUE ? Integer.MAX_VALUE : value;
+		}
+
+		@Override
+		void set(int index, int value) {
+			if (value == Integer.MAX_VALUE) {
+				values[index] = Byte.MAX_VALUE;
+			} else if (value >= Byte.MAX_VALUE || value < Byte.MIN_VALUE) {
+				throw new IllegalArgumentException("Value " + value + " does not fit into byte grid");
+			} else {
+				values[index] = (byte) value;
+			}
+		}
+
+		@Override
+		void read(int index, int[] target, int offset, int length) {
+			for (int i = 0; i < length; i++) {
+				byte value = values[index + i];
+				target[offset + i] = value == Byte.MAX_VALUE ? Integer.MAX_VALUE : value;
+			}
+		}
+
+		@Override
+		public int bytesPerCell() {
+			return Byte.BYTES;
+		}
+	}
+
+	static final class BufferGrid extends HeightGrid {
+
+		private final ByteBuffer buffer;
+		private final int bytesPerCell;
+
+		BufferGrid(int sizeX, int sizeY, ByteBuffer buffer, int bytesPerCell) {
+			super(sizeX, sizeY);
+			if (bytesPerCell != Byte.BYTES && bytesPerCell != Short.BYTES && bytesPerCell != Integer.BYTES) {
+				throw new IllegalArgumentException("Unsupported bytes per cell: " + bytesPerCell);
+			}
+			if ((long) sizeX * sizeY * bytesPerCell > buffer.capacity()) {
+				throw new IllegalArgumentException("Buffer too small for " + sizeX + 'x' + sizeY + " grid: " + buffer.capacity());
+			}
+			this.buffer = buffer;
+			this.bytesPerCell = bytesPerCell;
+		}
+
+		@Override
+		public int get(int index) {
+			switch (bytesPerCell) {
+				case Byte.BYTES:
+					byte byteValue = buffer.get(index);
+					return byteValue == Byte.MAX_VALUE ? Integer.MAX_VALUE : byteValue;
+				case Short.BYTES:
+					short shortValue = buffer.getShort(index * Short.BYTES);
+					return shortValue == Short.MAX_VALUE ? Integer.MAX_VALUE : shortValue;
+				default:
+					return buffer.getInt(index * Integer.BYTES);
+			}
+		}
+
+		@Override
+		void set(int index, int value) {
+			switch (bytesPerCell) {
+				case Byte.BYTES:
+					if (value != Integer.MAX_VALUE && (value >= Byte.MAX_VALUE || value < Byte.MIN_VALUE)) {
+						throw new IllegalArgumentException("Value " + value + " does not fit into byte grid");
+					}
+					buffer.put(index, value == Integer.MAX_VALUE ? Byte.MAX_VALUE : (byte) value);
+					break;
+				case Short.BYTES:
+					if (value != Integer.MAX_VALUE && (value >= Short.MAX_VALUE || value < Short.MIN_VALUE)) {
+						throw new IllegalArgumentException("Value " + value + " does not fit into short grid");
+					}
+					buffer.putShort(index * Short.BYTES, value == Integer.MAX_VALUE ? Short.MAX_VALUE : (short) value);
+					break;
+				default:
+					buffer.putInt(index * Integer.BYTES, value);
+			}
+		}
+
+		@Override
+		void read(int index, int[] target, int offset, int length) {
+			switch (bytesPerCell) {
+				case Byte.BYTES:
+					for (int i = 0; i < length; i++) {
+						byte value = buffer.get(index + i);
+						target[offset + i] = value == Byte.MAX_VALUE ? Integer.MAX_VALUE : value;
+					}
+					break;
+				case Short.BYTES:
+					for (int i = 0; i < length; i++) {
+						short value = buffer.getShort((index + i) * Short.BYTES);
+						target[offset + i] = value == Short.MAX_VALUE ? Integer.MAX_VALUE : value;
+					}
+					break;
+				default:
+					for (int i = 0; i < length; i++) {
+						target[offset + i] = buffer.getInt((index + i) * Integer.BYTES);
+					}
+			}
+		}
+
+		@Override
+		public int bytesPerCell() {
+			return bytesPerCell;
+		}
+	}
+}
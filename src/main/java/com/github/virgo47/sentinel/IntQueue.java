@@ -0,0 +1,64 @@
+package com.github.virgo47.sentinel;
+
+import java.util.NoSuchElementException;
+
+/**
+ * FIFO queue of primitive ints backed by a growable ring buffer. Meant to be reused
+ * (see {@link #clear()}), so that hot loops don't allocate once the buffer is big enough.
+ */
+final class IntQueue {
+
+	private int[] elements;
+	private int head;
+	private int size;
+
+	IntQueue(int initialCapacity) {
+		// power of two, so that we can wrap with a mask
+		elements = new int[Integer.highestOneBit(Math.max(initialCapacity - 1, 1)) << 1];
+	}
+
+	void add(int value) {
+		if (size == elements.length) {
+			grow();
+		}
+		elements[(head + size) & (elements.length - 1)] = value;
+		size += 1;
+	}
+
+	/** Removes and returns the head of the queue, check {@link #isEmpty()} first. */
+	int poll() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		int value = elements[head];
+		head = (head + 1) & (elements.length - 1);
+		size -= 1;
+		return value;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	int capacity() {
+		return elements.length;
+	}
+
+	void clear() {
+		head = 0;
+		size = 0;
+	}
+
+	private void grow() {
+		int[] newElements = new int[elements.length << 1];
+		int firstPart = elements.length - head;
+		System.arraycopy(elements, head, newElements, 0, firstPart);
+		System.arraycopy(elements, 0, newElements, firstPart, head);
+		elements = newElements;
+		head = 0;
+	}
+}
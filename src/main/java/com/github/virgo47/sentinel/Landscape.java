@@ -1,16 +1,22 @@
 package com.github.virgo47.sentinel;
 
-import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Queue;
 import java.util.Random;
-import java.util.logging.Logger;
+import java.util.concurrent.ForkJoinPool;
 
 public class Landscape {
 
 	static final int SQUARE_UNPLAYABLE = Integer.MAX_VALUE;
 
-	private static final Logger log = Logger.getLogger(Landscape.class.getName());
+	/**
+	 * Version of the generator, must be increased with every change that gives different landscape for the same
+	 * size, config and seed. Stored landscapes (see {@link LandscapeCache}) of other versions are not used.
+	 */
+	public static final int GENERATOR_VERSION = 1;
+
+	private static final TraceLogger log = TraceLogger.getLogger(Landscape.class);
 
 	private static final int MIN_PATCH_SIZE = 5;
 
@@ -19,15 +25,22 @@ public class Landscape {
 	private static final int WALK_SOUTH = 4; // y--
 	private static final int WALK_EAST = 8; // x++
 
+	private static final int CASCADE_FRAME = 4;
+	/** Number of last changed squares remembered for {@link #changedSince(int)}, power of two. */
+	static final int CHANGE_LOG_SIZE = 256;
+	/** Directions checked after square change, in this order: east, north, west, south. */
+	private static final int[] CASCADE_DX = {1, 0, -1, 0};
+	private static final int[] CASCADE_DY = {0, 1, 0, -1};
+
 	public final int sizeX;
 	public final int sizeY;
 	public final Config config;
 
 	/** Describes heights for flat squares, {@link #SQUARE_UNPLAYABLE} for slopes. */
-	private int[][] gameplan;
+	private HeightGrid gameplan;
 
 	/** Describes heights at points (square corners) - size must be +1 in both directions compared to {@link #gameplan}. */
-	private int[][] points;
+	private HeightGrid points;
 	/** Sentinel's position - height is determined from gameplan. It should be one of the highest squares, not to mention his base-block. */
 	private Position sentinel;
 	/** Sentries' positions - generally some above average squares. Sentines stand on the ground directly. */
@@ -36,8 +49,43 @@ public class Landscape {
 	/** Starting position for player. */
 	private Position playerStart;
 
+	/**
+	 * Number of playable squares of each height, index is height - {@link #minCountedHeight}. Kept up to date
+	 * by {@link #setGameplan(int, int, int)}, so placement knows heights of candidates without scanning the map.
+	 * Covers heights from -{@link Config#maxHeight} to {@link Config#maxHeight}, grows if other height is set.
+	 */
+	private int[] heightCounts;
+	private int minCountedHeight;
+	/**
+	 * Playable squares grouped by height, kept up to date together with {@link #heightCounts}, so that placement
+	 * looks only at the highest and lowest squares. Created lazily for landscapes read from a file, see {@link #heightBuckets()}.
+	 */
+	private HeightBuckets heightBuckets;
+
 	private Random random;
 
+	/** Reused queue for the random walk of {@link #performChange(int, int, int, int)}. */
+	private final IntQueue walkQueue = new IntQueue(64);
+
+	/** Stack for cascaded fixes of {@link #setSquare(int, int, int)}, see {@link #CASCADE_FRAME}. */
+	private int[] cascadeStack = new int[CASCADE_FRAME * 64];
+	private int cascadeDepth;
+
+	private final CascadeCounters lastChangeCounters = new CascadeCounters();
+	private final CascadeCounters totalCounters = new CascadeCounters();
+	private final PhaseTimings phaseTimings = new PhaseTimings();
+
+	/** Bounds of squares changed since the last {@link #takeDirtyRegion()}, min > max if nothing changed. */
+	private int dirtyMinX = Integer.MAX_VALUE;
+	private int dirtyMinY = Integer.MAX_VALUE;
+	private int dirtyMaxX = Integer.MIN_VALUE;
+	private int dirtyMaxY = Integer.MIN_VALUE;
+	/** Incremented with every change of the heights, see {@link #version()}. */
+	private int version;
+	/** Squares of the last changes, change to the version v + 1 is at v % {@link #CHANGE_LOG_SIZE}. */
+	private final int[] changeLogX = new int[CHANGE_LOG_SIZE];
+	private final int[] changeLogY = new int[CHANGE_LOG_SIZE];
+
 	public Landscape(int sizeX, int sizeY, Config config) {
 		this.sizeX = sizeX;
 		this.sizeY = sizeY;
@@ -47,11 +95,29 @@ public class Landscape {
 		random = new Random(0);
 	}
 
+	/** Landscape with existing grids and their height histogram, see {@link LandscapeFile}. */
+	Landscape(Config config, HeightGrid gameplan, HeightGrid points, int minCountedHeight, int[] heightCounts) {
+		if (points.sizeX != gameplan.sizeX + 1 || points.sizeY != gameplan.sizeY + 1) {
+			throw new IllegalArgumentException("Points " + points.sizeX + 'x' + points.sizeY
+				+ " do not match gameplan " + gameplan.sizeX + 'x' + gameplan.sizeY);
+		}
+		this.sizeX = gameplan.sizeX;
+		this.sizeY = gameplan.sizeY;
+		this.config = config;
+		this.gameplan = gameplan;
+		this.points = points;
+		this.minCountedHeight = minCountedHeight;
+		this.heightCounts = heightCounts;
+		random = new Random(0);
+	}
+
 	public void generate(int seed) {
 		random = new Random(seed);
 
 		int changes = random.nextInt(config.changesCount) + config.changesCount / 2;
-		log.fine("Requested changes " + config.changesCount + ", planned changes " + changes);
+		if (log.isFineEnabled()) {
+			log.fine("Requested changes " + config.changesCount + ", planned changes " + changes);
+		}
 
 		while (changes > 0) {
 			if (createNextChange(changes)) {
@@ -60,107 +126,192 @@ public class Landscape {
 		}
 	}
 
+	/**
+	 * Generates the landscape in tiles of tileSize x tileSize squares in parallel on the pool, see
+	 * {@link TiledGeneration}. Config applies to each tile separately (e.g. changesCount is per tile).
+	 * The same seed and tileSize give the same landscape regardless of the pool parallelism.
+	 */
+	public void generate(int seed, int tileSize, ForkJoinPool pool) {
+		new TiledGeneration(this, seed, tileSize).run(pool);
+	}
+
 	private boolean createNextChange(int changesLeft) {
 		int x = random.nextInt(sizeX);
 		int y = random.nextInt(sizeY);
 		int height = random.nextInt(config.maxHeight) + 1;
 		height = random.nextBoolean() ? height : -height;
 		int patchSize = random.nextInt(config.maxPatchSize) / Math.abs(height) + minPatchSize(height) + changesLeft;
-		return performChange(new Position(x, y), height, patchSize);
+		return performChange(x, y, height, patchSize);
 	}
 
 	// callable from the package for testing purposes
 	boolean performChange(Position initPosition, int height, int patchSize) {
-		log.finer("Patch plan - height=" + height + ", patchSize=" + patchSize + ", x,y=" + initPosition);
+		return performChange(initPosition.x, initPosition.y, height, patchSize);
+	}
+
+	/**
+	 * Random walk from the initial square that raises/lowers squares to the height until patchSize squares
+	 * are changed. Walk works with packed positions (gameplan index) in a reused int queue, so it does not allocate.
+	 */
+	private boolean performChange(int initX, int initY, int height, int patchSize) {
+		if (log.isFinerEnabled()) {
+			log.finer("Patch plan - height=" + height + ", patchSize=" + patchSize + ", x,y=(" + initX + ',' + initY + ')');
+		}
 
-		if (gameplan(initPosition) == height) {
+		if (gameplan(initX, initY) == height) {
 			return false; // let's try some other random change
 		}
 
-		Queue<Position> todoQueue = new ArrayDeque<>();
-		todoQueue.add(initPosition);
+		long walkStart = PhaseTimings.ENABLED ? System.nanoTime() : 0;
+		long cascadeNanosBefore = phaseTimings.nanos(PhaseTimings.Phase.CASCADE);
+
+		lastChangeCounters.reset();
+		IntQueue todoQueue = walkQueue;
+		todoQueue.clear();
+		todoQueue.add(gameplan.index(initX, initY));
 
-		// from now on we use pos, not x,y
+		// from now on we use packed position, x and y are unpacked from it
 		while (patchSize > 0) {
-			Position pos = todoQueue.poll();
-			log.finest("Found " + pos + ", left size: " + todoQueue.size());
-			if (pos == null) {
-				log.finer("Finishing patch prematurely with left patchSize " + patchSize);
+			if (todoQueue.isEmpty()) {
+				if (log.isFinerEnabled()) {
+					log.finer("Finishing patch prematurely with left patchSize " + patchSize);
+				}
 				break;
 			}
+			int pos = todoQueue.poll();
+			int x = pos / sizeY;
+			int y = pos % sizeY;
+			if (log.isFinestEnabled()) {
+				log.finest("Found (" + x + ',' + y + "), left size: " + todoQueue.size());
+			}
 
-			if (setSquare(pos, height)) {
+			if (setSquare(x, y, height)) {
 				patchSize -= 1;
 			}
 
 			int whereNext = random.nextInt(16);
 			if ((whereNext & WALK_NORTH) > 0) {
-				addToQueue(todoQueue, pos.north(), height);
+				addToQueue(todoQueue, x, y + 1, height);
 			}
 			if ((whereNext & WALK_WEST) > 0) {
-				addToQueue(todoQueue, pos.west(), height);
+				addToQueue(todoQueue, x - 1, y, height);
 			}
 			if ((whereNext & WALK_SOUTH) > 0) {
-				addToQueue(todoQueue, pos.south(), height);
+				addToQueue(todoQueue, x, y - 1, height);
 			}
 			if ((whereNext & WALK_EAST) > 0) {
-				addToQueue(todoQueue, pos.east(), height);
+				addToQueue(todoQueue, x + 1, y, height);
 			}
 		}
-		return true;
-	}
 
-	private void addToQueue(Queue<Position> todoQueue, Position pos, int height) {
-		if (isValidPosition(pos) && gameplan(pos) != height) {
-			todoQueue.add(pos);
+		if (PhaseTimings.ENABLED) {
+			long cascadeNanos = phaseTimings.nanos(PhaseTimings.Phase.CASCADE) - cascadeNanosBefore;
+			phaseTimings.add(PhaseTimings.Phase.PATCH_WALK, System.nanoTime() - walkStart - cascadeNanos);
 		}
+		return true;
 	}
 
-	// not private for testing purposes
-	boolean setSquare(int x, int y, int height) {
-		return setSquare(new Position(x, y), height);
+	private void addToQueue(IntQueue todoQueue, int x, int y, int height) {
+		if (isValidPosition(x, y)) {
+			int pos = gameplan.index(x, y);
+			if (gameplan.get(pos) != height) {
+				todoQueue.add(pos);
+			}
+		}
 	}
 
 	/**
 	 * Higher level change of the landscape, that also fixes maximal requested height difference, fixes
 	 * slopes across more than a single square, joins squares with the same height across vertical
-	 * or horizontal gap (not diagonal), and also chooses candidates for sentinel/sentry/player position.
+	 * or horizontal gap (not diagonal), and also counts heights of playable squares, which are used to choose
+	 * candidates for sentinel/sentry/player position, see {@link #placePositions(int, int)}.
+	 * <p>
+	 * Fixes cascade from every changed square - this is done depth-first with explicit stack of
+	 * {@link #CASCADE_FRAME} ints per changed square (x, y, height, next direction to check), which gives
+	 * the same order of changes like recursion would, without risk of stack overflow.
 	 */
-	private boolean setSquare(Position pos, int height) {
-		boolean changed = setGameplan(pos, height);
-		if (changed) {
-			checkSurrounding(pos.east(), pos.east(2), height);
-			checkSurrounding(pos.north(), pos.north(2), height);
-			checkSurrounding(pos.west(), pos.west(2), height);
-			checkSurrounding(pos.south(), pos.south(2), height);
+	// not private for testing purposes
+	boolean setSquare(int x, int y, int height) {
+		if (!setGameplan(x, y, height)) return false;
+
+		cascadeFrom(x, y, height);
+		return true;
+	}
+
+	/** Runs the cascade of fixes from the playable square that was just changed (or reasserted). */
+	private void cascadeFrom(int x, int y, int height) {
+		long cascadeStart = PhaseTimings.ENABLED ? System.nanoTime() : 0;
+		pushCascade(x, y, height);
+		while (cascadeDepth > 0) {
+			int frame = (cascadeDepth - 1) * CASCADE_FRAME;
+			int direction = cascadeStack[frame + 3];
+			if (direction == CASCADE_DX.length) {
+				cascadeDepth -= 1;
+				continue;
+			}
+			cascadeStack[frame + 3] = direction + 1;
+			// this may push another frame
+			checkSurrounding(cascadeStack[frame], cascadeStack[frame + 1],
+				CASCADE_DX[direction], CASCADE_DY[direction], cascadeStack[frame + 2]);
+		}
+		if (PhaseTimings.ENABLED) {
+			phaseTimings.add(PhaseTimings.Phase.CASCADE, System.nanoTime() - cascadeStart);
 		}
-		return changed;
 	}
 
-	/** Low level change of the gameplan and its geometry. */
-	private boolean setGameplan(Position pos, int height) {
-		return setGameplan(pos.x, pos.y, height);
+	/** Cascaded change of the square, further checks of its surrounding are pushed to the cascade stack. */
+	private boolean cascadeSquare(int x, int y, int height) {
+		if (!setGameplan(x, y, height)) return false;
+
+		pushCascade(x, y, height);
+		return true;
+	}
+
+	private void pushCascade(int x, int y, int height) {
+		int frame = cascadeDepth * CASCADE_FRAME;
+		if (frame + CASCADE_FRAME > cascadeStack.length) {
+			cascadeStack = Arrays.copyOf(cascadeStack, cascadeStack.length * 2);
+		}
+		cascadeStack[frame] = x;
+		cascadeStack[frame + 1] = y;
+		cascadeStack[frame + 2] = height;
+		cascadeStack[frame + 3] = 0;
+		cascadeDepth += 1;
+		lastChangeCounters.updateMaxDepth(cascadeDepth);
+		totalCounters.updateMaxDepth(cascadeDepth);
 	}
 
 	/** Low level change of the gameplan and its geometry. */
 	private boolean setGameplan(int x, int y, int height) {
-		if (gameplan[x][y] == height) return false;
-
-		gameplan[x][y] = height;
-		log.finer("Square (" + x + ',' + y + ") set to height: " + (height == SQUARE_UNPLAYABLE ? "unplayable" : height));
+		int index = gameplan.index(x, y);
+		int oldHeight = gameplan.get(index);
+		if (oldHeight == height) return false;
+
+		gameplan.set(index, height);
+		countHeight(oldHeight, -1);
+		countHeight(height, 1);
+		if (heightBuckets != null) {
+			heightBuckets.remove(index, oldHeight);
+			heightBuckets.add(index, height);
+		}
+		markDirty(x, y);
+		if (log.isFinerEnabled()) {
+			log.finer("Square (" + x + ',' + y + ") set to height: " + (height == SQUARE_UNPLAYABLE ? "unplayable" : height));
+		}
 		// we don't update geometry for unplayable - it is updated properly by surrounded playable squares
 		if (height == SQUARE_UNPLAYABLE) {
 			// but we check that it is not flat, which indicates problem
-			if (points[x][y] == points[x + 1][y] && points[x][y] == points[x + 1][y + 1] && points[x][y] == points[x][y + 1]) {
-				throw new IllegalStateException("Unplayable square " + x + ',' + y + " has flat geometry with height " + points[x][y]);
+			int sw = points.get(x, y);
+			if (sw == points.get(x + 1, y) && sw == points.get(x + 1, y + 1) && sw == points.get(x, y + 1)) {
+				throw new IllegalStateException("Unplayable square " + x + ',' + y + " has flat geometry with height " + sw);
 			}
 			return true;
 		}
 
-		points[x][y] = height;
-		points[x + 1][y] = height;
-		points[x + 1][y + 1] = height;
-		points[x][y + 1] = height;
+		points.set(x, y, height);
+		points.set(x + 1, y, height);
+		points.set(x + 1, y + 1, height);
+		points.set(x, y + 1, height);
 
 		setSurroundingUnplayable(x, y, height);
 		return true;
@@ -184,37 +335,46 @@ public class Landscape {
 		}
 	}
 
-	private void checkSurrounding(Position next, Position nextNext, int height) {
-		if (!isValidPosition(next) || !isValidPosition(nextNext)) return;
+	/**
+	 * Checks the square next to the changed one (x+dx, y+dy) and the one after it (x+2dx, y+2dy)
+	 * in the given direction.
+	 */
+	private void checkSurrounding(int x, int y, int dx, int dy, int height) {
+		int nextX = x + dx;
+		int nextY = y + dy;
+		int nextNextX = nextX + dx;
+		int nextNextY = nextY + dy;
+		if (!isValidPosition(nextX, nextY) || !isValidPosition(nextNextX, nextNextY)) return;
 		// no need to fix the direction that is already of requested height
-		if (gameplan(next) == height) return;
+		if (gameplan(nextX, nextY) == height) return;
 
-		int nextNextHeight = gameplan(nextNext);
+		int nextNextHeight = gameplan(nextNextX, nextNextY);
 		if (nextNextHeight != SQUARE_UNPLAYABLE) {
 			// fixes maximum height difference
 			if ((nextNextHeight - height) > config.maxHeightDifference) {
-				setSquare(nextNext, height + config.maxHeightDifference);
+				if (cascadeSquare(nextNextX, nextNextY, height + config.maxHeightDifference)) {
+					lastChangeCounters.heightFixes += 1;
+					totalCounters.heightFixes += 1;
+				}
 			} else if ((height - nextNextHeight) > config.maxHeightDifference) {
-				setSquare(nextNext, height - config.maxHeightDifference);
+				if (cascadeSquare(nextNextX, nextNextY, height - config.maxHeightDifference)) {
+					lastChangeCounters.heightFixes += 1;
+					totalCounters.heightFixes += 1;
+				}
 			}
 		}
 		// joins patches of the same height
 		if (nextNextHeight == height) {
-			setSquare(next, height);
+			if (cascadeSquare(nextX, nextY, height)) {
+				lastChangeCounters.joins += 1;
+				totalCounters.joins += 1;
+			}
 		}
 	}
 
-	private int gameplan(Position pos) {
-		return gameplan(pos.x, pos.y);
-	}
-
 	// not private for testing purposes
 	int gameplan(int x, int y) {
-		return gameplan[x][y];
-	}
-
-	private boolean isValidPosition(Position pos) {
-		return isValidPosition(pos.x, pos.y);
+		return gameplan.get(x, y);
 	}
 
 	private boolean isValidPosition(int x, int y) {
@@ -222,14 +382,289 @@ public class Landscape {
 			&& y >= 0 && y < sizeY;
 	}
 
+	private void countHeight(int height, int delta) {
+		if (height == SQUARE_UNPLAYABLE) return;
+
+		int index = height - minCountedHeight;
+		if (index < 0 || index >= heightCounts.length) {
+			int newMin = Math.min(height, minCountedHeight);
+			int newMax = Math.max(height, maxCountedHeight());
+			int[] newCounts = new int[newMax - newMin + 1];
+			System.arraycopy(heightCounts, 0, newCounts, minCountedHeight - newMin, heightCounts.length);
+			heightCounts = newCounts;
+			minCountedHeight = newMin;
+			index = height - minCountedHeight;
+		}
+		heightCounts[index] += delta;
+	}
+
+	/**
+	 * Counts heights of playable squares again and groups them to height buckets, used after bulk changes
+	 * that bypass {@link #setGameplan(int, int, int)}.
+	 */
+	void countHeights() {
+		Arrays.fill(heightCounts, 0);
+		for (int i = 0; i < gameplan.size(); i++) {
+			countHeight(gameplan.get(i), 1);
+		}
+		heightBuckets = HeightBuckets.of(gameplan, minCountedHeight, maxCountedHeight());
+	}
+
+	/**
+	 * Makes squares along the landscape edges unplayable after the edge points were changed in bulk,
+	 * so they are slopes. Counts heights again and marks the whole landscape dirty.
+	 */
+	void makeEdgesUnplayable() {
+		for (int x = 0; x < sizeX; x++) {
+			gameplan.set(x, 0, SQUARE_UNPLAYABLE);
+			gameplan.set(x, sizeY - 1, SQUARE_UNPLAYABLE);
+		}
+		for (int y = 0; y < sizeY; y++) {
+			gameplan.set(0, y, SQUARE_UNPLAYABLE);
+			gameplan.set(sizeX - 1, y, SQUARE_UNPLAYABLE);
+		}
+		countHeights();
+		markAllDirty();
+	}
+
+	/** Number of playable squares with the height. */
+	public int heightCount(int height) {
+		int index = height - minCountedHeight;
+		return index < 0 || index >= heightCounts.length ? 0 : heightCounts[index];
+	}
+
+	/** Lowest height that can have non-zero {@link #heightCount(int)}. */
+	public int minCountedHeight() {
+		return minCountedHeight;
+	}
+
+	/** Highest height that can have non-zero {@link #heightCount(int)}. */
+	public int maxCountedHeight() {
+		return minCountedHeight + heightCounts.length - 1;
+	}
+
+	/** Copy of the height histogram, index is height - {@link #minCountedHeight()}. */
+	int[] heightCounts() {
+		return heightCounts.clone();
+	}
+
+	/** Playable squares grouped by height, built on the first call for landscapes read from a file or copied. */
+	HeightBuckets heightBuckets() {
+		if (heightBuckets == null) {
+			heightBuckets = HeightBuckets.of(gameplan, minCountedHeight, maxCountedHeight());
+		}
+		return heightBuckets;
+	}
+
+	private void markDirty(int x, int y) {
+		changeLogX[version & CHANGE_LOG_SIZE - 1] = x;
+		changeLogY[version & CHANGE_LOG_SIZE - 1] = y;
+		version++;
+		if (x < dirtyMinX) dirtyMinX = x;
+		if (x > dirtyMaxX) dirtyMaxX = x;
+		if (y < dirtyMinY) dirtyMinY = y;
+		if (y > dirtyMaxY) dirtyMaxY = y;
+	}
+
+	/** Marks the whole landscape dirty, used after bulk changes that bypass {@link #setGameplan(int, int, int)}. */
+	void markAllDirty() {
+		markDirty(0, 0);
+		markDirty(sizeX - 1, sizeY - 1);
+	}
+
+	/**
+	 * Version of the heights, changes with every change of the landscape. Unlike {@link #takeDirtyRegion()}
+	 * it is not reset by reading, so any number of caches can use it to find out they are stale.
+	 */
+	public int version() {
+		return version;
+	}
+
+	/**
+	 * Returns bounds of the squares changed since the {@link #version()}, or null if nothing was changed.
+	 * Unlike {@link #takeDirtyRegion()} it does not reset anything. Only last {@link #CHANGE_LOG_SIZE} changes
+	 * are remembered, for older version the whole landscape is returned.
+	 */
+	public DirtyRegion changedSince(int sinceVersion) {
+		int changes = version - sinceVersion;
+		if (changes == 0) return null;
+		if (changes < 0 || changes > CHANGE_LOG_SIZE) {
+			return new DirtyRegion(0, 0, sizeX - 1, sizeY - 1);
+		}
+
+		int minX = Integer.MAX_VALUE;
+		int minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int maxY = Integer.MIN_VALUE;
+		for (int v = sinceVersion; v != version; v++) {
+			int x = changeLogX[v & CHANGE_LOG_SIZE - 1];
+			int y = changeLogY[v & CHANGE_LOG_SIZE - 1];
+			minX = Math.min(minX, x);
+			maxX = Math.max(maxX, x);
+			minY = Math.min(minY, y);
+			maxY = Math.max(maxY, y);
+		}
+		return new DirtyRegion(minX, minY, maxX, maxY);
+	}
+
+	public boolean isDirty() {
+		return dirtyMinX <= dirtyMaxX;
+	}
+
+	/**
+	 * Returns bounds of the squares changed since the last call (or creation) and resets them,
+	 * returns null if nothing was changed. Changed square also changes its points, so squares
+	 * around the region can be affected too (e.g. their triangulation).
+	 */
+	public DirtyRegion takeDirtyRegion() {
+		if (!isDirty()) return null;
+
+		DirtyRegion region = new DirtyRegion(dirtyMinX, dirtyMinY, dirtyMaxX, dirtyMaxY);
+		dirtyMinX = Integer.MAX_VALUE;
+		dirtyMinY = Integer.MAX_VALUE;
+		dirtyMaxX = Integer.MIN_VALUE;
+		dirtyMaxY = Integer.MIN_VALUE;
+		return region;
+	}
+
+	/**
+	 * Copies gameplan and points of the tile generated separately to the position of this landscape.
+	 * Points on the east/north edge of the tile are shared with next tiles, these are copied only if
+	 * they are on the edge of this landscape too, so every point has a single owner tile.
+	 * Tiles can be copied concurrently, as they write to disjoint parts of the grids.
+	 */
+	void copyTile(Landscape tile, int offsetX, int offsetY) {
+		for (int x = 0; x < tile.sizeX; x++) {
+			for (int y = 0; y < tile.sizeY; y++) {
+				gameplan.set(offsetX + x, offsetY + y, tile.gameplan.get(x, y));
+			}
+		}
+		int pointsX = offsetX + tile.sizeX == sizeX ? tile.sizeX + 1 : tile.sizeX;
+		int pointsY = offsetY + tile.sizeY == sizeY ? tile.sizeY + 1 : tile.sizeY;
+		for (int x = 0; x < pointsX; x++) {
+			for (int y = 0; y < pointsY; y++) {
+				points.set(offsetX + x, offsetY + y, tile.points.get(x, y));
+			}
+		}
+	}
+
+	/**
+	 * Makes the landscape consistent across seams of tiles generated independently, tiles are squares
+	 * of tileSize starting at 0,0. Squares along the seams are processed in a fixed order, so the result
+	 * does not depend on the order in which the tiles were generated. Steps:
+	 * <ol>
+	 * <li>Playable squares next to the seam rewrite their geometry and make neighbours of different
+	 * height unplayable - the first one in the order wins.</li>
+	 * <li>Unplayable squares near the seam that ended up with flat geometry become playable.</li>
+	 * <li>Cascade of maximal height difference fixes and joins runs from all the playable squares up to two
+	 * squares from the seam, like it runs after any change during generation. These are the squares changed
+	 * by the previous steps and the squares two apart across the seam, so the maximal height difference
+	 * holds there too.</li>
+	 * </ol>
+	 */
+	void reconcileSeams(int tileSize) {
+		// tiles were copied bypassing the buckets, countHeights() groups the squares again
+		heightBuckets = null;
+		for (int seamX = tileSize; seamX < sizeX; seamX += tileSize) {
+			for (int y = 0; y < sizeY; y++) {
+				reassertGeometry(seamX - 1, y);
+				reassertGeometry(seamX, y);
+			}
+		}
+		for (int seamY = tileSize; seamY < sizeY; seamY += tileSize) {
+			for (int x = 0; x < sizeX; x++) {
+				reassertGeometry(x, seamY - 1);
+				reassertGeometry(x, seamY);
+			}
+		}
+
+		// geometry of squares up to two squares from the seam could have been changed by the first step
+		for (int seamX = tileSize; seamX < sizeX; seamX += tileSize) {
+			for (int y = 0; y < sizeY; y++) {
+				for (int x = seamX - 2; x <= seamX + 1; x++) {
+					fixFlatUnplayable(x, y);
+				}
+			}
+		}
+		for (int seamY = tileSize; seamY < sizeY; seamY += tileSize) {
+			for (int x = 0; x < sizeX; x++) {
+				for (int y = seamY - 2; y <= seamY + 1; y++) {
+					fixFlatUnplayable(x, y);
+				}
+			}
+		}
+
+		for (int seamX = tileSize; seamX < sizeX; seamX += tileSize) {
+			for (int y = 0; y < sizeY; y++) {
+				for (int x = seamX - 2; x <= seamX + 1; x++) {
+					cascadeFromPlayable(x, y);
+				}
+			}
+		}
+		for (int seamY = tileSize; seamY < sizeY; seamY += tileSize) {
+			for (int x = 0; x < sizeX; x++) {
+				for (int y = seamY - 2; y <= seamY + 1; y++) {
+					cascadeFromPlayable(x, y);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sets geometry of the playable square to its height and makes surrounding squares of different height
+	 * unplayable. Unlike {@link #setGameplan(int, int, int)} this does not check flat unplayable squares,
+	 * as the geometry around the seam is not consistent yet.
+	 */
+	private void reassertGeometry(int x, int y) {
+		int height = gameplan.get(x, y);
+		if (height == SQUARE_UNPLAYABLE) return;
+
+		points.set(x, y, height);
+		points.set(x + 1, y, height);
+		points.set(x + 1, y + 1, height);
+		points.set(x, y + 1, height);
+		for (int dx = -1; dx <= 1; dx++) {
+			for (int dy = -1; dy <= 1; dy++) {
+				int neighbourX = x + dx;
+				int neighbourY = y + dy;
+				if (isValidPosition(neighbourX, neighbourY) && gameplan.get(neighbourX, neighbourY) != height) {
+					gameplan.set(neighbourX, neighbourY, SQUARE_UNPLAYABLE);
+				}
+			}
+		}
+	}
+
+	/** Makes the unplayable square with flat geometry playable - all its playable neighbours have the same height. */
+	private void fixFlatUnplayable(int x, int y) {
+		if (!isValidPosition(x, y) || gameplan.get(x, y) != SQUARE_UNPLAYABLE) return;
+
+		int sw = points.get(x, y);
+		if (sw == points.get(x + 1, y) && sw == points.get(x + 1, y + 1) && sw == points.get(x, y + 1)) {
+			gameplan.set(x, y, sw);
+		}
+	}
+
+	private void cascadeFromPlayable(int x, int y) {
+		if (!isValidPosition(x, y)) return;
+
+		int height = gameplan.get(x, y);
+		if (height != SQUARE_UNPLAYABLE) {
+			cascadeFrom(x, y, height);
+		}
+	}
+
 	private void initializeFlatGameplan() {
-		gameplan = new int[sizeX][sizeY];
-		points = new int[sizeX + 1][sizeY + 1];
+		gameplan = HeightGrid.create(sizeX, sizeY, config.maxHeight);
+		points = HeightGrid.create(sizeX + 1, sizeY + 1, config.maxHeight);
+		heightCounts = new int[2 * config.maxHeight + 1];
+		minCountedHeight = -config.maxHeight;
+		heightCounts[config.maxHeight] = sizeX * sizeY; // all squares are 0 already
 		for (int i = 0; i < sizeX; i += 1) {
 			for (int j = 0; j < sizeY; j += 1) {
 				setGameplan(i, j, 0);
 			}
 		}
+		heightBuckets = HeightBuckets.of(gameplan, minCountedHeight, maxCountedHeight());
 	}
 
 	private int minPatchSize(int height) {
@@ -237,7 +672,72 @@ public class Landscape {
 	}
 
 	public int pointHeight(int x, int y) {
-		return points[x][y];
+		return points.get(x, y);
+	}
+
+	/** Counters of cascaded fixes for the last change performed during generation (single random walk patch). */
+	public CascadeCounters lastChangeCounters() {
+		return lastChangeCounters;
+	}
+
+	/** Counters of cascaded fixes since the landscape was created. */
+	public CascadeCounters totalCounters() {
+		return totalCounters;
+	}
+
+	/** Time spent in generation phases, collected only when {@link PhaseTimings#ENABLED}. */
+	public PhaseTimings phaseTimings() {
+		return phaseTimings;
+	}
+
+	/**
+	 * Chooses positions of the sentinel, sentries and the player start on the generated landscape,
+	 * see {@link Placement}. The same seed gives the same positions for the same landscape.
+	 */
+	public void placePositions(int seed, int sentryCount) {
+		Placement placement = new Placement(this, seed, sentryCount);
+		placement.run();
+		setPositions(placement.sentinel(), placement.sentries(), placement.playerStart());
+	}
+
+	/** Independent copy of the landscape - heights, height histogram and positions, not the counters. */
+	public Landscape copy() {
+		Landscape copy = new Landscape(config, gameplan.copy(), points.copy(), minCountedHeight, heightCounts.clone());
+		if (sentinel != null) {
+			copy.setPositions(sentinel, new ArrayList<>(sentries), playerStart);
+		}
+		return copy;
+	}
+
+	void setPositions(Position sentinel, List<Position> sentries, Position playerStart) {
+		this.sentinel = sentinel;
+		this.sentries = sentries;
+		this.playerStart = playerStart;
+	}
+
+	/** Sentinel's position chosen by {@link #placePositions(int, int)}, null before. */
+	public Position getSentinel() {
+		return sentinel;
+	}
+
+	/** Sentries' positions chosen by {@link #placePositions(int, int)}, null before. */
+	public List<Position> getSentries() {
+		return sentries;
+	}
+
+	/** Player start chosen by {@link #placePositions(int, int)}, null before. */
+	public Position getPlayerStart() {
+		return playerStart;
+	}
+
+	/** Read-only view of point heights, (sizeX + 1) x (sizeY + 1) grid. */
+	public HeightGrid pointGrid() {
+		return points;
+	}
+
+	/** Read-only view of the gameplan, {@link #SQUARE_UNPLAYABLE} marks the slopes. */
+	public HeightGrid gameplanGrid() {
+		return gameplan;
 	}
 
 	public static final class Position {
@@ -312,5 +812,36 @@ public class Landscape {
 			this.maxPatchSize = maxPatchSize;
 			this.changesCount = changesCount;
 		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+
+			Config config = (Config) o;
+			return maxHeight == config.maxHeight
+				&& maxHeightDifference == config.maxHeightDifference
+				&& maxPatchSize == config.maxPatchSize
+				&& changesCount == config.changesCount;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = maxHeight;
+			result = 31 * result + maxHeightDifference;
+			result = 31 * result + maxPatchSize;
+			result = 31 * result + changesCount;
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return "Config{" +
+				"maxHeight=" + maxHeight +
+				", maxHeightDifference=" + maxHeightDifference +
+				", maxPatchSize=" + maxPatchSize +
+				", changesCount=" + changesCount +
+				'}';
+		}
 	}
 }
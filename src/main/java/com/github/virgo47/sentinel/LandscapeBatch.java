@@ -0,0 +1,362 @@
+package com.github.virgo47.sentinel;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Headless generator of a range of seeds for level catalogues, so the playable levels can be picked from
+ * thousands of generated ones (the original game had 10,000). Each seed is generated on the executor and
+ * only its {@link MapStats} are kept, landscapes are dropped right away. At most {@link #window} maps are
+ * generated ahead of the consumer, which gets the stats in the seed order - so the memory is bounded
+ * regardless of the seed count and the output is the same for any number of threads.
+ * <p>
+ * Command line (see {@link #USAGE}) writes one CSV line per seed (see {@link MapStats#HEADER}),
+ * gzipped if the output file ends with {@code .gz}, and reports the progress in maps per second.
+ */
+public final class LandscapeBatch {
+
+	public static final String USAGE = "Usage: LandscapeBatch [-seeds 0..9999] [-size 32x24] [-config 1:1:30:30]"
+		+ " [-sentries 0] [-threads <cores>] [-out <file|->]\n"
+		+ "  seeds are inclusive (can be negative, e.g. -5..10),\n"
+		+ "  config is maxHeight:maxHeightDifference:maxPatchSize:changesCount,\n"
+		+ "  sentries > 0 also places the watchers, output - is the standard output, *.gz is gzipped";
+
+	/** Maps generated ahead of the consumer per thread, bounds the memory of the batch. */
+	public static final int WINDOW_PER_THREAD = 4;
+	/** How often the command line reports the progress. */
+	public static final long PROGRESS_PERIOD_NANOS = 1_000_000_000;
+
+	/** Sentinel height in {@link MapStats} when the watchers were not placed. */
+	public static final int NO_SENTINEL = Integer.MIN_VALUE;
+
+	private final int sizeX;
+	private final int sizeY;
+	private final Landscape.Config config;
+	private final int sentryCount;
+	private final Executor executor;
+	private final int window;
+
+	/**
+	 * @param sentryCount sentries placed with the sentinel and the player (see {@link Landscape#placePositions}),
+	 * 0 for no placement
+	 * @param executor executor generating the maps
+	 * @param window maps generated ahead of the consumer, typically {@link #WINDOW_PER_THREAD} per thread
+	 */
+	public LandscapeBatch(int sizeX, int sizeY, Landscape.Config config, int sentryCount, Executor executor, int window) {
+		if (sizeX <= 0 || sizeY <= 0) throw new IllegalArgumentException("Invalid size " + sizeX + 'x' + sizeY);
+		if (window <= 0) throw new IllegalArgumentException("window must be higher than 0, is " + window);
+
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		this.config = config;
+		this.sentryCount = sentryCount;
+		this.executor = executor;
+		this.window = window;
+	}
+
+	/**
+	 * Generates seeds from fromSeed to toSeed (both inclusive) and passes their stats to the consumer
+	 * in the seed order, on the calling thread. Failure of any map stops the batch with the exception.
+	 */
+	public Summary run(int fromSeed, int toSeed, Consumer<MapStats> consumer) {
+		if (fromSeed > toSeed) throw new IllegalArgumentException("No seeds from " + fromSeed + " to " + toSeed);
+
+		long start = System.nanoTime();
+		Summary summary = new Summary();
+		ArrayDeque<CompletableFuture<MapStats>> pending = new ArrayDeque<>(window);
+		// long, so that Integer.MAX_VALUE seed does not overflow
+		for (long seed = fromSeed; seed <= toSeed; seed++) {
+			if (pending.size() == window) {
+				summary.add(pending.remove().join(), consumer);
+			}
+			int mapSeed = (int) seed;
+			pending.add(CompletableFuture.supplyAsync(() -> generate(mapSeed), executor));
+		}
+		while (!pending.isEmpty()) {
+			summary.add(pending.remove().join(), consumer);
+		}
+		summary.nanos = System.nanoTime() - start;
+		return summary;
+	}
+
+	/** Generates the map of the seed and computes its stats, can be called from any thread. */
+	public MapStats generate(int seed) {
+		Landscape landscape = new Landscape(sizeX, sizeY, config);
+		landscape.generate(seed);
+		int sentinelHeight = NO_SENTINEL;
+		if (sentryCount > 0) {
+			try {
+				landscape.placePositions(seed, sentryCount);
+				Landscape.Position sentinel = landscape.getSentinel();
+				sentinelHeight = landscape.gameplan(sentinel.x, sentinel.y);
+			} catch (IllegalStateException e) {
+				// no playable square, such map is not playable anyway
+			}
+		}
+		return new MapStats(seed, landscape, sentinelHeight);
+	}
+
+	/** Quality statistics of one generated map. */
+	public static final class MapStats {
+
+		/** CSV header of {@link #toLine()}, histogram is the counts of playable squares from min to max height. */
+		public static final String HEADER = "seed,playable_ratio,playable,unplayable,min_height,max_height,"
+			+ "sentinel_height,histogram";
+
+		public final int seed;
+		public final int squares;
+		public final int playableSquares;
+		/** Squares that are slopes, the rest of the squares are flat and playable. */
+		public final int unplayableSquares;
+		/** Lowest and highest height of the playable squares, both 0 if there are none. */
+		public final int minHeight;
+		public final int maxHeight;
+		/** Height of the sentinel square, {@link #NO_SENTINEL} if not placed. */
+		public final int sentinelHeight;
+		private final int[] histogram;
+
+		MapStats(int seed, Landscape landscape, int sentinelHeight) {
+			this.seed = seed;
+			this.sentinelHeight = sentinelHeight;
+			squares = landscape.sizeX * landscape.sizeY;
+			int low = Integer.MAX_VALUE;
+			int high = Integer.MIN_VALUE;
+			int playable = 0;
+			for (int height = landscape.minCountedHeight(); height <= landscape.maxCountedHeight(); height++) {
+				int count = landscape.heightCount(height);
+				if (count > 0) {
+					low = Math.min(low, height);
+					high = Math.max(high, height);
+					playable += count;
+				}
+			}
+			playableSquares = playable;
+			unplayableSquares = squares - playable;
+			minHeight = low <= high ? low : 0;
+			maxHeight = low <= high ? high : 0;
+			histogram = new int[low <= high ? high - low + 1 : 0];
+			for (int i = 0; i < histogram.length; i++) {
+				histogram[i] = landscape.heightCount(low + i);
+			}
+		}
+
+		public double playableRatio() {
+			return squares > 0 ? (double) playableSquares / squares : 0;
+		}
+
+		/** Number of playable squares with the height. */
+		public int heightCount(int height) {
+			int index = height - minHeight;
+			return index < 0 || index >= histogram.length ? 0 : histogram[index];
+		}
+
+		/** Compact CSV line, see {@link #HEADER}, histogram counts are separated by spaces. */
+		public String toLine() {
+			StringBuilder sb = new StringBuilder(64)
+				.append(seed).append(',')
+				.append(String.format(Locale.ROOT, "%.4f", playableRatio())).append(',')
+				.append(playableSquares).append(',')
+				.append(unplayableSquares).append(',')
+				.append(minHeight).append(',')
+				.append(maxHeight).append(',');
+			if (sentinelHeight != NO_SENTINEL) {
+				sb.append(sentinelHeight);
+			}
+			sb.append(',');
+			for (int i = 0; i < histogram.length; i++) {
+				if (i > 0) sb.append(' ');
+				sb.append(histogram[i]);
+			}
+			return sb.toString();
+		}
+
+		@Override
+		public String toString() {
+			return "MapStats{" + toLine() + '}';
+		}
+	}
+
+	/** Totals of the finished batch. */
+	public static final class Summary {
+
+		private int maps;
+		private long playableSquares;
+		private long squares;
+		private double minPlayableRatio = Double.POSITIVE_INFINITY;
+		private double maxPlayableRatio = Double.NEGATIVE_INFINITY;
+		private long nanos;
+
+		private void add(MapStats stats, Consumer<MapStats> consumer) {
+			consumer.accept(stats);
+			maps++;
+			playableSquares += stats.playableSquares;
+			squares += stats.squares;
+			minPlayableRatio = Math.min(minPlayableRatio, stats.playableRatio());
+			maxPlayableRatio = Math.max(maxPlayableRatio, stats.playableRatio());
+		}
+
+		public int maps() {
+			return maps;
+		}
+
+		/** Ratio of playable squares of all the maps together. */
+		public double playableRatio() {
+			return squares > 0 ? (double) playableSquares / squares : 0;
+		}
+
+		public double minPlayableRatio() {
+			return minPlayableRatio;
+		}
+
+		public double maxPlayableRatio() {
+			return maxPlayableRatio;
+		}
+
+		public long nanos() {
+			return nanos;
+		}
+
+		public double mapsPerSecond() {
+			return nanos > 0 ? maps * 1e9 / nanos : 0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%d maps in %.1f s, %.1f maps/s, playable ratio %.3f (min %.3f, max %.3f)",
+				maps, nanos / 1e9, mapsPerSecond(), playableRatio(), minPlayableRatio, maxPlayableRatio);
+		}
+	}
+
+	public static void main(String[] args) {
+		System.exit(execute(args, System.err));
+	}
+
+	/** Runs the command line, progress and summary go to the log, returns the exit code. */
+	static int execute(String[] args, PrintStream log) {
+		int fromSeed = 0;
+		int toSeed = 9999;
+		int sizeX = 32;
+		int sizeY = 24;
+		Landscape.Config config = new Landscape.Config(1, 1, 30, 30);
+		int sentryCount = 0;
+		int threads = Runtime.getRuntime().availableProcessors();
+		String out = "-";
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String option = args[i];
+				if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value of " + option);
+				String value = args[++i];
+				switch (option) {
+					case "-seeds":
+						// not separated by "-", so negative seeds can be used
+						int separator = value.indexOf("..");
+						fromSeed = Integer.parseInt(separator >= 0 ? value.substring(0, separator) : value);
+						toSeed = separator >= 0 ? Integer.parseInt(value.substring(separator + 2)) : fromSeed;
+						break;
+					case "-size":
+						String[] size = value.split("x", 2);
+						sizeX = Integer.parseInt(size[0]);
+						sizeY = Integer.parseInt(size[1]);
+						break;
+					case "-config":
+						String[] parts = value.split(":");
+						config = new Landscape.Config(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+							Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+						break;
+					case "-sentries":
+						sentryCount = Integer.parseInt(value);
+						break;
+					case "-threads":
+						threads = Integer.parseInt(value);
+						break;
+					case "-out":
+						out = value;
+						break;
+					default:
+						throw new IllegalArgumentException("Unknown option " + option);
+				}
+			}
+			if (fromSeed > toSeed) {
+				throw new IllegalArgumentException("Invalid seeds " + fromSeed + ".." + toSeed + ", first is after last");
+			}
+			if (sizeX <= 0 || sizeY <= 0) {
+				throw new IllegalArgumentException("Invalid size " + sizeX + 'x' + sizeY);
+			}
+			if (sentryCount < 0 || threads <= 0) {
+				throw new IllegalArgumentException("Invalid sentries " + sentryCount + " or threads " + threads);
+			}
+		} catch (RuntimeException e) {
+			log.println(e.getMessage() != null ? e.getMessage() : e.toString());
+			log.println(USAGE);
+			return 2;
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try (Writer writer = openOutput(out)) {
+			writer.write(MapStats.HEADER);
+			writer.write('\n');
+			long total = (long) toSeed - fromSeed + 1;
+			long start = System.nanoTime();
+			long[] progress = {0, start + PROGRESS_PERIOD_NANOS};
+			LandscapeBatch batch = new LandscapeBatch(sizeX, sizeY, config, sentryCount, pool, threads * WINDOW_PER_THREAD);
+			Summary summary = batch.run(fromSeed, toSeed, stats -> {
+				try {
+					writer.write(stats.toLine());
+					writer.write('\n');
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				progress[0]++;
+				long now = System.nanoTime();
+				if (now >= progress[1]) {
+					progress[1] = now + PROGRESS_PERIOD_NANOS;
+					log.println(String.format(Locale.ROOT, "%d/%d maps, %.1f maps/s",
+						progress[0], total, progress[0] * 1e9 / (now - start)));
+				}
+			});
+			log.println(summary);
+			return 0;
+		} catch (IOException | UncheckedIOException e) {
+			log.println("Writing to " + out + " failed: " + e);
+			return 1;
+		} catch (CompletionException e) {
+			log.println("Generation failed: " + e.getCause());
+			return 1;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static Writer openOutput(String out) throws IOException {
+		if (out.equals("-")) {
+			// standard output is not closed with the writer
+			return new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)) {
+				@Override
+				public void close() throws IOException {
+					flush();
+				}
+			};
+		}
+		OutputStream stream = Files.newOutputStream(Paths.get(out));
+		if (out.endsWith(".gz")) {
+			stream = new GZIPOutputStream(stream, 1 << 16);
+		}
+		return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 1 << 16);
+	}
+}
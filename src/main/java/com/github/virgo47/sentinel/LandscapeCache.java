@@ -0,0 +1,289 @@
+package com.github.virgo47.sentinel;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cache of generated landscapes keyed by size, {@link Landscape.Config}, seed and {@link Landscape#GENERATOR_VERSION}.
+ * Landscapes are looked up in two tiers:
+ * <ul>
+ * <li>memory - LRU bounded by estimated size of the height grids in bytes,</li>
+ * <li>disk - raw {@link LandscapeFile}s in the cache directory, memory-mapped when read.</li>
+ * </ul>
+ * Only when both miss the landscape is generated and stored in both tiers. {@link #get} always returns
+ * an independent copy, so the caller can change the landscape freely. Upcoming levels can be loaded in
+ * advance with {@link #prewarm} - {@link #get} of a landscape that is just being loaded waits for it
+ * instead of generating it again.
+ * <p>
+ * Disk tier is only an optimization - failing write is logged and ignored, unreadable file is generated again.
+ */
+public final class LandscapeCache {
+
+	private static final TraceLogger log = TraceLogger.getLogger(LandscapeCache.class);
+
+	/** Default cache directory in the user home, can be overridden by {@code sentinel.cache.dir} property. */
+	public static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("sentinel.cache.dir",
+		Paths.get(System.getProperty("user.home"), ".sentinel", "cache").toString()));
+
+	/** Rough overhead of landscape objects (landscape, grids, counters) besides the arrays. */
+	private static final long LANDSCAPE_OVERHEAD_BYTES = 512;
+
+	private final Path directory;
+	private final long maxMemoryBytes;
+	private final Executor executor;
+
+	/** Access ordered, so the eldest entry is the least recently used one. Guarded by this. */
+	private final LinkedHashMap<Key, Landscape> memory = new LinkedHashMap<>(16, 0.75f, true);
+	private long memoryBytes;
+
+	private final ConcurrentHashMap<Key, CompletableFuture<Landscape>> loading = new ConcurrentHashMap<>();
+
+	private final AtomicInteger memoryHits = new AtomicInteger();
+	private final AtomicInteger diskHits = new AtomicInteger();
+	private final AtomicInteger generated = new AtomicInteger();
+
+	/**
+	 * @param directory disk tier directory, created when the first landscape is stored; null for memory only cache
+	 * @param maxMemoryBytes limit of estimated bytes of landscapes kept in memory
+	 * @param executor executor for {@link #prewarm}
+	 */
+	public LandscapeCache(Path directory, long maxMemoryBytes, Executor executor) {
+		if (maxMemoryBytes < 0) {
+			throw new IllegalArgumentException("Max memory bytes must not be negative: " + maxMemoryBytes);
+		}
+		this.directory = directory;
+		this.maxMemoryBytes = maxMemoryBytes;
+		this.executor = executor;
+	}
+
+	/** Returns copy of the landscape, loading it from disk or generating it (in this thread) when needed. */
+	public Landscape get(int sizeX, int sizeY, Landscape.Config config, int seed) {
+		Key key = new Key(sizeX, sizeY, config, seed);
+		Landscape cached = fromMemory(key);
+		if (cached == null) {
+			cached = load(key, Runnable::run).join();
+		}
+		return cached.copy();
+	}
+
+	/**
+	 * Loads the landscape into the memory tier on the executor, unless it is already there.
+	 * Returned future completes when the landscape is cached, use {@link #get} to obtain it.
+	 */
+	public CompletableFuture<Void> prewarm(int sizeX, int sizeY, Landscape.Config config, int seed) {
+		Key key = new Key(sizeX, sizeY, config, seed);
+		if (fromMemory(key) != null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return load(key, executor).thenApply(landscape -> null);
+	}
+
+	/** Returns future of the loading that is in progress for the key or starts a new one on the executor. */
+	private CompletableFuture<Landscape> load(Key key, Executor executor) {
+		CompletableFuture<Landscape> future = new CompletableFuture<>();
+		CompletableFuture<Landscape> existing = loading.putIfAbsent(key, future);
+		if (existing != null) {
+			return existing;
+		}
+		executor.execute(() -> {
+			try {
+				// may have been finished by other loading just before this one was registered
+				Landscape landscape = fromMemory(key);
+				if (landscape == null) {
+					landscape = loadOrGenerate(key);
+					remember(key, landscape);
+				}
+				future.complete(landscape);
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			} finally {
+				loading.remove(key, future);
+			}
+		});
+		return future;
+	}
+
+	private Landscape loadOrGenerate(Key key) {
+		Path file = directory != null ? directory.resolve(key.fileName()) : null;
+		if (file != null && Files.isRegularFile(file)) {
+			try {
+				Landscape landscape = LandscapeFile.read(file);
+				if (key.matches(landscape)) {
+					diskHits.incrementAndGet();
+					return landscape;
+				}
+				log.fine("Landscape file " + file + " does not match " + key + ", generating again");
+			} catch (IOException | RuntimeException e) {
+				// damaged file can fail in other ways too, e.g. on the mapped grid data
+				log.fine("Landscape file " + file + " is not readable, generating again: " + e);
+			}
+		}
+
+		Landscape landscape = new Landscape(key.sizeX, key.sizeY, key.config);
+		landscape.generate(key.seed);
+		generated.incrementAndGet();
+		if (file != null) {
+			store(landscape, file);
+		}
+		return landscape;
+	}
+
+	/** Writes the landscape into temporary file first, so other processes never read incomplete file. */
+	private void store(Landscape landscape, Path file) {
+		Path temp = null;
+		try {
+			Files.createDirectories(directory);
+			temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+			LandscapeFile.write(landscape, temp, LandscapeFile.Encoding.RAW);
+			try {
+				Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			log.fine("Landscape file " + file + " not stored: " + e);
+			if (temp != null) {
+				try {
+					Files.deleteIfExists(temp);
+				} catch (IOException ignored) {
+					// nothing more to do
+				}
+			}
+		}
+	}
+
+	private synchronized Landscape fromMemory(Key key) {
+		Landscape landscape = memory.get(key);
+		if (landscape != null) {
+			memoryHits.incrementAndGet();
+		}
+		return landscape;
+	}
+
+	private synchronized void remember(Key key, Landscape landscape) {
+		long bytes = estimateBytes(landscape);
+		if (bytes > maxMemoryBytes) {
+			return;
+		}
+		Landscape previous = memory.put(key, landscape);
+		if (previous != null) {
+			memoryBytes -= estimateBytes(previous);
+		}
+		memoryBytes += bytes;
+		Iterator<Map.Entry<Key, Landscape>> eldest = memory.entrySet().iterator();
+		while (memoryBytes > maxMemoryBytes) {
+			Map.Entry<Key, Landscape> entry = eldest.next();
+			memoryBytes -= estimateBytes(entry.getValue());
+			eldest.remove();
+			if (log.isFineEnabled()) {
+				log.fine("Evicted " + entry.getKey() + " from memory, " + memoryBytes + " bytes cached");
+			}
+		}
+	}
+
+	/** Bytes of height grids and the height histogram - the rest of the landscape is negligible. */
+	static long estimateBytes(Landscape landscape) {
+		HeightGrid gameplan = landscape.gameplanGrid();
+		HeightGrid points = landscape.pointGrid();
+		long heights = landscape.maxCountedHeight() - landscape.minCountedHeight() + 1;
+		return (long) gameplan.size() * gameplan.bytesPerCell()
+			+ (long) points.size() * points.bytesPerCell()
+			+ heights * Integer.BYTES
+			+ LANDSCAPE_OVERHEAD_BYTES;
+	}
+
+	public synchronized long memoryBytes() {
+		return memoryBytes;
+	}
+
+	public synchronized int memorySize() {
+		return memory.size();
+	}
+
+	public int memoryHits() {
+		return memoryHits.get();
+	}
+
+	public int diskHits() {
+		return diskHits.get();
+	}
+
+	/** Number of landscapes generated because they were not found in any tier. */
+	public int generatedCount() {
+		return generated.get();
+	}
+
+	/** Drops all landscapes from the memory tier, disk tier is kept. */
+	public synchronized void clearMemory() {
+		memory.clear();
+		memoryBytes = 0;
+	}
+
+	static final class Key {
+
+		final int sizeX;
+		final int sizeY;
+		final Landscape.Config config;
+		final int seed;
+		final int generatorVersion;
+
+		Key(int sizeX, int sizeY, Landscape.Config config, int seed) {
+			this.sizeX = sizeX;
+			this.sizeY = sizeY;
+			this.config = config;
+			this.seed = seed;
+			this.generatorVersion = Landscape.GENERATOR_VERSION;
+		}
+
+		/** File name unique for the key, landscapes of other generator versions are simply never read. */
+		String fileName() {
+			return "landscape-v" + generatorVersion + '-' + sizeX + 'x' + sizeY
+				+ '-' + config.maxHeight + '-' + config.maxHeightDifference
+				+ '-' + config.maxPatchSize + '-' + config.changesCount
+				+ '-' + seed + ".bin";
+		}
+
+		boolean matches(Landscape landscape) {
+			return landscape.sizeX == sizeX && landscape.sizeY == sizeY && landscape.config.equals(config);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+
+			Key key = (Key) o;
+			return sizeX == key.sizeX
+				&& sizeY == key.sizeY
+				&& seed == key.seed
+				&& generatorVersion == key.generatorVersion
+				&& config.equals(key.config);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = sizeX;
+			result = 31 * result + sizeY;
+			result = 31 * result + config.hashCode();
+			result = 31 * result + seed;
+			result = 31 * result + generatorVersion;
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return fileName();
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package com.github.virgo47.sentinel;
+
+/**
+ * Splits the {@link Landscape} into square chunks and decides which chunks are visible from the camera
+ * and with what level of detail (LOD). All coordinates are landscape coordinates (one unit per square,
+ * heights as they are), camera angles are the ones of {@link CameraXform}. Does not depend on JavaFX,
+ * so the selection can be tested and benchmarked headless.
+ * <p>
+ * Culling uses a cone around the view direction containing the whole view frustum and bounding spheres
+ * of the chunks. This is a bit conservative in the frustum corners, but it does not depend on camera roll
+ * and the test is cheap.
+ */
+public class LandscapeChunks {
+
+	/** Value of selected LOD for chunks that are not visible. */
+	public static final int CULLED = -1;
+
+	public final Landscape landscape;
+	public final int chunkSize;
+	public final int chunksX;
+	public final int chunksY;
+	public final int maxLod;
+
+	/** Chunk distance (in squares) up to which LOD 0 is used, every next LOD has double the distance. */
+	public double lodDistance;
+
+	private final float[] centers;
+	private final float[] radii;
+
+	public LandscapeChunks(Landscape landscape, int chunkSize, int maxLod, double lodDistance) {
+		if (chunkSize < 1 << maxLod) {
+			throw new IllegalArgumentException("Chunk size " + chunkSize + " too small for max LOD " + maxLod);
+		}
+		this.landscape = landscape;
+		this.chunkSize = chunkSize;
+		this.maxLod = maxLod;
+		this.lodDistance = lodDistance;
+		chunksX = (landscape.sizeX + chunkSize - 1) / chunkSize;
+		chunksY = (landscape.sizeY + chunkSize - 1) / chunkSize;
+		centers = new float[chunkCount() * 3];
+		radii = new float[chunkCount()];
+		updateBounds();
+	}
+
+	public int chunkCount() {
+		return chunksX * chunksY;
+	}
+
+	public int chunkIndex(int chunkX, int chunkY) {
+		return chunkX * chunksY + chunkY;
+	}
+
+	public int minX(int chunk) {
+		return chunk / chunksY * chunkSize;
+	}
+
+	public int minY(int chunk) {
+		return chunk % chunksY * chunkSize;
+	}
+
+	/** Exclusive max square, inclusive max point. */
+	public int maxX(int chunk) {
+		return Math.min(minX(chunk) + chunkSize, landscape.sizeX);
+	}
+
+	/** Exclusive max square, inclusive max point. */
+	public int maxY(int chunk) {
+		return Math.min(minY(chunk) + chunkSize, landscape.sizeY);
+	}
+
+	/** Recomputes bounding spheres of all the chunks, see {@link #updateBounds(int)} for changes of few chunks. */
+	public void updateBounds() {
+		for (int chunk = 0; chunk < chunkCount(); chunk++) {
+			updateBounds(chunk);
+		}
+	}
+
+	/** Recomputes bounding sphere of the chunk, must be called after heights of its points change. */
+	public void updateBounds(int chunk) {
+		HeightGrid heights = landscape.pointGrid();
+		int minZ = Integer.MAX_VALUE;
+		int maxZ = Integer.MIN_VALUE;
+		for (int x = minX(chunk); x <= maxX(chunk); x++) {
+			for (int y = minY(chunk); y <= maxY(chunk); y++) {
+				int z = heights.get(x, y);
+				minZ = Math.min(minZ, z);
+				maxZ = Math.max(maxZ, z);
+			}
+		}
+		float halfX = (maxX(chunk) - minX(chunk)) / 2f;
+		float halfY = (maxY(chunk) - minY(chunk)) / 2f;
+		float halfZ = (maxZ - minZ) / 2f;
+		centers[chunk * 3] = minX(chunk) + halfX;
+		centers[chunk * 3 + 1] = minY(chunk) + halfY;
+		centers[chunk * 3 + 2] = minZ + halfZ;
+		radii[chunk] = (float) Math.sqrt(halfX * halfX + halfY * halfY + halfZ * halfZ);
+	}
+
+	/**
+	 * Selects LOD for every chunk, or {@link #CULLED} if the chunk is not in the view. Does not allocate,
+	 * so it can be called every frame.
+	 *
+	 * @param yaw camera yaw in degrees, 0 looks along Y axis, 90 along X axis
+	 * @param pitch camera pitch in degrees, positive looks up (towards higher Z)
+	 * @param fieldOfView vertical field of view in degrees
+	 * @param aspectRatio width/height of the view
+	 * @param farClip maximal distance of visible chunks
+	 * @param lods output array with {@link #chunkCount()} elements
+	 * @return number of visible chunks
+	 */
+	public int select(double cameraX, double cameraY, double cameraZ, double yaw, double pitch,
+		double fieldOfView, double aspectRatio, double farClip, int[] lods)
+	{
+		double yawRadian = Math.toRadians(yaw);
+		double pitchRadian = Math.toRadians(pitch);
+		double cosPitch = Math.cos(pitchRadian);
+		// the same forward direction like CameraXform.moveWithYaw
+		double forwardX = Math.sin(yawRadian) * cosPitch;
+		double forwardY = Math.cos(yawRadian) * cosPitch;
+		double forwardZ = Math.sin(pitchRadian);
+
+		double tanVertical = Math.tan(Math.toRadians(fieldOfView) / 2);
+		double coneAngle = Math.atan(tanVertical * Math.sqrt(1 + aspectRatio * aspectRatio));
+		double coneSin = Math.sin(coneAngle);
+		double coneCos = Math.cos(coneAngle);
+
+		int visible = 0;
+		for (int chunk = 0; chunk < lods.length; chunk++) {
+			double vx = centers[chunk * 3] - cameraX;
+			double vy = centers[chunk * 3 + 1] - cameraY;
+			double vz = centers[chunk * 3 + 2] - cameraZ;
+			double radius = radii[chunk];
+			double distance = Math.sqrt(vx * vx + vy * vy + vz * vz);
+			double forwardDistance = vx * forwardX + vy * forwardY + vz * forwardZ;
+			double sideDistance = Math.sqrt(Math.max(0, distance * distance - forwardDistance * forwardDistance));
+			// distance of the center from the cone surface (lower bound of it behind the camera)
+			double coneDistance = coneCos * sideDistance - coneSin * forwardDistance;
+			if (distance > radius && (coneDistance > radius || forwardDistance - radius > farClip)) {
+				lods[chunk] = CULLED;
+				continue;
+			}
+			lods[chunk] = lodFor(distance - radius);
+			visible++;
+		}
+		return visible;
+	}
+
+	/** LOD for the distance of the nearest point of the chunk. */
+	public int lodFor(double distance) {
+		int lod = 0;
+		while (lod < maxLod && distance > lodDistance * (1 << lod)) {
+			lod++;
+		}
+		return lod;
+	}
+
+	/** Builds the mesh data of the chunk for the LOD. */
+	public ChunkMeshBuilder buildChunk(int chunk, int lod) {
+		return new ChunkMeshBuilder().build(landscape, minX(chunk), minY(chunk), maxX(chunk), maxY(chunk), lod);
+	}
+}
@@ -0,0 +1,194 @@
+package com.github.virgo47.sentinel;
+
+import javafx.scene.Group;
+import javafx.scene.PerspectiveCamera;
+import javafx.scene.paint.Material;
+import javafx.scene.shape.CullFace;
+import javafx.scene.shape.DrawMode;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import javafx.scene.transform.Scale;
+
+/**
+ * Landscape rendered as a group of chunk meshes, see {@link LandscapeChunks}. Only chunks in the camera view
+ * are visible and distant chunks use meshes with lower detail. Chunk meshes are built lazily when the chunk
+ * is first shown with the LOD. Call {@link #update(CameraXform, PerspectiveCamera, double)} when the camera
+ * moves. The group is placed and scaled the same way like {@link LandscapeMeshView}.
+ */
+public class LandscapeChunksView extends Group {
+
+	public static final double SCALE = 10;
+
+	private final LandscapeChunks chunks;
+	private final MeshView[] meshViews;
+	private final TriangleMesh[][] meshes;
+	private final int[] lods;
+	private final Scale scale;
+	private Material defaultMaterial;
+
+	/** Chunks with the shared material from {@link MaterialCache#DEFAULT}, released by {@link #dispose()}. */
+	public LandscapeChunksView(LandscapeChunks chunks) {
+		this(chunks, MaterialCache.DEFAULT.acquireTexture(LandscapeMeshView.TEXTURE), true);
+	}
+
+	/** Chunks with the material prepared in advance, e.g. by {@link LandscapeLoader}. */
+	public LandscapeChunksView(LandscapeChunks chunks, Material material) {
+		this(chunks, material, false);
+	}
+
+	private LandscapeChunksView(LandscapeChunks chunks, Material material, boolean acquired) {
+		if (acquired) {
+			this.defaultMaterial = material;
+		}
+		this.chunks = chunks;
+		meshViews = new MeshView[chunks.chunkCount()];
+		meshes = new TriangleMesh[chunks.chunkCount()][chunks.maxLod + 1];
+		lods = new int[chunks.chunkCount()];
+
+		for (int chunk = 0; chunk < meshViews.length; chunk++) {
+			MeshView meshView = new MeshView();
+			meshView.setCullFace(CullFace.NONE);
+			meshView.setDrawMode(DrawMode.FILL);
+			meshView.setMaterial(material);
+			meshView.setVisible(false);
+			meshViews[chunk] = meshView;
+		}
+		getChildren().addAll(meshViews);
+
+		// MeshView scales around its center, group bounds change with visible chunks, so the pivot is explicit
+		scale = new Scale(SCALE, SCALE, SCALE);
+		updatePivot();
+		getTransforms().add(scale);
+	}
+
+	public LandscapeChunks getChunks() {
+		return chunks;
+	}
+
+	/** Shows chunks visible from the camera with the right LOD and hides the rest. */
+	public int update(CameraXform cameraNode, PerspectiveCamera camera, double aspectRatio) {
+		double fieldOfView = camera.getFieldOfView();
+		if (!camera.isVerticalFieldOfView()) {
+			double tanVertical = Math.tan(Math.toRadians(fieldOfView) / 2) / aspectRatio;
+			fieldOfView = Math.toDegrees(2 * Math.atan(tanVertical));
+		}
+		int visible = chunks.select(
+			toLandscape(cameraNode.pos.getX(), scale.getPivotX()),
+			toLandscape(cameraNode.pos.getY(), scale.getPivotY()),
+			toLandscape(cameraNode.pos.getZ(), scale.getPivotZ()),
+			cameraNode.yaw.getAngle(), cameraNode.pitch.getAngle(),
+			fieldOfView, aspectRatio, camera.getFarClip() / SCALE, lods);
+		for (int chunk = 0; chunk < lods.length; chunk++) {
+			MeshView meshView = meshViews[chunk];
+			int lod = lods[chunk];
+			meshView.setVisible(lod != LandscapeChunks.CULLED);
+			if (lod != LandscapeChunks.CULLED) {
+				TriangleMesh mesh = chunkMesh(chunk, lod);
+				if (meshView.getMesh() != mesh) {
+					meshView.setMesh(mesh);
+				}
+			}
+		}
+		return visible;
+	}
+
+	/**
+	 * Drops meshes of chunks around the changed squares of the landscape, they are rebuilt when shown.
+	 * Bounds are recomputed only for these chunks. Scale pivot stays, so the view does not move under the camera.
+	 */
+	public void updateLandscape() {
+		Landscape landscape = chunks.landscape;
+		if (!landscape.isDirty()) return;
+		DirtyRegion changed = landscape.takeDirtyRegion().expand(1, landscape.sizeX, landscape.sizeY);
+		for (int chunk = 0; chunk < meshes.length; chunk++) {
+			if (changed.minX <= chunks.maxX(chunk) && changed.maxX >= chunks.minX(chunk)
+				&& changed.minY <= chunks.maxY(chunk) && changed.maxY >= chunks.minY(chunk))
+			{
+				chunks.updateBounds(chunk);
+				meshes[chunk] = new TriangleMesh[chunks.maxLod + 1];
+				meshViews[chunk].setMesh(null);
+			}
+		}
+	}
+
+	/** Releases the shared material acquired by the view, call it when the view is not used anymore. */
+	public void dispose() {
+		if (defaultMaterial != null) {
+			MaterialCache.DEFAULT.release(defaultMaterial);
+			defaultMaterial = null;
+		}
+	}
+
+	/** Number of chunks shown with the LOD by the last update. */
+	public int countLod(int lod) {
+		int count = 0;
+		for (int chunkLod : lods) {
+			if (chunkLod == lod) count++;
+		}
+		return count;
+	}
+
+	/** Number of triangles of the chunks shown by the last update. */
+	public int triangleCount() {
+		int count = 0;
+		for (MeshView meshView : meshViews) {
+			if (meshView.isVisible() && meshView.getMesh() != null) {
+				count += ((TriangleMesh) meshView.getMesh()).getFaces().size() / LandscapeMeshBuilder.FACE_SIZE;
+			}
+		}
+		return count;
+	}
+
+	/** Number of vertices of the chunks shown by the last update. */
+	public int vertexCount() {
+		int count = 0;
+		for (MeshView meshView : meshViews) {
+			if (meshView.isVisible() && meshView.getMesh() != null) {
+				count += ((TriangleMesh) meshView.getMesh()).getPoints().size() / 3;
+			}
+		}
+		return count;
+	}
+
+	private TriangleMesh chunkMesh(int chunk, int lod) {
+		TriangleMesh mesh = meshes[chunk][lod];
+		if (mesh == null) {
+			ChunkMeshBuilder builder = chunks.buildChunk(chunk, lod);
+			mesh = new TriangleMesh();
+			mesh.getPoints().setAll(builder.getPoints());
+			mesh.getTexCoords().setAll(builder.getTexCoords());
+			mesh.getFaces().setAll(builder.getFaces());
+			meshes[chunk][lod] = mesh;
+		}
+		return mesh;
+	}
+
+	private void updatePivot() {
+		double[] pivot = scalePivot(chunks.landscape, new double[3]);
+		scale.setPivotX(pivot[0]);
+		scale.setPivotY(pivot[1]);
+		scale.setPivotZ(pivot[2]);
+	}
+
+	/**
+	 * Pivot in the center of the landscape bounds, that's where {@link LandscapeMeshView} is scaled around.
+	 * Writes x, y, z into the array and returns it.
+	 */
+	static double[] scalePivot(Landscape landscape, double[] pivot) {
+		HeightGrid heights = landscape.pointGrid();
+		int minZ = Integer.MAX_VALUE;
+		int maxZ = Integer.MIN_VALUE;
+		for (int i = 0; i < heights.size(); i++) {
+			minZ = Math.min(minZ, heights.get(i));
+			maxZ = Math.max(maxZ, heights.get(i));
+		}
+		pivot[0] = landscape.sizeX / 2.0;
+		pivot[1] = landscape.sizeY / 2.0;
+		pivot[2] = (minZ + maxZ) / 2.0;
+		return pivot;
+	}
+
+	private static double toLandscape(double coordinate, double pivot) {
+		return pivot + (coordinate - pivot) / SCALE;
+	}
+}
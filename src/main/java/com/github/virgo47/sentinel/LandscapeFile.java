@@ -0,0 +1,381 @@
+package com.github.virgo47.sentinel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary file with the landscape - gameplan, points and positions, so big landscapes do not have to be
+ * generated again. Format (big-endian):
+ * <pre>
+ * int     magic "SNTL"
+ * short   format version ({@link #FORMAT_VERSION})
+ * byte    encoding ({@link Encoding#ordinal()})
+ * byte    bytes per cell of the grids (1, 2 or 4, used by {@link Encoding#RAW})
+ * int     sizeX, sizeY
+ * int     config: maxHeight, maxHeightDifference, maxPatchSize, changesCount
+ * int     lowest counted height, histogram length, histogram counts (see {@link Landscape#heightCount(int)})
+ * byte    1 if positions follow, 0 otherwise
+ * int     sentinel x, y, sentry count, sentries x, y, player start x, y (only if positions follow)
+ * ...     gameplan data, sizeX * sizeY cells
+ * ...     points data, (sizeX + 1) * (sizeY + 1) cells
+ * </pre>
+ * {@link Encoding#RAW} grids are stored cell by cell like {@link HeightGrid} holds them in memory,
+ * {@link #read(Path)} maps such file and the landscape reads heights directly from the mapped buffer,
+ * nothing is copied to the heap. Mapping is private (copy-on-write), so the landscape can be changed,
+ * but changes are not written to the file. Private mapping needs a writable file, read-only file is mapped
+ * read-only and changes of such landscape fail. Mapped file can't be bigger than 2 GB.
+ * <p>
+ * {@link Encoding#VARINT} grids store difference from the previous cell (in index order) as zig-zag varint,
+ * which is typically a single byte per cell. Such file is smaller, but it is decoded into the heap.
+ */
+public final class LandscapeFile {
+
+	public static final int MAGIC = 0x534e544c; // SNTL
+	public static final int FORMAT_VERSION = 1;
+
+	public enum Encoding {
+		/** Fixed size cells, file is memory-mapped when read. */
+		RAW,
+		/** Zig-zag varint of differences, file is decoded when read. */
+		VARINT
+	}
+
+	private LandscapeFile() {
+	}
+
+	public static void write(Landscape landscape, Path path, Encoding encoding) throws IOException {
+		byte[] header = header(landscape, encoding);
+		if (encoding == Encoding.RAW) {
+			writeRaw(landscape, path, header);
+			return;
+		}
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+			output.write(header);
+			writeGameplanVarints(landscape.gameplanGrid(), output);
+			writePointVarints(landscape.pointGrid(), output);
+		}
+	}
+
+	private static byte[] header(Landscape landscape, Encoding encoding) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(bytes);
+		output.writeInt(MAGIC);
+		output.writeShort(FORMAT_VERSION);
+		output.writeByte(encoding.ordinal());
+		output.writeByte(landscape.gameplanGrid().bytesPerCell());
+		output.writeInt(landscape.sizeX);
+		output.writeInt(landscape.sizeY);
+		Landscape.Config config = landscape.config;
+		output.writeInt(config.maxHeight);
+		output.writeInt(config.maxHeightDifference);
+		output.writeInt(config.maxPatchSize);
+		output.writeInt(config.changesCount);
+
+		int[] heightCounts = landscape.heightCounts();
+		output.writeInt(landscape.minCountedHeight());
+		output.writeInt(heightCounts.length);
+		for (int count : heightCounts) {
+			output.writeInt(count);
+		}
+
+		Landscape.Position sentinel = landscape.getSentinel();
+		output.writeByte(sentinel != null ? 1 : 0);
+		if (sentinel != null) {
+			writePosition(output, sentinel);
+			output.writeInt(landscape.getSentries().size());
+			for (Landscape.Position sentry : landscape.getSentries()) {
+				writePosition(output, sentry);
+			}
+			writePosition(output, landscape.getPlayerStart());
+		}
+		output.flush();
+		return bytes.toByteArray();
+	}
+
+	private static void writePosition(DataOutputStream output, Landscape.Position position) throws IOException {
+		output.writeInt(position.x);
+		output.writeInt(position.y);
+	}
+
+	/** Raw grids are written through the mapped file too, so big grids are not copied into another buffer. */
+	private static void writeRaw(Landscape landscape, Path path, byte[] header) throws IOException {
+		HeightGrid gameplan = landscape.gameplanGrid();
+		HeightGrid points = landscape.pointGrid();
+		int bytesPerCell = gameplan.bytesPerCell();
+		long gameplanBytes = (long) gameplan.size() * bytesPerCell;
+		long pointsBytes = (long) points.size() * bytesPerCell;
+		checkMappable(header.length + gameplanBytes + pointsBytes);
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+			StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+			while (headerBuffer.hasRemaining()) {
+				channel.write(headerBuffer);
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, header.length, gameplanBytes + pointsBytes);
+			copyGrid(gameplan, HeightGrid.wrap(gameplan.sizeX, gameplan.sizeY, slice(buffer, 0, gameplanBytes), bytesPerCell));
+			copyGrid(points, HeightGrid.wrap(points.sizeX, points.sizeY, slice(buffer, gameplanBytes, pointsBytes), bytesPerCell));
+			buffer.force();
+		}
+	}
+
+	private static void copyGrid(HeightGrid source, HeightGrid target) {
+		for (int i = 0; i < source.size(); i++) {
+			target.set(i, source.get(i));
+		}
+	}
+
+	/** Gameplan varint is 0 for unplayable square, otherwise zig-zag difference from the previous playable height + 1. */
+	private static void writeGameplanVarints(HeightGrid gameplan, OutputStream output) throws IOException {
+		int previous = 0;
+		for (int i = 0; i < gameplan.size(); i++) {
+			int height = gameplan.get(i);
+			if (height == Landscape.SQUARE_UNPLAYABLE) {
+				writeVarint(output, 0);
+			} else {
+				writeVarint(output, zigZag(height - previous) + 1);
+				previous = height;
+			}
+		}
+	}
+
+	private static void writePointVarints(HeightGrid points, OutputStream output) throws IOException {
+		int previous = 0;
+		for (int i = 0; i < points.size(); i++) {
+			int height = points.get(i);
+			writeVarint(output, zigZag(height - previous));
+			previous = height;
+		}
+	}
+
+	/**
+	 * Reads the landscape from the file. Raw file is memory-mapped, varint file is decoded.
+	 *
+	 * @throws IOException if the file is not a landscape file, has unsupported version or is damaged
+	 */
+	public static Landscape read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			Header header = readHeader(input, channel.size());
+			if (header.encoding == Encoding.RAW) {
+				return readRaw(path, header);
+			}
+			HeightGrid gameplan = HeightGrid.create(header.sizeX, header.sizeY, header.config.maxHeight);
+			HeightGrid points = HeightGrid.create(header.sizeX + 1, header.sizeY + 1, header.config.maxHeight);
+			readGameplanVarints(gameplan, input);
+			readPointVarints(points, input);
+			return header.landscape(gameplan, points);
+		}
+	}
+
+	private static Landscape readRaw(Path path, Header header) throws IOException {
+		long gameplanBytes = (long) header.sizeX * header.sizeY * header.bytesPerCell;
+		long pointsBytes = (long) (header.sizeX + 1) * (header.sizeY + 1) * header.bytesPerCell;
+		checkMappable(header.length + gameplanBytes + pointsBytes);
+		boolean writable = Files.isWritable(path);
+		MappedByteBuffer buffer;
+		try (FileChannel channel = writable
+			? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+			: FileChannel.open(path, StandardOpenOption.READ))
+		{
+			if (channel.size() < header.length + gameplanBytes + pointsBytes) {
+				throw new EOFException("Landscape file too short: " + channel.size());
+			}
+			// mapping stays valid after the channel is closed
+			buffer = channel.map(writable ? FileChannel.MapMode.PRIVATE : FileChannel.MapMode.READ_ONLY,
+				header.length, gameplanBytes + pointsBytes);
+		}
+		HeightGrid gameplan = HeightGrid.wrap(header.sizeX, header.sizeY,
+			slice(buffer, 0, gameplanBytes), header.bytesPerCell);
+		HeightGrid points = HeightGrid.wrap(header.sizeX + 1, header.sizeY + 1,
+			slice(buffer, gameplanBytes, pointsBytes), header.bytesPerCell);
+		return header.landscape(gameplan, points);
+	}
+
+	/**
+	 * Reads and validates the header, sizes and counts must fit into the file of the length, so damaged
+	 * file fails with IOException before anything big is allocated.
+	 */
+	private static Header readHeader(DataInputStream input, long fileLength) throws IOException {
+		int magic = input.readInt();
+		if (magic != MAGIC) {
+			throw new IOException("Not a landscape file, magic " + Integer.toHexString(magic));
+		}
+		int formatVersion = input.readShort();
+		if (formatVersion != FORMAT_VERSION) {
+			throw new IOException("Unsupported landscape file version " + formatVersion);
+		}
+		Header header = new Header();
+		int encoding = input.readByte();
+		if (encoding < 0 || encoding >= Encoding.values().length) {
+			throw new IOException("Unsupported landscape file encoding " + encoding);
+		}
+		header.encoding = Encoding.values()[encoding];
+		header.bytesPerCell = input.readByte();
+		if (header.bytesPerCell != 1 && header.bytesPerCell != 2 && header.bytesPerCell != 4) {
+			throw new IOException("Invalid bytes per cell " + header.bytesPerCell + " in landscape file");
+		}
+		header.sizeX = input.readInt();
+		header.sizeY = input.readInt();
+		// every cell takes at least one byte in both encodings
+		if (header.sizeX <= 0 || header.sizeY <= 0
+			|| (long) header.sizeX * header.sizeY + (header.sizeX + 1L) * (header.sizeY + 1L) > fileLength)
+		{
+			throw new IOException("Invalid landscape size " + header.sizeX + 'x' + header.sizeY
+				+ " for file length " + fileLength);
+		}
+		try {
+			header.config = new Landscape.Config(input.readInt(), input.readInt(), input.readInt(), input.readInt());
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Invalid config in landscape file: " + e.getMessage(), e);
+		}
+		header.minCountedHeight = input.readInt();
+		int heightCountsLength = input.readInt();
+		if (heightCountsLength <= 0 || 4L * heightCountsLength > fileLength
+			|| (long) header.minCountedHeight + heightCountsLength - 1 > Integer.MAX_VALUE)
+		{
+			throw new IOException("Invalid height histogram from " + header.minCountedHeight
+				+ " of length " + heightCountsLength + " in landscape file");
+		}
+		header.heightCounts = new int[heightCountsLength];
+		for (int i = 0; i < header.heightCounts.length; i++) {
+			header.heightCounts[i] = input.readInt();
+		}
+		long length = 4 + 2 + 1 + 1 + 4 * 6 + 4 * 2 + 4L * header.heightCounts.length + 1;
+		if (input.readByte() != 0) {
+			header.sentinel = readPosition(input, header);
+			int sentryCount = input.readInt();
+			if (sentryCount < 0 || 8L * sentryCount > fileLength) {
+				throw new IOException("Invalid sentry count " + sentryCount + " in landscape file");
+			}
+			header.sentries = new ArrayList<>(sentryCount);
+			for (int i = 0; i < sentryCount; i++) {
+				header.sentries.add(readPosition(input, header));
+			}
+			header.playerStart = readPosition(input, header);
+			length += 4 * 2 + 4 + 4 * 2L * sentryCount + 4 * 2;
+		}
+		if (length > fileLength) {
+			throw new EOFException("Landscape file too short for its header: " + fileLength);
+		}
+		header.length = (int) length;
+		return header;
+	}
+
+	private static Landscape.Position readPosition(DataInputStream input, Header header) throws IOException {
+		int x = input.readInt();
+		int y = input.readInt();
+		if (x < 0 || y < 0 || x >= header.sizeX || y >= header.sizeY) {
+			throw new IOException("Position " + x + ',' + y + " out of the landscape in landscape file");
+		}
+		return new Landscape.Position(x, y);
+	}
+
+	private static void readGameplanVarints(HeightGrid gameplan, InputStream input) throws IOException {
+		int previous = 0;
+		for (int i = 0; i < gameplan.size(); i++) {
+			int value = readVarint(input);
+			if (value == 0) {
+				gameplan.set(i, Landscape.SQUARE_UNPLAYABLE);
+			} else {
+				previous += unZigZag(value - 1);
+				gameplan.set(i, previous);
+			}
+		}
+	}
+
+	private static void readPointVarints(HeightGrid points, InputStream input) throws IOException {
+		int previous = 0;
+		for (int i = 0; i < points.size(); i++) {
+			previous += unZigZag(readVarint(input));
+			points.set(i, previous);
+		}
+	}
+
+	static void writeVarint(OutputStream output, int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			output.write(value & 0x7f | 0x80);
+			value >>>= 7;
+		}
+		output.write(value);
+	}
+
+	static int readVarint(InputStream input) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = input.read();
+			if (b < 0) {
+				throw new EOFException("Landscape file ends in the middle of data");
+			}
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint in landscape file");
+	}
+
+	static int zigZag(int value) {
+		return value << 1 ^ value >> 31;
+	}
+
+	static int unZigZag(int value) {
+		return value >>> 1 ^ -(value & 1);
+	}
+
+	private static void checkMappable(long bytes) throws IOException {
+		if (bytes > Integer.MAX_VALUE) {
+			throw new IOException("Landscape too big for memory mapping: " + bytes + " bytes");
+		}
+	}
+
+	private static ByteBuffer slice(ByteBuffer buffer, long offset, long length) {
+		ByteBuffer slice = buffer.duplicate();
+		// Buffer methods, because ByteBuffer overrides them only since Java 9
+		((Buffer) slice).position((int) offset);
+		((Buffer) slice).limit((int) (offset + length));
+		return slice.slice();
+	}
+
+	private static final class Header {
+
+		Encoding encoding;
+		int bytesPerCell;
+		int sizeX;
+		int sizeY;
+		Landscape.Config config;
+		int minCountedHeight;
+		int[] heightCounts;
+		Landscape.Position sentinel;
+		List<Landscape.Position> sentries;
+		Landscape.Position playerStart;
+		/** Length of the header in bytes, grid data follow. */
+		int length;
+
+		Landscape landscape(HeightGrid gameplan, HeightGrid points) {
+			Landscape landscape = new Landscape(config, gameplan, points, minCountedHeight, heightCounts);
+			if (sentinel != null) {
+				landscape.setPositions(sentinel, sentries, playerStart);
+			}
+			return landscape;
+		}
+	}
+}
@@ -0,0 +1,265 @@
+package com.github.virgo47.sentinel;
+
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import javafx.scene.paint.Material;
+import javafx.scene.paint.PhongMaterial;
+
+/**
+ * Prepares everything needed to show the landscape on the worker executor, so the FX application thread only
+ * swaps the prepared nodes into the scene graph. Loading runs in {@link Stage stages} - landscape generation
+ * (or the {@link LandscapeCache}), placement of the watchers, the material with its texture and mesh buffers.
+ * Whole landscape mesh is textured from the {@link TextureAtlas} by the terrain of the squares if the atlas
+ * factory is set, the atlas is built only once for the loader. Whole landscape mesh can also have normals,
+ * see {@link #normals}.
+ * Progress can be polled from any thread (e.g. every frame) and the job can be cancelled, loading a new
+ * landscape cancels the previous job. The stage already running is finished (generation can't be interrupted),
+ * but the following stages are not run and the future is cancelled immediately.
+ */
+public final class LandscapeLoader {
+
+	private static final TraceLogger log = TraceLogger.getLogger(LandscapeLoader.class);
+
+	/** Stages of the loading in the order they run, {@link #DONE} after the last one. */
+	public enum Stage {
+		GENERATE, PLACEMENT, MATERIAL, MESH, DONE
+	}
+
+	/** Chunk size, LOD count and LOD distance of the chunked landscape, see {@link LandscapeChunks}. */
+	public static final int CHUNK_SIZE = 8;
+	public static final int CHUNK_MAX_LOD = 2;
+	public static final double CHUNK_LOD_DISTANCE = 16;
+
+	private final LandscapeCache cache;
+	private final Executor executor;
+	private final MaterialCache materials;
+	private final String texture;
+	private final Supplier<TextureAtlas> atlasFactory;
+	private TextureAtlas atlas;
+
+	/**
+	 * Whether the whole landscape mesh is built with normals for smoother lighting of slopes, see
+	 * {@link LandscapeMeshBuilder#LandscapeMeshBuilder(TerrainTexturing, boolean)}. Read when the job starts.
+	 */
+	public volatile boolean normals;
+
+	private Job current;
+
+	/**
+	 * Material with the texture (or the atlas) is acquired from the material cache on the executor, so the image
+	 * is decoded there too. Without the atlas factory the landscape uses the texture like the chunks do.
+	 */
+	public LandscapeLoader(LandscapeCache cache, MaterialCache materials, String texture,
+		Supplier<TextureAtlas> atlasFactory, Executor executor)
+	{
+		this.cache = cache;
+		this.materials = materials;
+		this.texture = texture;
+		this.atlasFactory = atlasFactory;
+		this.executor = executor;
+	}
+
+	/**
+	 * Starts loading of the landscape, the previous job is cancelled if it is still running.
+	 * Chunked landscape prepares {@link LandscapeChunks} instead of the whole mesh (chunk meshes are built lazily).
+	 */
+	public synchronized Job load(int sizeX, int sizeY, Landscape.Config config, int seed, int sentryCount, boolean chunked) {
+		if (current != null) {
+			current.cancel();
+		}
+		Job job = new Job(sizeX, sizeY, config, seed, sentryCount, chunked);
+		current = job;
+		try {
+			executor.execute(job::run);
+		} catch (RuntimeException e) {
+			job.future.completeExceptionally(e);
+		}
+		return job;
+	}
+
+	/** Atlas for the whole landscape mesh, built by the first job that needs it. */
+	private synchronized TextureAtlas atlas() {
+		if (atlas == null) {
+			atlas = atlasFactory.get();
+			if (log.isFineEnabled()) {
+				log.fine("Built " + atlas);
+			}
+		}
+		return atlas;
+	}
+
+	/** Last started job, null if nothing was loaded yet. */
+	public synchronized Job current() {
+		return current;
+	}
+
+	/**
+	 * Everything prepared for the scene, only one of the mesh builder and chunks is set.
+	 * Material is acquired from the {@link MaterialCache}, it must be released when it is not used anymore.
+	 */
+	public static final class Result {
+
+		public final Landscape landscape;
+		public final LandscapeMeshBuilder meshBuilder;
+		public final LandscapeChunks chunks;
+		public final Material material;
+		private final long[] stageNanos;
+
+		Result(Landscape landscape, LandscapeMeshBuilder meshBuilder, LandscapeChunks chunks, Material material,
+			long[] stageNanos)
+		{
+			this.landscape = landscape;
+			this.meshBuilder = meshBuilder;
+			this.chunks = chunks;
+			this.material = material;
+			this.stageNanos = stageNanos;
+		}
+
+		/** How long the stage took on the worker. */
+		public long stageNanos(Stage stage) {
+			return stageNanos[stage.ordinal()];
+		}
+	}
+
+	/** Single loading of the landscape, its state can be read from any thread. */
+	public final class Job {
+
+		public final int sizeX;
+		public final int sizeY;
+		public final Landscape.Config config;
+		public final int seed;
+		public final int sentryCount;
+		public final boolean chunked;
+		public final boolean normals;
+
+		private final CompletableFuture<Result> future = new CompletableFuture<>();
+		private final long[] stageNanos = new long[Stage.DONE.ordinal()];
+		private volatile Stage stage = Stage.GENERATE;
+
+		Job(int sizeX, int sizeY, Landscape.Config config, int seed, int sentryCount, boolean chunked) {
+			this.sizeX = sizeX;
+			this.sizeY = sizeY;
+			this.config = config;
+			this.seed = seed;
+			this.sentryCount = sentryCount;
+			this.chunked = chunked;
+			this.normals = LandscapeLoader.this.normals;
+		}
+
+		private void run() {
+			try {
+				long start = System.nanoTime();
+				Landscape landscape = cache.get(sizeX, sizeY, config, seed);
+				start = nextStage(Stage.PLACEMENT, start);
+
+				if (landscape.getSentinel() == null) {
+					landscape.placePositions(seed, sentryCount);
+				}
+				start = nextStage(Stage.MATERIAL, start);
+
+				// chunk meshes use the texture quadrants, see ChunkMeshBuilder
+				TextureAtlas atlas = !chunked && atlasFactory != null ? atlas() : null;
+				Material material = atlas != null
+					? materials.acquireMaterial(atlas.name, () -> atlasMaterial(atlas))
+					: materials.acquireTexture(texture);
+				LandscapeMeshBuilder meshBuilder = null;
+				LandscapeChunks chunks = null;
+				try {
+					start = nextStage(Stage.MESH, start);
+
+					if (chunked) {
+						chunks = new LandscapeChunks(landscape, CHUNK_SIZE, CHUNK_MAX_LOD, CHUNK_LOD_DISTANCE);
+					} else {
+						TerrainTexturing texturing = atlas != null
+							? new TerrainTexturing(atlas.texCoords(), atlas::regionIndex) : null;
+						meshBuilder = new LandscapeMeshBuilder(texturing, normals).build(landscape);
+					}
+					nextStage(Stage.DONE, start);
+				} catch (Throwable e) {
+					materials.release(material);
+					throw e;
+				}
+
+				if (!complete(new Result(landscape, meshBuilder, chunks, material, stageNanos.clone()))) {
+					throw new CancellationException();
+				}
+				if (log.isFineEnabled()) {
+					log.fine("Landscape " + sizeX + 'x' + sizeY + " seed " + seed + " loaded: " + this);
+				}
+			} catch (CancellationException e) {
+				if (log.isFineEnabled()) {
+					log.fine("Landscape loading cancelled in stage " + stage);
+				}
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		}
+
+		/**
+		 * Completes the future with the result, unless the job was cancelled after its last stage - then
+		 * nobody gets the result, so its material is released here.
+		 */
+		boolean complete(Result result) {
+			if (future.complete(result)) return true;
+
+			materials.release(result.material);
+			return false;
+		}
+
+		private PhongMaterial atlasMaterial(TextureAtlas atlas) {
+			PhongMaterial material = new PhongMaterial();
+			material.setDiffuseMap(atlas.image);
+			return material;
+		}
+
+		/** Records the time of the finished stage and moves to the next one, unless cancelled. */
+		private long nextStage(Stage next, long start) {
+			long now = System.nanoTime();
+			stageNanos[stage.ordinal()] = now - start;
+			if (isCancelled()) {
+				throw new CancellationException();
+			}
+			stage = next;
+			return now;
+		}
+
+		/** Completes with the result, or exceptionally with the failure or {@link CancellationException}. */
+		public CompletableFuture<Result> future() {
+			return future;
+		}
+
+		/** Stage currently running, {@link Stage#DONE} when finished (also with failure or cancellation). */
+		public Stage stage() {
+			return future.isDone() ? Stage.DONE : stage;
+		}
+
+		/** Part of the stages finished, from 0 to 1. */
+		public double progress() {
+			return (double) stage().ordinal() / Stage.DONE.ordinal();
+		}
+
+		/** Cancels the job, returns false if it was already finished. */
+		public boolean cancel() {
+			return future.cancel(false);
+		}
+
+		public boolean isCancelled() {
+			return future.isCancelled();
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder("Job{stage=").append(stage());
+			for (Stage s : Stage.values()) {
+				if (s != Stage.DONE) {
+					sb.append(", ").append(s.name().toLowerCase(Locale.ROOT)).append('=').append(stageNanos[s.ordinal()] / 1000).append("us");
+				}
+			}
+			return sb.append('}').toString();
+		}
+	}
+}
@@ -0,0 +1,479 @@
+package com.github.virgo47.sentinel;
+
+import java.util.Arrays;
+
+/**
+ * Builds mesh data of the {@link Landscape} into primitive arrays in the format of JavaFX
+ * {@code TriangleMesh} with {@code VertexFormat.POINT_TEXCOORD}, so that the mesh view can just
+ * set them all at once. Builder does not depend on JavaFX and can run on any thread.
+ * <p>
+ * Point of the landscape x,y has index {@code x * (sizeY + 1) + y} (same as in {@link HeightGrid}),
+ * square x,y has two faces starting at face index {@code 2 * (x * sizeY + y)}.
+ * <p>
+ * Optionally plain squares can be merged (see {@link #LandscapeMeshBuilder(boolean)}), in that case
+ * faces are not in the order of squares anymore. Squares can also be textured from the texture atlas
+ * by their terrain, see {@link #LandscapeMeshBuilder(TerrainTexturing)}, and have normals for
+ * {@code VertexFormat.POINT_NORMAL_TEXCOORD}, see {@link #LandscapeMeshBuilder(TerrainTexturing, boolean)}.
+ */
+public class LandscapeMeshBuilder {
+
+	private static final TraceLogger log = TraceLogger.getLogger(LandscapeMeshBuilder.class);
+
+	/** Number of ints in the faces array per face (point and texcoord index for 3 vertices). */
+	public static final int FACE_SIZE = 6;
+	public static final int FACES_PER_SQUARE = 2;
+	/** Number of ints in the faces array per face with normals (point, normal and texcoord index for 3 vertices). */
+	public static final int NORMAL_FACE_SIZE = 9;
+
+	/** Index of the normal shared by the vertices of all plain squares, pointing straight up. */
+	public static final int NORMAL_FLAT = 0;
+
+	/** Texture index of the first texcoord for the sloped squares, plain squares use 0 and 4 like checkerboard. */
+	public static final int TEXTURE_SLOPE = 8;
+
+	/** Three quadrants of 2x2 texture - two alternating for plain squares, one for slopes. Four texcoords each. */
+	static final float[] TEX_COORDS = {
+		0.0f, 0.0f,
+		0.5f, 0.0f,
+		0.5f, 0.5f,
+		0.0f, 0.5f,
+		0.5f, 0.0f,
+		1.0f, 0.0f,
+		1.0f, 0.5f,
+		0.5f, 0.5f,
+		0.0f, 0.5f,
+		0.5f, 0.5f,
+		0.5f, 1.0f,
+		0.0f, 1.0f
+	};
+
+	private final PhaseTimings phaseTimings = new PhaseTimings();
+
+	private final boolean mergePlainSquares;
+	private final TerrainTexturing texturing;
+	private final boolean normals;
+	private final int faceSize;
+
+	private Landscape landscape;
+	private float[] points;
+	private float[] normalArray;
+	private float[] texCoords;
+	private int[] faces;
+
+	public LandscapeMeshBuilder() {
+		this(false);
+	}
+
+	/**
+	 * Creates the builder that optionally merges runs of neighbouring plain squares of the same height
+	 * along x axis into single quads (two triangles). Checkerboard texturing is kept by texture coordinates
+	 * going over more squares of the texture, which relies on texture repeat (default for JavaFX mesh).
+	 * Plain squares are not merged along y axis, that would need another texture quadrant under the
+	 * checkerboard ones. Merged mesh can't be updated incrementally, see {@link #update(DirtyRegion)}.
+	 */
+	public LandscapeMeshBuilder(boolean mergePlainSquares) {
+		this.mergePlainSquares = mergePlainSquares;
+		this.texturing = null;
+		this.normals = false;
+		this.faceSize = FACE_SIZE;
+	}
+
+	/**
+	 * Creates the builder that textures each square by the atlas region of its terrain, so the squares
+	 * can have more textures than the three quadrants and the mesh still needs one material.
+	 * Squares are not merged, as merged runs repeat the texture over more squares.
+	 */
+	public LandscapeMeshBuilder(TerrainTexturing texturing) {
+		this(texturing, false);
+	}
+
+	/**
+	 * Creates the builder textured by the atlas (or the texture quadrants if texturing is null) that optionally
+	 * computes normals too. Normals are split into two smoothing groups: all vertices of plain squares use
+	 * the flat normal {@link #NORMAL_FLAT}, vertices of slopes use the normal of their point (index
+	 * {@code 1 + point index}) averaged over the slope triangles around the point, weighted by their area.
+	 * This way the slopes are lit smoothly, but the plain squares next to them stay flat and their edges
+	 * sharp - without any extra points. Faces have {@link #NORMAL_FACE_SIZE} ints then.
+	 */
+	public LandscapeMeshBuilder(TerrainTexturing texturing, boolean normals) {
+		this.mergePlainSquares = false;
+		this.texturing = texturing;
+		this.normals = normals;
+		this.faceSize = normals ? NORMAL_FACE_SIZE : FACE_SIZE;
+	}
+
+	/**
+	 * Builds the mesh data for the landscape, arrays from previous build are not reused.
+	 * Dirty region of the landscape is reset, as the mesh reflects all changes.
+	 */
+	public LandscapeMeshBuilder build(Landscape landscape) {
+		this.landscape = landscape;
+		landscape.takeDirtyRegion();
+		long phaseStart = PhaseTimings.ENABLED ? System.nanoTime() : 0;
+
+		HeightGrid heights = landscape.pointGrid();
+		points = new float[heights.size() * 3];
+		int pointOffset = 0;
+		// columns of points are continuous in the grid, so they are read at once
+		int[] column = new int[landscape.sizeY + 1];
+		for (int x = 0; x <= landscape.sizeX; x++) {
+			heights.readInto(heights.index(x, 0), column, 0, column.length);
+			for (int y = 0; y <= landscape.sizeY; y++) {
+				int height = column[y];
+				points[pointOffset] = x;
+				points[pointOffset + 1] = y;
+				points[pointOffset + 2] = height;
+				pointOffset += 3;
+				if (log.isFinestEnabled()) {
+					log.finest("Added point: " + x + ", " + y + ", " + height);
+				}
+			}
+		}
+		if (PhaseTimings.ENABLED) {
+			phaseStart = addPhaseTime(PhaseTimings.Phase.MESH_POINTS, phaseStart);
+		}
+
+		faces = new int[getSquareFaceCount() * faceSize];
+		if (mergePlainSquares) {
+			buildMerged();
+		} else {
+			if (texturing != null) {
+				texturing.prepare(landscape);
+				texCoords = texturing.texCoords();
+			} else {
+				texCoords = TEX_COORDS;
+			}
+			buildSquares(0, 0, landscape.sizeX - 1, landscape.sizeY - 1);
+			if (normals) {
+				normalArray = new float[(heights.size() + 1) * 3];
+				normalArray[NORMAL_FLAT * 3 + 2] = 1;
+				updateNormals(0, 0, landscape.sizeX, landscape.sizeY);
+			}
+		}
+		if (PhaseTimings.ENABLED) {
+			addPhaseTime(PhaseTimings.Phase.MESH_FACES, phaseStart);
+		}
+		return this;
+	}
+
+	/** Builds faces row by row, merging runs of plain squares of the same height. */
+	private void buildMerged() {
+		HeightGrid heights = landscape.pointGrid();
+		// texcoords for runs, indexed by run length * 2 + parity of the first square
+		int[] runTexIndexes = new int[(landscape.sizeX + 1) * 2];
+		texCoords = Arrays.copyOf(TEX_COORDS, TEX_COORDS.length * 2);
+		int texCoordCount = TEX_COORDS.length / 2;
+		int offset = 0;
+		for (int y = 0; y < landscape.sizeY; y++) {
+			int x = 0;
+			while (x < landscape.sizeX) {
+				int height = heights.get(x, y);
+				int runEnd = x;
+				if (isPlainSquare(heights, x, y, height)) {
+					while (runEnd + 1 < landscape.sizeX && isPlainSquare(heights, runEnd + 1, y, height)) {
+						runEnd += 1;
+					}
+				}
+				int runLength = runEnd - x + 1;
+				if (runLength == 1) {
+					buildSquare(x, y, offset);
+				} else {
+					int parity = (x + y) % 2;
+					int runTexKey = runLength * 2 + parity;
+					if (runTexIndexes[runTexKey] == 0) {
+						if (texCoords.length < (texCoordCount + 4) * 2) {
+							texCoords = Arrays.copyOf(texCoords, texCoords.length * 2);
+						}
+						// like plain square texture, just u goes over runLength checkerboard squares from the right one
+						float u0 = parity * 0.5f;
+						float u1 = u0 + runLength * 0.5f;
+						int t = texCoordCount * 2;
+						texCoords[t] = u0;
+						texCoords[t + 1] = 0f;
+						texCoords[t + 2] = u1;
+						texCoords[t + 3] = 0f;
+						texCoords[t + 4] = u1;
+						texCoords[t + 5] = 0.5f;
+						texCoords[t + 6] = u0;
+						texCoords[t + 7] = 0.5f;
+						runTexIndexes[runTexKey] = texCoordCount;
+						texCoordCount += 4;
+					}
+					int textureIndex = runTexIndexes[runTexKey];
+					int pointSW = heights.index(x, y);
+					int pointNW = heights.index(x, y + 1);
+					int pointNE = heights.index(runEnd + 1, y + 1);
+					int pointSE = heights.index(runEnd + 1, y);
+					setFace(offset, pointSW, textureIndex, pointSE, textureIndex + 1, pointNE, textureIndex + 2);
+					setFace(offset + FACE_SIZE, pointSW, textureIndex, pointNE, textureIndex + 2, pointNW, textureIndex + 3);
+				}
+				offset += FACES_PER_SQUARE * FACE_SIZE;
+				x = runEnd + 1;
+			}
+		}
+		faces = Arrays.copyOf(faces, offset);
+		texCoords = Arrays.copyOf(texCoords, texCoordCount * 2);
+		if (log.isFineEnabled()) {
+			log.fine("Merged plain squares to " + getFaceCount() + " faces instead of " + getSquareFaceCount()
+				+ " (" + Math.round(getFaceReduction() * 100) + "% less)");
+		}
+	}
+
+	private boolean isPlainSquare(HeightGrid heights, int x, int y, int height) {
+		return heights.get(x, y) == height && heights.get(x + 1, y) == height
+			&& heights.get(x + 1, y + 1) == height && heights.get(x, y + 1) == height;
+	}
+
+	/**
+	 * Updates heights of points and faces of squares affected by the change of squares in the region.
+	 * Returns region of the squares whose faces were rebuilt - this is the changed region expanded by one
+	 * square, as the neighbours share the changed points. Points of all these squares are updated.
+	 */
+	public DirtyRegion update(DirtyRegion changed) {
+		if (mergePlainSquares) {
+			throw new IllegalStateException("Merged mesh can't be updated incrementally, build it again");
+		}
+		DirtyRegion affected = changed.expand(1, landscape.sizeX, landscape.sizeY);
+		HeightGrid heights = landscape.pointGrid();
+		int[] column = new int[affected.height() + 1];
+		for (int x = affected.minX; x <= affected.maxX + 1; x++) {
+			int index = heights.index(x, affected.minY);
+			heights.readInto(index, column, 0, column.length);
+			for (int i = 0; i < column.length; i++) {
+				points[(index + i) * 3 + 2] = column[i];
+			}
+		}
+		buildSquares(affected.minX, affected.minY, affected.maxX, affected.maxY);
+		// only the faces of the affected squares changed, so only their points have other normals
+		if (normals) {
+			updateNormals(affected.minX, affected.minY, affected.maxX + 1, affected.maxY + 1);
+		}
+		return affected;
+	}
+
+	/** Computes normals of the points in the range (inclusive) from the faces of the squares around them. */
+	private void updateNormals(int minX, int minY, int maxX, int maxY) {
+		HeightGrid heights = landscape.pointGrid();
+		double[] normal = new double[3];
+		for (int x = minX; x <= maxX; x++) {
+			for (int y = minY; y <= maxY; y++) {
+				normal[0] = 0;
+				normal[1] = 0;
+				normal[2] = 0;
+				int point = heights.index(x, y);
+				for (int squareX = Math.max(0, x - 1); squareX <= Math.min(x, landscape.sizeX - 1); squareX++) {
+					for (int squareY = Math.max(0, y - 1); squareY <= Math.min(y, landscape.sizeY - 1); squareY++) {
+						int offset = (squareX * landscape.sizeY + squareY) * FACES_PER_SQUARE * faceSize;
+						addFaceNormal(offset, point, normal);
+						addFaceNormal(offset + faceSize, point, normal);
+					}
+				}
+				double length = Math.sqrt(normal[0] * normal[0] + normal[1] * normal[1] + normal[2] * normal[2]);
+				int n = (1 + point) * 3;
+				if (length > 0) {
+					normalArray[n] = (float) (normal[0] / length);
+					normalArray[n + 1] = (float) (normal[1] / length);
+					normalArray[n + 2] = (float) (normal[2] / length);
+				} else {
+					// point without slopes around, its normal is not used by any face
+					normalArray[n] = 0;
+					normalArray[n + 1] = 0;
+					normalArray[n + 2] = 1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the normal of the slope face to the sum if the face has the point. Normal is the cross product
+	 * of the face edges in the winding order, so its length is twice the area of the face.
+	 */
+	private void addFaceNormal(int offset, int point, double[] sum) {
+		int p0 = faces[offset];
+		int p1 = faces[offset + 3];
+		int p2 = faces[offset + 6];
+		if (faces[offset + 1] == NORMAL_FLAT || p0 != point && p1 != point && p2 != point) return;
+
+		double ax = points[p1 * 3] - points[p0 * 3];
+		double ay = points[p1 * 3 + 1] - points[p0 * 3 + 1];
+		double az = points[p1 * 3 + 2] - points[p0 * 3 + 2];
+		double bx = points[p2 * 3] - points[p0 * 3];
+		double by = points[p2 * 3 + 1] - points[p0 * 3 + 1];
+		double bz = points[p2 * 3 + 2] - points[p0 * 3 + 2];
+		sum[0] += ay * bz - az * by;
+		sum[1] += az * bx - ax * bz;
+		sum[2] += ax * by - ay * bx;
+	}
+
+	/**
+	 * Writes faces of the squares in the range (inclusive) in the order of squares. Heights of two neighbouring
+	 * columns of points are read at once, so there is no call of the height grid per square.
+	 */
+	private void buildSquares(int minX, int minY, int maxX, int maxY) {
+		HeightGrid heights = landscape.pointGrid();
+		int length = maxY - minY + 2;
+		int[] west = new int[length];
+		int[] east = new int[length];
+		heights.readInto(heights.index(minX, minY), west, 0, length);
+		// north = positive y, east = positive x
+		for (int x = minX; x <= maxX; x++) {
+			heights.readInto(heights.index(x + 1, minY), east, 0, length);
+			for (int y = minY; y <= maxY; y++) {
+				int i = y - minY;
+				buildSquare(x, y, (x * landscape.sizeY + y) * FACES_PER_SQUARE * faceSize,
+					west[i], east[i], east[i + 1], west[i + 1]);
+			}
+			int[] swap = west;
+			west = east;
+			east = swap;
+		}
+	}
+
+	/** Writes both faces of the square at the offset of the faces array, heights are taken from the landscape. */
+	private void buildSquare(int x, int y, int offset) {
+		HeightGrid heights = landscape.pointGrid();
+		buildSquare(x, y, offset, heights.get(x, y), heights.get(x + 1, y), heights.get(x + 1, y + 1),
+			heights.get(x, y + 1));
+	}
+
+	private void buildSquare(int x, int y, int offset, int zsw, int zse, int zne, int znw) {
+		int arraySizeY = landscape.sizeY + 1;
+		int pointSW = x * arraySizeY + y;
+		int pointNW = x * arraySizeY + (y + 1);
+		int pointNE = (x + 1) * arraySizeY + y + 1;
+		int pointSE = (x + 1) * arraySizeY + y;
+
+		boolean plainSquare = zsw == zse && zsw == zne && zsw == znw;
+		boolean inverseTriangulation = isInverseTriangulation(zsw, zse, zne, znw);
+		if (log.isFinerEnabled()) {
+			log.finer("Height(" + x + ',' + y + "): " + zsw + ", " + zse + ", " + zne + ", " + znw +
+				" - triangulation " + (inverseTriangulation ? "inverse" : "default") + ", plain " + plainSquare);
+		}
+
+		int textureIndex = texturing != null ? texturing.textureIndex(landscape, x, y, zsw, zse, zne, znw)
+			: plainSquare ? (x + y) % 2 * 4 : TEXTURE_SLOPE;
+
+		if (normals) {
+			if (inverseTriangulation) {
+				setNormalFace(offset, plainSquare, pointSW, textureIndex, pointSE, textureIndex + 1, pointNW, textureIndex + 3);
+				setNormalFace(offset + faceSize, plainSquare, pointSE, textureIndex + 1, pointNE, textureIndex + 2, pointNW, textureIndex + 3);
+			} else {
+				setNormalFace(offset, plainSquare, pointSW, textureIndex, pointSE, textureIndex + 1, pointNE, textureIndex + 2);
+				setNormalFace(offset + faceSize, plainSquare, pointSW, textureIndex, pointNE, textureIndex + 2, pointNW, textureIndex + 3);
+			}
+		} else if (inverseTriangulation) {
+			setFace(offset, pointSW, textureIndex, pointSE, textureIndex + 1, pointNW, textureIndex + 3);
+			setFace(offset + FACE_SIZE, pointSE, textureIndex + 1, pointNE, textureIndex + 2, pointNW, textureIndex + 3);
+		} else {
+			setFace(offset, pointSW, textureIndex, pointSE, textureIndex + 1, pointNE, textureIndex + 2);
+			setFace(offset + FACE_SIZE, pointSW, textureIndex, pointNE, textureIndex + 2, pointNW, textureIndex + 3);
+		}
+	}
+
+	/** Like {@link #setFace}, plain squares use the flat normal, slopes the normals of their points. */
+	private void setNormalFace(int offset, boolean plainSquare, int p0, int t0, int p1, int t1, int p2, int t2) {
+		faces[offset] = p0;
+		faces[offset + 1] = plainSquare ? NORMAL_FLAT : 1 + p0;
+		faces[offset + 2] = t0;
+		faces[offset + 3] = p1;
+		faces[offset + 4] = plainSquare ? NORMAL_FLAT : 1 + p1;
+		faces[offset + 5] = t1;
+		faces[offset + 6] = p2;
+		faces[offset + 7] = plainSquare ? NORMAL_FLAT : 1 + p2;
+		faces[offset + 8] = t2;
+	}
+
+	private void setFace(int offset, int p0, int t0, int p1, int t1, int p2, int t2) {
+		faces[offset] = p0;
+		faces[offset + 1] = t0;
+		faces[offset + 2] = p1;
+		faces[offset + 3] = t1;
+		faces[offset + 4] = p2;
+		faces[offset + 5] = t2;
+	}
+
+	/**
+	 * Decides triangulation of the square from its corner heights. By default we make triangles
+	 * SW-SE-NE and SW-NE-NW, the other way (SW-SE-NW and SE-NE-NW) is "inverse".
+	 */
+	public static boolean isInverseTriangulation(int zsw, int zse, int zne, int znw) {
+		boolean triangle1IsFlat = zsw == zse && zsw == zne;
+		boolean triangle2IsFlat = zsw == zne && zsw == znw;
+		boolean triangleInverse1IsFlat = zsw == zse && zsw == znw;
+		boolean triangleInverse2IsFlat = znw == zne && zse == zne;
+
+		// if the whole square is not flat, but any of default triangles are flat, we want to inverse the triangulation
+		boolean plainSquare = triangle1IsFlat && triangle2IsFlat;
+		boolean invertBecauseOfPartialFlatness = !plainSquare && (triangle1IsFlat || triangle2IsFlat);
+		boolean invertedTrianglesSumIsLower = (2 * zsw + zse + 2 * zne + znw) > (zsw + 2 * zse + zne + 2 * znw);
+
+		return invertBecauseOfPartialFlatness
+			// we also want to prefer valleys instead of high ridges IF it doesn't create new partially-flat squares
+			|| invertedTrianglesSumIsLower && !triangleInverse1IsFlat && !triangleInverse2IsFlat;
+	}
+
+	/** Points as x, y, z triplets. */
+	public float[] getPoints() {
+		return points;
+	}
+
+	/** Texture coordinates, these are fixed unless plain squares are merged (or come from the atlas). */
+	public float[] getTexCoords() {
+		return texCoords == TEX_COORDS ? TEX_COORDS.clone() : texCoords;
+	}
+
+	/** Normals as x, y, z triplets, the flat one first and then one per point, null without normals. */
+	public float[] getNormals() {
+		return normalArray;
+	}
+
+	/**
+	 * Faces as point/texcoord index pairs for three vertices, see {@link #FACE_SIZE}, or point/normal/texcoord
+	 * triplets with normals.
+	 */
+	public int[] getFaces() {
+		return faces;
+	}
+
+	/** Number of ints per face, {@link #FACE_SIZE} or {@link #NORMAL_FACE_SIZE} with normals. */
+	public int getFaceSize() {
+		return faceSize;
+	}
+
+	public int getFaceCount() {
+		return faces.length / faceSize;
+	}
+
+	/** Number of faces without merging, that is two per square. */
+	public int getSquareFaceCount() {
+		return landscape.sizeX * landscape.sizeY * FACES_PER_SQUARE;
+	}
+
+	/** Ratio of faces saved by merging plain squares, 0 if not merged. */
+	public double getFaceReduction() {
+		return 1 - (double) getFaceCount() / getSquareFaceCount();
+	}
+
+	public boolean isMergePlainSquares() {
+		return mergePlainSquares;
+	}
+
+	public boolean hasNormals() {
+		return normals;
+	}
+
+	public Landscape getLandscape() {
+		return landscape;
+	}
+
+	/** Time spent in mesh building phases, collected only when {@link PhaseTimings#ENABLED}. */
+	public PhaseTimings phaseTimings() {
+		return phaseTimings;
+	}
+
+	private long addPhaseTime(PhaseTimings.Phase phase, long phaseStart) {
+		long now = System.nanoTime();
+		phaseTimings.add(phase, now - phaseStart);
+		return now;
+	}
+}
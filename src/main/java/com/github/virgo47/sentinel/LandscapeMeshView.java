@@ -1,94 +1,71 @@
 package com.github.virgo47.sentinel;
 
-import java.io.FileNotFoundException;
-import java.util.logging.Logger;
-
-import javafx.scene.image.Image;
+import javafx.scene.paint.Material;
 import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.CullFace;
 import javafx.scene.shape.DrawMode;
 import javafx.scene.shape.MeshView;
 import javafx.scene.shape.TriangleMesh;
+import javafx.scene.shape.VertexFormat;
 
 public class LandscapeMeshView extends MeshView {
 
-	private static final Logger log = Logger.getLogger(LandscapeMeshView.class.getName());
+	/** Texture of the landscape, see {@link MaterialCache#loadResource(String)}. */
+	public static final String TEXTURE = "textures-wood.jpg";
 
-	public void setLandscape(Landscape landscape) throws FileNotFoundException {
-		TriangleMesh landscapeMesh = new TriangleMesh();
-		for (int x = 0; x <= landscape.sizeX; x++) {
-			for (int y = 0; y <= landscape.sizeY; y++) {
-				landscapeMesh.getPoints().addAll(x, y, landscape.pointHeight(x, y));
-				log.finest("Added point: " + x + ", " + y + ", " + landscape.pointHeight(x, y));
-			}
-		}
+	private final PhaseTimings phaseTimings = new PhaseTimings();
 
-		landscapeMesh.getTexCoords().addAll(
-			0.0f, 0.0f,
-			0.5f, 0.0f,
-			0.5f, 0.5f,
-			0.0f, 0.5f,
-			0.5f, 0.0f,
-			1.0f, 0.0f,
-			1.0f, 0.5f,
-			0.5f, 0.5f,
-			0.0f, 0.5f,
-			0.5f, 0.5f,
-			0.5f, 1.0f,
-			0.0f, 1.0f
-		);
-
-		// north = positive y, east = positive x
-		for (int x = 0; x < landscape.sizeX; x++) {
-			for (int y = 0; y < landscape.sizeY; y++) {
-				int arraySizeY = landscape.sizeY + 1;
-				int pointSW = x * arraySizeY + y;
-				int pointNW = x * arraySizeY + (y + 1);
-				int pointNE = (x + 1) * arraySizeY + y + 1;
-				int pointSE = (x + 1) * arraySizeY + y;
-
-				float zsw = landscapeMesh.getPoints().get(pointSW * 3 + 2);
-				float zse = landscapeMesh.getPoints().get(pointSE * 3 + 2);
-				float zne = landscapeMesh.getPoints().get(pointNE * 3 + 2);
-				float znw = landscapeMesh.getPoints().get(pointNW * 3 + 2);
-
-				// by default we make triangles: SW-SE-NE and SW-NE-NW, other way is "inverted"
-				boolean triangle1IsFlat = zsw == zse && zsw == zne;
-				boolean triangle2IsFlat = zsw == zne && zsw == znw;
-				boolean triangleInverse1IsFlat = zsw == zse && zsw == znw;
-				boolean triangleInverse2IsFlat = znw == zne && zse == zne;
-
-				// if the whole square is not flat, but any of default triangles are flat, we want to inverse the triangulation
-				boolean plainSqure = triangle1IsFlat && triangle2IsFlat;
-				boolean invertBecauseOfPartialFlatness = !plainSqure && (triangle1IsFlat || triangle2IsFlat);
-				boolean invertedTrianglesSumIsLower = (2 * zsw + zse + 2 * zne + znw) > (zsw + 2 * zse + zne + 2 * znw);
-
-				boolean inverseTriangulation = invertBecauseOfPartialFlatness
-					// we also want to prefer valleys instead of high ridges IF it doesn't create new partially-flat squares
-					|| invertedTrianglesSumIsLower && !triangleInverse1IsFlat && !triangleInverse2IsFlat;
-
-				log.finer("Height(" + x + ',' + y + "): " + zsw + ", " + zse + ", " + zne + ", " + znw +
-					" - triangulation " + (inverseTriangulation ? "inverse" : "default") +
-					", t1flat " + triangle1IsFlat + ", t2flat " + triangle2IsFlat +
-					", ti1flat " + triangleInverse1IsFlat + ", ti2flat " + triangleInverse2IsFlat +
-					", pflat " + invertBecauseOfPartialFlatness + ", isum " + invertedTrianglesSumIsLower);
-
-				int textureIndex = plainSqure ? (x + y) % 2 * 4 : 8;
-
-				if (inverseTriangulation) {
-					landscapeMesh.getFaces().addAll(
-						pointSW, textureIndex, pointSE, textureIndex + 1, pointNW, textureIndex + 3,
-						pointSE, textureIndex + 1, pointNE, textureIndex + 2, pointNW, textureIndex + 3
-					);
-				} else {
-					landscapeMesh.getFaces().addAll(
-						pointSW, textureIndex, pointSE, textureIndex + 1, pointNE, textureIndex + 2,
-						pointSW, textureIndex, pointNE, textureIndex + 2, pointNW, textureIndex + 3
-					);
-				}
-			}
+	/** Whether {@link #setLandscape(Landscape)} merges plain squares, see {@link LandscapeMeshBuilder#LandscapeMeshBuilder(boolean)}. */
+	public boolean mergePlainSquares = false;
+
+	/**
+	 * Whether {@link #setLandscape(Landscape)} builds the mesh with normals, see
+	 * {@link LandscapeMeshBuilder#LandscapeMeshBuilder(TerrainTexturing, boolean)}. Squares are not merged then.
+	 */
+	public boolean normals = false;
+
+	private LandscapeMeshBuilder meshBuilder;
+	/** Material acquired from {@link MaterialCache#DEFAULT} by the view itself, released by {@link #dispose()}. */
+	private PhongMaterial defaultMaterial;
+
+	public void setLandscape(Landscape landscape) {
+		LandscapeMeshBuilder builder = normals ? new LandscapeMeshBuilder(null, true)
+			: new LandscapeMeshBuilder(mergePlainSquares);
+		setLandscapeMesh(builder.build(landscape));
+	}
+
+	/**
+	 * Sets the mesh prepared by the builder, which can be done on any thread in advance. This only copies
+	 * the prepared arrays to the mesh, so it is cheap to call on FX application thread.
+	 */
+	public void setLandscapeMesh(LandscapeMeshBuilder meshBuilder) {
+		setLandscapeMesh(meshBuilder, null);
+	}
+
+	/**
+	 * Like {@link #setLandscapeMesh(LandscapeMeshBuilder)}, with the material prepared in advance too,
+	 * e.g. by {@link LandscapeLoader}. For null material the view uses the shared one from {@link MaterialCache#DEFAULT}.
+	 */
+	public void setLandscapeMesh(LandscapeMeshBuilder meshBuilder, Material material) {
+		long phaseStart = PhaseTimings.ENABLED ? System.nanoTime() : 0;
+		TriangleMesh landscapeMesh;
+		if (meshBuilder.hasNormals()) {
+			// JavaFX ignores face smoothing groups with normals, the builder groups the normals itself
+			landscapeMesh = new TriangleMesh(VertexFormat.POINT_NORMAL_TEXCOORD);
+			landscapeMesh.getNormals().setAll(meshBuilder.getNormals());
+		} else {
+			landscapeMesh = new TriangleMesh();
 		}
+		landscapeMesh.getPoints().setAll(meshBuilder.getPoints());
+		landscapeMesh.getTexCoords().setAll(meshBuilder.getTexCoords());
+		landscapeMesh.getFaces().setAll(meshBuilder.getFaces());
 		setMesh(landscapeMesh);
+		this.meshBuilder = meshBuilder;
+		if (PhaseTimings.ENABLED) {
+			phaseTimings.add(meshBuilder.phaseTimings());
+			phaseStart = addPhaseTime(PhaseTimings.Phase.MESH_UPLOAD, phaseStart);
+		}
+
 		double scale = 10;
 		setScaleX(scale);
 		setScaleY(scale);
@@ -97,9 +74,89 @@ public class LandscapeMeshView extends MeshView {
 		setCullFace(CullFace.NONE);
 		setDrawMode(DrawMode.FILL);
 
-		PhongMaterial mat = new PhongMaterial();
-		Image simpleTexture = new Image(getClass().getClassLoader().getResourceAsStream("textures-wood.jpg"));
-		mat.setDiffuseMap(simpleTexture);
-		setMaterial(mat);
+		if (material == null) {
+			if (defaultMaterial == null) {
+				defaultMaterial = MaterialCache.DEFAULT.acquireTexture(TEXTURE);
+			}
+			material = defaultMaterial;
+		}
+		setMaterial(material);
+		if (PhaseTimings.ENABLED) {
+			addPhaseTime(PhaseTimings.Phase.MESH_MATERIAL, phaseStart);
+		}
+	}
+
+	/** Releases the shared material acquired by the view, call it when the view is not used anymore. */
+	public void dispose() {
+		if (defaultMaterial != null) {
+			MaterialCache.DEFAULT.release(defaultMaterial);
+			defaultMaterial = null;
+		}
+	}
+
+	/**
+	 * Updates the mesh after changes of the landscape, only points and faces around the dirty region of
+	 * the landscape are rewritten, material stays the same. Does nothing if nothing was changed.
+	 * Mesh with merged plain squares is rebuilt completely, only the material stays.
+	 */
+	public void updateLandscape() {
+		if (meshBuilder == null || !meshBuilder.getLandscape().isDirty()) return;
+		if (meshBuilder.isMergePlainSquares()) {
+			meshBuilder.build(meshBuilder.getLandscape());
+			TriangleMesh landscapeMesh = (TriangleMesh) getMesh();
+			landscapeMesh.getPoints().setAll(meshBuilder.getPoints());
+			landscapeMesh.getTexCoords().setAll(meshBuilder.getTexCoords());
+			landscapeMesh.getFaces().setAll(meshBuilder.getFaces());
+			return;
+		}
+		DirtyRegion changed = meshBuilder.getLandscape().takeDirtyRegion();
+
+		DirtyRegion affected = meshBuilder.update(changed);
+		TriangleMesh landscapeMesh = (TriangleMesh) getMesh();
+		int pointsSizeY = meshBuilder.getLandscape().sizeY + 1;
+		float[] points = meshBuilder.getPoints();
+		// points of each column (same x) are continuous
+		for (int x = affected.minX; x <= affected.maxX + 1; x++) {
+			int offset = (x * pointsSizeY + affected.minY) * 3;
+			landscapeMesh.getPoints().set(offset, points, offset, (affected.height() + 1) * 3);
+		}
+		if (meshBuilder.hasNormals()) {
+			float[] normals = meshBuilder.getNormals();
+			// normal of the point is right after the flat one
+			for (int x = affected.minX; x <= affected.maxX + 1; x++) {
+				int offset = (1 + x * pointsSizeY + affected.minY) * 3;
+				landscapeMesh.getNormals().set(offset, normals, offset, (affected.height() + 1) * 3);
+			}
+		}
+		int squaresSizeY = meshBuilder.getLandscape().sizeY;
+		int squareSize = LandscapeMeshBuilder.FACES_PER_SQUARE * meshBuilder.getFaceSize();
+		int[] faces = meshBuilder.getFaces();
+		for (int x = affected.minX; x <= affected.maxX; x++) {
+			int offset = (x * squaresSizeY + affected.minY) * squareSize;
+			landscapeMesh.getFaces().set(offset, faces, offset, affected.height() * squareSize);
+		}
+	}
+
+	/** Number of triangles of the mesh, 0 if there is no mesh yet. */
+	public int triangleCount() {
+		TriangleMesh mesh = (TriangleMesh) getMesh();
+		return mesh != null ? mesh.getFaces().size() / mesh.getFaceElementSize() : 0;
+	}
+
+	/** Number of vertices (points) of the mesh, 0 if there is no mesh yet. */
+	public int vertexCount() {
+		TriangleMesh mesh = (TriangleMesh) getMesh();
+		return mesh != null ? mesh.getPoints().size() / 3 : 0;
+	}
+
+	/** Time spent in mesh building phases, collected only when {@link PhaseTimings#ENABLED}. */
+	public PhaseTimings phaseTimings() {
+		return phaseTimings;
+	}
+
+	private long addPhaseTime(PhaseTimings.Phase phase, long phaseStart) {
+		long now = System.nanoTime();
+		phaseTimings.add(phase, now - phaseStart);
+		return now;
 	}
 }
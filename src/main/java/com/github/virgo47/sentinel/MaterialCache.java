@@ -0,0 +1,214 @@
+package com.github.virgo47.sentinel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Material;
+import javafx.scene.paint.PhongMaterial;
+
+/**
+ * Shared materials of the scene, so the same texture is decoded (and uploaded to the GPU) only once no matter
+ * how many nodes use it or how many times the landscape is rebuilt. Materials are reference counted, each
+ * acquire must be paired with {@link #release(Material)} when the node using it is discarded. Released
+ * materials stay cached for the next acquire until {@link #evictUnused()}, {@link #dispose()} drops everything.
+ * Textured materials can be loaded asynchronously on the executor, acquire of a material still loading waits
+ * for it. Materials must not be changed by the users, as they are shared.
+ */
+public final class MaterialCache {
+
+	private static final TraceLogger log = TraceLogger.getLogger(MaterialCache.class);
+
+	/** Cache shared by the views of the game, textures are loaded from classpath resources. */
+	public static final MaterialCache DEFAULT = new MaterialCache(ForkJoinPool.commonPool(), MaterialCache::loadResource);
+
+	private final Executor executor;
+	private final Function<String, Image> imageLoader;
+
+	private final Map<String, Entry> entries = new HashMap<>();
+	private final Map<Material, Entry> entriesByMaterial = new IdentityHashMap<>();
+	private int imageLoads;
+
+	/** Image loader gets the texture name, e.g. the classpath resource, see {@link #loadResource(String)}. */
+	public MaterialCache(Executor executor, Function<String, Image> imageLoader) {
+		this.executor = executor;
+		this.imageLoader = imageLoader;
+	}
+
+	/** Acquires the material with the texture, loads it on the calling thread if it is not loaded yet. */
+	public PhongMaterial acquireTexture(String texture) {
+		return acquire("texture:" + texture, () -> textureMaterial(texture), Runnable::run).join();
+	}
+
+	/** Acquires the material with the texture, the texture is loaded on the executor if it is not loaded yet. */
+	public CompletableFuture<PhongMaterial> acquireTextureAsync(String texture) {
+		return acquire("texture:" + texture, () -> textureMaterial(texture), executor);
+	}
+
+	/** Acquires the material with the darker diffuse color and the specular color, like for the axes. */
+	public PhongMaterial acquireColor(Color color) {
+		return acquire("color:" + color, () -> {
+			PhongMaterial material = new PhongMaterial();
+			material.setDiffuseColor(color.darker());
+			material.setSpecularColor(color);
+			return material;
+		}, Runnable::run).join();
+	}
+
+	/**
+	 * Acquires the material created by the factory on the calling thread if there is none for the key yet,
+	 * e.g. the material with the texture atlas.
+	 */
+	public PhongMaterial acquireMaterial(String key, Supplier<PhongMaterial> factory) {
+		return acquire("material:" + key, factory, Runnable::run).join();
+	}
+
+	private CompletableFuture<PhongMaterial> acquire(String key, Supplier<PhongMaterial> factory, Executor executor) {
+		Entry entry;
+		boolean created = false;
+		synchronized (this) {
+			entry = entries.get(key);
+			if (entry == null) {
+				entry = new Entry(key);
+				entries.put(key, entry);
+				created = true;
+			}
+			entry.references++;
+		}
+		if (created) {
+			Entry newEntry = entry;
+			try {
+				executor.execute(() -> create(newEntry, factory));
+			} catch (RuntimeException e) {
+				fail(newEntry, e);
+			}
+		}
+		return entry.material;
+	}
+
+	private void create(Entry entry, Supplier<PhongMaterial> factory) {
+		PhongMaterial material;
+		try {
+			material = factory.get();
+		} catch (RuntimeException e) {
+			fail(entry, e);
+			return;
+		}
+		synchronized (this) {
+			if (entries.get(entry.key) == entry) {
+				entriesByMaterial.put(material, entry);
+			}
+		}
+		entry.material.complete(material);
+	}
+
+	/** Failed entry is removed, so the next acquire tries to load it again. */
+	private void fail(Entry entry, RuntimeException e) {
+		synchronized (this) {
+			entries.remove(entry.key, entry);
+		}
+		log.fine("Material " + entry.key + " not loaded: " + e);
+		entry.material.completeExceptionally(e);
+	}
+
+	private PhongMaterial textureMaterial(String texture) {
+		Image image = imageLoader.apply(texture);
+		synchronized (this) {
+			imageLoads++;
+		}
+		if (image != null && image.isError()) {
+			throw new IllegalStateException("Texture " + texture + " not loaded", image.getException());
+		}
+		PhongMaterial material = new PhongMaterial();
+		material.setDiffuseMap(image);
+		return material;
+	}
+
+	/** Releases the acquired material, it stays cached until evicted. Materials not from this cache are ignored. */
+	public synchronized void release(Material material) {
+		Entry entry = entriesByMaterial.get(material);
+		if (entry == null) return;
+
+		if (entry.references == 0) {
+			throw new IllegalStateException("Material " + entry.key + " released more times than acquired");
+		}
+		entry.references--;
+	}
+
+	/** Drops the loaded materials that are not used, returns their count. Their textures can be garbage collected. */
+	public synchronized int evictUnused() {
+		int evicted = 0;
+		for (Iterator<Entry> iterator = entries.values().iterator(); iterator.hasNext(); ) {
+			Entry entry = iterator.next();
+			if (entry.references == 0 && entry.material.isDone()) {
+				iterator.remove();
+				entriesByMaterial.remove(entry.material.getNow(null));
+				evicted++;
+			}
+		}
+		if (log.isFineEnabled()) {
+			log.fine("Evicted " + evicted + " unused materials, " + entries.size() + " left");
+		}
+		return evicted;
+	}
+
+	/**
+	 * Drops all the materials, also the used ones - the next acquire creates new ones. Meant for the end of
+	 * the scene, when the nodes using the materials are discarded too.
+	 */
+	public synchronized void dispose() {
+		entries.clear();
+		entriesByMaterial.clear();
+	}
+
+	/** Number of materials cached, also the ones still loading. */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/** Number of references of the material, 0 for unknown or released ones. */
+	public synchronized int references(Material material) {
+		Entry entry = entriesByMaterial.get(material);
+		return entry != null ? entry.references : 0;
+	}
+
+	/** Number of textures decoded since the start. */
+	public synchronized int imageLoads() {
+		return imageLoads;
+	}
+
+	/** Loads the image from the classpath resource, decoded on the calling thread. */
+	public static Image loadResource(String resource) {
+		try (InputStream stream = MaterialCache.class.getClassLoader().getResourceAsStream(resource)) {
+			if (stream == null) {
+				throw new IllegalArgumentException("Texture resource " + resource + " not found");
+			}
+			return new Image(stream);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static final class Entry {
+
+		final String key;
+		final CompletableFuture<PhongMaterial> material = new CompletableFuture<>();
+		/** Guarded by the cache. */
+		int references;
+
+		Entry(String key) {
+			this.key = key;
+		}
+	}
+}
@@ -0,0 +1,238 @@
+package com.github.virgo47.sentinel;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Lightweight metrics of the running game: frame times of the {@link GameLoop}, durations of named
+ * operations (landscape generation, mesh build), gauges (triangle and vertex counts) and runtime
+ * statistics (GC, allocation rate, heap). Runtime statistics are read from MX beans only in
+ * {@link #sample(long)}, which is meant to be called a few times per second, not every frame.
+ * <p>
+ * Metrics can be recorded into CSV files for offline analysis of stutters:
+ * <ul>
+ * <li>samples - one row per {@link #sample(long)} with frame, runtime and gauge values,</li>
+ * <li>events - one row per {@link #recordDuration(String, long)},</li>
+ * <li>frames - frame times of the last {@link FrameStats#WINDOW} frames, see {@link #exportFrames(Path)}.</li>
+ * </ul>
+ * CSV was chosen over JFR custom events, as those are not available on Java 8 the game runs on.
+ */
+public final class Metrics {
+
+	private static final TraceLogger log = TraceLogger.getLogger(Metrics.class);
+
+	public static final String TRIANGLES = "triangles";
+	public static final String VERTICES = "vertices";
+
+	/** Upper limits (exclusive) of frame time histogram buckets in ms, the last bucket has no limit. */
+	static final double[] HISTOGRAM_LIMITS_MS = {8, 17, 34, 50};
+
+	private static final String SAMPLES_HEADER = "time_ms,frame_min_ms,frame_avg_ms,frame_p99_ms,frame_max_ms,"
+		+ "frames,dropped_frames,ticks,skipped_ticks,gc_count,gc_ms,alloc_mb_per_s,heap_used_mb,triangles,vertices";
+	private static final String EVENTS_HEADER = "time_ms,name,duration_ms";
+
+	private final GameLoop gameLoop;
+	private final long startNanos;
+
+	private final List<GarbageCollectorMXBean> garbageCollectors = ManagementFactory.getGarbageCollectorMXBeans();
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	/** Name to last, max, total nanos and count of the duration. */
+	private final Map<String, long[]> durations = new LinkedHashMap<>();
+	private final Map<String, Long> gauges = new LinkedHashMap<>();
+
+	private long gcCount;
+	private long gcMillis;
+	private long allocatedBytes = -1;
+	private long allocationBytesPerSecond = -1;
+	private long heapUsedBytes;
+	private long lastSampleNanos;
+
+	private Writer samplesWriter;
+	private Writer eventsWriter;
+
+	public Metrics(GameLoop gameLoop, long startNanos) {
+		this.gameLoop = gameLoop;
+		this.startNanos = startNanos;
+		this.lastSampleNanos = startNanos;
+	}
+
+	/** Records duration of the named operation, e.g. landscape generation. */
+	public synchronized void recordDuration(String name, long nanos) {
+		long[] duration = durations.computeIfAbsent(name, n -> new long[4]);
+		duration[0] = nanos;
+		duration[1] = Math.max(duration[1], nanos);
+		duration[2] += nanos;
+		duration[3]++;
+		if (eventsWriter != null) {
+			write(eventsWriter, String.format(Locale.ROOT, "%d,%s,%.3f",
+				(System.nanoTime() - startNanos) / 1_000_000, name, nanos / 1e6));
+		}
+	}
+
+	/** Last recorded duration of the operation in nanos, -1 if it was not recorded yet. */
+	public synchronized long lastDuration(String name) {
+		long[] duration = durations.get(name);
+		return duration != null ? duration[0] : -1;
+	}
+
+	public synchronized void setGauge(String name, long value) {
+		gauges.put(name, value);
+	}
+
+	/** Value of the gauge, 0 if it was not set. */
+	public synchronized long gauge(String name) {
+		Long value = gauges.get(name);
+		return value != null ? value : 0;
+	}
+
+	/** Reads GC and memory statistics and writes the sample row if recording. */
+	public synchronized void sample(long nowNanos) {
+		long count = 0;
+		long millis = 0;
+		for (GarbageCollectorMXBean collector : garbageCollectors) {
+			count += Math.max(0, collector.getCollectionCount());
+			millis += Math.max(0, collector.getCollectionTime());
+		}
+		gcCount = count;
+		gcMillis = millis;
+		heapUsedBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+
+		long allocated = totalAllocatedBytes();
+		if (allocated >= 0 && allocatedBytes >= 0 && nowNanos > lastSampleNanos) {
+			// bytes of threads that ended since the last sample are lost, the rate can only be lower
+			allocationBytesPerSecond = Math.max(0, (allocated - allocatedBytes) * 1_000_000_000 / (nowNanos - lastSampleNanos));
+		}
+		allocatedBytes = allocated;
+		lastSampleNanos = nowNanos;
+
+		if (samplesWriter != null) {
+			write(samplesWriter, sampleRow(nowNanos));
+		}
+	}
+
+	/** Sum of bytes allocated by the live threads, -1 if the JVM does not support it. */
+	private long totalAllocatedBytes() {
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+
+		com.sun.management.ThreadMXBean hotspotThreads = (com.sun.management.ThreadMXBean) threads;
+		if (!hotspotThreads.isThreadAllocatedMemorySupported() || !hotspotThreads.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		long sum = 0;
+		for (long allocated : hotspotThreads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+			sum += Math.max(0, allocated);
+		}
+		return sum;
+	}
+
+	private String sampleRow(long nowNanos) {
+		FrameStats frames = gameLoop.frameStats();
+		return String.format(Locale.ROOT, "%d,%.3f,%.3f,%.3f,%.3f,%d,%d,%d,%d,%d,%d,%.3f,%.3f,%d,%d",
+			(nowNanos - startNanos) / 1_000_000,
+			frames.minNanos() / 1e6, frames.avgNanos() / 1e6, frames.p99Nanos() / 1e6, frames.maxNanos() / 1e6,
+			frames.totalFrames(), frames.droppedFrames(), gameLoop.ticks(), gameLoop.skippedTicks(),
+			gcCount, gcMillis, allocationBytesPerSecond / 1e6, heapUsedBytes / 1e6,
+			gauge(TRIANGLES), gauge(VERTICES));
+	}
+
+	/** Multi-line summary for the on-screen overlay, values are from the last {@link #sample(long)}. */
+	public synchronized String overlayText() {
+		FrameStats frames = gameLoop.frameStats();
+		StringBuilder sb = new StringBuilder(512);
+		sb.append(String.format(Locale.ROOT, "frame ms  min %.1f  avg %.1f  p99 %.1f  max %.1f%n",
+			frames.minNanos() / 1e6, frames.avgNanos() / 1e6, frames.p99Nanos() / 1e6, frames.maxNanos() / 1e6));
+		sb.append("frames ").append(frames.totalFrames())
+			.append("  dropped ").append(frames.droppedFrames())
+			.append("  ticks ").append(gameLoop.ticks())
+			.append("  skipped ").append(gameLoop.skippedTicks()).append('\n');
+
+		int[] histogram = frames.histogram(HISTOGRAM_LIMITS_MS, new int[HISTOGRAM_LIMITS_MS.length + 1]);
+		sb.append("histogram");
+		for (int i = 0; i < histogram.length; i++) {
+			sb.append("  ").append(i < HISTOGRAM_LIMITS_MS.length
+				? "<" + (int) HISTOGRAM_LIMITS_MS[i] : ">=" + (int) HISTOGRAM_LIMITS_MS[i - 1])
+				.append(": ").append(histogram[i]);
+		}
+		sb.append('\n');
+
+		sb.append(String.format(Locale.ROOT, "gc %d (%d ms)  alloc %.1f MB/s  heap %.1f MB%n",
+			gcCount, gcMillis, allocationBytesPerSecond / 1e6, heapUsedBytes / 1e6));
+		sb.append("triangles ").append(gauge(TRIANGLES)).append("  vertices ").append(gauge(VERTICES));
+		for (Map.Entry<String, long[]> duration : durations.entrySet()) {
+			long[] values = duration.getValue();
+			sb.append(String.format(Locale.ROOT, "%n%s ms  last %.1f  max %.1f  avg %.1f (%d)", duration.getKey(),
+				values[0] / 1e6, values[1] / 1e6, values[2] / 1e6 / values[3], values[3]));
+		}
+		return sb.toString();
+	}
+
+	public synchronized boolean isRecording() {
+		return samplesWriter != null;
+	}
+
+	/** Starts writing samples and events into the new CSV files in the directory. */
+	public synchronized void startRecording(Path directory, String prefix) throws IOException {
+		stopRecording();
+		Files.createDirectories(directory);
+		samplesWriter = Files.newBufferedWriter(directory.resolve(prefix + "-samples.csv"), StandardCharsets.UTF_8);
+		eventsWriter = Files.newBufferedWriter(directory.resolve(prefix + "-events.csv"), StandardCharsets.UTF_8);
+		write(samplesWriter, SAMPLES_HEADER);
+		write(eventsWriter, EVENTS_HEADER);
+		for (Map.Entry<String, long[]> duration : durations.entrySet()) {
+			write(eventsWriter, String.format(Locale.ROOT, "%d,%s,%.3f", 0, duration.getKey(), duration.getValue()[0] / 1e6));
+		}
+	}
+
+	public synchronized void stopRecording() {
+		close(samplesWriter);
+		close(eventsWriter);
+		samplesWriter = null;
+		eventsWriter = null;
+	}
+
+	/** Writes frame times of the frame window into the CSV file, oldest first. */
+	public void exportFrames(Path file) throws IOException {
+		long[] frameNanos = new long[FrameStats.WINDOW];
+		int count = gameLoop.frameStats().copyWindow(frameNanos);
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writer.write("frame,frame_ms");
+			writer.newLine();
+			for (int i = 0; i < count; i++) {
+				writer.write(String.format(Locale.ROOT, "%d,%.3f", i, frameNanos[i] / 1e6));
+				writer.newLine();
+			}
+		}
+	}
+
+	private void write(Writer writer, String line) {
+		try {
+			writer.write(line);
+			writer.write('\n');
+			writer.flush();
+		} catch (IOException e) {
+			log.fine("Metrics recording stopped: " + e);
+			stopRecording();
+		}
+	}
+
+	private static void close(Writer writer) {
+		if (writer == null) return;
+		try {
+			writer.close();
+		} catch (IOException e) {
+			log.fine("Metrics file not closed properly: " + e);
+		}
+	}
+}
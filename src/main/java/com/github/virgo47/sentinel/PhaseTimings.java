@@ -0,0 +1,61 @@
+package com.github.virgo47.sentinel;
+
+/**
+ * Accumulated time spent in phases of landscape generation and meshing, used by benchmarks
+ * to break down where the time goes. Timing calls are not free (the cascade phase is entered per
+ * changed square), so they are done only when system property {@code sentinel.phaseTimings}
+ * is true - {@link #ENABLED} is a static final constant and JIT removes the timing code otherwise.
+ */
+public final class PhaseTimings {
+
+	public static final boolean ENABLED = Boolean.getBoolean("sentinel.phaseTimings");
+
+	public enum Phase {
+		/** Random walk of the patches, excluding cascaded fixes. */
+		PATCH_WALK,
+		/** Cascaded fixes of height difference and joins of patches. */
+		CASCADE,
+		/** Mesh points (heights) preparation. */
+		MESH_POINTS,
+		/** Mesh triangulation and face generation. */
+		MESH_FACES,
+		/** Copying of prepared mesh arrays into the JavaFX mesh. */
+		MESH_UPLOAD,
+		/** Mesh material and texture. */
+		MESH_MATERIAL
+	}
+
+	private final long[] nanos = new long[Phase.values().length];
+
+	public void add(Phase phase, long phaseNanos) {
+		nanos[phase.ordinal()] += phaseNanos;
+	}
+
+	public void add(PhaseTimings other) {
+		for (int i = 0; i < nanos.length; i++) {
+			nanos[i] += other.nanos[i];
+		}
+	}
+
+	public long nanos(Phase phase) {
+		return nanos[phase.ordinal()];
+	}
+
+	public void reset() {
+		for (int i = 0; i < nanos.length; i++) {
+			nanos[i] = 0;
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("PhaseTimings{");
+		for (Phase phase : Phase.values()) {
+			if (phase.ordinal() > 0) {
+				sb.append(", ");
+			}
+			sb.append(phase).append('=').append(nanos[phase.ordinal()] / 1000).append("us");
+		}
+		return sb.append('}').toString();
+	}
+}
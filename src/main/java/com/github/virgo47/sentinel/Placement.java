@@ -0,0 +1,261 @@
+package com.github.virgo47.sentinel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Chooses positions of the sentinel, sentries and the player start after the landscape is generated:
+ * <ul>
+ * <li>sentinel stands on one of the highest squares,</li>
+ * <li>sentries stand on high squares (at least the average height of playable squares), not closer
+ * than {@link #MIN_SPACING} squares to the sentinel or each other,</li>
+ * <li>player starts on one of the lowest squares that no watcher can see (from any direction).</li>
+ * </ul>
+ * Height thresholds for both kinds of candidates come from the height histogram maintained during
+ * generation ({@link Landscape#heightCount(int)}) and the candidates come only from the height buckets
+ * above/below the thresholds ({@link Landscape#heightBuckets()}), so the rest of the map is not visited at all.
+ * Best candidates are kept in bounded heaps (O(log k) per candidate), so even a big flat area at the threshold
+ * does not fill the memory. Ties of the same height are broken by a key derived
+ * from the seed, so the result depends only on the landscape and the seed.
+ */
+final class Placement {
+
+	private static final TraceLogger log = TraceLogger.getLogger(Placement.class);
+
+	/** Minimal distance (in squares) of the sentries from the sentinel and each other. */
+	static final int MIN_SPACING = 4;
+	/** Eye height of watchers above the surface, the same like used for {@link Watcher} by the game. */
+	static final double EYE_HEIGHT = 1;
+	/** Candidates collected per placed watcher, the spacing rule skips some of them. */
+	private static final int CANDIDATES_PER_WATCHER = 16;
+	private static final int PLAYER_CANDIDATES = 256;
+
+	private final Landscape landscape;
+	private final int seed;
+	private final int sentryCount;
+
+	private Landscape.Position sentinel;
+	private final List<Landscape.Position> sentries = new ArrayList<>();
+	private Landscape.Position playerStart;
+
+	Placement(Landscape landscape, int seed, int sentryCount) {
+		this.landscape = landscape;
+		this.seed = seed;
+		this.sentryCount = sentryCount;
+	}
+
+	void run() {
+		int highLimit = (sentryCount + 1) * CANDIDATES_PER_WATCHER;
+		int highThreshold = highThreshold(highLimit);
+		int lowThreshold = lowThreshold(PLAYER_CANDIDATES);
+		if (log.isFineEnabled()) {
+			log.fine("Placement thresholds: high " + highThreshold + ", low " + lowThreshold);
+		}
+
+		// heaps have the worst kept candidate on top, so it can be replaced by a better one
+		PriorityQueue<Candidate> high = new PriorityQueue<>();
+		PriorityQueue<Candidate> low = new PriorityQueue<>(Collections.reverseOrder());
+		HeightBuckets buckets = landscape.heightBuckets();
+		for (int height = landscape.maxCountedHeight(); height >= highThreshold; height--) {
+			for (int index = buckets.first(height); index != HeightBuckets.NONE; index = buckets.next(index)) {
+				offer(high, new Candidate(index, height, tieBreak(index)), highLimit, 1);
+			}
+		}
+		for (int height = landscape.minCountedHeight(); height <= lowThreshold; height++) {
+			for (int index = buckets.first(height); index != HeightBuckets.NONE; index = buckets.next(index)) {
+				offer(low, new Candidate(index, height, tieBreak(index)), PLAYER_CANDIDATES, -1);
+			}
+		}
+		List<Candidate> highest = drain(high);
+		Collections.reverse(highest);
+		List<Candidate> lowest = drain(low);
+		Collections.reverse(lowest);
+
+		List<Candidate> watchers = new ArrayList<>();
+		for (Candidate candidate : highest) {
+			if (watchers.size() > sentryCount) break;
+			if (watchers.isEmpty() || isSpaced(candidate, watchers)) {
+				watchers.add(candidate);
+			}
+		}
+		if (watchers.isEmpty()) {
+			throw new IllegalStateException("No playable square for the sentinel");
+		}
+		sentinel = position(watchers.get(0));
+		for (Candidate sentry : watchers.subList(1, watchers.size())) {
+			sentries.add(position(sentry));
+		}
+		if (sentries.size() < sentryCount && log.isFineEnabled()) {
+			log.fine("Only " + sentries.size() + " of " + sentryCount + " sentries placed");
+		}
+
+		TerrainQuery query = new TerrainQuery(landscape);
+		for (Candidate candidate : lowest) {
+			if (!isWatcher(candidate, watchers) && !isSeen(candidate, watchers, query)) {
+				playerStart = position(candidate);
+				break;
+			}
+		}
+		if (playerStart == null) {
+			// all low squares seen, player has to start there anyway, but not on a watcher
+			for (Candidate candidate : lowest) {
+				if (!isWatcher(candidate, watchers)) {
+					playerStart = position(candidate);
+					break;
+				}
+			}
+			if (playerStart == null) {
+				throw new IllegalStateException("No playable square for the player start");
+			}
+			if (log.isFineEnabled()) {
+				log.fine("No hidden player start, using the lowest free square " + playerStart);
+			}
+		}
+	}
+
+	/**
+	 * Adds the candidate to the heap keeping at most limit candidates, order is 1 to keep the highest ones,
+	 * -1 to keep the lowest ones. The worst candidate is on top of the heap.
+	 */
+	private static void offer(PriorityQueue<Candidate> heap, Candidate candidate, int limit, int order) {
+		if (heap.size() < limit) {
+			heap.add(candidate);
+		} else if (candidate.compareTo(heap.peek()) * order > 0) {
+			heap.poll();
+			heap.add(candidate);
+		}
+	}
+
+	/** Polls all the candidates from the heap, worst first. */
+	private static List<Candidate> drain(PriorityQueue<Candidate> heap) {
+		List<Candidate> candidates = new ArrayList<>(heap.size());
+		while (!heap.isEmpty()) {
+			candidates.add(heap.poll());
+		}
+		return candidates;
+	}
+
+	/** Highest height with at least the count of playable squares at that height or above, not below the average. */
+	private int highThreshold(int count) {
+		int maxHeight = landscape.maxCountedHeight();
+		long sum = 0;
+		int playable = 0;
+		for (int height = landscape.minCountedHeight(); height <= maxHeight; height++) {
+			sum += (long) height * landscape.heightCount(height);
+			playable += landscape.heightCount(height);
+		}
+		int average = playable > 0 ? (int) Math.ceil((double) sum / playable) : 0;
+		int found = 0;
+		for (int height = maxHeight; height > average; height--) {
+			found += landscape.heightCount(height);
+			if (found >= count) {
+				return height;
+			}
+		}
+		return average;
+	}
+
+	/** Lowest height with at least the count of playable squares at that height or below. */
+	private int lowThreshold(int count) {
+		int maxHeight = landscape.maxCountedHeight();
+		int found = 0;
+		for (int height = landscape.minCountedHeight(); height < maxHeight; height++) {
+			found += landscape.heightCount(height);
+			if (found >= count) {
+				return height;
+			}
+		}
+		return maxHeight;
+	}
+
+	private boolean isSpaced(Candidate candidate, List<Candidate> placed) {
+		for (Candidate other : placed) {
+			int dx = x(candidate) - x(other);
+			int dy = y(candidate) - y(other);
+			if (dx * dx + dy * dy < MIN_SPACING * MIN_SPACING) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean isWatcher(Candidate candidate, List<Candidate> watchers) {
+		for (Candidate watcher : watchers) {
+			if (watcher.index == candidate.index) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isSeen(Candidate candidate, List<Candidate> watchers, TerrainQuery query) {
+		int x = x(candidate);
+		int y = y(candidate);
+		double z = query.squareCenterHeight(x, y);
+		for (Candidate watcher : watchers) {
+			int watcherX = x(watcher);
+			int watcherY = y(watcher);
+			double eyeZ = query.squareCenterHeight(watcherX, watcherY) + EYE_HEIGHT;
+			if (query.isVisible(watcherX + 0.5, watcherY + 0.5, eyeZ, x + 0.5, y + 0.5, z)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Deterministic pseudo-random order of squares, differs for different seeds. */
+	private int tieBreak(int index) {
+		return TiledGeneration.tileSeed(seed, index, 0);
+	}
+
+	private int x(Candidate candidate) {
+		return candidate.index / landscape.sizeY;
+	}
+
+	private int y(Candidate candidate) {
+		return candidate.index % landscape.sizeY;
+	}
+
+	private Landscape.Position position(Candidate candidate) {
+		return new Landscape.Position(x(candidate), y(candidate));
+	}
+
+	Landscape.Position sentinel() {
+		return sentinel;
+	}
+
+	List<Landscape.Position> sentries() {
+		return sentries;
+	}
+
+	Landscape.Position playerStart() {
+		return playerStart;
+	}
+
+	/** Square ordered by height, then by the tie break key and index. */
+	private static final class Candidate implements Comparable<Candidate> {
+
+		final int index;
+		final int height;
+		final int tieBreak;
+
+		Candidate(int index, int height, int tieBreak) {
+			this.index = index;
+			this.height = height;
+			this.tieBreak = tieBreak;
+		}
+
+		@Override
+		public int compareTo(Candidate other) {
+			if (height != other.height) {
+				return Integer.compare(height, other.height);
+			}
+			if (tieBreak != other.tieBreak) {
+				return Integer.compare(tieBreak, other.tieBreak);
+			}
+			return Integer.compare(index, other.index);
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package com.github.virgo47.sentinel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * World without fixed size, paged into regions of regionSize x regionSize squares. Region is generated
+ * from the world seed and its coordinates when a query or {@link #touch(double, double, int)} reaches it
+ * for the first time. At most maxResidentRegions are kept in memory, least recently used regions are
+ * evicted - and written into the spill directory if there is one, so they don't have to be generated again.
+ * Evicted region generated again is the same, so the memory stays constant however far the player goes.
+ * <p>
+ * Regions are generated independently, so seams are made consistent locally: points on each region edge
+ * are given by a seam profile derived only from the seed and the edge, shared by both regions along the edge
+ * (see {@link #seamProfile(int, int, int)}). Neighbour points of the profile always differ, so the squares
+ * along region edges are slopes. {@link Landscape.Config#maxHeightDifference} applies to playable squares
+ * two squares apart, so any such pair across a seam contains a slope and the rule holds without looking
+ * at the neighbour region. Squares inside the region are kept as generated.
+ * <p>
+ * World coordinates of squares and points are ints, region of the square x is {@code floorDiv(x, regionSize)}.
+ * Points on a seam belong to both regions and have the same height in both.
+ */
+public final class RegionWorld {
+
+	private static final TraceLogger log = TraceLogger.getLogger(RegionWorld.class);
+
+	private static final int EDGE_VERTICAL = 0;
+	private static final int EDGE_HORIZONTAL = 1;
+
+	public final Landscape.Config config;
+	public final int seed;
+	public final int regionSize;
+
+	private final int maxResidentRegions;
+	private final Path spillDirectory;
+
+	/** Access ordered, so the eldest entry is the least recently used region. */
+	private final LinkedHashMap<Long, Landscape> resident = new LinkedHashMap<>(16, 0.75f, true);
+
+	private int generatedCount;
+	private int spilledCount;
+	private int unspilledCount;
+
+	/**
+	 * @param spillDirectory directory for evicted regions (must exist), null to generate evicted regions again
+	 */
+	public RegionWorld(Landscape.Config config, int seed, int regionSize, int maxResidentRegions, Path spillDirectory) {
+		if (regionSize < 2) throw new IllegalArgumentException("regionSize must be at least 2, is " + regionSize);
+		if (maxResidentRegions < 1) {
+			throw new IllegalArgumentException("maxResidentRegions must be higher than 0, is " + maxResidentRegions);
+		}
+		this.config = config;
+		this.seed = seed;
+		this.regionSize = regionSize;
+		this.maxResidentRegions = maxResidentRegions;
+		this.spillDirectory = spillDirectory;
+	}
+
+	/** Height of the point (square corner) in world coordinates. */
+	public synchronized int pointHeight(int x, int y) {
+		Landscape region = region(regionOf(x), regionOf(y));
+		return region.pointGrid().get(Math.floorMod(x, regionSize), Math.floorMod(y, regionSize));
+	}
+
+	/** Height of the playable square in world coordinates, see {@link #isPlayable(int, int)}. */
+	public synchronized int squareHeight(int x, int y) {
+		Landscape region = region(regionOf(x), regionOf(y));
+		return region.gameplanGrid().get(Math.floorMod(x, regionSize), Math.floorMod(y, regionSize));
+	}
+
+	public synchronized boolean isPlayable(int x, int y) {
+		return squareHeight(x, y) != Landscape.SQUARE_UNPLAYABLE;
+	}
+
+	/**
+	 * Makes regions within the radius (in regions) around the world position resident, e.g. around the camera,
+	 * so the following queries don't wait for generation. Nearest region is touched last, so it is the
+	 * last one to be evicted.
+	 */
+	public synchronized void touch(double x, double y, int radius) {
+		int centerX = regionOf((int) Math.floor(x));
+		int centerY = regionOf((int) Math.floor(y));
+		for (int distance = radius; distance >= 0; distance--) {
+			for (int regionX = centerX - distance; regionX <= centerX + distance; regionX++) {
+				for (int regionY = centerY - distance; regionY <= centerY + distance; regionY++) {
+					if (Math.max(Math.abs(regionX - centerX), Math.abs(regionY - centerY)) == distance) {
+						region(regionX, regionY);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Region landscape, loaded or generated if it is not resident. Region should not be changed, changes are
+	 * lost when the region is evicted (unless it was spilled already) and would break the seams anyway.
+	 */
+	public synchronized Landscape region(int regionX, int regionY) {
+		Long key = key(regionX, regionY);
+		Landscape region = resident.get(key);
+		if (region == null) {
+			region = load(regionX, regionY);
+			resident.put(key, region);
+			evict();
+		}
+		return region;
+	}
+
+	public int regionOf(int coordinate) {
+		return Math.floorDiv(coordinate, regionSize);
+	}
+
+	private Landscape load(int regionX, int regionY) {
+		if (spillDirectory != null) {
+			Path file = spillFile(regionX, regionY);
+			if (Files.isRegularFile(file)) {
+				try {
+					Landscape region = LandscapeFile.read(file);
+					if (region.sizeX == regionSize && region.sizeY == regionSize && region.config.equals(config)) {
+						unspilledCount++;
+						return region;
+					}
+				} catch (IOException e) {
+					log.fine("Spilled region " + file + " is not readable, generating again: " + e);
+				}
+			}
+		}
+		return generate(regionX, regionY);
+	}
+
+	private Landscape generate(int regionX, int regionY) {
+		Landscape region = new Landscape(regionSize, regionSize, config);
+		region.generate(TiledGeneration.tileSeed(seed, regionX, regionY));
+		setEdges(region.pointGrid(),
+			seamProfile(regionX, regionY, EDGE_HORIZONTAL),
+			seamProfile(regionX, regionY + 1, EDGE_HORIZONTAL),
+			seamProfile(regionX, regionY, EDGE_VERTICAL),
+			seamProfile(regionX + 1, regionY, EDGE_VERTICAL));
+		region.makeEdgesUnplayable();
+		generatedCount++;
+		if (log.isFineEnabled()) {
+			log.fine("Region " + regionX + ',' + regionY + " generated, resident " + (resident.size() + 1));
+		}
+		return region;
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<Long, Landscape>> eldest = resident.entrySet().iterator();
+		while (resident.size() > maxResidentRegions) {
+			Map.Entry<Long, Landscape> entry = eldest.next();
+			eldest.remove();
+			if (spillDirectory != null) {
+				long key = entry.getKey();
+				spill(entry.getValue(), spillFile((int) (key >> 32), (int) key));
+			}
+		}
+	}
+
+	private void spill(Landscape region, Path file) {
+		if (Files.isRegularFile(file)) return; // region is the same after it was generated again
+
+		try {
+			LandscapeFile.write(region, file, LandscapeFile.Encoding.RAW);
+			spilledCount++;
+		} catch (IOException e) {
+			log.fine("Region " + file + " not spilled, it will be generated again: " + e);
+		}
+	}
+
+	private Path spillFile(int regionX, int regionY) {
+		return spillDirectory.resolve("region-v" + Landscape.GENERATOR_VERSION + '-' + seed + '-' + regionSize
+			+ '-' + regionX + '_' + regionY + ".bin");
+	}
+
+	/**
+	 * Heights of regionSize + 1 points along the edge starting at the region corner at world point x, y.
+	 * Vertical edge (x = const) goes north, horizontal (y = const) goes east. Height is a random walk with
+	 * even steps up to maxHeightDifference, returning to 0 at both corners, plus 1 for points with odd x + y.
+	 * Neighbour points on the edge then always differ, so squares along the edge are never flat.
+	 * Corners depend only on their coordinates, so all four regions around the corner agree.
+	 */
+	int[] seamProfile(int regionX, int regionY, int orientation) {
+		int[] profile = new int[regionSize + 1];
+		int halfStep = config.maxHeightDifference / 2;
+		int halfLimit = Math.max(0, (config.maxHeight - 1) / 2);
+		Random random = new Random(TiledGeneration.tileSeed(TiledGeneration.tileSeed(seed, regionX, regionY), orientation, 1));
+		int parity = (regionX + regionY) * regionSize & 1;
+		int walk = 0;
+		for (int i = 0; i <= regionSize; i++) {
+			if (i > 0) {
+				walk += 2 * (random.nextInt(2 * halfStep + 1) - halfStep);
+				int limit = 2 * Math.min(halfLimit, halfStep * Math.min(i, regionSize - i));
+				walk = Math.max(-limit, Math.min(limit, walk));
+			}
+			profile[i] = walk + (parity + i & 1);
+		}
+		return profile;
+	}
+
+	/** Sets edge points to the profiles - south/north go east along y = 0/max, west/east go north along x = 0/max. */
+	static void setEdges(HeightGrid points, int[] south, int[] north, int[] west, int[] east) {
+		for (int x = 0; x < points.sizeX; x++) {
+			points.set(points.index(x, 0), south[x]);
+			points.set(points.index(x, points.sizeY - 1), north[x]);
+		}
+		for (int y = 0; y < points.sizeY; y++) {
+			points.set(points.index(0, y), west[y]);
+			points.set(points.index(points.sizeX - 1, y), east[y]);
+		}
+	}
+
+	private static long key(int regionX, int regionY) {
+		return ((long) regionX << 32) | (regionY & 0xffffffffL);
+	}
+
+	public synchronized int residentCount() {
+		return resident.size();
+	}
+
+	/** Number of regions generated (including those generated again after eviction). */
+	public synchronized int generatedCount() {
+		return generatedCount;
+	}
+
+	/** Number of evicted regions written into the spill directory. */
+	public synchronized int spilledCount() {
+		return spilledCount;
+	}
+
+	/** Number of regions read back from the spill directory instead of generating them. */
+	public synchronized int unspilledCount() {
+		return unspilledCount;
+	}
+}
@@ -1,26 +1,32 @@
 package com.github.virgo47.sentinel;
 
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Formatter;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.application.ConditionalFeature;
 import javafx.application.Platform;
 import javafx.beans.value.ObservableValue;
-import javafx.concurrent.ScheduledService;
-import javafx.concurrent.Task;
+import javafx.geometry.Insets;
 import javafx.geometry.Orientation;
+import javafx.geometry.Pos;
 import javafx.scene.AmbientLight;
 import javafx.scene.Camera;
 import javafx.scene.Cursor;
@@ -49,8 +55,10 @@ import javafx.scene.layout.VBox;
 import javafx.scene.media.Media;
 import javafx.scene.media.MediaPlayer;
 import javafx.scene.paint.Color;
+import javafx.scene.paint.Material;
 import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.Box;
+import javafx.scene.text.Font;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextAlignment;
 import javafx.scene.transform.Rotate;
@@ -71,6 +79,40 @@ public class SentinelFx extends Application {
 	public static final Color Z_COLOR = Color.GREEN;
 	public static final double FLY_SPEED = 3;
 	public static final double WALK_SPEED = 0.5;
+	/** Height of the eye above the surface when walking, in landscape units, see {@link TerrainWalker}. */
+	public static final double WALK_EYE_HEIGHT = 0.5;
+
+	/** Renders the landscape in chunks with culling and LOD, see {@link LandscapeChunksView}. */
+	public static final boolean CHUNKED_LANDSCAPE = Boolean.getBoolean("sentinel.chunks");
+	/** Builds the whole landscape mesh with normals, see {@link LandscapeLoader#normals}. */
+	public static final boolean LANDSCAPE_NORMALS = Boolean.getBoolean("sentinel.normals");
+	/** Keeps regions of the endless world around the camera resident, see {@link RegionWorld}. */
+	public static final boolean REGION_WORLD = Boolean.getBoolean("sentinel.regions");
+	/** Region size in squares, see {@link RegionWorld#regionSize}. */
+	public static final int REGION_SIZE = 64;
+	/** Regions around the camera region made resident, see {@link RegionWorld#touch(double, double, int)}. */
+	public static final int REGION_TOUCH_RADIUS = 1;
+	/** Resident regions, must hold at least the touched ones, (2 * radius + 1)^2. */
+	public static final int MAX_RESIDENT_REGIONS = 16;
+
+	/** Memory limit of the landscape cache, see {@link LandscapeCache}. */
+	public static final long LANDSCAPE_CACHE_BYTES = 64L << 20;
+	/** Sentries placed on the landscape, see {@link Landscape#placePositions(int, int)}. */
+	public static final int SENTRY_COUNT = 3;
+
+	/** Simulation step of the game loop, speeds are per step. */
+	public static final long SIMULATION_STEP_NANOS = 20_000_000;
+	/** Steps run at most per frame, time over that is skipped, see {@link GameLoop}. */
+	public static final int MAX_STEPS_PER_FRAME = 10;
+	/** Frame time of the JavaFX pulse (60 fps), longer frames are counted as dropped. */
+	public static final long TARGET_FRAME_NANOS = 1_000_000_000 / 60;
+
+	/** How often the metrics overlay is updated (and the metrics sampled), see {@link Metrics}. */
+	public static final long METRICS_PERIOD_NANOS = 500_000_000;
+	/** Directory for recorded metrics, can be set by {@code sentinel.metrics.dir} property. */
+	public static final Path METRICS_DIRECTORY = Paths.get(System.getProperty("sentinel.metrics.dir", "."));
+
+	private static final DateTimeFormatter METRICS_FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
 
 	public static final int STILL = 0;
 	public static final int MOVE = 1;
@@ -82,9 +124,30 @@ public class SentinelFx extends Application {
 	private int movingLeft;
 
 	private double speed = FLY_SPEED;
+	private boolean walking;
 
 	private boolean spaceClick = false;
 	private Crosshair crosshair;
+	private LandscapeChunksView landscapeChunksView;
+	private GameLoop gameLoop;
+	private Metrics metrics;
+	private Text metricsOverlay;
+	private LandscapeMeshView landscapeMeshView;
+	private TerrainWalker terrainWalker;
+	/** World around the current landscape when {@link #REGION_WORLD} is on, touched when the camera moves to other region. */
+	private RegionWorld regionWorld;
+	/** Landscape views are scaled around this point, needed to convert the camera position to landscape coordinates. */
+	private final double[] landscapePivot = new double[3];
+	private final LandscapeCache landscapeCache = new LandscapeCache(
+		LandscapeCache.DEFAULT_DIRECTORY, LANDSCAPE_CACHE_BYTES, ForkJoinPool.commonPool());
+	private final LandscapeLoader landscapeLoader = new LandscapeLoader(
+		landscapeCache, MaterialCache.DEFAULT, LandscapeMeshView.TEXTURE, SentinelFx::terrainAtlas, ForkJoinPool.commonPool());
+	/** Currently shown landscape view and its material acquired from {@link MaterialCache#DEFAULT}. */
+	private Node landscapeNode;
+	private Material landscapeMaterial;
+	private int landscapeSeed;
+	private Text loadingText;
+	private LandscapeLoader.Stage shownLoadingStage = LandscapeLoader.Stage.DONE;
 
 	@Override
 	public void start(final Stage stage) throws Exception {
@@ -100,13 +163,24 @@ public class SentinelFx extends Application {
 		Menu mainMenu = new Menu("Sentinel");
 		MenuItem anyAction = new MenuItem("Any Test Action");
 		MenuItem fullscreenCmd = new MenuItem("Toggle Fullscreen");
+		MenuItem frameStatsCmd = new MenuItem("Log Frame Statistics");
+		MenuItem metricsOverlayCmd = new MenuItem("Toggle Metrics Overlay");
+		MenuItem metricsRecordingCmd = new MenuItem("Toggle Metrics Recording");
+		MenuItem exportFramesCmd = new MenuItem("Export Frame Times");
+		MenuItem nextLandscapeCmd = new MenuItem("Next Landscape");
 		MenuItem exitCmd = new MenuItem("Exit");
-		mainMenu.getItems().addAll(anyAction, fullscreenCmd, exitCmd);
+		mainMenu.getItems().addAll(anyAction, nextLandscapeCmd, fullscreenCmd, frameStatsCmd,
+			metricsOverlayCmd, metricsRecordingCmd, exportFramesCmd, exitCmd);
 		menuBar.getMenus().add(mainMenu);
 
 		exitCmd.setOnAction(e -> stage.close());
 		fullscreenCmd.setOnAction(e -> stage.setFullScreen(!stage.isFullScreen()));
 		fullscreenCmd.setAccelerator(KEY_COMBINATION_FULLSCREEN);
+		frameStatsCmd.setOnAction(e -> log.info(String.valueOf(gameLoop)));
+		metricsOverlayCmd.setAccelerator(new KeyCodeCombination(KeyCode.F3));
+		metricsOverlayCmd.setOnAction(e -> metricsOverlay.setVisible(!metricsOverlay.isVisible()));
+		metricsRecordingCmd.setOnAction(e -> toggleMetricsRecording());
+		exportFramesCmd.setOnAction(e -> exportFrameTimes());
 
 		anyAction.setAccelerator(new KeyCodeCombination(KeyCode.ESCAPE));
 		anyAction.setOnAction(e -> Platform.runLater(() -> layout2d.setTop(layout2d.getTop() != null ? null : menuBar)));
@@ -120,6 +194,21 @@ public class SentinelFx extends Application {
 		text.setTranslateY(-100);
 		group2d.getChildren().add(text);
 
+		metricsOverlay = new Text();
+		metricsOverlay.setFont(Font.font("Monospaced", 12));
+		metricsOverlay.setFill(Color.YELLOW);
+		metricsOverlay.setVisible(false);
+		StackPane.setAlignment(metricsOverlay, Pos.TOP_LEFT);
+		StackPane.setMargin(metricsOverlay, new Insets(30, 0, 0, 10));
+		group2d.getChildren().add(metricsOverlay);
+
+		loadingText = new Text();
+		loadingText.setFont(Font.font(20));
+		loadingText.setVisible(false);
+		StackPane.setAlignment(loadingText, Pos.BOTTOM_CENTER);
+		StackPane.setMargin(loadingText, new Insets(0, 0, 40, 0));
+		group2d.getChildren().add(loadingText);
+
 		// 3D
 		Group root3d = new Group();
 		SubScene scene3d = new SubScene(root3d, 1600, 900, true, SceneAntialiasing.BALANCED);
@@ -145,23 +234,22 @@ public class SentinelFx extends Application {
 		CameraXform cameraNode = new CameraXform();
 		cameraNode.getChildren().add(camera);
 
-		// TODO can be replaced with Timeline?
-		ScheduledService<Void> svc = new ScheduledService<Void>() {
+		gameLoop = new GameLoop(new CameraMovement(cameraNode, camera, scene3d),
+			SIMULATION_STEP_NANOS, MAX_STEPS_PER_FRAME, TARGET_FRAME_NANOS);
+		metrics = new Metrics(gameLoop, System.nanoTime());
+		new AnimationTimer() {
+			private long lastMetricsNanos;
+
 			@Override
-			protected Task<Void> createTask() {
-				return new Task<Void>() {
-					@Override
-					protected Void call() throws Exception {
-						Platform.runLater(() -> cameraNode.moveWithYaw(
-							(movingForward - movingBack) * speed,
-							(movingRight - movingLeft) * speed));
-						return null;
-					}
-				};
+			public void handle(long now) {
+				gameLoop.frame(now);
+				updateLoadingText();
+				if (now - lastMetricsNanos >= METRICS_PERIOD_NANOS && (metricsOverlay.isVisible() || metrics.isRecording())) {
+					lastMetricsNanos = now;
+					updateMetrics(now);
+				}
 			}
-		};
-		svc.setPeriod(Duration.millis(20));
-		svc.start();
+		}.start();
 
 		DoubleControl xControl = new DoubleControl("X", -1000, 1000, 0);
 		DoubleControl yControl = new DoubleControl("Y", -1000, 1000, 0);
@@ -214,7 +302,9 @@ public class SentinelFx extends Application {
 			"-fx-border-width: 2px;" +
 			"-fx-padding: 5px;");
 
-		buildLandscape(root3d);
+		landscapeLoader.normals = LANDSCAPE_NORMALS;
+		loadLandscape(root3d, 0);
+		nextLandscapeCmd.setOnAction(e -> loadLandscape(root3d, landscapeSeed + 1));
 
 		cameraNode.invertMouse = true;
 
@@ -310,7 +400,8 @@ public class SentinelFx extends Application {
 			movingLeft = move;
 		}
 		if (keycode == KeyCode.A) {
-			speed = move == MOVE ? WALK_SPEED : FLY_SPEED;
+			walking = move == MOVE;
+			speed = walking ? WALK_SPEED : FLY_SPEED;
 		}
 	}
 
@@ -320,17 +411,9 @@ public class SentinelFx extends Application {
 	}
 
 	private void buildAxes(Group group3d) {
-		final PhongMaterial xMaterial = new PhongMaterial();
-		xMaterial.setDiffuseColor(X_COLOR.darker());
-		xMaterial.setSpecularColor(X_COLOR);
-
-		final PhongMaterial yMaterial = new PhongMaterial();
-		yMaterial.setDiffuseColor(Y_COLOR.darker());
-		yMaterial.setSpecularColor(Y_COLOR);
-
-		final PhongMaterial zMaterial = new PhongMaterial();
-		zMaterial.setDiffuseColor(Z_COLOR.darker());
-		zMaterial.setSpecularColor(Z_COLOR);
+		final PhongMaterial xMaterial = MaterialCache.DEFAULT.acquireColor(X_COLOR);
+		final PhongMaterial yMaterial = MaterialCache.DEFAULT.acquireColor(Y_COLOR);
+		final PhongMaterial zMaterial = MaterialCache.DEFAULT.acquireColor(Z_COLOR);
 
 		final Box xAxis = new Box(AXIX_LEN, 1, 1);
 		xAxis.setTranslateX(AXIX_LEN / 2);
@@ -346,14 +429,84 @@ public class SentinelFx extends Application {
 		group3d.getChildren().addAll(xAxis, yAxis, zAxis);
 	}
 
-	private void buildLandscape(Group group3d) throws FileNotFoundException {
-		Landscape landscape = new Landscape(32, 24, new Landscape.Config(1, 1, 30, 30));
-		landscape.generate(0);
+	/**
+	 * Starts loading of the landscape in the background, see {@link LandscapeLoader}. The prepared view replaces
+	 * the current one on FX thread, unless another landscape was requested meanwhile.
+	 */
+	private void loadLandscape(Group group3d, int seed) {
+		landscapeSeed = seed;
+		Landscape.Config config = new Landscape.Config(1, 1, 30, 30);
+		if (REGION_WORLD) {
+			regionWorld = new RegionWorld(config, seed, REGION_SIZE, MAX_RESIDENT_REGIONS, null);
+		}
+		LandscapeLoader.Job job = landscapeLoader.load(32, 24, config, seed, SENTRY_COUNT, CHUNKED_LANDSCAPE);
+		job.future().whenCompleteAsync((result, e) -> {
+			if (job != landscapeLoader.current() || e instanceof CancellationException) {
+				if (result != null) {
+					MaterialCache.DEFAULT.release(result.material);
+				}
+				return;
+			}
+
+			if (e != null) {
+				log.log(Level.WARNING, "Landscape loading failed", e);
+				return;
+			}
+			showLandscape(group3d, result);
+		}, Platform::runLater);
+	}
 
-		LandscapeMeshView landscapeMeshView = new LandscapeMeshView();
-		landscapeMeshView.setLandscape(landscape);
+	/** Swaps the prepared landscape into the scene, this is the only part of the loading done on FX thread. */
+	private void showLandscape(Group group3d, LandscapeLoader.Result result) {
+		for (LandscapeLoader.Stage stage : LandscapeLoader.Stage.values()) {
+			if (stage != LandscapeLoader.Stage.DONE) {
+				metrics.recordDuration(stage.name().toLowerCase(Locale.ROOT), result.stageNanos(stage));
+			}
+		}
 
-		group3d.getChildren().add(landscapeMeshView);
+		long start = System.nanoTime();
+		Node view;
+		if (result.chunks != null) {
+			landscapeMeshView = null;
+			landscapeChunksView = new LandscapeChunksView(result.chunks, result.material);
+			view = landscapeChunksView;
+		} else {
+			landscapeChunksView = null;
+			landscapeMeshView = new LandscapeMeshView();
+			landscapeMeshView.setLandscapeMesh(result.meshBuilder, result.material);
+			view = landscapeMeshView;
+		}
+		if (landscapeNode != null) {
+			group3d.getChildren().remove(landscapeNode);
+			MaterialCache.DEFAULT.release(landscapeMaterial);
+		}
+		group3d.getChildren().add(view);
+		landscapeNode = view;
+		landscapeMaterial = result.material;
+
+		terrainWalker = new TerrainWalker(result.landscape, WALK_EYE_HEIGHT);
+		LandscapeChunksView.scalePivot(result.landscape, landscapePivot);
+		metrics.recordDuration("swap", System.nanoTime() - start);
+	}
+
+	/** Atlas of the terrain textures made of the landscape texture, see {@link TerrainTexturing}. */
+	private static TextureAtlas terrainAtlas() {
+		return TextureAtlas.terrain(MaterialCache.loadResource(LandscapeMeshView.TEXTURE),
+			TextureAtlas.TERRAIN_CELL_SIZE, TextureAtlas.TERRAIN_PADDING);
+	}
+
+	/** Shows the stage of the landscape loading, text is changed only when the stage changes. */
+	private void updateLoadingText() {
+		LandscapeLoader.Job job = landscapeLoader.current();
+		LandscapeLoader.Stage stage = job != null ? job.stage() : LandscapeLoader.Stage.DONE;
+		if (stage == shownLoadingStage) return;
+
+		shownLoadingStage = stage;
+		loadingText.setVisible(stage != LandscapeLoader.Stage.DONE);
+		if (job != null) {
+			loadingText.setText("Loading landscape " + job.seed + ": " + stage.name().toLowerCase(Locale.ROOT)
+				+ " (" + Math.round(job.progress() * 100) + "%)");
+		}
 	}
 
 	private Media playSound() throws URISyntaxException {
@@ -414,6 +567,155 @@ public class SentinelFx extends Application {
 		launch(args);
 	}
 
+	private void updateMetrics(long now) {
+		if (landscapeMeshView != null) {
+			metrics.setGauge(Metrics.TRIANGLES, landscapeMeshView.triangleCount());
+			metrics.setGauge(Metrics.VERTICES, landscapeMeshView.vertexCount());
+		} else if (landscapeChunksView != null) {
+			metrics.setGauge(Metrics.TRIANGLES, landscapeChunksView.triangleCount());
+			metrics.setGauge(Metrics.VERTICES, landscapeChunksView.vertexCount());
+		}
+		metrics.sample(now);
+		if (metricsOverlay.isVisible()) {
+			metricsOverlay.setText(metrics.overlayText());
+		}
+	}
+
+	private void toggleMetricsRecording() {
+		if (metrics.isRecording()) {
+			metrics.stopRecording();
+			log.info("Metrics recording stopped");
+			return;
+		}
+		String prefix = "sentinel-metrics-" + LocalDateTime.now().format(METRICS_FILE_TIMESTAMP);
+		try {
+			metrics.startRecording(METRICS_DIRECTORY, prefix);
+			log.info("Metrics recorded into " + METRICS_DIRECTORY.toAbsolutePath().resolve(prefix) + "-*.csv");
+		} catch (IOException e) {
+			log.warning("Metrics recording not started: " + e);
+		}
+	}
+
+	private void exportFrameTimes() {
+		Path file = METRICS_DIRECTORY.resolve(
+			"sentinel-frames-" + LocalDateTime.now().format(METRICS_FILE_TIMESTAMP) + ".csv");
+		try {
+			metrics.exportFrames(file);
+			log.info("Frame times exported into " + file.toAbsolutePath());
+		} catch (IOException e) {
+			log.warning("Frame times not exported: " + e);
+		}
+	}
+
+	/** Game loop frame statistics, can be read from any thread. */
+	public GameLoop getGameLoop() {
+		return gameLoop;
+	}
+
+	/**
+	 * Moves the camera by the pressed keys in fixed steps and renders the position interpolated between
+	 * the last two steps. Position changed by anything else (controls, mouse pick) is taken as the new start.
+	 * When walking, the move is horizontal and the position is kept on the landscape surface by {@link TerrainWalker}.
+	 */
+	private class CameraMovement implements GameLoop.Simulation {
+
+		private final CameraXform cameraNode;
+		private final PerspectiveCamera camera;
+		private final SubScene scene3d;
+		private final double[] delta = new double[3];
+		private final double[] previous = new double[3];
+		private final double[] current = new double[3];
+		private final double[] rendered = new double[3];
+		private final double[] walkPosition = new double[3];
+		private RegionWorld touchedWorld;
+		private int touchedRegionX;
+		private int touchedRegionY;
+
+		CameraMovement(CameraXform cameraNode, PerspectiveCamera camera, SubScene scene3d) {
+			this.cameraNode = cameraNode;
+			this.camera = camera;
+			this.scene3d = scene3d;
+			read(current);
+			read(previous);
+			read(rendered);
+		}
+
+		@Override
+		public void step(double stepSeconds) {
+			read(delta);
+			if (delta[0] != rendered[0] || delta[1] != rendered[1] || delta[2] != rendered[2]) {
+				System.arraycopy(delta, 0, current, 0, 3);
+			}
+			System.arraycopy(current, 0, previous, 0, 3);
+			double forward = (movingForward - movingBack) * speed;
+			double right = (movingRight - movingLeft) * speed;
+			if (walking && terrainWalker != null) {
+				// walker also clamps the standing camera to the surface
+				cameraNode.horizontalMoveDelta(forward, right, delta);
+				walk(delta[0], delta[1]);
+			} else if (forward != 0 || right != 0) {
+				cameraNode.moveDelta(forward, right, delta);
+				current[0] += delta[0];
+				current[1] += delta[1];
+				current[2] += delta[2];
+			}
+			touchRegions();
+		}
+
+		@Override
+		public void render(double alpha) {
+			for (int i = 0; i < 3; i++) {
+				rendered[i] = previous[i] + (current[i] - previous[i]) * alpha;
+			}
+			cameraNode.moveTo(rendered[0], rendered[1], rendered[2]);
+			cameraNode.updateTransform();
+			// moveTo may have been ignored by bound controls rounding the value
+			read(rendered);
+			if (landscapeChunksView != null) {
+				landscapeChunksView.update(cameraNode, camera, scene3d.getWidth() / scene3d.getHeight());
+			}
+		}
+
+		/** Moves the current position by the delta (in scene coordinates) on the landscape surface. */
+		private void walk(double dx, double dy) {
+			double scale = LandscapeChunksView.SCALE;
+			for (int i = 0; i < 3; i++) {
+				walkPosition[i] = landscapePivot[i] + (current[i] - landscapePivot[i]) / scale;
+			}
+			terrainWalker.move(walkPosition, dx / scale, dy / scale);
+			for (int i = 0; i < 3; i++) {
+				current[i] = landscapePivot[i] + (walkPosition[i] - landscapePivot[i]) * scale;
+			}
+		}
+
+		/**
+		 * Makes the regions around the camera resident when the camera enters other region. Regions are generated
+		 * in the background, so the step does not wait for them.
+		 */
+		private void touchRegions() {
+			RegionWorld world = regionWorld;
+			if (world == null) return;
+
+			double scale = LandscapeChunksView.SCALE;
+			double x = landscapePivot[0] + (current[0] - landscapePivot[0]) / scale;
+			double y = landscapePivot[1] + (current[1] - landscapePivot[1]) / scale;
+			int regionX = world.regionOf((int) Math.floor(x));
+			int regionY = world.regionOf((int) Math.floor(y));
+			if (world == touchedWorld && regionX == touchedRegionX && regionY == touchedRegionY) return;
+
+			touchedWorld = world;
+			touchedRegionX = regionX;
+			touchedRegionY = regionY;
+			ForkJoinPool.commonPool().execute(() -> world.touch(x, y, REGION_TOUCH_RADIUS));
+		}
+
+		private void read(double[] position) {
+			position[0] = cameraNode.pos.getX();
+			position[1] = cameraNode.pos.getY();
+			position[2] = cameraNode.pos.getZ();
+		}
+	}
+
 	private static class NormalSingleLineFormatter extends Formatter {
 		@Override
 		public String format(LogRecord record) {
@@ -0,0 +1,287 @@
+package com.github.virgo47.sentinel;
+
+/**
+ * Ray and segment queries against the landscape surface - the same triangles like {@link LandscapeMeshBuilder}
+ * produces, in landscape coordinates. Used for picking and line-of-sight tests without JavaFX.
+ * <p>
+ * Queries skip empty space using a pyramid of maximal heights: level k holds maximum height of blocks
+ * of 2^k x 2^k squares (level 0 is computed from the points on the fly). Ray descends only into blocks
+ * whose maximal height is not below the ray over the block, children are visited front to back,
+ * so the first hit found is the nearest one.
+ * <p>
+ * Queries do not allocate and do not modify any state, so they can run from multiple threads.
+ * Pyramid must be updated by {@link #update()} or {@link #update(DirtyRegion)} after the landscape changes
+ * (and not concurrently with queries).
+ */
+public class TerrainQuery {
+
+	/** Returned as a square index when nothing was hit. */
+	public static final int NO_HIT = -1;
+
+	/** Distance from the ends of the segment ignored by {@link #isVisible}, so that end points on the surface do not block. */
+	public static final double SEGMENT_EPSILON = 1e-3;
+
+	private static final double HIT_EPSILON = 1e-9;
+
+	public final Landscape landscape;
+
+	/** Max heights, index is the level, level 0 is not stored. */
+	private final HeightGrid[] levels;
+	private final int topLevel;
+
+	public TerrainQuery(Landscape landscape) {
+		this.landscape = landscape;
+		int level = 0;
+		while ((landscape.sizeX - 1 >> level) > 0 || (landscape.sizeY - 1 >> level) > 0) {
+			level++;
+		}
+		topLevel = level;
+		levels = new HeightGrid[topLevel + 1];
+		for (level = 1; level <= topLevel; level++) {
+			levels[level] = HeightGrid.create(blocks(landscape.sizeX, level), blocks(landscape.sizeY, level),
+				landscape.config.maxHeight);
+		}
+		update();
+	}
+
+	private static int blocks(int squares, int level) {
+		return (squares + (1 << level) - 1) >> level;
+	}
+
+	/** Rebuilds the whole pyramid. */
+	public void update() {
+		update(new DirtyRegion(0, 0, landscape.sizeX - 1, landscape.sizeY - 1));
+	}
+
+	/**
+	 * Updates the pyramid for squares changed in the region. Points of the squares are shared with their
+	 * neighbours, so the region is expanded by one square.
+	 */
+	public void update(DirtyRegion changed) {
+		DirtyRegion region = changed.expand(1, landscape.sizeX, landscape.sizeY);
+		for (int level = 1; level <= topLevel; level++) {
+			HeightGrid grid = levels[level];
+			int maxBlockX = region.maxX >> level;
+			int maxBlockY = region.maxY >> level;
+			for (int bx = region.minX >> level; bx <= maxBlockX; bx++) {
+				for (int by = region.minY >> level; by <= maxBlockY; by++) {
+					int max = Integer.MIN_VALUE;
+					for (int cx = bx * 2; cx <= bx * 2 + 1; cx++) {
+						for (int cy = by * 2; cy <= by * 2 + 1; cy++) {
+							if (cx < blocks(landscape.sizeX, level - 1) && cy < blocks(landscape.sizeY, level - 1)) {
+								max = Math.max(max, maxHeight(level - 1, cx, cy));
+							}
+						}
+					}
+					grid.set(bx, by, max);
+				}
+			}
+		}
+	}
+
+	private int maxHeight(int level, int bx, int by) {
+		if (level > 0) {
+			return levels[level].get(bx, by);
+		}
+		HeightGrid points = landscape.pointGrid();
+		return Math.max(
+			Math.max(points.get(bx, by), points.get(bx + 1, by)),
+			Math.max(points.get(bx, by + 1), points.get(bx + 1, by + 1)));
+	}
+
+	/**
+	 * Returns index of the first square hit by the ray (see {@link HeightGrid#index(int, int)} of
+	 * {@link Landscape#gameplanGrid()}) or {@link #NO_HIT}. Direction does not need to be normalized.
+	 */
+	public int firstHit(double ox, double oy, double oz, double dx, double dy, double dz) {
+		return firstHit(ox, oy, oz, dx, dy, dz, 0, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Returns index of the first square hit by the ray with parameter t (point is origin + t * direction)
+	 * between minT and maxT, or {@link #NO_HIT}.
+	 */
+	public int firstHit(double ox, double oy, double oz, double dx, double dy, double dz, double minT, double maxT) {
+		return visit(topLevel, 0, 0, ox, oy, oz, dx, dy, dz, minT, maxT);
+	}
+
+	/**
+	 * Returns ray parameter t of the first hit (point is origin + t * direction),
+	 * or {@link Double#POSITIVE_INFINITY} if nothing was hit.
+	 */
+	public double firstHitDistance(double ox, double oy, double oz, double dx, double dy, double dz) {
+		int square = firstHit(ox, oy, oz, dx, dy, dz);
+		if (square == NO_HIT) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return squareHit(square / landscape.sizeY, square % landscape.sizeY, ox, oy, oz, dx, dy, dz,
+			0, Double.POSITIVE_INFINITY);
+	}
+
+	/** Height of the surface in the center of the square, that is the middle of the diagonal of its triangulation. */
+	public double squareCenterHeight(int x, int y) {
+		HeightGrid points = landscape.pointGrid();
+		int zsw = points.get(x, y);
+		int zse = points.get(x + 1, y);
+		int zne = points.get(x + 1, y + 1);
+		int znw = points.get(x, y + 1);
+		return LandscapeMeshBuilder.isInverseTriangulation(zsw, zse, zne, znw) ? (zse + znw) / 2.0 : (zsw + zne) / 2.0;
+	}
+
+	/** Returns true if the segment between the points does not cross the landscape surface. */
+	public boolean isVisible(double x0, double y0, double z0, double x1, double y1, double z1) {
+		double dx = x1 - x0;
+		double dy = y1 - y0;
+		double dz = z1 - z0;
+		double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+		if (length <= 2 * SEGMENT_EPSILON) {
+			return true;
+		}
+		double epsilonT = SEGMENT_EPSILON / length;
+		return firstHit(x0, y0, z0, dx, dy, dz, epsilonT, 1 - epsilonT) == NO_HIT;
+	}
+
+	private int visit(int level, int bx, int by,
+		double ox, double oy, double oz, double dx, double dy, double dz, double minT, double maxT)
+	{
+		int minX = bx << level;
+		int minY = by << level;
+		int maxX = Math.min(minX + (1 << level), landscape.sizeX);
+		int maxY = Math.min(minY + (1 << level), landscape.sizeY);
+
+		// slab test of the block, narrowing minT..maxT
+		if (dx != 0) {
+			double t0 = (minX - ox) / dx;
+			double t1 = (maxX - ox) / dx;
+			minT = Math.max(minT, Math.min(t0, t1));
+			maxT = Math.min(maxT, Math.max(t0, t1));
+		} else if (ox < minX || ox > maxX) {
+			return NO_HIT;
+		}
+		if (dy != 0) {
+			double t0 = (minY - oy) / dy;
+			double t1 = (maxY - oy) / dy;
+			minT = Math.max(minT, Math.min(t0, t1));
+			maxT = Math.min(maxT, Math.max(t0, t1));
+		} else if (oy < minY || oy > maxY) {
+			return NO_HIT;
+		}
+		if (minT > maxT) {
+			return NO_HIT;
+		}
+		double rayMinZ = oz + dz * (dz > 0 ? minT : maxT);
+		if (rayMinZ > maxHeight(level, bx, by)) {
+			return NO_HIT;
+		}
+
+		if (level == 0) {
+			boolean hit = squareHit(bx, by, ox, oy, oz, dx, dy, dz, minT, maxT) < Double.POSITIVE_INFINITY;
+			return hit ? landscape.gameplanGrid().index(bx, by) : NO_HIT;
+		}
+
+		// children in the order the ray enters them - near corner first, far corner last
+		int childLevel = level - 1;
+		int nearX = dx >= 0 ? 0 : 1;
+		int nearY = dy >= 0 ? 0 : 1;
+		int hit = visitChild(childLevel, bx * 2 + nearX, by * 2 + nearY, ox, oy, oz, dx, dy, dz, minT, maxT);
+		if (hit != NO_HIT) return hit;
+		// the middle two are ordered by the ray crossing the middle lines of the block
+		double middleX = minX + (1 << childLevel);
+		double middleY = minY + (1 << childLevel);
+		double crossX = dx != 0 ? (middleX - ox) / dx : Double.POSITIVE_INFINITY;
+		double crossY = dy != 0 ? (middleY - oy) / dy : Double.POSITIVE_INFINITY;
+		if (crossX <= crossY) {
+			hit = visitChild(childLevel, bx * 2 + 1 - nearX, by * 2 + nearY, ox, oy, oz, dx, dy, dz, minT, maxT);
+			if (hit != NO_HIT) return hit;
+			hit = visitChild(childLevel, bx * 2 + nearX, by * 2 + 1 - nearY, ox, oy, oz, dx, dy, dz, minT, maxT);
+		} else {
+			hit = visitChild(childLevel, bx * 2 + nearX, by * 2 + 1 - nearY, ox, oy, oz, dx, dy, dz, minT, maxT);
+			if (hit != NO_HIT) return hit;
+			hit = visitChild(childLevel, bx * 2 + 1 - nearX, by * 2 + nearY, ox, oy, oz, dx, dy, dz, minT, maxT);
+		}
+		if (hit != NO_HIT) return hit;
+		return visitChild(childLevel, bx * 2 + 1 - nearX, by * 2 + 1 - nearY, ox, oy, oz, dx, dy, dz, minT, maxT);
+	}
+
+	private int visitChild(int level, int bx, int by,
+		double ox, double oy, double oz, double dx, double dy, double dz, double minT, double maxT)
+	{
+		if (bx >= blocks(landscape.sizeX, level) || by >= blocks(landscape.sizeY, level)) {
+			return NO_HIT;
+		}
+		return visit(level, bx, by, ox, oy, oz, dx, dy, dz, minT, maxT);
+	}
+
+	/**
+	 * Returns ray parameter t of the nearest hit of the square triangles between minT and maxT,
+	 * or {@link Double#POSITIVE_INFINITY}. Triangulation is the same like in {@link LandscapeMeshBuilder}.
+	 */
+	double squareHit(int x, int y, double ox, double oy, double oz, double dx, double dy, double dz,
+		double minT, double maxT)
+	{
+		HeightGrid points = landscape.pointGrid();
+		int zsw = points.get(x, y);
+		int zse = points.get(x + 1, y);
+		int zne = points.get(x + 1, y + 1);
+		int znw = points.get(x, y + 1);
+		double t1;
+		double t2;
+		if (LandscapeMeshBuilder.isInverseTriangulation(zsw, zse, zne, znw)) {
+			t1 = triangleHit(x, y, zsw, x + 1, y, zse, x, y + 1, znw, ox, oy, oz, dx, dy, dz);
+			t2 = triangleHit(x + 1, y, zse, x + 1, y + 1, zne, x, y + 1, znw, ox, oy, oz, dx, dy, dz);
+		} else {
+			t1 = triangleHit(x, y, zsw, x + 1, y, zse, x + 1, y + 1, zne, ox, oy, oz, dx, dy, dz);
+			t2 = triangleHit(x, y, zsw, x + 1, y + 1, zne, x, y + 1, znw, ox, oy, oz, dx, dy, dz);
+		}
+		double t = Double.POSITIVE_INFINITY;
+		if (t1 >= minT && t1 <= maxT) t = t1;
+		if (t2 >= minT && t2 <= maxT && t2 < t) t = t2;
+		return t;
+	}
+
+	/** Moller-Trumbore ray/triangle intersection, returns t or {@link Double#POSITIVE_INFINITY}. */
+	private static double triangleHit(
+		double ax, double ay, double az, double bx, double by, double bz, double cx, double cy, double cz,
+		double ox, double oy, double oz, double dx, double dy, double dz)
+	{
+		double e1x = bx - ax, e1y = by - ay, e1z = bz - az;
+		double e2x = cx - ax, e2y = cy - ay, e2z = cz - az;
+		double px = dy * e2z - dz * e2y;
+		double py = dz * e2x - dx * e2z;
+		double pz = dx * e2y - dy * e2x;
+		double det = e1x * px + e1y * py + e1z * pz;
+		if (Math.abs(det) < HIT_EPSILON) {
+			return Double.POSITIVE_INFINITY; // parallel with the triangle
+		}
+		double invDet = 1 / det;
+		double sx = ox - ax, sy = oy - ay, sz = oz - az;
+		double u = (sx * px + sy * py + sz * pz) * invDet;
+		if (u < -HIT_EPSILON || u > 1 + HIT_EPSILON) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double qx = sy * e1z - sz * e1y;
+		double qy = sz * e1x - sx * e1z;
+		double qz = sx * e1y - sy * e1x;
+		double v = (dx * qx + dy * qy + dz * qz) * invDet;
+		if (v < -HIT_EPSILON || u + v > 1 + HIT_EPSILON) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return (e2x * qx + e2y * qy + e2z * qz) * invDet;
+	}
+
+	/** Reference implementation testing all the triangles of the landscape, for tests and benchmarks. */
+	int firstHitBruteForce(double ox, double oy, double oz, double dx, double dy, double dz, double minT, double maxT) {
+		int hitSquare = NO_HIT;
+		double hitT = Double.POSITIVE_INFINITY;
+		for (int x = 0; x < landscape.sizeX; x++) {
+			for (int y = 0; y < landscape.sizeY; y++) {
+				double t = squareHit(x, y, ox, oy, oz, dx, dy, dz, minT, maxT);
+				if (t < hitT) {
+					hitT = t;
+					hitSquare = landscape.gameplanGrid().index(x, y);
+				}
+			}
+		}
+		return hitSquare;
+	}
+}
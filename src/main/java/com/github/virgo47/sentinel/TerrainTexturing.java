@@ -0,0 +1,146 @@
+package com.github.virgo47.sentinel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.ToIntFunction;
+
+/**
+ * Assigns each square of the landscape to a region of the texture atlas by its {@link Terrain}, so the whole
+ * landscape is still one mesh with one material (see {@link TextureAtlas}). Terrain is decided from the corner
+ * heights (the same way like the mesh decides plain squares), the height histogram and the placed positions:
+ * <ul>
+ * <li>squares of the sentinel, sentries and player start have their own terrain,</li>
+ * <li>plain squares are in height bands (thirds between the lowest and highest playable height), alternating
+ * two variants like the checkerboard,</li>
+ * <li>slopes with corner heights differing by {@link #ROCK_HEIGHT_DIFFERENCE} or more are rocks.</li>
+ * </ul>
+ * Assignment does not depend on JavaFX and needs no state per square, so the mesh builder asks for each square
+ * while building the faces, also when it updates them incrementally. Height bands are fixed by
+ * {@link #prepare(Landscape)} before the build, so the squares not changed by the update keep their terrain.
+ * The texturing is used by one builder (it is not thread-safe), but it is cheap to create.
+ */
+public final class TerrainTexturing {
+
+	/** Terrain of the square, checkered terrains have two atlas regions for even and odd squares. */
+	public enum Terrain {
+		LOWLAND(true), HIGHLAND(true), PEAK(true), SLOPE(false), ROCK(false), SENTINEL(false), SENTRY(false),
+		PLAYER_START(false);
+
+		public final boolean checkered;
+
+		Terrain(boolean checkered) {
+			this.checkered = checkered;
+		}
+
+		/** Name of the atlas region for the variant (0 or 1, only checkered terrains have 1). */
+		public String regionName(int variant) {
+			String name = name().toLowerCase(Locale.ROOT).replace('_', '-');
+			return checkered ? name + '-' + variant : name;
+		}
+	}
+
+	/** Minimal difference of slope corner heights for the rock terrain. */
+	public static final int ROCK_HEIGHT_DIFFERENCE = 2;
+
+	private static final List<String> REGION_NAMES;
+
+	static {
+		List<String> names = new ArrayList<>();
+		for (Terrain terrain : Terrain.values()) {
+			names.add(terrain.regionName(0));
+			if (terrain.checkered) {
+				names.add(terrain.regionName(1));
+			}
+		}
+		REGION_NAMES = Collections.unmodifiableList(names);
+	}
+
+	private final float[] texCoords;
+	/** Atlas region index by terrain ordinal * 2 + variant. */
+	private final int[] regions = new int[Terrain.values().length * 2];
+	private int lowHeight;
+	private int highHeight;
+
+	/**
+	 * Creates the texturing for the atlas with four texcoords (u, v pairs, SW, SE, NE, NW corner) per region
+	 * and region indexes by name, all {@link #regionNames()} must be in the atlas.
+	 */
+	public TerrainTexturing(float[] texCoords, ToIntFunction<String> regionIndex) {
+		this.texCoords = texCoords.clone();
+		for (Terrain terrain : Terrain.values()) {
+			for (int variant = 0; variant < 2; variant++) {
+				int region = regionIndex.applyAsInt(terrain.regionName(terrain.checkered ? variant : 0));
+				if (region < 0 || region * 8 >= texCoords.length) {
+					throw new IllegalArgumentException("No texcoords for region " + terrain.regionName(variant));
+				}
+				regions[terrain.ordinal() * 2 + variant] = region;
+			}
+		}
+	}
+
+	/** Names of the atlas regions needed for all the terrains. */
+	public static List<String> regionNames() {
+		return REGION_NAMES;
+	}
+
+	/** Fixes the height bands by the lowest and highest playable height of the landscape. */
+	public void prepare(Landscape landscape) {
+		int low = Integer.MAX_VALUE;
+		int high = Integer.MIN_VALUE;
+		for (int height = landscape.minCountedHeight(); height <= landscape.maxCountedHeight(); height++) {
+			if (landscape.heightCount(height) > 0) {
+				low = Math.min(low, height);
+				high = Math.max(high, height);
+			}
+		}
+		lowHeight = low <= high ? low : 0;
+		highHeight = low <= high ? high : 0;
+	}
+
+	/** Texture coordinates of the atlas regions, four per region. */
+	public float[] texCoords() {
+		return texCoords.clone();
+	}
+
+	/** Index of the first texcoord of the square's atlas region, corner heights are passed as the mesh has them. */
+	public int textureIndex(Landscape landscape, int x, int y, int zsw, int zse, int zne, int znw) {
+		Terrain terrain = terrain(landscape, x, y, zsw, zse, zne, znw);
+		int variant = terrain.checkered ? (x + y) % 2 : 0;
+		return regions[terrain.ordinal() * 2 + variant] * 4;
+	}
+
+	/** Terrain of the square, see the class description. */
+	public Terrain terrain(Landscape landscape, int x, int y, int zsw, int zse, int zne, int znw) {
+		Terrain positionTerrain = positionTerrain(landscape, x, y);
+		if (positionTerrain != null) return positionTerrain;
+
+		int min = Math.min(Math.min(zsw, zse), Math.min(zne, znw));
+		int max = Math.max(Math.max(zsw, zse), Math.max(zne, znw));
+		if (min != max) {
+			return max - min >= ROCK_HEIGHT_DIFFERENCE ? Terrain.ROCK : Terrain.SLOPE;
+		}
+
+		// thirds of the playable heights, with integer math only
+		int band = (min - lowHeight) * 3 / (highHeight - lowHeight + 1);
+		return band <= 0 ? Terrain.LOWLAND : band == 1 ? Terrain.HIGHLAND : Terrain.PEAK;
+	}
+
+	private static Terrain positionTerrain(Landscape landscape, int x, int y) {
+		if (isAt(landscape.getSentinel(), x, y)) return Terrain.SENTINEL;
+		if (isAt(landscape.getPlayerStart(), x, y)) return Terrain.PLAYER_START;
+
+		List<Landscape.Position> sentries = landscape.getSentries();
+		if (sentries != null) {
+			for (Landscape.Position sentry : sentries) {
+				if (isAt(sentry, x, y)) return Terrain.SENTRY;
+			}
+		}
+		return null;
+	}
+
+	private static boolean isAt(Landscape.Position position, int x, int y) {
+		return position != null && position.x == x && position.y == y;
+	}
+}
@@ -0,0 +1,107 @@
+package com.github.virgo47.sentinel;
+
+/**
+ * Keeps the walking position on the landscape surface, in landscape coordinates (square units, z is height).
+ * Height is sampled from the triangle of the square under the position, with the same triangulation like
+ * {@link LandscapeMeshBuilder}, so the walker stands exactly on the rendered mesh. Moves are swept through
+ * the squares on the way and stop at the border of the first unplayable square (slope), each axis separately,
+ * so the walker slides along the slopes. Square the walker stands on never blocks, so it can walk off the slope
+ * it was put on. Everything is O(1) per crossed square and does not allocate, it is meant to run every tick.
+ */
+public final class TerrainWalker {
+
+	/** Distance kept from the border of the blocking square, so the position stays in the square before it. */
+	public static final double EPSILON = 1e-6;
+
+	public final Landscape landscape;
+	public final double eyeHeight;
+
+	public TerrainWalker(Landscape landscape, double eyeHeight) {
+		this.landscape = landscape;
+		this.eyeHeight = eyeHeight;
+	}
+
+	/**
+	 * Height of the surface at the position, the position is clamped to the landscape.
+	 * Within a square the height is interpolated on the triangle containing the position.
+	 */
+	public double surfaceHeight(double x, double y) {
+		x = clamp(x, landscape.sizeX);
+		y = clamp(y, landscape.sizeY);
+		int squareX = square(x, landscape.sizeX);
+		int squareY = square(y, landscape.sizeY);
+		double fx = x - squareX;
+		double fy = y - squareY;
+
+		HeightGrid points = landscape.pointGrid();
+		int zsw = points.get(squareX, squareY);
+		int zse = points.get(squareX + 1, squareY);
+		int zne = points.get(squareX + 1, squareY + 1);
+		int znw = points.get(squareX, squareY + 1);
+		if (LandscapeMeshBuilder.isInverseTriangulation(zsw, zse, zne, znw)) {
+			// diagonal SE-NW, triangles SW-SE-NW and SE-NE-NW
+			return fx + fy <= 1
+				? zsw + fx * (zse - zsw) + fy * (znw - zsw)
+				: zne + (1 - fx) * (znw - zne) + (1 - fy) * (zse - zne);
+		}
+		// diagonal SW-NE, triangles SW-SE-NE and SW-NE-NW
+		return fx >= fy
+			? zsw + fx * (zse - zsw) + fy * (zne - zse)
+			: zsw + fy * (znw - zsw) + fx * (zne - znw);
+	}
+
+	/** Returns true if the walker can't enter the square, that is for unplayable squares (slopes). */
+	public boolean isBlocked(int x, int y) {
+		return landscape.gameplanGrid().get(x, y) == Landscape.SQUARE_UNPLAYABLE;
+	}
+
+	/**
+	 * Moves the position (x, y, z) by the horizontal delta, first along x, then along y, both stopped
+	 * by the blocking squares. Position is clamped to the landscape and z is set to the eye height
+	 * above the surface, also when the delta is zero.
+	 */
+	public void move(double[] position, double dx, double dy) {
+		double x = clamp(position[0], landscape.sizeX);
+		double y = clamp(position[1], landscape.sizeY);
+		if (dx != 0) {
+			x = sweep(x, dx, landscape.sizeX, square(y, landscape.sizeY), true);
+		}
+		if (dy != 0) {
+			y = sweep(y, dy, landscape.sizeY, square(x, landscape.sizeX), false);
+		}
+		position[0] = x;
+		position[1] = y;
+		position[2] = surfaceHeight(x, y) + eyeHeight;
+	}
+
+	/** Moves the coordinate along the axis through the squares of the other coordinate's row (or column). */
+	private double sweep(double coordinate, double delta, int size, int other, boolean alongX) {
+		double target = clamp(coordinate + delta, size);
+		int square = square(coordinate, size);
+		if (delta > 0) {
+			while (square + 1 < size && target >= square + 1) {
+				if (alongX ? isBlocked(square + 1, other) : isBlocked(other, square + 1)) {
+					return Math.max(coordinate, square + 1 - EPSILON);
+				}
+				square++;
+			}
+		} else {
+			while (square > 0 && target < square) {
+				if (alongX ? isBlocked(square - 1, other) : isBlocked(other, square - 1)) {
+					return square;
+				}
+				square--;
+			}
+		}
+		return target;
+	}
+
+	/** Square containing the coordinate, the far border belongs to the last square. */
+	private static int square(double coordinate, int size) {
+		return Math.min((int) coordinate, size - 1);
+	}
+
+	private static double clamp(double coordinate, int size) {
+		return Math.max(0, Math.min(size, coordinate));
+	}
+}
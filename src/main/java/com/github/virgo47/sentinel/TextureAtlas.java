@@ -0,0 +1,234 @@
+package com.github.virgo47.sentinel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+/**
+ * Several textures packed into one image at load time, so the meshes using any of them can share one material
+ * (one draw call). Regions are square cells of the same size in a grid, source images (or their parts) are scaled
+ * to the cell with the nearest pixel. Each cell has a border of {@link #padding} pixels repeating its edge pixels,
+ * so filtering at the region border does not bleed from the neighbouring region. Texture coordinates of the
+ * regions (see {@link #texCoords()}) are four per region in the same corner order like
+ * {@link LandscapeMeshBuilder#TEX_COORDS} - so texcoord index of the region is {@code region * 4}.
+ * <p>
+ * Building the atlas reads and writes pixels on the calling thread, it can be done on any thread.
+ */
+public final class TextureAtlas {
+
+	/** Cell size of the terrain atlas in pixels. */
+	public static final int TERRAIN_CELL_SIZE = 256;
+	public static final int TERRAIN_PADDING = 4;
+
+	public final String name;
+	public final Image image;
+	public final int cellSize;
+	public final int padding;
+	public final int columns;
+
+	private final List<String> names;
+	private final Map<String, Integer> indexes = new HashMap<>();
+	private final float[] texCoords;
+
+	private TextureAtlas(String name, Image image, int cellSize, int padding, int columns, List<String> names) {
+		this.name = name;
+		this.image = image;
+		this.cellSize = cellSize;
+		this.padding = padding;
+		this.columns = columns;
+		this.names = names;
+		texCoords = new float[names.size() * 8];
+		double width = image.getWidth();
+		double height = image.getHeight();
+		int stride = cellSize + 2 * padding;
+		for (int region = 0; region < names.size(); region++) {
+			indexes.put(names.get(region), region);
+			float u0 = (float) (((region % columns) * stride + padding) / width);
+			float v0 = (float) (((region / columns) * stride + padding) / height);
+			float u1 = (float) (u0 + cellSize / width);
+			float v1 = (float) (v0 + cellSize / height);
+			int t = region * 8;
+			texCoords[t] = u0;
+			texCoords[t + 1] = v0;
+			texCoords[t + 2] = u1;
+			texCoords[t + 3] = v0;
+			texCoords[t + 4] = u1;
+			texCoords[t + 5] = v1;
+			texCoords[t + 6] = u0;
+			texCoords[t + 7] = v1;
+		}
+	}
+
+	/** Index of the region with the name, -1 if there is none. */
+	public int regionIndex(String name) {
+		Integer index = indexes.get(name);
+		return index != null ? index : -1;
+	}
+
+	public int regionCount() {
+		return names.size();
+	}
+
+	/** Texture coordinates of the regions (u, v pairs), four per region, copy of the array. */
+	public float[] texCoords() {
+		return texCoords.clone();
+	}
+
+	@Override
+	public String toString() {
+		return "TextureAtlas{" + name + ", " + (int) image.getWidth() + 'x' + (int) image.getHeight()
+			+ ", regions=" + names + '}';
+	}
+
+	/**
+	 * Atlas with the regions for {@link TerrainTexturing}, made of the parts of the base texture
+	 * (the same 2x2 texture the landscape used to have) tinted by the terrain: checkered terrains use the two
+	 * checkerboard quadrants, others the slope quadrant.
+	 */
+	public static TextureAtlas terrain(Image base, int cellSize, int padding) {
+		Builder builder = new Builder("terrain", cellSize, padding);
+		int half = (int) base.getWidth() / 2;
+		for (TerrainTexturing.Terrain terrain : TerrainTexturing.Terrain.values()) {
+			Color tint = terrainTint(terrain);
+			if (terrain.checkered) {
+				builder.add(terrain.regionName(0), base, 0, 0, half, half, tint);
+				builder.add(terrain.regionName(1), base, half, 0, half, half, tint);
+			} else {
+				builder.add(terrain.regionName(0), base, 0, half, half, half, tint);
+			}
+		}
+		return builder.build();
+	}
+
+	private static Color terrainTint(TerrainTexturing.Terrain terrain) {
+		switch (terrain) {
+			case LOWLAND:
+				return Color.rgb(170, 220, 150);
+			case HIGHLAND:
+				return Color.WHITE;
+			case PEAK:
+				return Color.rgb(235, 235, 255);
+			case ROCK:
+				return Color.rgb(150, 150, 150);
+			case SENTINEL:
+				return Color.rgb(255, 140, 140);
+			case SENTRY:
+				return Color.rgb(255, 200, 130);
+			case PLAYER_START:
+				return Color.rgb(150, 180, 255);
+			default:
+				return Color.WHITE;
+		}
+	}
+
+	/** Collects the regions, pixels are copied only by {@link #build()}. */
+	public static final class Builder {
+
+		private final String name;
+		private final int cellSize;
+		private final int padding;
+		private final List<Source> sources = new ArrayList<>();
+
+		public Builder(String name, int cellSize, int padding) {
+			if (cellSize <= 0 || padding < 0) {
+				throw new IllegalArgumentException("Invalid cell size " + cellSize + " or padding " + padding);
+			}
+			this.name = name;
+			this.cellSize = cellSize;
+			this.padding = padding;
+		}
+
+		/** Adds the whole image as the region. */
+		public Builder add(String regionName, Image image) {
+			return add(regionName, image, 0, 0, (int) image.getWidth(), (int) image.getHeight(), Color.WHITE);
+		}
+
+		/** Adds the part of the image as the region, its colors are multiplied by the tint. */
+		public Builder add(String regionName, Image image, int x, int y, int width, int height, Color tint) {
+			for (Source source : sources) {
+				if (source.name.equals(regionName)) {
+					throw new IllegalArgumentException("Region " + regionName + " is already in the atlas");
+				}
+			}
+			sources.add(new Source(regionName, image, x, y, width, height, tint));
+			return this;
+		}
+
+		/** Packs the regions into the grid as close to square as possible. */
+		public TextureAtlas build() {
+			if (sources.isEmpty()) throw new IllegalStateException("No regions in the atlas " + name);
+
+			int columns = (int) Math.ceil(Math.sqrt(sources.size()));
+			int rows = (sources.size() + columns - 1) / columns;
+			int stride = cellSize + 2 * padding;
+			WritableImage atlas = new WritableImage(columns * stride, rows * stride);
+			PixelWriter writer = atlas.getPixelWriter();
+			List<String> names = new ArrayList<>();
+			for (int region = 0; region < sources.size(); region++) {
+				Source source = sources.get(region);
+				copyCell(source, writer, (region % columns) * stride, (region / columns) * stride);
+				names.add(source.name);
+			}
+			return new TextureAtlas(name, atlas, cellSize, padding, columns, names);
+		}
+
+		/** Writes the cell with its padding, padding pixels are clamped to the cell edge. */
+		private void copyCell(Source source, PixelWriter writer, int cellX, int cellY) {
+			PixelReader reader = source.image.getPixelReader();
+			int stride = cellSize + 2 * padding;
+			for (int py = 0; py < stride; py++) {
+				int y = Math.max(0, Math.min(cellSize - 1, py - padding));
+				int sourceY = source.y + y * source.height / cellSize;
+				for (int px = 0; px < stride; px++) {
+					int x = Math.max(0, Math.min(cellSize - 1, px - padding));
+					int sourceX = source.x + x * source.width / cellSize;
+					writer.setArgb(cellX + px, cellY + py, source.tint(reader.getArgb(sourceX, sourceY)));
+				}
+			}
+		}
+	}
+
+	private static final class Source {
+
+		final String name;
+		final Image image;
+		final int x;
+		final int y;
+		final int width;
+		final int height;
+		/** Tint as multipliers of 0-256 for red, green and blue. */
+		final int red;
+		final int green;
+		final int blue;
+
+		Source(String name, Image image, int x, int y, int width, int height, Color tint) {
+			if (x < 0 || y < 0 || width <= 0 || height <= 0 || x + width > image.getWidth() || y + height > image.getHeight()) {
+				throw new IllegalArgumentException("Region " + name + " is out of the image: " + x + ", " + y
+					+ ", " + width + 'x' + height);
+			}
+			this.name = name;
+			this.image = image;
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+			red = (int) Math.round(tint.getRed() * 256);
+			green = (int) Math.round(tint.getGreen() * 256);
+			blue = (int) Math.round(tint.getBlue() * 256);
+		}
+
+		int tint(int argb) {
+			int r = ((argb >> 16) & 0xff) * red >> 8;
+			int g = ((argb >> 8) & 0xff) * green >> 8;
+			int b = (argb & 0xff) * blue >> 8;
+			return argb & 0xff000000 | r << 16 | g << 8 | b;
+		}
+	}
+}
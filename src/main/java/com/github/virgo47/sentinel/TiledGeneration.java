@@ -0,0 +1,91 @@
+package com.github.virgo47.sentinel;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel generation of the landscape split into tiles. Each tile is generated as a separate
+ * landscape with its own seed derived from the world seed and tile coordinates, and copied into
+ * the world landscape. After all tiles are done, seams between tiles are reconciled sequentially
+ * (see {@link Landscape#reconcileSeams(int)}), so the result depends only on the seed and the tile
+ * size, not on the number of threads or the order in which tiles finished.
+ */
+final class TiledGeneration {
+
+	private final Landscape landscape;
+	private final int seed;
+	private final int tileSize;
+	private final int tilesX;
+	private final int tilesY;
+	private final CascadeCounters[] tileCounters;
+
+	TiledGeneration(Landscape landscape, int seed, int tileSize) {
+		if (tileSize <= 0) throw new IllegalArgumentException("tileSize must be higher than 0, is " + tileSize);
+
+		this.landscape = landscape;
+		this.seed = seed;
+		this.tileSize = tileSize;
+		tilesX = (landscape.sizeX + tileSize - 1) / tileSize;
+		tilesY = (landscape.sizeY + tileSize - 1) / tileSize;
+		tileCounters = new CascadeCounters[tilesX * tilesY];
+	}
+
+	void run(ForkJoinPool pool) {
+		pool.invoke(new TileRange(0, tileCounters.length));
+
+		// tile order is fixed, although it does not matter for sums
+		for (CascadeCounters counters : tileCounters) {
+			landscape.totalCounters().add(counters);
+		}
+		landscape.reconcileSeams(tileSize);
+		landscape.countHeights();
+		landscape.markAllDirty();
+	}
+
+	private void generateTile(int tileIndex) {
+		int tileX = tileIndex % tilesX;
+		int tileY = tileIndex / tilesX;
+		int offsetX = tileX * tileSize;
+		int offsetY = tileY * tileSize;
+		Landscape tile = new Landscape(
+			Math.min(tileSize, landscape.sizeX - offsetX),
+			Math.min(tileSize, landscape.sizeY - offsetY),
+			landscape.config);
+		tile.generate(tileSeed(seed, tileX, tileY));
+		landscape.copyTile(tile, offsetX, offsetY);
+		tileCounters[tileIndex] = tile.totalCounters();
+	}
+
+	/** Derives seed of the tile, mixing is the finalizer of SplitMix64, so neighbour tiles are not correlated. */
+	static int tileSeed(int seed, int tileX, int tileY) {
+		long z = seed * 0x9e3779b97f4a7c15L + tileX * 0xc2b2ae3d27d4eb4fL + tileY * 0x165667b19e3779f9L;
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		z = z ^ (z >>> 31);
+		return (int) (z ^ (z >>> 32));
+	}
+
+	/** Splits the range of tile indexes in halves until a single tile is left. */
+	private class TileRange extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+
+		TileRange(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				generateTile(from);
+			} else if (to > from) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new TileRange(from, middle), new TileRange(middle, to));
+			}
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package com.github.virgo47.sentinel;
+
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Facade over JUL {@link Logger} for hot paths like landscape generation and meshing, where
+ * FINER/FINEST messages are produced per square or point. Messages must not be built when not
+ * logged, so use either guarded calls:
+ * <pre>
+ * if (log.isFinerEnabled()) {
+ *     log.finer("Square (" + x + ',' + y + ")...");
+ * }
+ * </pre>
+ * or supplier based calls for code that is not that hot (lambda may still be allocated).
+ * <p>
+ * Trace levels (FINER, FINEST) can be switched off completely with system property
+ * {@code sentinel.trace=false} - {@link #TRACE} is a static final constant, so JIT removes
+ * the guarded code altogether.
+ */
+public final class TraceLogger {
+
+	/** Static switch for FINER/FINEST logging, enabled unless system property sentinel.trace is false. */
+	public static final boolean TRACE = !"false".equalsIgnoreCase(System.getProperty("sentinel.trace"));
+
+	private final Logger logger;
+
+	private TraceLogger(Logger logger) {
+		this.logger = logger;
+	}
+
+	public static TraceLogger getLogger(Class<?> type) {
+		return new TraceLogger(Logger.getLogger(type.getName()));
+	}
+
+	public Logger getLogger() {
+		return logger;
+	}
+
+	public boolean isFineEnabled() {
+		return logger.isLoggable(Level.FINE);
+	}
+
+	public boolean isFinerEnabled() {
+		return TRACE && logger.isLoggable(Level.FINER);
+	}
+
+	public boolean isFinestEnabled() {
+		return TRACE && logger.isLoggable(Level.FINEST);
+	}
+
+	public void fine(String message) {
+		logger.fine(message);
+	}
+
+	public void fine(Supplier<String> messageSupplier) {
+		logger.fine(messageSupplier);
+	}
+
+	/** Logs on FINER level if trace is enabled, guard with {@link #isFinerEnabled()} if message is built. */
+	public void finer(String message) {
+		if (TRACE) {
+			logger.finer(message);
+		}
+	}
+
+	public void finer(Supplier<String> messageSupplier) {
+		if (TRACE) {
+			logger.finer(messageSupplier);
+		}
+	}
+
+	/** Logs on FINEST level if trace is enabled, guard with {@link #isFinestEnabled()} if message is built. */
+	public void finest(String message) {
+		if (TRACE) {
+			logger.finest(message);
+		}
+	}
+
+	public void finest(Supplier<String> messageSupplier) {
+		if (TRACE) {
+			logger.finest(messageSupplier);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.github.virgo47.sentinel;
+
+/**
+ * Set of squares visible by a {@link Watcher}, one bit per square indexed like {@link Landscape#gameplanGrid()}.
+ * Viewshed is read-only outside of this package, it is updated by {@link VisibilityEngine}.
+ */
+public final class Viewshed {
+
+	private final int sizeY;
+	private final long[] words;
+
+	Viewshed(int sizeX, int sizeY) {
+		this.sizeY = sizeY;
+		words = new long[(sizeX * sizeY + 63) >> 6];
+	}
+
+	public boolean isVisible(int x, int y) {
+		return get(x * sizeY + y);
+	}
+
+	/** Returns true if the square with the flat index (see {@link HeightGrid#index(int, int)}) is visible. */
+	public boolean get(int index) {
+		return (words[index >> 6] & 1L << index) != 0;
+	}
+
+	/** Number of visible squares. */
+	public int count() {
+		int count = 0;
+		for (long word : words) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/** Bytes used by the bitset, useful for memory estimations. */
+	public int bytes() {
+		return words.length * Long.BYTES;
+	}
+
+	void set(int index, boolean visible) {
+		if (visible) {
+			words[index >> 6] |= 1L << index;
+		} else {
+			words[index >> 6] &= ~(1L << index);
+		}
+	}
+
+	void clear() {
+		for (int i = 0; i < words.length; i++) {
+			words[i] = 0;
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package com.github.virgo47.sentinel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes viewsheds of all the watchers (sentinel and sentries) of the landscape. Call {@link #update}
+ * every tick - lines of sight are cast again only for watchers that moved or after the landscape changed
+ * (see {@link Landscape#version()}), rotated watchers only update the sector of their viewshed.
+ * Terrain query is updated only around the changed squares (see {@link Landscape#changedSince(int)}).
+ * So the cost of a tick with no landscape change grows only with watchers that rotated and with
+ * the number of squares in their sectors.
+ * <p>
+ * Watchers needing the update are processed in parallel on the pool, each one works only with its own
+ * data and shared read-only {@link TerrainQuery}.
+ */
+public class VisibilityEngine {
+
+	private final Landscape landscape;
+	private final TerrainQuery query;
+	private final List<Watcher> watchers = new ArrayList<>();
+	private int queryVersion;
+
+	/** Reused list of watchers for the update. */
+	private final List<Watcher> updated = new ArrayList<>();
+
+	public VisibilityEngine(Landscape landscape) {
+		this.landscape = landscape;
+		query = new TerrainQuery(landscape);
+		queryVersion = landscape.version();
+	}
+
+	public Watcher addWatcher(Watcher watcher) {
+		watchers.add(watcher);
+		return watcher;
+	}
+
+	public void removeWatcher(Watcher watcher) {
+		watchers.remove(watcher);
+	}
+
+	public List<Watcher> getWatchers() {
+		return Collections.unmodifiableList(watchers);
+	}
+
+	public TerrainQuery getQuery() {
+		return query;
+	}
+
+	/** Updates viewsheds of watchers on the calling thread. */
+	public int update() {
+		return update(null);
+	}
+
+	/**
+	 * Updates viewsheds of watchers that rotated or moved and of all watchers if the landscape changed.
+	 * Work is done on the pool, or on the calling thread if the pool is null.
+	 *
+	 * @return number of updated watchers
+	 */
+	public int update(ForkJoinPool pool) {
+		DirtyRegion changed = landscape.changedSince(queryVersion);
+		if (changed != null) {
+			query.update(changed);
+			queryVersion = landscape.version();
+		}
+		updated.clear();
+		for (Watcher watcher : watchers) {
+			if (watcher.needsUpdate(landscape)) {
+				updated.add(watcher);
+			}
+		}
+		if (pool == null || updated.size() == 1) {
+			for (Watcher watcher : updated) {
+				watcher.update(query);
+			}
+		} else if (!updated.isEmpty()) {
+			pool.invoke(new WatcherRange(0, updated.size()));
+		}
+		return updated.size();
+	}
+
+	/** Returns true if the square is visible by any watcher, as of the last {@link #update}. */
+	public boolean isSeen(int x, int y) {
+		int index = landscape.gameplanGrid().index(x, y);
+		for (Watcher watcher : watchers) {
+			Viewshed viewshed = watcher.getViewshed();
+			if (viewshed != null && viewshed.get(index)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Splits the range of updated watchers in halves until a single watcher is left. */
+	private class WatcherRange extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+
+		WatcherRange(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				updated.get(from).update(query);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new WatcherRange(from, middle), new WatcherRange(middle, to));
+		}
+	}
+}
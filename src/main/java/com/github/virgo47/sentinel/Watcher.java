@@ -0,0 +1,216 @@
+package com.github.virgo47.sentinel;
+
+import java.util.Arrays;
+
+/**
+ * Sentinel or sentry watching the landscape from the center of its square. Watcher sees squares
+ * in its field of view around its yaw that are not hidden by the landscape, see {@link VisibilityEngine}.
+ * Yaw is in degrees and goes like compass (the same like {@link CameraXform}) - 0 looks along Y axis,
+ * 90 along X axis.
+ * <p>
+ * Line of sight does not depend on the yaw, so the watcher keeps squares in the line of sight sorted
+ * by their bearing. When the watcher rotates, only the sector of visible squares is updated, no rays
+ * are cast until the landscape changes or the watcher moves.
+ */
+public class Watcher {
+
+	public final double eyeHeight;
+	/** Horizontal field of view in degrees, 360 or more sees all around. */
+	public final double fieldOfView;
+	/** Squares further than this (in squares) are never visible. */
+	public final double maxDistance;
+
+	private int x;
+	private int y;
+	private double yaw;
+
+	/** Squares in line of sight ordered by bearing, valid for {@link #lineOfSightVersion} of the landscape. */
+	private int[] lineOfSight = new int[0];
+	private float[] bearings = new float[0];
+	private int lineOfSightVersion;
+	private boolean lineOfSightValid;
+	/** Yaw of the sector currently set in the viewshed, NaN if none. */
+	private double viewshedYaw = Double.NaN;
+	private Viewshed viewshed;
+
+	public Watcher(int x, int y, double yaw, double eyeHeight, double fieldOfView, double maxDistance) {
+		this.x = x;
+		this.y = y;
+		this.yaw = normalizeAngle(yaw);
+		this.eyeHeight = eyeHeight;
+		this.fieldOfView = fieldOfView;
+		this.maxDistance = maxDistance;
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	public double getYaw() {
+		return yaw;
+	}
+
+	/** Moves the watcher to another square, line of sight is computed again by the next update. */
+	public void moveTo(int x, int y) {
+		this.x = x;
+		this.y = y;
+		lineOfSightValid = false;
+	}
+
+	/** Sets the yaw, normalized to 0 (inclusive) to 360 (exclusive). */
+	public void setYaw(double yaw) {
+		this.yaw = normalizeAngle(yaw);
+	}
+
+	public void rotate(double yawDelta) {
+		setYaw(yaw + yawDelta);
+	}
+
+	/** Squares visible by the last {@link VisibilityEngine#update}, null before the first one. */
+	public Viewshed getViewshed() {
+		return viewshed;
+	}
+
+	/** Returns true if the update has anything to do - line of sight is stale or the watcher rotated. */
+	boolean needsUpdate(Landscape landscape) {
+		return !isLineOfSightValid(landscape) || viewshedYaw != yaw;
+	}
+
+	boolean isLineOfSightValid(Landscape landscape) {
+		return lineOfSightValid && lineOfSightVersion == landscape.version();
+	}
+
+	/** Computes line of sight if necessary and updates the viewshed for the current yaw. */
+	void update(TerrainQuery query) {
+		Landscape landscape = query.landscape;
+		if (viewshed == null) {
+			viewshed = new Viewshed(landscape.sizeX, landscape.sizeY);
+		}
+		if (!isLineOfSightValid(landscape)) {
+			computeLineOfSight(query);
+			viewshed.clear();
+			viewshedYaw = Double.NaN;
+		}
+		if (viewshedYaw == yaw) return;
+
+		if (!Double.isNaN(viewshedYaw)) {
+			setSector(viewshedYaw, false);
+		}
+		setSector(yaw, true);
+		viewshedYaw = yaw;
+	}
+
+	private void computeLineOfSight(TerrainQuery query) {
+		Landscape landscape = query.landscape;
+		double eyeX = x + 0.5;
+		double eyeY = y + 0.5;
+		double eyeZ = query.squareCenterHeight(x, y) + eyeHeight;
+		int minX = (int) Math.max(0, Math.floor(x - maxDistance));
+		int maxX = (int) Math.min(landscape.sizeX - 1, Math.ceil(x + maxDistance));
+		int minY = (int) Math.max(0, Math.floor(y - maxDistance));
+		int maxY = (int) Math.min(landscape.sizeY - 1, Math.ceil(y + maxDistance));
+		double maxDistanceSquared = maxDistance * maxDistance;
+
+		// bearing and square index packed in a long sort by bearing, bearings are non-negative floats
+		long[] sorted = new long[(maxX - minX + 1) * (maxY - minY + 1)];
+		int count = 0;
+		for (int targetX = minX; targetX <= maxX; targetX++) {
+			for (int targetY = minY; targetY <= maxY; targetY++) {
+				int dx = targetX - x;
+				int dy = targetY - y;
+				if (dx == 0 && dy == 0 || dx * dx + dy * dy > maxDistanceSquared) continue;
+
+				double targetZ = query.squareCenterHeight(targetX, targetY);
+				if (query.isVisible(eyeX, eyeY, eyeZ, targetX + 0.5, targetY + 0.5, targetZ)) {
+					float bearing = (float) normalizeAngle(Math.toDegrees(Math.atan2(dx, dy)));
+					sorted[count++] = (long) Float.floatToIntBits(bearing) << 32 | landscape.gameplanGrid().index(targetX, targetY);
+				}
+			}
+		}
+		Arrays.sort(sorted, 0, count);
+		lineOfSight = new int[count];
+		bearings = new float[count];
+		for (int i = 0; i < count; i++) {
+			lineOfSight[i] = (int) sorted[i];
+			bearings[i] = Float.intBitsToFloat((int) (sorted[i] >>> 32));
+		}
+		lineOfSightVersion = landscape.version();
+		lineOfSightValid = true;
+	}
+
+	/** Number of squares in the line of sight regardless of the field of view. */
+	public int lineOfSightCount() {
+		return lineOfSight.length;
+	}
+
+	private void setSector(double sectorYaw, boolean visible) {
+		if (fieldOfView >= 360) {
+			setRange(0, lineOfSight.length, visible);
+			return;
+		}
+		double start = normalizeAngle(sectorYaw - fieldOfView / 2);
+		double end = start + fieldOfView;
+		if (end <= 360) {
+			setRange(lowerBound(start), upperBound(end), visible);
+		} else {
+			setRange(lowerBound(start), lineOfSight.length, visible);
+			setRange(0, upperBound(end - 360), visible);
+		}
+	}
+
+	private void setRange(int from, int to, boolean visible) {
+		for (int i = from; i < to; i++) {
+			viewshed.set(lineOfSight[i], visible);
+		}
+	}
+
+	/** Index of the first bearing that is not lower than the angle. */
+	private int lowerBound(double angle) {
+		int low = 0;
+		int high = bearings.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (bearings[middle] < angle) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/** Index of the first bearing that is higher than the angle. */
+	private int upperBound(double angle) {
+		int low = 0;
+		int high = bearings.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (bearings[middle] <= angle) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	static double normalizeAngle(double angle) {
+		double normalized = angle % 360;
+		return normalized < 0 ? normalized + 360 : normalized;
+	}
+
+	@Override
+	public String toString() {
+		return "Watcher{" +
+			"x=" + x +
+			", y=" + y +
+			", yaw=" + yaw +
+			", fieldOfView=" + fieldOfView +
+			", lineOfSight=" + lineOfSight.length +
+			'}';
+	}
+}
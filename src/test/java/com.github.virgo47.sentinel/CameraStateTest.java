@@ -0,0 +1,83 @@
+package com.github.virgo47.sentinel;
+
+import java.util.Arrays;
+
+import javafx.geometry.Point3D;
+import javafx.scene.transform.Rotate;
+import javafx.scene.transform.Transform;
+import javafx.scene.transform.Translate;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class CameraStateTest {
+
+	/** Matrix must be the same like the chain of transforms CameraXform used before. */
+	@Test
+	public void testMatrixMatchesTransformChain() {
+		double[][] cases = {
+			{0, 0, 0, 0, 0, 0},
+			{100, -400, 100, 30, 0, 0},
+			{-5, 7, 12, -135, 40, 0},
+			{1, 2, 3, 170, -85, 25},
+			{0, 0, 0, 90, 85, -85},
+		};
+		CameraState state = new CameraState();
+		double[] matrix = new double[12];
+		for (double[] c : cases) {
+			state.setPosition(c[0], c[1], c[2]);
+			state.setAngles(c[3], c[4], c[5]);
+			state.matrix(matrix);
+
+			Transform expected = new Translate(c[0], c[1], c[2])
+				.createConcatenation(new Rotate(c[3], new Point3D(0, 0, -1)))
+				.createConcatenation(new Rotate(c[4], Rotate.X_AXIS))
+				.createConcatenation(new Rotate(c[5], Rotate.Y_AXIS))
+				.createConcatenation(new Rotate(CameraState.PITCH_OFFSET, Rotate.X_AXIS));
+			double[] expectedMatrix = {
+				expected.getMxx(), expected.getMxy(), expected.getMxz(), expected.getTx(),
+				expected.getMyx(), expected.getMyy(), expected.getMyz(), expected.getTy(),
+				expected.getMzx(), expected.getMzy(), expected.getMzz(), expected.getTz(),
+			};
+			for (int i = 0; i < matrix.length; i++) {
+				Assert.assertEquals(matrix[i], expectedMatrix[i], 1e-9, "element " + i + " of case " + Arrays.toString(c));
+			}
+		}
+	}
+
+	@Test
+	public void testTrigIsComputedOnlyForChangedAngles() {
+		CameraState state = new CameraState();
+		int initial = state.trigUpdates();
+		state.setAngles(0, 0, 0);
+		Assert.assertEquals(state.trigUpdates(), initial);
+		state.setAngles(10, 0, 0);
+		Assert.assertEquals(state.trigUpdates(), initial + 1);
+		state.setAngles(10, 20, 30);
+		Assert.assertEquals(state.trigUpdates(), initial + 3);
+		state.setPosition(1, 2, 3);
+		state.setAngles(10, 20, 30);
+		Assert.assertEquals(state.trigUpdates(), initial + 3);
+	}
+
+	@Test
+	public void testMoveDelta() {
+		CameraState state = new CameraState();
+		double[] delta = new double[3];
+		state.moveDelta(2, 0, delta);
+		assertDelta(delta, 0, 2, 0);
+
+		state.setAngles(90, 0, 0);
+		state.moveDelta(2, 1, delta);
+		assertDelta(delta, 2, -1, 0);
+
+		state.setAngles(0, 30, 0);
+		state.moveDelta(2, 0, delta);
+		assertDelta(delta, 0, Math.sqrt(3), 1);
+	}
+
+	private static void assertDelta(double[] delta, double x, double y, double z) {
+		Assert.assertEquals(delta[0], x, 1e-9);
+		Assert.assertEquals(delta[1], y, 1e-9);
+		Assert.assertEquals(delta[2], z, 1e-9);
+	}
+}
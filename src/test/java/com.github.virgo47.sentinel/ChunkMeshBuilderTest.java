@@ -0,0 +1,57 @@
+package com.github.virgo47.sentinel;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ChunkMeshBuilderTest {
+
+	/** Full detail chunk over the whole landscape has the same surface like the landscape mesh. */
+	@Test
+	public void testFullDetailMatchesLandscapeMesh() {
+		Landscape landscape = new Landscape(12, 9, new Landscape.Config(3, 1, 10, 10));
+		landscape.generate(5);
+
+		ChunkMeshBuilder chunk = new ChunkMeshBuilder().build(landscape, 0, 0, 12, 9, 0);
+		LandscapeMeshBuilder full = new LandscapeMeshBuilder().build(landscape);
+
+		float[] fullPoints = full.getPoints();
+		float[] chunkPoints = chunk.getPoints();
+		for (int i = 0; i < fullPoints.length; i++) {
+			Assert.assertEquals(chunkPoints[i], fullPoints[i], "point coordinate " + i);
+		}
+		int[] fullFaces = full.getFaces();
+		int[] chunkFaces = chunk.getFaces();
+		for (int i = 0; i < fullFaces.length; i++) {
+			Assert.assertEquals(chunkFaces[i], fullFaces[i], "face int " + i);
+		}
+		// skirt: 2 faces for each of 2 * (13 + 10) - 4 border points
+		Assert.assertEquals(chunk.getFaceCount(), full.getFaceCount() + 2 * 42);
+	}
+
+	@Test
+	public void testLodSamples() {
+		Assert.assertEquals(ChunkMeshBuilder.samples(8, 16, 4), new int[]{8, 12, 16});
+		Assert.assertEquals(ChunkMeshBuilder.samples(8, 14, 4), new int[]{8, 12, 14});
+		Assert.assertEquals(ChunkMeshBuilder.samples(0, 1, 4), new int[]{0, 1});
+	}
+
+	/** Coarse chunk keeps its corner points and the skirt goes below the lowest point. */
+	@Test
+	public void testCoarseChunk() {
+		Landscape landscape = new Landscape(8, 8, new Landscape.Config(1, 1, 1, 1));
+		landscape.setSquare(2, 2, 2);
+
+		ChunkMeshBuilder chunk = new ChunkMeshBuilder().build(landscape, 0, 0, 8, 8, 2);
+
+		// 3x3 surface points, 8 skirt points
+		float[] points = chunk.getPoints();
+		Assert.assertEquals(points.length, (9 + 8) * 3);
+		Assert.assertEquals(chunk.getFaceCount(), 2 * 4 + 2 * 8);
+		// point 1,1 is 4,4 - at the edge of the raised area
+		Assert.assertEquals(points[4 * 3], 4f);
+		Assert.assertEquals(points[4 * 3 + 1], 4f);
+		for (int i = 9; i < 17; i++) {
+			Assert.assertEquals(points[i * 3 + 2], -1f, "skirt point " + i);
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package com.github.virgo47.sentinel;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class FrameStatsTest {
+
+	@Test
+	public void testEmptyStats() {
+		FrameStats stats = new FrameStats(16);
+		Assert.assertEquals(stats.minNanos(), 0);
+		Assert.assertEquals(stats.avgNanos(), 0);
+		Assert.assertEquals(stats.p99Nanos(), 0);
+		Assert.assertEquals(stats.windowSize(), 0);
+	}
+
+	@Test
+	public void testMinAvgPercentile() {
+		FrameStats stats = new FrameStats(1000);
+		for (int i = 1; i <= 100; i++) {
+			stats.record(i * 10);
+		}
+		Assert.assertEquals(stats.minNanos(), 10);
+		Assert.assertEquals(stats.avgNanos(), 505);
+		Assert.assertEquals(stats.p99Nanos(), 990);
+		Assert.assertEquals(stats.percentileNanos(50), 500);
+		Assert.assertEquals(stats.percentileNanos(100), 1000);
+	}
+
+	@Test
+	public void testDroppedFrames() {
+		FrameStats stats = new FrameStats(100);
+		stats.record(100);
+		stats.record(149);
+		Assert.assertEquals(stats.droppedFrames(), 0);
+		stats.record(151); // 2 frames
+		Assert.assertEquals(stats.droppedFrames(), 1);
+		stats.record(420); // 4 frames
+		Assert.assertEquals(stats.droppedFrames(), 4);
+	}
+
+	@Test
+	public void testWindowKeepsLastFrames() {
+		FrameStats stats = new FrameStats(100);
+		stats.record(1_000_000);
+		for (int i = 0; i < FrameStats.WINDOW; i++) {
+			stats.record(i + 1);
+		}
+		Assert.assertEquals(stats.windowSize(), FrameStats.WINDOW);
+		Assert.assertEquals(stats.minNanos(), 1);
+		Assert.assertEquals(stats.percentileNanos(100), FrameStats.WINDOW);
+		Assert.assertEquals(stats.maxNanos(), 1_000_000);
+		Assert.assertEquals(stats.totalFrames(), FrameStats.WINDOW + 1);
+
+		long[] window = new long[FrameStats.WINDOW];
+		Assert.assertEquals(stats.copyWindow(window), FrameStats.WINDOW);
+		Assert.assertEquals(window[0], 1);
+		Assert.assertEquals(window[FrameStats.WINDOW - 1], FrameStats.WINDOW);
+	}
+}
@@ -0,0 +1,96 @@
+package com.github.virgo47.sentinel;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class GameLoopTest {
+
+	private static final long STEP = 20_000_000;
+
+	@Test
+	public void testStepsDoNotDependOnFrameRate() {
+		CountingSimulation fast = new CountingSimulation();
+		GameLoop fastLoop = new GameLoop(fast, STEP, 10, STEP);
+		for (long now = 0; now <= 1_000_000_000; now += 7_000_000) {
+			fastLoop.frame(now);
+		}
+		CountingSimulation slow = new CountingSimulation();
+		GameLoop slowLoop = new GameLoop(slow, STEP, 10, STEP);
+		for (long now = 0; now <= 1_000_000_000; now += 50_000_000) {
+			slowLoop.frame(now);
+		}
+
+		Assert.assertEquals(slow.steps, 50);
+		Assert.assertEquals(fast.steps, 49); // 994 ms elapsed
+		Assert.assertEquals(fastLoop.ticks(), fast.steps);
+	}
+
+	@Test
+	public void testRenderInterpolatesBetweenSteps() {
+		CountingSimulation simulation = new CountingSimulation();
+		GameLoop loop = new GameLoop(simulation, STEP, 10, STEP);
+		loop.frame(1_000);
+		Assert.assertEquals(simulation.lastAlpha, 0.0);
+		loop.frame(1_000 + STEP / 4);
+		Assert.assertEquals(simulation.steps, 0);
+		Assert.assertEquals(simulation.lastAlpha, 0.25, 1e-9);
+		loop.frame(1_000 + STEP * 3 / 2);
+		Assert.assertEquals(simulation.steps, 1);
+		Assert.assertEquals(simulation.lastAlpha, 0.5, 1e-9);
+	}
+
+	@Test
+	public void testLongPauseIsSkipped() {
+		CountingSimulation simulation = new CountingSimulation();
+		GameLoop loop = new GameLoop(simulation, STEP, 5, STEP);
+		loop.frame(0);
+		loop.frame(STEP * 100 + STEP / 2);
+
+		Assert.assertEquals(simulation.steps, 5);
+		Assert.assertEquals(loop.skippedTicks(), 95);
+		Assert.assertEquals(simulation.lastAlpha, 0.5, 1e-9);
+	}
+
+	@Test
+	public void testPauseForgetsLastFrame() {
+		CountingSimulation simulation = new CountingSimulation();
+		GameLoop loop = new GameLoop(simulation, STEP, 10, STEP);
+		loop.frame(0);
+		loop.pause();
+		loop.frame(STEP * 1000);
+		Assert.assertEquals(simulation.steps, 0);
+		Assert.assertEquals(loop.frameStats().totalFrames(), 0);
+	}
+
+	@Test
+	public void testFrameTimesAreRecorded() {
+		GameLoop loop = new GameLoop(new CountingSimulation(), STEP, 10, 10_000_000);
+		loop.frame(0);
+		loop.frame(10_000_000);
+		loop.frame(20_000_000);
+		loop.frame(50_000_000);
+
+		FrameStats stats = loop.frameStats();
+		Assert.assertEquals(stats.totalFrames(), 3);
+		Assert.assertEquals(stats.minNanos(), 10_000_000);
+		Assert.assertEquals(stats.maxNanos(), 30_000_000);
+		Assert.assertEquals(stats.droppedFrames(), 2);
+	}
+
+	private static class CountingSimulation implements GameLoop.Simulation {
+
+		int steps;
+		double lastAlpha = -1;
+
+		@Override
+		public void step(double stepSeconds) {
+			Assert.assertEquals(stepSeconds, STEP / 1e9);
+			steps++;
+		}
+
+		@Override
+		public void render(double alpha) {
+			lastAlpha = alpha;
+		}
+	}
+}
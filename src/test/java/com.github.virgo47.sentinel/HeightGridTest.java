@@ -0,0 +1,96 @@
+package com.github.virgo47.sentinel;
+
+import static com.github.virgo47.sentinel.Landscape.SQUARE_UNPLAYABLE;
+
+import java.nio.ByteBuffer;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class HeightGridTest {
+
+	/** Tests that the narrowest storage is chosen for the max height. */
+	@Test
+	public void testStorageSelection() {
+		Assert.assertEquals(HeightGrid.create(2, 2, 1).bytesPerCell(), 1);
+		Assert.assertEquals(HeightGrid.create(2, 2, 126).bytesPerCell(), 1);
+		Assert.assertEquals(HeightGrid.create(2, 2, 127).bytesPerCell(), 2);
+		Assert.assertEquals(HeightGrid.create(2, 2, 40000).bytesPerCell(), 4);
+	}
+
+	/** Tests that extreme heights and unplayable marker survive narrow storages. */
+	@Test
+	public void testExtremeValues() {
+		for (int maxHeight : new int[]{126, 32766, 100000}) {
+			HeightGrid grid = HeightGrid.create(3, 2, maxHeight);
+			grid.set(0, 0, maxHeight);
+			grid.set(1, 1, -maxHeight);
+			grid.set(2, 1, SQUARE_UNPLAYABLE);
+
+			Assert.assertEquals(grid.get(0, 0), maxHeight);
+			Assert.assertEquals(grid.get(1, 1), -maxHeight);
+			Assert.assertEquals(grid.get(2, 1), SQUARE_UNPLAYABLE);
+		}
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testOverflowIsRejected() {
+		HeightGrid.create(1, 1, 5).set(0, 0, 200);
+	}
+
+	/** Tests the flat index ordering and bulk copy. */
+	@Test
+	public void testIndexAndCopy() {
+		HeightGrid grid = HeightGrid.create(2, 3, 1);
+		grid.set(1, 2, 1);
+
+		Assert.assertEquals(grid.index(1, 2), 5);
+		int[] copy = new int[grid.size()];
+		grid.copyTo(copy);
+		Assert.assertEquals(copy, new int[]{0, 0, 0, 0, 0, 1});
+	}
+
+	/** Tests that bulk read of a range gives the same values like get, for all storages. */
+	@Test
+	public void testReadInto() {
+		HeightGrid[] grids = {
+			HeightGrid.create(3, 4, 5),
+			HeightGrid.create(3, 4, 300),
+			HeightGrid.create(3, 4, 70000),
+			HeightGrid.wrap(3, 4, ByteBuffer.allocate(12), 1),
+			HeightGrid.wrap(3, 4, ByteBuffer.allocate(24), 2),
+			HeightGrid.wrap(3, 4, ByteBuffer.allocate(48), 4)};
+		for (HeightGrid grid : grids) {
+			for (int i = 0; i < grid.size(); i++) {
+				grid.set(i, i % 5 == 0 ? SQUARE_UNPLAYABLE : i - 6);
+			}
+			int[] column = new int[6];
+			grid.readInto(grid.index(1, 0), column, 1, 4);
+			Assert.assertEquals(column, new int[]{0, grid.get(1, 0), grid.get(1, 1), grid.get(1, 2), grid.get(1, 3), 0});
+			Assert.assertEquals(column[1], -2);
+			Assert.assertEquals(column[2], SQUARE_UNPLAYABLE);
+			try {
+				grid.readInto(10, column, 0, 3);
+				Assert.fail("Read over the end of the grid");
+			} catch (IndexOutOfBoundsException expected) {
+				// ok
+			}
+		}
+	}
+
+	/** Tests that the landscape exposes the same heights via grids as via accessors. */
+	@Test
+	public void testLandscapeGrids() {
+		Landscape landscape = new Landscape(16, 12, new Landscape.Config(3, 1, 20, 20));
+		landscape.generate(1);
+
+		for (int x = 0; x <= landscape.sizeX; x++) {
+			for (int y = 0; y <= landscape.sizeY; y++) {
+				Assert.assertEquals(landscape.pointGrid().get(x, y), landscape.pointHeight(x, y));
+				if (x < landscape.sizeX && y < landscape.sizeY) {
+					Assert.assertEquals(landscape.gameplanGrid().get(x, y), landscape.gameplan(x, y));
+				}
+			}
+		}
+	}
+}
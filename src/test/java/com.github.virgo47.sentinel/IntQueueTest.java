@@ -0,0 +1,40 @@
+package com.github.virgo47.sentinel;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class IntQueueTest {
+
+	/** Tests FIFO order when the ring buffer wraps around and grows. */
+	@Test
+	public void testWrapAndGrow() {
+		IntQueue queue = new IntQueue(4);
+		queue.add(1);
+		queue.add(2);
+		queue.add(3);
+		Assert.assertEquals(queue.poll(), 1);
+		Assert.assertEquals(queue.poll(), 2);
+		for (int i = 4; i <= 10; i++) {
+			queue.add(i);
+		}
+
+		Assert.assertEquals(queue.size(), 8);
+		for (int i = 3; i <= 10; i++) {
+			Assert.assertEquals(queue.poll(), i);
+		}
+		Assert.assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testClearKeepsCapacity() {
+		IntQueue queue = new IntQueue(2);
+		for (int i = 0; i < 100; i++) {
+			queue.add(i);
+		}
+		int capacity = queue.capacity();
+		queue.clear();
+
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertEquals(queue.capacity(), capacity);
+	}
+}
@@ -0,0 +1,132 @@
+package com.github.virgo47.sentinel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class LandscapeBatchTest {
+
+	private static final Landscape.Config CONFIG = new Landscape.Config(6, 2, 30, 60);
+
+	/** Tests that the stats come in the seed order and are the same for any parallelism. */
+	@Test
+	public void testDeterministicForAnyParallelism() {
+		List<String> sequential = new ArrayList<>();
+		LandscapeBatch.Summary summary = new LandscapeBatch(32, 24, CONFIG, 2, Runnable::run, 1)
+			.run(5, 24, stats -> sequential.add(stats.toLine()));
+		Assert.assertEquals(summary.maps(), 20);
+		Assert.assertTrue(summary.mapsPerSecond() > 0);
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<Integer> seeds = new ArrayList<>();
+			List<String> parallel = new ArrayList<>();
+			new LandscapeBatch(32, 24, CONFIG, 2, pool, 3).run(5, 24, stats -> {
+				seeds.add(stats.seed);
+				parallel.add(stats.toLine());
+			});
+			Assert.assertEquals(parallel, sequential);
+			for (int i = 0; i < seeds.size(); i++) {
+				Assert.assertEquals((int) seeds.get(i), 5 + i);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testMapStats() {
+		LandscapeBatch batch = new LandscapeBatch(32, 24, CONFIG, 2, Runnable::run, 1);
+		LandscapeBatch.MapStats stats = batch.generate(7);
+
+		Landscape landscape = new Landscape(32, 24, CONFIG);
+		landscape.generate(7);
+		Assert.assertEquals(stats.squares, 32 * 24);
+		Assert.assertEquals(stats.playableSquares + stats.unplayableSquares, stats.squares);
+		int playable = 0;
+		for (int height = stats.minHeight; height <= stats.maxHeight; height++) {
+			Assert.assertEquals(stats.heightCount(height), landscape.heightCount(height));
+			playable += stats.heightCount(height);
+		}
+		Assert.assertEquals(playable, stats.playableSquares);
+		Assert.assertTrue(stats.heightCount(stats.minHeight) > 0);
+		Assert.assertTrue(stats.heightCount(stats.maxHeight) > 0);
+		Assert.assertTrue(stats.sentinelHeight >= stats.minHeight && stats.sentinelHeight <= stats.maxHeight);
+
+		// flat landscape without placement
+		LandscapeBatch.MapStats flat = new LandscapeBatch.MapStats(0, new Landscape(4, 3, CONFIG), LandscapeBatch.NO_SENTINEL);
+		Assert.assertEquals(flat.toLine(), "0,1.0000,12,0,0,0,,12");
+	}
+
+	@Test
+	public void testCommandLineWritesGzippedOutput() throws IOException {
+		Path file = Files.createTempFile("landscape-batch", ".csv.gz");
+		try {
+			ByteArrayOutputStream log = new ByteArrayOutputStream();
+			int exitCode = LandscapeBatch.execute(new String[] {"-seeds", "0..9", "-size", "16x12", "-config", "6:2:30:60",
+				"-threads", "2", "-out", file.toString()}, new PrintStream(log, true));
+			Assert.assertEquals(exitCode, 0, log.toString());
+			Assert.assertTrue(log.toString().contains("10 maps"), log.toString());
+
+			String[] lines = read(file).split("\n");
+			Assert.assertEquals(lines.length, 11);
+			Assert.assertEquals(lines[0], LandscapeBatch.MapStats.HEADER);
+			Assert.assertEquals(lines[1], new LandscapeBatch(16, 12, CONFIG, 0, Runnable::run, 1).generate(0).toLine());
+			Assert.assertTrue(lines[10].startsWith("9,"));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testCommandLineNegativeSeeds() throws IOException {
+		Path file = Files.createTempFile("landscape-batch", ".csv");
+		try {
+			ByteArrayOutputStream log = new ByteArrayOutputStream();
+			int exitCode = LandscapeBatch.execute(new String[] {"-seeds", "-5..-3", "-size", "16x12", "-out", file.toString()},
+				new PrintStream(log, true));
+			Assert.assertEquals(exitCode, 0, log.toString());
+
+			List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+			Assert.assertEquals(lines.size(), 4);
+			Assert.assertTrue(lines.get(1).startsWith("-5,"));
+			Assert.assertTrue(lines.get(3).startsWith("-3,"));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testCommandLineRejectsInvalidOptions() {
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		Assert.assertEquals(LandscapeBatch.execute(new String[] {"-seeds", "9..0"}, new PrintStream(log, true)), 2);
+		Assert.assertEquals(LandscapeBatch.execute(new String[] {"-size", "0x5"}, new PrintStream(log, true)), 2);
+		Assert.assertEquals(LandscapeBatch.execute(new String[] {"-sentries", "-1"}, new PrintStream(log, true)), 2);
+		Assert.assertEquals(LandscapeBatch.execute(new String[] {"-unknown", "1"}, new PrintStream(log, true)), 2);
+		Assert.assertEquals(LandscapeBatch.execute(new String[] {"-size"}, new PrintStream(log, true)), 2);
+		Assert.assertTrue(log.toString().contains(LandscapeBatch.USAGE));
+	}
+
+	private static String read(Path file) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		try (Reader reader = new InputStreamReader(new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8)) {
+			char[] buffer = new char[4096];
+			for (int read; (read = reader.read(buffer)) >= 0; ) {
+				sb.append(buffer, 0, read);
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,161 @@
+package com.github.virgo47.sentinel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class LandscapeCacheTest {
+
+	private static final Landscape.Config CONFIG = new Landscape.Config(6, 2, 30, 60);
+
+	private Path directory;
+
+	@BeforeMethod
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("landscape-cache");
+	}
+
+	@AfterMethod
+	public void deleteDirectory() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+	}
+
+	@Test
+	public void testGetReturnsSameLandscapeLikeGeneration() {
+		LandscapeCache cache = new LandscapeCache(directory, 1 << 20, Runnable::run);
+		Landscape expected = generate(32, 24, 7);
+
+		assertSameHeights(cache.get(32, 24, CONFIG, 7), expected);
+		assertSameHeights(cache.get(32, 24, CONFIG, 7), expected);
+		Assert.assertEquals(cache.generatedCount(), 1);
+		Assert.assertEquals(cache.memoryHits(), 1);
+	}
+
+	@Test
+	public void testReturnedLandscapeIsCopy() {
+		LandscapeCache cache = new LandscapeCache(directory, 1 << 20, Runnable::run);
+		Landscape first = cache.get(32, 24, CONFIG, 7);
+		int height = first.pointHeight(10, 10);
+		first.setSquare(10, 10, height + 1);
+
+		Assert.assertEquals(cache.get(32, 24, CONFIG, 7).pointHeight(10, 10), height);
+	}
+
+	@Test
+	public void testDiskTierSurvivesNewCache() {
+		new LandscapeCache(directory, 1 << 20, Runnable::run).get(32, 24, CONFIG, 7);
+
+		LandscapeCache cache = new LandscapeCache(directory, 1 << 20, Runnable::run);
+		assertSameHeights(cache.get(32, 24, CONFIG, 7), generate(32, 24, 7));
+		Assert.assertEquals(cache.diskHits(), 1);
+		Assert.assertEquals(cache.generatedCount(), 0);
+	}
+
+	@Test
+	public void testCorruptedFileIsGeneratedAgain() throws IOException {
+		new LandscapeCache(directory, 1 << 20, Runnable::run).get(32, 24, CONFIG, 7);
+		Path file = directory.resolve(new LandscapeCache.Key(32, 24, CONFIG, 7).fileName());
+		Files.write(file, new byte[] {1, 2, 3});
+
+		LandscapeCache cache = new LandscapeCache(directory, 1 << 20, Runnable::run);
+		assertSameHeights(cache.get(32, 24, CONFIG, 7), generate(32, 24, 7));
+		Assert.assertEquals(cache.generatedCount(), 1);
+	}
+
+	/** Damaged histogram length in the header of the cached file. */
+	@Test
+	public void testCorruptedHeaderIsGeneratedAgain() throws IOException {
+		new LandscapeCache(directory, 1 << 20, Runnable::run).get(32, 24, CONFIG, 7);
+		Path file = directory.resolve(new LandscapeCache.Key(32, 24, CONFIG, 7).fileName());
+		byte[] bytes = Files.readAllBytes(file);
+		bytes[36] = (byte) 0xff;
+		Files.write(file, bytes);
+
+		LandscapeCache cache = new LandscapeCache(directory, 1 << 20, Runnable::run);
+		assertSameHeights(cache.get(32, 24, CONFIG, 7), generate(32, 24, 7));
+		Assert.assertEquals(cache.generatedCount(), 1);
+		Assert.assertEquals(cache.diskHits(), 0);
+	}
+
+	@Test
+	public void testKeyDistinguishesAllParts() {
+		LandscapeCache.Key key = new LandscapeCache.Key(32, 24, CONFIG, 7);
+		Assert.assertEquals(key, new LandscapeCache.Key(32, 24, new Landscape.Config(6, 2, 30, 60), 7));
+		Assert.assertNotEquals(key, new LandscapeCache.Key(24, 32, CONFIG, 7));
+		Assert.assertNotEquals(key, new LandscapeCache.Key(32, 24, new Landscape.Config(6, 2, 30, 61), 7));
+		Assert.assertNotEquals(key, new LandscapeCache.Key(32, 24, CONFIG, 8));
+		Assert.assertNotEquals(key.fileName(), new LandscapeCache.Key(32, 24, CONFIG, 8).fileName());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() {
+		long oneLandscape = LandscapeCache.estimateBytes(generate(32, 24, 1));
+		LandscapeCache cache = new LandscapeCache(null, oneLandscape * 2 + oneLandscape / 2, Runnable::run);
+		cache.get(32, 24, CONFIG, 1);
+		cache.get(32, 24, CONFIG, 2);
+		cache.get(32, 24, CONFIG, 1);
+		cache.get(32, 24, CONFIG, 3);
+		Assert.assertEquals(cache.memorySize(), 2);
+		Assert.assertTrue(cache.memoryBytes() <= oneLandscape * 2 + oneLandscape / 2);
+
+		cache.get(32, 24, CONFIG, 1);
+		Assert.assertEquals(cache.generatedCount(), 3);
+		cache.get(32, 24, CONFIG, 2);
+		Assert.assertEquals(cache.generatedCount(), 4);
+	}
+
+	@Test
+	public void testLandscapeOverLimitIsNotKeptInMemory() {
+		LandscapeCache cache = new LandscapeCache(null, 100, Runnable::run);
+		cache.get(32, 24, CONFIG, 1);
+		Assert.assertEquals(cache.memorySize(), 0);
+		Assert.assertEquals(cache.memoryBytes(), 0);
+	}
+
+	@Test
+	public void testPrewarmLoadsInBackground() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			LandscapeCache cache = new LandscapeCache(directory, 1 << 20, executor);
+			cache.prewarm(32, 24, CONFIG, 1);
+			cache.prewarm(32, 24, CONFIG, 2).get(10, TimeUnit.SECONDS);
+
+			assertSameHeights(cache.get(32, 24, CONFIG, 1), generate(32, 24, 1));
+			assertSameHeights(cache.get(32, 24, CONFIG, 2), generate(32, 24, 2));
+			Assert.assertEquals(cache.generatedCount(), 2);
+			Assert.assertEquals(cache.memoryHits(), 2);
+			Assert.assertTrue(cache.prewarm(32, 24, CONFIG, 1).isDone());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static Landscape generate(int sizeX, int sizeY, int seed) {
+		Landscape landscape = new Landscape(sizeX, sizeY, CONFIG);
+		landscape.generate(seed);
+		return landscape;
+	}
+
+	private static void assertSameHeights(Landscape actual, Landscape expected) {
+		for (int i = 0; i < expected.pointGrid().size(); i++) {
+			Assert.assertEquals(actual.pointGrid().get(i), expected.pointGrid().get(i), "point " + i);
+		}
+		for (int i = 0; i < expected.gameplanGrid().size(); i++) {
+			Assert.assertEquals(actual.gameplanGrid().get(i), expected.gameplanGrid().get(i), "square " + i);
+		}
+	}
+}
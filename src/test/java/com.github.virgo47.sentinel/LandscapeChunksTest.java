@@ -0,0 +1,78 @@
+package com.github.virgo47.sentinel;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class LandscapeChunksTest {
+
+	@Test
+	public void testChunkBounds() {
+		Landscape landscape = new Landscape(20, 10, new Landscape.Config(1, 1, 1, 1));
+		LandscapeChunks chunks = new LandscapeChunks(landscape, 8, 2, 10);
+
+		Assert.assertEquals(chunks.chunksX, 3);
+		Assert.assertEquals(chunks.chunksY, 2);
+		int lastChunk = chunks.chunkIndex(2, 1);
+		Assert.assertEquals(chunks.minX(lastChunk), 16);
+		Assert.assertEquals(chunks.minY(lastChunk), 8);
+		Assert.assertEquals(chunks.maxX(lastChunk), 20);
+		Assert.assertEquals(chunks.maxY(lastChunk), 10);
+	}
+
+	/** Camera in the middle of the west edge looking east sees only chunks in front of it. */
+	@Test
+	public void testCulling() {
+		Landscape landscape = new Landscape(64, 64, new Landscape.Config(1, 1, 1, 1));
+		LandscapeChunks chunks = new LandscapeChunks(landscape, 8, 2, 1000);
+		int[] lods = new int[chunks.chunkCount()];
+
+		int visible = chunks.select(-10, 32, 5, 90, 0, 30, 1, 1000, lods);
+
+		Assert.assertTrue(visible > 0 && visible < chunks.chunkCount(), "visible " + visible);
+		Assert.assertEquals(lods[chunks.chunkIndex(4, 4)], 0);
+		Assert.assertEquals(lods[chunks.chunkIndex(7, 3)], 0);
+		// corners near the camera are outside of the view
+		Assert.assertEquals(lods[chunks.chunkIndex(0, 0)], LandscapeChunks.CULLED);
+		Assert.assertEquals(lods[chunks.chunkIndex(0, 7)], LandscapeChunks.CULLED);
+
+		// looking west from the same place, nothing is visible
+		Assert.assertEquals(chunks.select(-10, 32, 5, -90, 0, 30, 1, 1000, lods), 0);
+		// far clip hides chunks far in front
+		chunks.select(-10, 32, 5, 90, 0, 30, 1, 40, lods);
+		Assert.assertEquals(lods[chunks.chunkIndex(7, 3)], LandscapeChunks.CULLED);
+	}
+
+	/** Chunk with the camera inside is always visible, even when looking straight up. */
+	@Test
+	public void testCameraInsideChunk() {
+		Landscape landscape = new Landscape(32, 32, new Landscape.Config(1, 1, 1, 1));
+		LandscapeChunks chunks = new LandscapeChunks(landscape, 8, 2, 10);
+		int[] lods = new int[chunks.chunkCount()];
+
+		chunks.select(4, 4, 1, 0, 85, 45, 16d / 9, 1000, lods);
+
+		Assert.assertEquals(lods[chunks.chunkIndex(0, 0)], 0);
+	}
+
+	@Test
+	public void testLodByDistance() {
+		Landscape landscape = new Landscape(128, 8, new Landscape.Config(1, 1, 1, 1));
+		LandscapeChunks chunks = new LandscapeChunks(landscape, 8, 2, 20);
+		int[] lods = new int[chunks.chunkCount()];
+
+		chunks.select(-1, 4, 2, 90, 0, 45, 1, 1000, lods);
+
+		Assert.assertEquals(lods[chunks.chunkIndex(0, 0)], 0);
+		Assert.assertEquals(lods[chunks.chunkIndex(3, 0)], 1);
+		Assert.assertEquals(lods[chunks.chunkIndex(6, 0)], 2);
+		Assert.assertEquals(lods[chunks.chunkIndex(15, 0)], 2);
+		Assert.assertEquals(chunks.lodFor(20), 0);
+		Assert.assertEquals(chunks.lodFor(20.5), 1);
+		Assert.assertEquals(chunks.lodFor(41), 2);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testChunkTooSmallForLod() {
+		new LandscapeChunks(new Landscape(8, 8, new Landscape.Config(1, 1, 1, 1)), 2, 2, 10);
+	}
+}
@@ -0,0 +1,166 @@
+package com.github.virgo47.sentinel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class LandscapeFileTest {
+
+	@Test
+	public void testRawRoundTrip() throws IOException {
+		assertRoundTrip(LandscapeFile.Encoding.RAW, new Landscape.Config(6, 2, 60, 100));
+	}
+
+	@Test
+	public void testVarintRoundTrip() throws IOException {
+		assertRoundTrip(LandscapeFile.Encoding.VARINT, new Landscape.Config(6, 2, 60, 100));
+	}
+
+	/** Short grids are mapped with 2 bytes per cell. */
+	@Test
+	public void testRawRoundTripShortGrid() throws IOException {
+		assertRoundTrip(LandscapeFile.Encoding.RAW, new Landscape.Config(300, 40, 60, 100));
+	}
+
+	/** Mapped landscape can be changed, but the file stays the same. */
+	@Test
+	public void testMappedLandscapeIsCopyOnWrite() throws IOException {
+		Landscape landscape = new Landscape(10, 10, new Landscape.Config(2, 1, 1, 1));
+		Path file = Files.createTempFile("landscape", ".bin");
+		try {
+			LandscapeFile.write(landscape, file, LandscapeFile.Encoding.RAW);
+			Landscape mapped = LandscapeFile.read(file);
+
+			Assert.assertTrue(mapped.setSquare(5, 5, 2));
+			Assert.assertEquals(mapped.pointHeight(5, 5), 2);
+			Assert.assertEquals(mapped.heightCount(2), 1);
+
+			Assert.assertEquals(LandscapeFile.read(file).pointHeight(5, 5), 0);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test(expectedExceptions = IOException.class)
+	public void testNotLandscapeFile() throws IOException {
+		Path file = Files.createTempFile("landscape", ".bin");
+		try {
+			Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+			LandscapeFile.read(file);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/** Damaged header fails with IOException, not with a runtime exception or a huge allocation. */
+	@Test
+	public void testCorruptHeader() throws IOException {
+		Landscape landscape = new Landscape(10, 8, new Landscape.Config(2, 1, 1, 1));
+		landscape.placePositions(1, 2);
+		Path file = Files.createTempFile("landscape", ".bin");
+		try {
+			for (LandscapeFile.Encoding encoding : LandscapeFile.Encoding.values()) {
+				LandscapeFile.write(landscape, file, encoding);
+				byte[] bytes = Files.readAllBytes(file);
+
+				// bytes per cell, sizeX, negative maxHeight, histogram length, sentry count
+				assertCorrupt(file, bytes, 7, 3);
+				assertCorrupt(file, bytes, 8, 0x7f);
+				assertCorrupt(file, bytes, 16, 0xff);
+				assertCorrupt(file, bytes, 36, 0xff);
+				assertCorrupt(file, bytes, 36, 0x7f);
+				int sentryCountOffset = 4 + 2 + 1 + 1 + 4 * 6 + 4 * 2 + 4 * landscape.heightCounts().length + 1 + 4 * 2;
+				assertCorrupt(file, bytes, sentryCountOffset, 0x7f);
+				// any single damaged header byte is either read or fails with IOException
+				for (int offset = 0; offset < sentryCountOffset + 4; offset++) {
+					Files.write(file, corrupt(bytes, offset, 0xff));
+					try {
+						LandscapeFile.read(file);
+					} catch (IOException expected) {
+						// ok
+					}
+				}
+				// truncated files
+				for (int length : new int[] {3, 20, 37, 50, bytes.length - 1}) {
+					Files.write(file, Arrays.copyOf(bytes, length));
+					try {
+						LandscapeFile.read(file);
+						Assert.fail("Truncated file of length " + length + " was read");
+					} catch (IOException expected) {
+						// ok
+					}
+				}
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private void assertCorrupt(Path file, byte[] bytes, int offset, int value) throws IOException {
+		Files.write(file, corrupt(bytes, offset, value));
+		try {
+			LandscapeFile.read(file);
+			Assert.fail("Corrupt byte at " + offset + " was read");
+		} catch (IOException expected) {
+			// ok
+		}
+	}
+
+	private byte[] corrupt(byte[] bytes, int offset, int value) {
+		byte[] corrupt = bytes.clone();
+		corrupt[offset] = (byte) value;
+		return corrupt;
+	}
+
+	@Test
+	public void testVarints() throws IOException {
+		int[] values = {0, 1, -1, 63, -64, 64, 1000, -100000, Integer.MAX_VALUE, Integer.MIN_VALUE};
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		for (int value : values) {
+			LandscapeFile.writeVarint(output, LandscapeFile.zigZag(value));
+		}
+		ByteArrayInputStream input = new ByteArrayInputStream(output.toByteArray());
+		for (int value : values) {
+			Assert.assertEquals(LandscapeFile.unZigZag(LandscapeFile.readVarint(input)), value);
+		}
+		// small differences take a single byte
+		Assert.assertEquals(LandscapeFile.zigZag(-1), 1);
+		Assert.assertEquals(LandscapeFile.zigZag(63), 126);
+	}
+
+	private void assertRoundTrip(LandscapeFile.Encoding encoding, Landscape.Config config) throws IOException {
+		Landscape landscape = new Landscape(45, 33, config);
+		landscape.generate(8);
+		landscape.placePositions(8, 3);
+		Path file = Files.createTempFile("landscape", ".bin");
+		try {
+			LandscapeFile.write(landscape, file, encoding);
+			Landscape loaded = LandscapeFile.read(file);
+
+			Assert.assertEquals(loaded.sizeX, landscape.sizeX);
+			Assert.assertEquals(loaded.sizeY, landscape.sizeY);
+			Assert.assertEquals(loaded.config.maxHeight, config.maxHeight);
+			Assert.assertEquals(loaded.config.changesCount, config.changesCount);
+			Assert.assertEquals(toArray(loaded.gameplanGrid()), toArray(landscape.gameplanGrid()));
+			Assert.assertEquals(toArray(loaded.pointGrid()), toArray(landscape.pointGrid()));
+			Assert.assertEquals(loaded.heightCounts(), landscape.heightCounts());
+			Assert.assertEquals(loaded.getSentinel().toString(), landscape.getSentinel().toString());
+			Assert.assertEquals(loaded.getSentries().toString(), landscape.getSentries().toString());
+			Assert.assertEquals(loaded.getPlayerStart().toString(), landscape.getPlayerStart().toString());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private int[] toArray(HeightGrid grid) {
+		int[] values = new int[grid.size()];
+		grid.copyTo(values);
+		return values;
+	}
+}
@@ -0,0 +1,141 @@
+package com.github.virgo47.sentinel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.stream.Stream;
+
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Material;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class LandscapeLoaderTest {
+
+	private static final Landscape.Config CONFIG = new Landscape.Config(6, 2, 30, 60);
+
+	private Path directory;
+	private LandscapeCache cache;
+	private MaterialCache materials;
+
+	@BeforeMethod
+	public void createCache() throws IOException {
+		directory = Files.createTempDirectory("landscape-loader");
+		cache = new LandscapeCache(directory, 1 << 20, Runnable::run);
+		materials = new MaterialCache(Runnable::run, texture -> new WritableImage(1, 1));
+	}
+
+	@AfterMethod
+	public void deleteDirectory() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+	}
+
+	@Test
+	public void testLoadPreparesLandscapeAndMesh() {
+		Queue<Runnable> tasks = new ArrayDeque<>();
+		LandscapeLoader loader = new LandscapeLoader(cache, materials, "texture", null, tasks::add);
+		LandscapeLoader.Job job = loader.load(32, 24, CONFIG, 7, 2, false);
+		Assert.assertSame(loader.current(), job);
+		Assert.assertEquals(job.stage(), LandscapeLoader.Stage.GENERATE);
+		Assert.assertEquals(job.progress(), 0, 1e-9);
+
+		tasks.remove().run();
+		Assert.assertEquals(job.stage(), LandscapeLoader.Stage.DONE);
+		Assert.assertEquals(job.progress(), 1, 1e-9);
+		LandscapeLoader.Result result = job.future().join();
+		Assert.assertNotNull(result.landscape.getSentinel());
+		Assert.assertEquals(result.landscape.getSentries().size(), 2);
+		Assert.assertSame(result.meshBuilder.getLandscape(), result.landscape);
+		Assert.assertNull(result.chunks);
+		Assert.assertTrue(result.stageNanos(LandscapeLoader.Stage.GENERATE) > 0);
+		Assert.assertEquals(materials.references(result.material), 1);
+	}
+
+	@Test
+	public void testLoadWithAtlas() {
+		int[] atlases = new int[1];
+		LandscapeLoader loader = new LandscapeLoader(cache, materials, "texture", () -> {
+			atlases[0]++;
+			return TextureAtlas.terrain(new WritableImage(8, 8), 4, 0);
+		}, Runnable::run);
+		LandscapeLoader.Result result = loader.load(32, 24, CONFIG, 7, 2, false).future().join();
+		Assert.assertEquals(result.meshBuilder.getTexCoords().length, TerrainTexturing.regionNames().size() * 8);
+		Assert.assertSame(loader.load(32, 24, CONFIG, 8, 2, false).future().join().material, result.material);
+		Assert.assertEquals(materials.references(result.material), 2);
+		Assert.assertEquals(atlases[0], 1);
+		// chunks use the texture quadrants
+		Assert.assertNotSame(loader.load(32, 24, CONFIG, 7, 2, true).future().join().material, result.material);
+	}
+
+	@Test
+	public void testLoadChunked() {
+		LandscapeLoader loader = new LandscapeLoader(cache, materials, "texture", null, Runnable::run);
+		LandscapeLoader.Result result = loader.load(32, 24, CONFIG, 7, 2, true).future().join();
+		Assert.assertNull(result.meshBuilder);
+		Assert.assertSame(result.chunks.landscape, result.landscape);
+		Assert.assertEquals(result.chunks.chunkSize, LandscapeLoader.CHUNK_SIZE);
+	}
+
+	/** New load cancels the previous job, its remaining stages do not run. */
+	@Test
+	public void testNewLoadCancelsPreviousJob() {
+		Queue<Runnable> tasks = new ArrayDeque<>();
+		LandscapeLoader loader = new LandscapeLoader(cache, materials, "texture", null, tasks::add);
+		LandscapeLoader.Job first = loader.load(32, 24, CONFIG, 7, 2, false);
+		LandscapeLoader.Job second = loader.load(32, 24, CONFIG, 8, 2, false);
+		Assert.assertTrue(first.isCancelled());
+		Assert.assertTrue(first.future().isCompletedExceptionally());
+		Assert.assertEquals(first.stage(), LandscapeLoader.Stage.DONE);
+		Assert.assertSame(loader.current(), second);
+
+		tasks.remove().run();
+		tasks.remove().run();
+		LandscapeLoader.Result result = second.future().join();
+		Assert.assertEquals(result.landscape.getSentries().size(), 2);
+		// only the second job acquired the material
+		Assert.assertEquals(materials.references(result.material), 1);
+		Assert.assertFalse(second.cancel());
+	}
+
+	/** Job cancelled after its last stage, but before its result was completed, releases the material. */
+	@Test
+	public void testCancelBeforeCompletionReleasesMaterial() {
+		Queue<Runnable> tasks = new ArrayDeque<>();
+		LandscapeLoader loader = new LandscapeLoader(cache, materials, "texture", null, tasks::add);
+		LandscapeLoader.Job job = loader.load(32, 24, CONFIG, 7, 2, false);
+		Material material = materials.acquireTexture("texture");
+		LandscapeLoader.Result result = new LandscapeLoader.Result(
+			new Landscape(32, 24, CONFIG), null, null, material, new long[LandscapeLoader.Stage.DONE.ordinal()]);
+
+		Assert.assertTrue(job.cancel());
+		Assert.assertFalse(job.complete(result));
+		Assert.assertEquals(materials.references(material), 0);
+
+		// not cancelled job keeps the material for the result
+		LandscapeLoader.Job next = loader.load(32, 24, CONFIG, 8, 2, false);
+		material = materials.acquireTexture("texture");
+		Assert.assertTrue(next.complete(new LandscapeLoader.Result(
+			new Landscape(32, 24, CONFIG), null, null, material, new long[LandscapeLoader.Stage.DONE.ordinal()])));
+		Assert.assertEquals(materials.references(material), 1);
+	}
+
+	@Test
+	public void testFailureCompletesFuture() {
+		materials = new MaterialCache(Runnable::run, texture -> {
+			throw new IllegalStateException("no texture");
+		});
+		LandscapeLoader loader = new LandscapeLoader(cache, materials, "texture", null, Runnable::run);
+		LandscapeLoader.Job job = loader.load(32, 24, CONFIG, 7, 2, false);
+		Assert.assertTrue(job.future().isCompletedExceptionally());
+		Assert.assertFalse(job.isCancelled());
+	}
+}
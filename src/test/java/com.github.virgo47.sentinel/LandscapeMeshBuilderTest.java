@@ -0,0 +1,169 @@
+package com.github.virgo47.sentinel;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class LandscapeMeshBuilderTest {
+
+	/** Tests array sizes and point coordinates. */
+	@Test
+	public void testPoints() {
+		Landscape landscape = new Landscape(3, 2, new Landscape.Config(1, 1, 1, 1));
+		landscape.setSquare(2, 1, 1);
+
+		LandscapeMeshBuilder builder = new LandscapeMeshBuilder().build(landscape);
+
+		Assert.assertEquals(builder.getPoints().length, 4 * 3 * 3);
+		Assert.assertEquals(builder.getFaceCount(), 3 * 2 * 2);
+		Assert.assertEquals(builder.getFaces().length, 3 * 2 * 2 * LandscapeMeshBuilder.FACE_SIZE);
+		// point 3,2 has index 3 * 3 + 2
+		int point = (3 * 3 + 2) * 3;
+		Assert.assertEquals(builder.getPoints()[point], 3f);
+		Assert.assertEquals(builder.getPoints()[point + 1], 2f);
+		Assert.assertEquals(builder.getPoints()[point + 2], 1f);
+	}
+
+	/** Tests that flat landscape has default triangulation and checkerboard texture. */
+	@Test
+	public void testFlatFaces() {
+		Landscape landscape = new Landscape(2, 2, new Landscape.Config(1, 1, 1, 1));
+
+		int[] faces = new LandscapeMeshBuilder().build(landscape).getFaces();
+
+		// square 0,0: SW=0, SE=3, NE=4, NW=1, texture 0
+		assertFaces(faces, 0, 0, 0, 3, 1, 4, 2, 0, 0, 4, 2, 1, 3);
+		// square 0,1: texture 4
+		assertFaces(faces, 1, 1, 4, 4, 5, 5, 6, 1, 4, 5, 6, 2, 7);
+	}
+
+	/** Tests slope texture and triangulation rules. */
+	@Test
+	public void testSlopeTriangulation() {
+		Landscape landscape = new Landscape(2, 1, new Landscape.Config(1, 1, 1, 1));
+		landscape.setSquare(1, 0, 1);
+
+		int[] faces = new LandscapeMeshBuilder().build(landscape).getFaces();
+
+		// square 0,0 is unplayable with SW=NW=0, SE=NE=1 - simple slope with default triangulation
+		assertFaces(faces, 0, 0, 8, 2, 9, 3, 10, 0, 8, 3, 10, 1, 11);
+		// one default triangle would be flat
+		Assert.assertTrue(LandscapeMeshBuilder.isInverseTriangulation(0, 0, 0, 1));
+		// diagonal SE-NW is a valley, preferred over SW-NE ridge
+		Assert.assertTrue(LandscapeMeshBuilder.isInverseTriangulation(2, 0, 2, 0));
+		// valley not preferred, because one of inverse triangles would be flat
+		Assert.assertFalse(LandscapeMeshBuilder.isInverseTriangulation(1, 0, 0, 0));
+		Assert.assertFalse(LandscapeMeshBuilder.isInverseTriangulation(0, 0, 0, 0));
+	}
+
+	/** Tests that incremental update gives the same mesh data like a full build. */
+	@Test
+	public void testUpdateMatchesFullBuild() {
+		Landscape landscape = new Landscape(20, 15, new Landscape.Config(3, 1, 20, 10));
+		landscape.generate(3);
+		LandscapeMeshBuilder builder = new LandscapeMeshBuilder().build(landscape);
+
+		landscape.setSquare(7, 3, 3);
+		landscape.setSquare(9, 4, -2);
+		DirtyRegion affected = builder.update(landscape.takeDirtyRegion());
+
+		LandscapeMeshBuilder fullBuild = new LandscapeMeshBuilder().build(landscape);
+		Assert.assertEquals(builder.getPoints(), fullBuild.getPoints());
+		Assert.assertEquals(builder.getFaces(), fullBuild.getFaces());
+		Assert.assertTrue(affected.width() < landscape.sizeX);
+	}
+
+	/** Tests that plain squares use the flat normal and slope points the normal of the slope. */
+	@Test
+	public void testNormals() {
+		Landscape landscape = new Landscape(2, 1, new Landscape.Config(1, 1, 1, 1));
+		landscape.setSquare(1, 0, 1);
+
+		LandscapeMeshBuilder builder = new LandscapeMeshBuilder(null, true).build(landscape);
+
+		Assert.assertEquals(builder.getFaceSize(), LandscapeMeshBuilder.NORMAL_FACE_SIZE);
+		Assert.assertEquals(builder.getFaces().length, 2 * 2 * LandscapeMeshBuilder.NORMAL_FACE_SIZE);
+		float[] normals = builder.getNormals();
+		Assert.assertEquals(normals.length, (1 + 3 * 2) * 3);
+		Assert.assertEquals(normals[2], 1f);
+		// square 0,0 is a slope rising to the east: SW=0 with normal 1, SE=2 with normal 3, texture 8
+		int[] faces = builder.getFaces();
+		Assert.assertEquals(faces[0], 0);
+		Assert.assertEquals(faces[1], 1);
+		Assert.assertEquals(faces[2], 8);
+		Assert.assertEquals(faces[3], 2);
+		Assert.assertEquals(faces[4], 3);
+		// square 1,0 is plain, all its vertices have the flat normal
+		int plainOffset = LandscapeMeshBuilder.FACES_PER_SQUARE * LandscapeMeshBuilder.NORMAL_FACE_SIZE;
+		for (int i = 0; i < LandscapeMeshBuilder.FACES_PER_SQUARE * 3; i++) {
+			Assert.assertEquals(faces[plainOffset + i * 3 + 1], LandscapeMeshBuilder.NORMAL_FLAT);
+		}
+		// normals of the slope points lean to the west
+		double component = Math.sqrt(0.5);
+		for (int point : new int[] {0, 1, 2, 3}) {
+			int n = (1 + point) * 3;
+			Assert.assertEquals(normals[n], -component, 1e-6);
+			Assert.assertEquals(normals[n + 1], 0, 1e-6);
+			Assert.assertEquals(normals[n + 2], component, 1e-6);
+		}
+	}
+
+	/** Tests that incremental update of normals gives the same normals like a full build. */
+	@Test
+	public void testNormalsUpdateMatchesFullBuild() {
+		Landscape landscape = new Landscape(20, 15, new Landscape.Config(3, 1, 20, 10));
+		landscape.generate(3);
+		LandscapeMeshBuilder builder = new LandscapeMeshBuilder(null, true).build(landscape);
+
+		landscape.setSquare(7, 3, 3);
+		landscape.setSquare(9, 4, -2);
+		builder.update(landscape.takeDirtyRegion());
+
+		LandscapeMeshBuilder fullBuild = new LandscapeMeshBuilder(null, true).build(landscape);
+		Assert.assertEquals(builder.getFaces(), fullBuild.getFaces());
+		Assert.assertEquals(builder.getNormals(), fullBuild.getNormals());
+		for (int n = 0; n < fullBuild.getNormals().length; n += 3) {
+			float[] normals = fullBuild.getNormals();
+			Assert.assertTrue(normals[n + 2] > 0, "normal " + n / 3 + " points up");
+		}
+	}
+
+	/** Tests merging of plain squares - flat strip is a single quad with texture going over the checkerboard. */
+	@Test
+	public void testMergedFlatStrip() {
+		Landscape landscape = new Landscape(5, 1, new Landscape.Config(1, 1, 1, 1));
+
+		LandscapeMeshBuilder builder = new LandscapeMeshBuilder(true).build(landscape);
+
+		Assert.assertEquals(builder.getFaceCount(), 2);
+		Assert.assertEquals(builder.getFaceReduction(), 0.8, 0.001);
+		// SW=0, SE=10, NE=11, NW=1, run texcoords follow the fixed ones
+		assertFaces(builder.getFaces(), 0, 0, 12, 10, 13, 11, 14, 0, 12, 11, 14, 1, 15);
+		float[] texCoords = builder.getTexCoords();
+		Assert.assertEquals(texCoords.length, 16 * 2);
+		Assert.assertEquals(texCoords[12 * 2], 0f);
+		Assert.assertEquals(texCoords[13 * 2], 2.5f);
+	}
+
+	/** Tests that merged mesh keeps slopes as they are and merges only the same heights. */
+	@Test
+	public void testMergedLandscape() {
+		Landscape landscape = new Landscape(6, 2, new Landscape.Config(1, 1, 1, 1));
+		landscape.setSquare(5, 0, 1);
+
+		LandscapeMeshBuilder builder = new LandscapeMeshBuilder(true).build(landscape);
+
+		// row 0: run of 4 plain squares, slope, raised square; row 1: run of 4, two slopes
+		Assert.assertEquals(builder.getFaceCount(), 2 * 6);
+		// second run (4th quad) starts at odd square 0,1 - texture starts at the right checkerboard quadrant
+		int runOffset = 3 * LandscapeMeshBuilder.FACES_PER_SQUARE * LandscapeMeshBuilder.FACE_SIZE;
+		int texIndex = builder.getFaces()[runOffset + 1];
+		Assert.assertEquals(builder.getTexCoords()[texIndex * 2], 0.5f);
+	}
+
+	private void assertFaces(int[] faces, int square, int... expected) {
+		int offset = square * LandscapeMeshBuilder.FACES_PER_SQUARE * LandscapeMeshBuilder.FACE_SIZE;
+		for (int i = 0; i < expected.length; i++) {
+			Assert.assertEquals(faces[offset + i], expected[i], "face int " + i + " of square " + square);
+		}
+	}
+}
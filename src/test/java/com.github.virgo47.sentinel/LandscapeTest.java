@@ -2,7 +2,11 @@ package com.github.virgo47.sentinel;
 
 import static com.github.virgo47.sentinel.Landscape.SQUARE_UNPLAYABLE;
 
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ForkJoinPool;
+
 import org.testng.Assert;
+import org.testng.SkipException;
 import org.testng.annotations.Test;
 
 public class LandscapeTest {
@@ -102,4 +106,167 @@ public class LandscapeTest {
 		Assert.assertEquals(landscape.gameplan(2, 0), SQUARE_UNPLAYABLE);
 		Assert.assertEquals(landscape.gameplan(3, 0), 3);
 	}
+
+	/**
+	 * Tests that generation does not allocate per walk step - with Position objects and boxed queues
+	 * this generation allocated gigabytes, now it should be only few small objects (Random, queue growth).
+	 */
+	@Test
+	public void testGenerateAllocationRate() {
+		if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+			throw new SkipException("Thread allocation counter not available");
+		}
+		com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		// warm-up, so that we don't count class loading and JIT related allocations
+		new Landscape(64, 64, new Landscape.Config(3, 1, 200, 200)).generate(0);
+
+		Landscape landscape = new Landscape(256, 256, new Landscape.Config(3, 1, 200, 2000));
+		long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+		landscape.generate(1);
+		long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+		Assert.assertTrue(allocated < 256 * 1024, "Generation allocated " + allocated + " bytes");
+	}
+
+	/** Tests that the same seed always produces the same landscape. */
+	@Test
+	public void testGenerateIsDeterministic() {
+		Landscape.Config config = new Landscape.Config(5, 2, 60, 100);
+		Landscape landscape1 = new Landscape(64, 48, config);
+		Landscape landscape2 = new Landscape(64, 48, config);
+		landscape1.generate(7);
+		landscape2.generate(7);
+
+		int[] points1 = new int[landscape1.pointGrid().size()];
+		int[] points2 = new int[landscape2.pointGrid().size()];
+		landscape1.pointGrid().copyTo(points1);
+		landscape2.pointGrid().copyTo(points2);
+		Assert.assertEquals(points1, points2);
+	}
+
+	/**
+	 * Tests long cascade of maxHeightDifference fixes on a strip - each fixed square triggers fix of the square
+	 * two squares further. With recursion this needed tens of thousands stack frames, here we run it
+	 * in a thread with small stack.
+	 */
+	@Test
+	public void testDeepCascadeWithSmallStack() throws InterruptedException {
+		int length = 20001;
+		int maxHeight = 10000;
+		Landscape landscape = new Landscape(length, 1, new Landscape.Config(maxHeight, 1, 1, 1));
+		Throwable[] failure = new Throwable[1];
+		Thread thread = new Thread(null, () -> {
+			try {
+				landscape.setSquare(length - 1, 0, maxHeight);
+			} catch (Throwable e) {
+				failure[0] = e;
+			}
+		}, "small-stack", 128 * 1024);
+		thread.start();
+		thread.join();
+
+		Assert.assertNull(failure[0]);
+		for (int i = 0; i < maxHeight; i++) {
+			Assert.assertEquals(landscape.gameplan(length - 1 - 2 * i, 0), maxHeight - i);
+			Assert.assertEquals(landscape.gameplan(length - 2 - 2 * i, 0), SQUARE_UNPLAYABLE);
+		}
+		Assert.assertEquals(landscape.gameplan(0, 0), 0);
+		Assert.assertEquals(landscape.totalCounters().getHeightFixes(), maxHeight - 1);
+		Assert.assertEquals(landscape.totalCounters().getMaxDepth(), maxHeight);
+	}
+
+	/** Tests that counters of the last change are reset for each change and totals are accumulated. */
+	@Test
+	public void testCascadeCounters() {
+		Landscape landscape = new Landscape(7, 1, new Landscape.Config(5, 2, 1, 1));
+
+		Assert.assertTrue(landscape.performChange(new Landscape.Position(6, 0), 5, 1));
+		Assert.assertEquals(landscape.lastChangeCounters().getHeightFixes(), 2);
+		Assert.assertEquals(landscape.lastChangeCounters().getJoins(), 0);
+
+		Assert.assertTrue(landscape.performChange(new Landscape.Position(5, 0), 5, 1));
+		Assert.assertEquals(landscape.lastChangeCounters().getHeightFixes(), 0);
+		Assert.assertEquals(landscape.totalCounters().getHeightFixes(), 2);
+	}
+
+	/** Tests that changes are tracked as bounding box of changed squares, including cascaded unplayable squares. */
+	@Test
+	public void testDirtyRegion() {
+		Landscape landscape = new Landscape(10, 10, new Landscape.Config(1, 1, 1, 1));
+		Assert.assertNull(landscape.takeDirtyRegion());
+
+		landscape.setSquare(5, 6, 1);
+
+		DirtyRegion region = landscape.takeDirtyRegion();
+		Assert.assertEquals(region.minX, 4);
+		Assert.assertEquals(region.minY, 5);
+		Assert.assertEquals(region.maxX, 6);
+		Assert.assertEquals(region.maxY, 7);
+		Assert.assertFalse(landscape.isDirty());
+	}
+
+	/** Tests that changes since a version are the same like the dirty region, but are not reset. */
+	@Test
+	public void testChangedSince() {
+		Landscape landscape = new Landscape(10, 10, new Landscape.Config(1, 1, 1, 1));
+		int version = landscape.version();
+		Assert.assertNull(landscape.changedSince(version));
+
+		landscape.setSquare(5, 6, 1);
+
+		DirtyRegion changed = landscape.changedSince(version);
+		DirtyRegion dirty = landscape.takeDirtyRegion();
+		Assert.assertEquals(changed.minX, dirty.minX);
+		Assert.assertEquals(changed.minY, dirty.minY);
+		Assert.assertEquals(changed.maxX, dirty.maxX);
+		Assert.assertEquals(changed.maxY, dirty.maxY);
+		Assert.assertNotNull(landscape.changedSince(version));
+		Assert.assertNull(landscape.changedSince(landscape.version()));
+
+		// too many changes to remember, whole landscape is changed
+		for (int i = 0; i < Landscape.CHANGE_LOG_SIZE; i++) {
+			landscape.setSquare(2, 2, (i + 1) % 2);
+		}
+		Assert.assertTrue(landscape.version() - version > Landscape.CHANGE_LOG_SIZE);
+		DirtyRegion all = landscape.changedSince(version);
+		Assert.assertEquals(all.width(), landscape.sizeX);
+		Assert.assertEquals(all.height(), landscape.sizeY);
+	}
+
+	/** Tests that the height histogram and height buckets maintained during generation match the gameplan. */
+	@Test
+	public void testHeightCounts() {
+		Landscape.Config config = new Landscape.Config(5, 2, 60, 100);
+		Landscape landscape = new Landscape(64, 48, config);
+		landscape.generate(3);
+		assertHeightCounts(landscape);
+		landscape.setSquare(20, 20, 3);
+		assertHeightCounts(landscape);
+
+		Landscape tiled = new Landscape(64, 48, config);
+		tiled.generate(3, 16, ForkJoinPool.commonPool());
+		assertHeightCounts(tiled);
+	}
+
+	private void assertHeightCounts(Landscape landscape) {
+		int[] expected = new int[2 * landscape.config.maxHeight + 1];
+		HeightGrid gameplan = landscape.gameplanGrid();
+		for (int i = 0; i < gameplan.size(); i++) {
+			if (gameplan.get(i) != SQUARE_UNPLAYABLE) {
+				expected[gameplan.get(i) + landscape.config.maxHeight]++;
+			}
+		}
+		for (int height = -landscape.config.maxHeight; height <= landscape.config.maxHeight; height++) {
+			Assert.assertEquals(landscape.heightCount(height), expected[height + landscape.config.maxHeight], "height " + height);
+			HeightBuckets buckets = landscape.heightBuckets();
+			int count = 0;
+			for (int square = buckets.first(height); square != HeightBuckets.NONE; square = buckets.next(square)) {
+				Assert.assertEquals(gameplan.get(square), height);
+				count++;
+			}
+			Assert.assertEquals(count, landscape.heightCount(height), "bucket " + height);
+		}
+	}
 }
@@ -0,0 +1,103 @@
+package com.github.virgo47.sentinel;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class MaterialCacheTest {
+
+	@Test
+	public void testTextureIsLoadedOnce() {
+		MaterialCache cache = new MaterialCache(Runnable::run, texture -> new WritableImage(2, 2));
+		PhongMaterial material = cache.acquireTexture("wood");
+		for (int rebuild = 0; rebuild < 10; rebuild++) {
+			PhongMaterial again = cache.acquireTexture("wood");
+			Assert.assertSame(again, material);
+			cache.release(again);
+		}
+		Assert.assertEquals(cache.imageLoads(), 1);
+		Assert.assertEquals(cache.references(material), 1);
+		Assert.assertNotNull(material.getDiffuseMap());
+
+		Assert.assertNotSame(cache.acquireTexture("stone"), material);
+		Assert.assertEquals(cache.imageLoads(), 2);
+		Assert.assertEquals(cache.size(), 2);
+	}
+
+	@Test
+	public void testAsyncLoading() {
+		Queue<Runnable> tasks = new ArrayDeque<>();
+		MaterialCache cache = new MaterialCache(tasks::add, texture -> new WritableImage(2, 2));
+		CompletableFuture<PhongMaterial> first = cache.acquireTextureAsync("wood");
+		CompletableFuture<PhongMaterial> second = cache.acquireTextureAsync("wood");
+		Assert.assertFalse(first.isDone());
+		Assert.assertEquals(tasks.size(), 1);
+		Assert.assertEquals(cache.imageLoads(), 0);
+
+		tasks.remove().run();
+		Assert.assertSame(first.join(), second.join());
+		Assert.assertEquals(cache.references(first.join()), 2);
+		Assert.assertEquals(cache.imageLoads(), 1);
+	}
+
+	@Test
+	public void testEvictOnlyUnused() {
+		MaterialCache cache = new MaterialCache(Runnable::run, texture -> new WritableImage(2, 2));
+		PhongMaterial wood = cache.acquireTexture("wood");
+		PhongMaterial red = cache.acquireColor(Color.RED);
+		Assert.assertSame(cache.acquireColor(Color.RED), red);
+		Assert.assertEquals(red.getSpecularColor(), Color.RED);
+
+		cache.release(wood);
+		// released material stays cached
+		Assert.assertSame(cache.acquireTexture("wood"), wood);
+		cache.release(wood);
+		Assert.assertEquals(cache.evictUnused(), 1);
+		Assert.assertEquals(cache.size(), 1);
+		Assert.assertEquals(cache.references(red), 2);
+
+		Assert.assertNotSame(cache.acquireTexture("wood"), wood);
+		Assert.assertEquals(cache.imageLoads(), 2);
+
+		cache.dispose();
+		Assert.assertEquals(cache.size(), 0);
+		Assert.assertEquals(cache.references(red), 0);
+	}
+
+	@Test(expectedExceptions = IllegalStateException.class)
+	public void testReleaseMoreThanAcquired() {
+		MaterialCache cache = new MaterialCache(Runnable::run, texture -> new WritableImage(2, 2));
+		PhongMaterial material = cache.acquireTexture("wood");
+		cache.release(material);
+		cache.release(material);
+	}
+
+	@Test
+	public void testFailedLoadIsRetried() {
+		int[] attempts = new int[1];
+		MaterialCache cache = new MaterialCache(Runnable::run, texture -> {
+			if (attempts[0]++ == 0) throw new IllegalStateException("not yet");
+			return new WritableImage(2, 2);
+		});
+		try {
+			cache.acquireTexture("wood");
+			Assert.fail("first load should fail");
+		} catch (CompletionException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		Assert.assertEquals(cache.size(), 0);
+		Assert.assertNotNull(cache.acquireTexture("wood"));
+	}
+
+	@Test
+	public void testLoadResource() {
+		Assert.assertTrue(MaterialCache.loadResource(LandscapeMeshView.TEXTURE).getWidth() > 0);
+	}
+}
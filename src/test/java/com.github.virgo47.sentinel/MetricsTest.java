@@ -0,0 +1,116 @@
+package com.github.virgo47.sentinel;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class MetricsTest {
+
+	private static final long FRAME = 16_000_000;
+
+	@Test
+	public void testDurationsAndGauges() {
+		Metrics metrics = new Metrics(loop(), 0);
+		Assert.assertEquals(metrics.lastDuration("mesh"), -1);
+		metrics.recordDuration("mesh", 3_000_000);
+		metrics.recordDuration("mesh", 1_000_000);
+		metrics.setGauge(Metrics.TRIANGLES, 1536);
+
+		Assert.assertEquals(metrics.lastDuration("mesh"), 1_000_000);
+		Assert.assertEquals(metrics.gauge(Metrics.TRIANGLES), 1536);
+		Assert.assertEquals(metrics.gauge(Metrics.VERTICES), 0);
+
+		metrics.sample(1_000_000_000);
+		String text = metrics.overlayText();
+		Assert.assertTrue(text.contains("mesh ms  last 1.0  max 3.0  avg 2.0 (2)"), text);
+		Assert.assertTrue(text.contains("triangles 1536"), text);
+		Assert.assertTrue(text.contains("frames 10  dropped 0"), text);
+		Assert.assertTrue(text.contains("<17: 10"), text);
+	}
+
+	@Test
+	public void testRecordingWritesCsv() throws IOException {
+		Path directory = Files.createTempDirectory("metrics");
+		try {
+			Metrics metrics = new Metrics(loop(), 0);
+			metrics.recordDuration("landscape", 5_000_000);
+			metrics.startRecording(directory, "test");
+			Assert.assertTrue(metrics.isRecording());
+			metrics.sample(500_000_000);
+			metrics.recordDuration("mesh", 2_000_000);
+			metrics.sample(1_000_000_000);
+			metrics.stopRecording();
+			Assert.assertFalse(metrics.isRecording());
+
+			List<String> samples = Files.readAllLines(directory.resolve("test-samples.csv"), StandardCharsets.UTF_8);
+			Assert.assertEquals(samples.size(), 3);
+			Assert.assertTrue(samples.get(0).startsWith("time_ms,frame_min_ms"));
+			Assert.assertTrue(samples.get(2).startsWith("1000,16.000,16.000,16.000,16.000,10,0,"), samples.get(2));
+			Assert.assertEquals(samples.get(2).split(",").length, samples.get(0).split(",").length);
+
+			List<String> events = Files.readAllLines(directory.resolve("test-events.csv"), StandardCharsets.UTF_8);
+			Assert.assertEquals(events.size(), 3);
+			Assert.assertEquals(events.get(1), "0,landscape,5.000");
+			Assert.assertTrue(events.get(2).endsWith(",mesh,2.000"), events.get(2));
+		} finally {
+			deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	public void testExportFrames() throws IOException {
+		Path file = Files.createTempFile("frames", ".csv");
+		try {
+			new Metrics(loop(), 0).exportFrames(file);
+			List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+			Assert.assertEquals(lines.size(), 11);
+			Assert.assertEquals(lines.get(0), "frame,frame_ms");
+			Assert.assertEquals(lines.get(10), "9,16.000");
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testFrameHistogram() {
+		FrameStats stats = new FrameStats(FRAME);
+		stats.record(5_000_000);
+		stats.record(16_000_000);
+		stats.record(17_000_000);
+		stats.record(100_000_000);
+		int[] counts = stats.histogram(Metrics.HISTOGRAM_LIMITS_MS, new int[Metrics.HISTOGRAM_LIMITS_MS.length + 1]);
+		Assert.assertEquals(counts, new int[] {1, 1, 1, 0, 1});
+	}
+
+	/** Loop with 10 frames of 16 ms. */
+	private static GameLoop loop() {
+		GameLoop loop = new GameLoop(new GameLoop.Simulation() {
+			@Override
+			public void step(double stepSeconds) {
+			}
+
+			@Override
+			public void render(double alpha) {
+			}
+		}, 20_000_000, 10, FRAME);
+		for (int i = 0; i <= 10; i++) {
+			loop.frame(i * FRAME);
+		}
+		return loop;
+	}
+
+	private static void deleteDirectory(Path directory) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+	}
+}
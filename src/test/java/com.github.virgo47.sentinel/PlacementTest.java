@@ -0,0 +1,97 @@
+package com.github.virgo47.sentinel;
+
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class PlacementTest {
+
+	@Test
+	public void testPlacementRules() {
+		Landscape landscape = new Landscape(64, 48, new Landscape.Config(6, 2, 60, 100));
+		landscape.generate(5);
+
+		landscape.placePositions(5, 4);
+
+		HeightGrid gameplan = landscape.gameplanGrid();
+		int maxHeight = Integer.MIN_VALUE;
+		for (int i = 0; i < gameplan.size(); i++) {
+			if (gameplan.get(i) != Landscape.SQUARE_UNPLAYABLE) {
+				maxHeight = Math.max(maxHeight, gameplan.get(i));
+			}
+		}
+		Landscape.Position sentinel = landscape.getSentinel();
+		Assert.assertEquals(landscape.gameplan(sentinel.x, sentinel.y), maxHeight);
+
+		List<Landscape.Position> sentries = landscape.getSentries();
+		Assert.assertEquals(sentries.size(), 4);
+		for (int i = 0; i < sentries.size(); i++) {
+			Landscape.Position sentry = sentries.get(i);
+			Assert.assertNotEquals(landscape.gameplan(sentry.x, sentry.y), Landscape.SQUARE_UNPLAYABLE);
+			Assert.assertTrue(distance(sentry, sentinel) >= Placement.MIN_SPACING, "sentry " + sentry);
+			for (int j = 0; j < i; j++) {
+				Assert.assertTrue(distance(sentry, sentries.get(j)) >= Placement.MIN_SPACING, "sentry " + sentry);
+			}
+		}
+
+		// player is hidden from all the watchers
+		Landscape.Position player = landscape.getPlayerStart();
+		Assert.assertNotEquals(landscape.gameplan(player.x, player.y), Landscape.SQUARE_UNPLAYABLE);
+		VisibilityEngine engine = new VisibilityEngine(landscape);
+		engine.addWatcher(new Watcher(sentinel.x, sentinel.y, 0, Placement.EYE_HEIGHT, 360, 1000));
+		for (Landscape.Position sentry : sentries) {
+			engine.addWatcher(new Watcher(sentry.x, sentry.y, 0, Placement.EYE_HEIGHT, 360, 1000));
+		}
+		engine.update();
+		Assert.assertFalse(engine.isSeen(player.x, player.y));
+	}
+
+	@Test
+	public void testDeterministic() {
+		Landscape.Config config = new Landscape.Config(6, 2, 60, 100);
+		Landscape landscape1 = new Landscape(64, 48, config);
+		Landscape landscape2 = new Landscape(64, 48, config);
+		landscape1.generate(9);
+		landscape2.generate(9);
+
+		landscape1.placePositions(9, 3);
+		landscape2.placePositions(9, 3);
+
+		Assert.assertEquals(landscape1.getSentinel().toString(), landscape2.getSentinel().toString());
+		Assert.assertEquals(landscape1.getSentries().toString(), landscape2.getSentries().toString());
+		Assert.assertEquals(landscape1.getPlayerStart().toString(), landscape2.getPlayerStart().toString());
+	}
+
+	/** On a flat landscape everything is seen, player still gets a position. */
+	@Test
+	public void testFlatLandscape() {
+		Landscape landscape = new Landscape(8, 8, new Landscape.Config(1, 1, 1, 1));
+
+		landscape.placePositions(1, 2);
+
+		Assert.assertNotNull(landscape.getSentinel());
+		Assert.assertEquals(landscape.getSentries().size(), 2);
+		Assert.assertNotNull(landscape.getPlayerStart());
+	}
+
+	/** When every square is seen, player start still must not be a watcher's square. */
+	@Test
+	public void testPlayerStartNotOnWatcher() {
+		for (int seed = 0; seed < 50; seed++) {
+			Landscape landscape = new Landscape(6, 6, new Landscape.Config(1, 1, 1, 1));
+
+			landscape.placePositions(seed + 42, 2);
+
+			Landscape.Position player = landscape.getPlayerStart();
+			Assert.assertNotEquals(player.toString(), landscape.getSentinel().toString(), "seed " + seed);
+			for (Landscape.Position sentry : landscape.getSentries()) {
+				Assert.assertNotEquals(player.toString(), sentry.toString(), "seed " + seed);
+			}
+		}
+	}
+
+	private double distance(Landscape.Position a, Landscape.Position b) {
+		return Math.hypot(a.x - b.x, a.y - b.y);
+	}
+}
@@ -0,0 +1,153 @@
+package com.github.virgo47.sentinel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class RegionWorldTest {
+
+	private static final Landscape.Config CONFIG = new Landscape.Config(8, 2, 60, 100);
+	private static final int REGION_SIZE = 16;
+
+	@Test
+	public void testSeamPointsAreSharedByBothRegions() {
+		RegionWorld world = new RegionWorld(CONFIG, 3, REGION_SIZE, 16, null);
+		for (int region = -1; region <= 1; region++) {
+			HeightGrid left = world.region(region, 0).pointGrid();
+			HeightGrid right = world.region(region + 1, 0).pointGrid();
+			HeightGrid below = world.region(0, region).pointGrid();
+			HeightGrid above = world.region(0, region + 1).pointGrid();
+			for (int i = 0; i <= REGION_SIZE; i++) {
+				Assert.assertEquals(left.get(REGION_SIZE, i), right.get(0, i), "vertical seam " + region + ", " + i);
+				Assert.assertEquals(below.get(i, REGION_SIZE), above.get(i, 0), "horizontal seam " + region + ", " + i);
+			}
+		}
+	}
+
+	/** Playable squares two squares apart differ at most by maxHeightDifference, the same like in landscape. */
+	@Test
+	public void testHeightDifferenceHoldsAcrossSeams() {
+		RegionWorld world = new RegionWorld(CONFIG, 3, REGION_SIZE, 16, null);
+		int from = -REGION_SIZE - 3;
+		int to = REGION_SIZE * 2 + 3;
+		int pairs = 0;
+		for (int x = from; x < to; x++) {
+			for (int y = from; y < to; y++) {
+				if (!world.isPlayable(x, y)) continue;
+
+				int height = world.squareHeight(x, y);
+				if (world.isPlayable(x + 2, y)) {
+					Assert.assertTrue(Math.abs(height - world.squareHeight(x + 2, y)) <= CONFIG.maxHeightDifference);
+					pairs++;
+				}
+				if (world.isPlayable(x, y + 2)) {
+					Assert.assertTrue(Math.abs(height - world.squareHeight(x, y + 2)) <= CONFIG.maxHeightDifference);
+					pairs++;
+				}
+			}
+		}
+		Assert.assertTrue(pairs > 0);
+	}
+
+	@Test
+	public void testSquaresAlongSeamsAreSlopes() {
+		RegionWorld world = new RegionWorld(CONFIG, 3, REGION_SIZE, 16, null);
+		for (int i = -REGION_SIZE; i < REGION_SIZE * 2; i++) {
+			Assert.assertFalse(world.isPlayable(REGION_SIZE - 1, i));
+			Assert.assertFalse(world.isPlayable(REGION_SIZE, i));
+			Assert.assertFalse(world.isPlayable(i, -1));
+			Assert.assertFalse(world.isPlayable(i, 0));
+		}
+	}
+
+	@Test
+	public void testPlayableSquaresAreFlat() {
+		RegionWorld world = new RegionWorld(CONFIG, 5, REGION_SIZE, 16, null);
+		int playable = 0;
+		for (int x = -REGION_SIZE; x < REGION_SIZE; x++) {
+			for (int y = -REGION_SIZE; y < REGION_SIZE; y++) {
+				if (!world.isPlayable(x, y)) continue;
+
+				int height = world.squareHeight(x, y);
+				Assert.assertEquals(world.pointHeight(x, y), height, "square " + x + ',' + y);
+				Assert.assertEquals(world.pointHeight(x + 1, y), height, "square " + x + ',' + y);
+				Assert.assertEquals(world.pointHeight(x + 1, y + 1), height, "square " + x + ',' + y);
+				Assert.assertEquals(world.pointHeight(x, y + 1), height, "square " + x + ',' + y);
+				playable++;
+			}
+		}
+		Assert.assertTrue(playable > 0);
+	}
+
+	@Test
+	public void testSeamProfileStaysWithinLimits() {
+		RegionWorld world = new RegionWorld(CONFIG, 11, REGION_SIZE, 1, null);
+		for (int orientation = 0; orientation <= 1; orientation++) {
+			int[] profile = world.seamProfile(4, -7, orientation);
+			Assert.assertEquals(profile[0], 0);
+			Assert.assertEquals(profile[REGION_SIZE], 0);
+			for (int i = 1; i <= REGION_SIZE; i++) {
+				int difference = Math.abs(profile[i] - profile[i - 1]);
+				Assert.assertTrue(difference > 0 && difference <= CONFIG.maxHeightDifference + 1, "point " + i);
+				Assert.assertTrue(Math.abs(profile[i]) <= CONFIG.maxHeight, "point " + i + " height " + profile[i]);
+			}
+		}
+	}
+
+	@Test
+	public void testResidentRegionsAreBounded() {
+		RegionWorld world = new RegionWorld(CONFIG, 3, REGION_SIZE, 4, null);
+		for (int x = 0; x < REGION_SIZE * 10; x += REGION_SIZE) {
+			world.touch(x, 0, 1);
+			Assert.assertTrue(world.residentCount() <= 4);
+		}
+		Assert.assertEquals(world.residentCount(), 4);
+	}
+
+	@Test
+	public void testEvictedRegionIsGeneratedTheSame() {
+		RegionWorld world = new RegionWorld(CONFIG, 3, REGION_SIZE, 1, null);
+		Landscape first = world.region(2, -3);
+		world.region(0, 0);
+		Landscape again = world.region(2, -3);
+
+		Assert.assertNotSame(again, first);
+		Assert.assertEquals(world.generatedCount(), 3);
+		assertSameHeights(again, first);
+	}
+
+	@Test
+	public void testEvictedRegionIsReadFromSpill() throws IOException {
+		Path directory = Files.createTempDirectory("regions");
+		try {
+			RegionWorld world = new RegionWorld(CONFIG, 3, REGION_SIZE, 1, directory);
+			Landscape first = world.region(2, -3);
+			world.region(0, 0);
+			Assert.assertEquals(world.spilledCount(), 1);
+
+			assertSameHeights(world.region(2, -3), first);
+			Assert.assertEquals(world.generatedCount(), 2);
+			Assert.assertEquals(world.unspilledCount(), 1);
+		} finally {
+			try (Stream<Path> files = Files.list(directory)) {
+				for (Path file : (Iterable<Path>) files::iterator) {
+					Files.delete(file);
+				}
+			}
+			Files.delete(directory);
+		}
+	}
+
+	private static void assertSameHeights(Landscape actual, Landscape expected) {
+		for (int i = 0; i < expected.pointGrid().size(); i++) {
+			Assert.assertEquals(actual.pointGrid().get(i), expected.pointGrid().get(i), "point " + i);
+		}
+		for (int i = 0; i < expected.gameplanGrid().size(); i++) {
+			Assert.assertEquals(actual.gameplanGrid().get(i), expected.gameplanGrid().get(i), "square " + i);
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package com.github.virgo47.sentinel;
+
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TerrainQueryTest {
+
+	@Test
+	public void testVerticalRayHitsSquareBelow() {
+		Landscape landscape = new Landscape(10, 7, new Landscape.Config(1, 1, 1, 1));
+		landscape.setSquare(3, 4, 1);
+		TerrainQuery query = new TerrainQuery(landscape);
+
+		Assert.assertEquals(query.firstHit(3.5, 4.5, 10, 0, 0, -1), landscape.gameplanGrid().index(3, 4));
+		Assert.assertEquals(query.firstHitDistance(3.5, 4.5, 10, 0, 0, -1), 9, 1e-9);
+		Assert.assertEquals(query.firstHit(3.5, 4.5, 10, 0, 0, 1), TerrainQuery.NO_HIT);
+		// outside of the landscape
+		Assert.assertEquals(query.firstHit(30.5, 4.5, 10, 0, 0, -1), TerrainQuery.NO_HIT);
+	}
+
+	@Test
+	public void testVisibility() {
+		Landscape landscape = new Landscape(10, 1, new Landscape.Config(2, 1, 1, 1));
+		landscape.setSquare(5, 0, 2); // ridge with slopes from square 2 to 8
+		TerrainQuery query = new TerrainQuery(landscape);
+
+		Assert.assertFalse(query.isVisible(1.5, 0.5, 0.5, 8.5, 0.5, 0.5));
+		Assert.assertTrue(query.isVisible(1.5, 0.5, 2.5, 8.5, 0.5, 2.5));
+		// end points on the surface do not hide each other on flat ground
+		Assert.assertTrue(query.isVisible(0.5, 0.5, 0, 2, 0.5, 0));
+		// ray from the east hits the first slope of the wide ridge
+		Assert.assertEquals(query.firstHit(9.5, 0.5, 0.5, -1, 0, 0), landscape.gameplanGrid().index(8, 0));
+	}
+
+	/** Hierarchical traversal finds hits at the same distance like testing all the triangles. */
+	@Test
+	public void testMatchesBruteForce() {
+		Landscape landscape = new Landscape(45, 33, new Landscape.Config(6, 2, 30, 60));
+		landscape.generate(11);
+		TerrainQuery query = new TerrainQuery(landscape);
+
+		Random random = new Random(1);
+		int hits = 0;
+		for (int i = 0; i < 2000; i++) {
+			double ox = random.nextDouble() * 60 - 7;
+			double oy = random.nextDouble() * 50 - 8;
+			double oz = random.nextDouble() * 12 - 2;
+			double dx = random.nextGaussian();
+			double dy = random.nextGaussian();
+			double dz = random.nextGaussian() * 0.3;
+			int square = query.firstHit(ox, oy, oz, dx, dy, dz, 0, 100);
+			int expected = query.firstHitBruteForce(ox, oy, oz, dx, dy, dz, 0, 100);
+			Assert.assertEquals(square == TerrainQuery.NO_HIT, expected == TerrainQuery.NO_HIT, "ray " + i);
+			if (square != TerrainQuery.NO_HIT) {
+				hits++;
+				Assert.assertEquals(hitT(query, square, ox, oy, oz, dx, dy, dz),
+					hitT(query, expected, ox, oy, oz, dx, dy, dz), 1e-9, "ray " + i);
+			}
+		}
+		Assert.assertTrue(hits > 200, "hits " + hits);
+	}
+
+	@Test
+	public void testUpdateAfterChange() {
+		Landscape landscape = new Landscape(40, 40, new Landscape.Config(3, 1, 1, 1));
+		TerrainQuery query = new TerrainQuery(landscape);
+		Assert.assertTrue(query.isVisible(2.5, 20.5, 1, 37.5, 20.5, 1));
+
+		landscape.setSquare(20, 20, 3);
+		query.update(landscape.takeDirtyRegion());
+
+		Assert.assertFalse(query.isVisible(2.5, 20.5, 1, 37.5, 20.5, 1));
+		// cascade made the hill wider, the ray hits its western slope
+		int square = query.firstHit(2.5, 20.5, 1, 1, 0, 0);
+		Assert.assertEquals(square % landscape.sizeY, 20);
+		Assert.assertTrue(square / landscape.sizeY < 20);
+	}
+
+	private double hitT(TerrainQuery query, int square, double ox, double oy, double oz, double dx, double dy, double dz) {
+		int sizeY = query.landscape.sizeY;
+		return query.squareHit(square / sizeY, square % sizeY, ox, oy, oz, dx, dy, dz, 0, 100);
+	}
+}
@@ -0,0 +1,91 @@
+package com.github.virgo47.sentinel;
+
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TerrainTexturingTest {
+
+	@Test
+	public void testTerrainOfSquares() {
+		Landscape landscape = new Landscape(20, 20, new Landscape.Config(6, 2, 1, 1));
+		landscape.setSquare(15, 15, 6);
+		TerrainTexturing texturing = texturing();
+		texturing.prepare(landscape);
+
+		// playable heights 0 to 6 make the bands 0-2, 3-4 and 5-6
+		Assert.assertEquals(terrain(texturing, landscape, 0, 0), TerrainTexturing.Terrain.LOWLAND);
+		Assert.assertEquals(terrain(texturing, landscape, 13, 15), TerrainTexturing.Terrain.HIGHLAND);
+		Assert.assertEquals(terrain(texturing, landscape, 15, 15), TerrainTexturing.Terrain.PEAK);
+		// slopes rise by 2 over the square
+		Assert.assertEquals(terrain(texturing, landscape, 14, 15), TerrainTexturing.Terrain.ROCK);
+
+		landscape = new Landscape(20, 20, new Landscape.Config(2, 1, 1, 1));
+		landscape.setSquare(5, 5, 1);
+		texturing.prepare(landscape);
+		Assert.assertEquals(terrain(texturing, landscape, 4, 5), TerrainTexturing.Terrain.SLOPE);
+		Assert.assertEquals(terrain(texturing, landscape, 5, 5), TerrainTexturing.Terrain.HIGHLAND);
+	}
+
+	@Test
+	public void testPositionsHaveOwnTerrain() {
+		Landscape landscape = new Landscape(32, 24, new Landscape.Config(6, 2, 30, 60));
+		landscape.generate(7);
+		landscape.placePositions(7, 2);
+		TerrainTexturing texturing = texturing();
+		texturing.prepare(landscape);
+
+		Landscape.Position sentinel = landscape.getSentinel();
+		Assert.assertEquals(terrain(texturing, landscape, sentinel.x, sentinel.y), TerrainTexturing.Terrain.SENTINEL);
+		Landscape.Position player = landscape.getPlayerStart();
+		Assert.assertEquals(terrain(texturing, landscape, player.x, player.y), TerrainTexturing.Terrain.PLAYER_START);
+		for (Landscape.Position sentry : landscape.getSentries()) {
+			Assert.assertEquals(terrain(texturing, landscape, sentry.x, sentry.y), TerrainTexturing.Terrain.SENTRY);
+		}
+	}
+
+	/** Mesh faces use the atlas region of the square's terrain, checkered terrains alternate the variants. */
+	@Test
+	public void testMeshUsesAtlasRegions() {
+		Landscape landscape = new Landscape(10, 10, new Landscape.Config(2, 1, 1, 1));
+		landscape.setSquare(5, 5, 2);
+		TerrainTexturing texturing = texturing();
+		LandscapeMeshBuilder builder = new LandscapeMeshBuilder(texturing).build(landscape);
+
+		Assert.assertEquals(builder.getTexCoords().length, TerrainTexturing.regionNames().size() * 8);
+		List<String> names = TerrainTexturing.regionNames();
+		Assert.assertEquals(faceTexture(builder, landscape, 0, 0), names.indexOf("lowland-0") * 4);
+		Assert.assertEquals(faceTexture(builder, landscape, 1, 0), names.indexOf("lowland-1") * 4);
+		Assert.assertEquals(faceTexture(builder, landscape, 5, 5), names.indexOf("peak-0") * 4);
+		Assert.assertEquals(faceTexture(builder, landscape, 4, 5), names.indexOf("slope") * 4);
+
+		// incremental update textures the changed squares by the terrain too
+		landscape.setSquare(2, 3, 2);
+		builder.update(landscape.takeDirtyRegion());
+		Assert.assertEquals(faceTexture(builder, landscape, 2, 3), names.indexOf("peak-1") * 4);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testMissingRegion() {
+		new TerrainTexturing(new float[8], name -> name.equals("slope") ? 0 : -1);
+	}
+
+	/** Texturing with texcoords of regions in the order of the region names. */
+	private static TerrainTexturing texturing() {
+		List<String> names = TerrainTexturing.regionNames();
+		return new TerrainTexturing(new float[names.size() * 8], names::indexOf);
+	}
+
+	private static TerrainTexturing.Terrain terrain(TerrainTexturing texturing, Landscape landscape, int x, int y) {
+		HeightGrid points = landscape.pointGrid();
+		return texturing.terrain(landscape, x, y,
+			points.get(x, y), points.get(x + 1, y), points.get(x + 1, y + 1), points.get(x, y + 1));
+	}
+
+	/** Texcoord index of the first vertex of the square's first face, that is its SW corner. */
+	private static int faceTexture(LandscapeMeshBuilder builder, Landscape landscape, int x, int y) {
+		return builder.getFaces()[(x * landscape.sizeY + y) * LandscapeMeshBuilder.FACES_PER_SQUARE
+			* LandscapeMeshBuilder.FACE_SIZE + 1];
+	}
+}
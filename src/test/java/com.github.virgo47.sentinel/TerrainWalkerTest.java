@@ -0,0 +1,107 @@
+package com.github.virgo47.sentinel;
+
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TerrainWalkerTest {
+
+	@Test
+	public void testHeightInPointsAndCenters() {
+		Landscape landscape = new Landscape(30, 20, new Landscape.Config(4, 2, 10, 20));
+		landscape.generate(3);
+		TerrainWalker walker = new TerrainWalker(landscape, 0);
+		TerrainQuery query = new TerrainQuery(landscape);
+
+		for (int x = 0; x < landscape.sizeX; x++) {
+			for (int y = 0; y < landscape.sizeY; y++) {
+				Assert.assertEquals(walker.surfaceHeight(x, y), landscape.pointHeight(x, y), 1e-9);
+				Assert.assertEquals(walker.surfaceHeight(x + 0.5, y + 0.5), query.squareCenterHeight(x, y), 1e-9);
+			}
+		}
+		// far borders and outside positions are clamped
+		Assert.assertEquals(walker.surfaceHeight(30, 20), landscape.pointHeight(30, 20), 1e-9);
+		Assert.assertEquals(walker.surfaceHeight(-5, 40), landscape.pointHeight(0, 20), 1e-9);
+	}
+
+	/** Height is the same like where the vertical ray hits the mesh triangles. */
+	@Test
+	public void testHeightMatchesMeshTriangles() {
+		Landscape landscape = new Landscape(30, 20, new Landscape.Config(4, 2, 10, 20));
+		landscape.generate(5);
+		TerrainWalker walker = new TerrainWalker(landscape, 0);
+		TerrainQuery query = new TerrainQuery(landscape);
+
+		Random random = new Random(1);
+		int inverse = 0;
+		for (int i = 0; i < 5000; i++) {
+			double x = random.nextDouble() * landscape.sizeX;
+			double y = random.nextDouble() * landscape.sizeY;
+			int square = landscape.gameplanGrid().index((int) x, (int) y);
+			double t = query.squareHit(square / landscape.sizeY, square % landscape.sizeY, x, y, 100, 0, 0, -1,
+				0, Double.POSITIVE_INFINITY);
+			Assert.assertEquals(walker.surfaceHeight(x, y), 100 - t, 1e-9, "position " + x + ", " + y);
+
+			HeightGrid points = landscape.pointGrid();
+			if (LandscapeMeshBuilder.isInverseTriangulation(points.get((int) x, (int) y), points.get((int) x + 1, (int) y),
+				points.get((int) x + 1, (int) y + 1), points.get((int) x, (int) y + 1)))
+			{
+				inverse++;
+			}
+		}
+		Assert.assertTrue(inverse > 100, "inverse " + inverse);
+	}
+
+	@Test
+	public void testWalkStopsAtSlope() {
+		Landscape landscape = new Landscape(10, 1, new Landscape.Config(2, 1, 1, 1));
+		landscape.setSquare(5, 0, 2);
+		Assert.assertFalse(landscape.gameplanGrid().get(1, 0) == Landscape.SQUARE_UNPLAYABLE);
+		TerrainWalker walker = new TerrainWalker(landscape, 0.5);
+		Assert.assertTrue(walker.isBlocked(2, 0));
+		Assert.assertTrue(walker.isBlocked(8, 0));
+
+		double[] position = {0.5, 0.5, 7};
+		walker.move(position, 5, 0);
+		Assert.assertEquals(position[0], 2 - TerrainWalker.EPSILON, 1e-12);
+		Assert.assertEquals(position[2], 0.5, 1e-9);
+
+		position = new double[] {9.5, 0.5, 0};
+		walker.move(position, -5, 0);
+		Assert.assertEquals(position[0], 9, 1e-12);
+
+		// small steps do not get through either
+		position = new double[] {0.5, 0.5, 0};
+		for (int i = 0; i < 100; i++) {
+			walker.move(position, 0.05, 0);
+		}
+		Assert.assertTrue(position[0] < 2);
+	}
+
+	@Test
+	public void testWalkOffSlopeAndSlide() {
+		Landscape landscape = new Landscape(10, 10, new Landscape.Config(1, 1, 1, 1));
+		landscape.setSquare(5, 5, 1);
+		TerrainWalker walker = new TerrainWalker(landscape, 0);
+		Assert.assertTrue(walker.isBlocked(4, 5));
+
+		// standing on the slope does not block, the walker gets off it
+		double[] position = {4.5, 5.5, 0};
+		walker.move(position, -2, 0);
+		Assert.assertEquals(position[0], 2.5, 1e-12);
+		Assert.assertEquals(position[2], 0, 1e-9);
+
+		// blocked along x, but slides along y
+		position = new double[] {3.5, 5.5, 0};
+		walker.move(position, 2, 1);
+		Assert.assertEquals(position[0], 4 - TerrainWalker.EPSILON, 1e-12);
+		Assert.assertEquals(position[1], 6.5, 1e-12);
+
+		// the edge of the landscape stops the walker too
+		position = new double[] {0.5, 0.5, 0};
+		walker.move(position, -3, 20);
+		Assert.assertEquals(position[0], 0, 1e-12);
+		Assert.assertEquals(position[1], 10, 1e-12);
+	}
+}
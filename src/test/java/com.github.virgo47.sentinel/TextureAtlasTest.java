@@ -0,0 +1,97 @@
+package com.github.virgo47.sentinel;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TextureAtlasTest {
+
+	@Test
+	public void testRegionsPointToTheirPixels() {
+		TextureAtlas atlas = new TextureAtlas.Builder("test", 8, 2)
+			.add("red", filled(16, 16, 0xffff0000))
+			.add("green", filled(4, 4, 0xff00ff00))
+			.add("blue", filled(8, 8, 0xff0000ff))
+			.build();
+
+		Assert.assertEquals(atlas.regionCount(), 3);
+		Assert.assertEquals(atlas.columns, 2);
+		Assert.assertEquals(atlas.image.getWidth(), 24.0);
+		Assert.assertEquals(atlas.image.getHeight(), 24.0);
+		Assert.assertEquals(atlas.regionIndex("green"), 1);
+		Assert.assertEquals(atlas.regionIndex("yellow"), -1);
+
+		float[] texCoords = atlas.texCoords();
+		Assert.assertEquals(texCoords.length, 3 * 8);
+		Assert.assertEquals(pixelAt(atlas, texCoords, 0), 0xffff0000);
+		Assert.assertEquals(pixelAt(atlas, texCoords, 1), 0xff00ff00);
+		Assert.assertEquals(pixelAt(atlas, texCoords, 2), 0xff0000ff);
+		// blue cell starts after the padding of the second row
+		Assert.assertEquals(texCoords[2 * 8], 2 / 24f, 1e-6);
+		Assert.assertEquals(texCoords[2 * 8 + 1], 14 / 24f, 1e-6);
+		Assert.assertEquals(texCoords[2 * 8 + 4] - texCoords[2 * 8], 8 / 24f, 1e-6);
+	}
+
+	/** Padding repeats the edge pixels of the cell, so the neighbour region does not bleed into the filtered edge. */
+	@Test
+	public void testPaddingRepeatsEdge() {
+		WritableImage source = filled(4, 4, 0xff000000);
+		source.getPixelWriter().setArgb(0, 0, 0xffffffff);
+		TextureAtlas atlas = new TextureAtlas.Builder("test", 4, 2).add("corner", source).build();
+
+		PixelReader reader = atlas.image.getPixelReader();
+		Assert.assertEquals(reader.getArgb(0, 0), 0xffffffff);
+		Assert.assertEquals(reader.getArgb(2, 2), 0xffffffff);
+		Assert.assertEquals(reader.getArgb(3, 0), 0xff000000);
+		Assert.assertEquals(reader.getArgb(7, 7), 0xff000000);
+	}
+
+	@Test
+	public void testTintAndPart() {
+		WritableImage source = filled(4, 2, 0xffffffff);
+		for (int y = 0; y < 2; y++) {
+			source.getPixelWriter().setArgb(3, y, 0xff808080);
+		}
+		TextureAtlas atlas = new TextureAtlas.Builder("test", 2, 0)
+			.add("grey", source, 2, 0, 2, 2, Color.rgb(255, 0, 128))
+			.build();
+		PixelReader reader = atlas.image.getPixelReader();
+		Assert.assertEquals(reader.getArgb(0, 0), 0xffff0080);
+		Assert.assertEquals(reader.getArgb(1, 1), 0xff800040);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testDuplicateRegion() {
+		new TextureAtlas.Builder("test", 4, 0).add("a", filled(4, 4, 0)).add("a", filled(4, 4, 0));
+	}
+
+	@Test
+	public void testTerrainAtlasHasAllRegions() {
+		TextureAtlas atlas = TextureAtlas.terrain(filled(64, 64, 0xffc0c0c0), 16, 1);
+		for (String name : TerrainTexturing.regionNames()) {
+			Assert.assertTrue(atlas.regionIndex(name) >= 0, name);
+		}
+		Assert.assertEquals(atlas.regionCount(), TerrainTexturing.regionNames().size());
+	}
+
+	private static WritableImage filled(int width, int height, int argb) {
+		WritableImage image = new WritableImage(width, height);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				image.getPixelWriter().setArgb(x, y, argb);
+			}
+		}
+		return image;
+	}
+
+	/** Pixel in the middle of the region by its texcoords. */
+	private static int pixelAt(TextureAtlas atlas, float[] texCoords, int region) {
+		Image image = atlas.image;
+		double u = (texCoords[region * 8] + texCoords[region * 8 + 4]) / 2;
+		double v = (texCoords[region * 8 + 1] + texCoords[region * 8 + 5]) / 2;
+		return image.getPixelReader().getArgb((int) (u * image.getWidth()), (int) (v * image.getHeight()));
+	}
+}
@@ -0,0 +1,143 @@
+package com.github.virgo47.sentinel;
+
+import static com.github.virgo47.sentinel.Landscape.SQUARE_UNPLAYABLE;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+public class TiledGenerationTest {
+
+	private final ForkJoinPool singleThreadPool = new ForkJoinPool(1);
+	private final ForkJoinPool multiThreadPool = new ForkJoinPool(4);
+
+	@AfterClass
+	public void shutdownPools() {
+		singleThreadPool.shutdown();
+		multiThreadPool.shutdown();
+	}
+
+	/** Tests that the result does not depend on the number of threads. */
+	@Test
+	public void testSameResultForAnyParallelism() {
+		Landscape.Config config = new Landscape.Config(5, 2, 60, 40);
+		for (int seed = 0; seed < 5; seed++) {
+			Landscape single = new Landscape(100, 70, config);
+			single.generate(seed, 16, singleThreadPool);
+			Landscape multi = new Landscape(100, 70, config);
+			multi.generate(seed, 16, multiThreadPool);
+
+			Assert.assertEquals(heights(multi.gameplanGrid()), heights(single.gameplanGrid()));
+			Assert.assertEquals(heights(multi.pointGrid()), heights(single.pointGrid()));
+		}
+	}
+
+	/** Tests that different tile sizes give different landscapes, tile size is part of the "seed". */
+	@Test
+	public void testTileSizeMatters() {
+		Landscape.Config config = new Landscape.Config(3, 1, 30, 30);
+		Landscape tiles16 = new Landscape(64, 64, config);
+		tiles16.generate(1, 16, multiThreadPool);
+		Landscape tiles32 = new Landscape(64, 64, config);
+		tiles32.generate(1, 32, multiThreadPool);
+
+		Assert.assertNotEquals(heights(tiles16.pointGrid()), heights(tiles32.pointGrid()));
+	}
+
+	/**
+	 * Tests geometry rules everywhere, including the seams - playable squares have flat geometry of their height
+	 * and neighbouring playable squares have the same height. (Flat unplayable squares are not checked,
+	 * later changes can flatten them even with sequential generation.)
+	 */
+	@Test
+	public void testGeometryConsistentAcrossSeams() {
+		Landscape.Config[] configs = {
+			new Landscape.Config(1, 1, 30, 30),
+			new Landscape.Config(5, 2, 60, 40),
+			new Landscape.Config(8, 1, 100, 20)};
+		for (Landscape.Config config : configs) {
+			for (int seed = 0; seed < 10; seed++) {
+				Landscape landscape = new Landscape(90, 60, config);
+				landscape.generate(seed, 16, multiThreadPool);
+				assertConsistent(landscape);
+			}
+		}
+	}
+
+	/**
+	 * Tests the maximal height difference of playable squares two apart (with one square between them),
+	 * which is the rule the cascade keeps during generation, across the seams too.
+	 */
+	@Test
+	public void testMaxHeightDifferenceAcrossSeams() {
+		Random random = new Random(0);
+		for (int i = 0; i < 200; i++) {
+			Landscape.Config config = new Landscape.Config(
+				1 + random.nextInt(8), 1 + random.nextInt(3), 5 + random.nextInt(120), 5 + random.nextInt(60));
+			Landscape landscape = new Landscape(10 + random.nextInt(120), 10 + random.nextInt(60), config);
+			landscape.generate(random.nextInt(), 2 + random.nextInt(30), multiThreadPool);
+			assertMaxHeightDifference(landscape);
+		}
+
+		// seam at x = 32 broke the rule before
+		Landscape landscape = new Landscape(123, 10, new Landscape.Config(4, 2, 110, 47));
+		landscape.generate(1248616208, 8, multiThreadPool);
+		assertMaxHeightDifference(landscape);
+	}
+
+	private void assertMaxHeightDifference(Landscape landscape) {
+		int maxDifference = landscape.config.maxHeightDifference;
+		for (int x = 0; x < landscape.sizeX; x++) {
+			for (int y = 0; y < landscape.sizeY; y++) {
+				int height = landscape.gameplan(x, y);
+				if (height == SQUARE_UNPLAYABLE) continue;
+
+				if (x + 2 < landscape.sizeX) {
+					int other = landscape.gameplan(x + 2, y);
+					Assert.assertTrue(other == SQUARE_UNPLAYABLE || Math.abs(other - height) <= maxDifference,
+						"Squares " + x + ',' + y + " and " + (x + 2) + ',' + y + " differ too much in " + landscape.config);
+				}
+				if (y + 2 < landscape.sizeY) {
+					int other = landscape.gameplan(x, y + 2);
+					Assert.assertTrue(other == SQUARE_UNPLAYABLE || Math.abs(other - height) <= maxDifference,
+						"Squares " + x + ',' + y + " and " + x + ',' + (y + 2) + " differ too much in " + landscape.config);
+				}
+			}
+		}
+	}
+
+	private void assertConsistent(Landscape landscape) {
+		for (int x = 0; x < landscape.sizeX; x++) {
+			for (int y = 0; y < landscape.sizeY; y++) {
+				int height = landscape.gameplan(x, y);
+				if (height == SQUARE_UNPLAYABLE) continue;
+
+				int sw = landscape.pointHeight(x, y);
+				boolean flat = sw == landscape.pointHeight(x + 1, y)
+					&& sw == landscape.pointHeight(x + 1, y + 1)
+					&& sw == landscape.pointHeight(x, y + 1);
+				Assert.assertTrue(flat && sw == height, "Playable square " + x + ',' + y + " does not match geometry");
+				for (int dx = -1; dx <= 1; dx++) {
+					for (int dy = -1; dy <= 1; dy++) {
+						int nx = x + dx;
+						int ny = y + dy;
+						if (nx >= 0 && ny >= 0 && nx < landscape.sizeX && ny < landscape.sizeY) {
+							int neighbour = landscape.gameplan(nx, ny);
+							Assert.assertTrue(neighbour == height || neighbour == SQUARE_UNPLAYABLE,
+								"Playable neighbours " + x + ',' + y + " and " + nx + ',' + ny + " differ");
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private int[] heights(HeightGrid grid) {
+		int[] heights = new int[grid.size()];
+		grid.copyTo(heights);
+		return heights;
+	}
+}
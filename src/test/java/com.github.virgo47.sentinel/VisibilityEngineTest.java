@@ -0,0 +1,106 @@
+package com.github.virgo47.sentinel;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class VisibilityEngineTest {
+
+	@Test
+	public void testFlatLandscapeAllAround() {
+		Landscape landscape = new Landscape(10, 8, new Landscape.Config(1, 1, 1, 1));
+		VisibilityEngine engine = new VisibilityEngine(landscape);
+		Watcher watcher = engine.addWatcher(new Watcher(3, 3, 0, 1, 360, 100));
+
+		Assert.assertEquals(engine.update(), 1);
+
+		// all squares except its own
+		Assert.assertEquals(watcher.getViewshed().count(), 10 * 8 - 1);
+		Assert.assertEquals(watcher.getViewshed().bytes(), 16);
+		Assert.assertEquals(engine.update(), 0);
+	}
+
+	@Test
+	public void testRidgeHidesSquares() {
+		Landscape landscape = new Landscape(12, 1, new Landscape.Config(3, 1, 1, 1));
+		landscape.setSquare(6, 0, 3);
+		VisibilityEngine engine = new VisibilityEngine(landscape);
+		Watcher watcher = engine.addWatcher(new Watcher(0, 0, 90, 3.5, 360, 100));
+
+		engine.update();
+
+		Viewshed viewshed = watcher.getViewshed();
+		Assert.assertTrue(viewshed.isVisible(1, 0));
+		Assert.assertTrue(viewshed.isVisible(6, 0));
+		Assert.assertFalse(viewshed.isVisible(9, 0));
+		Assert.assertFalse(viewshed.isVisible(11, 0));
+		Assert.assertFalse(engine.isSeen(11, 0));
+	}
+
+	/** Rotation only changes the sector, result is the same like for a watcher created with that yaw. */
+	@Test
+	public void testRotation() {
+		Landscape landscape = new Landscape(30, 30, new Landscape.Config(4, 1, 10, 20));
+		landscape.generate(2);
+		VisibilityEngine engine = new VisibilityEngine(landscape);
+		Watcher watcher = engine.addWatcher(new Watcher(15, 15, 0, 1, 90, 100));
+		engine.update();
+
+		// looking north, nothing south is visible
+		for (int x = 0; x < 30; x++) {
+			for (int y = 0; y < 15; y++) {
+				Assert.assertFalse(watcher.getViewshed().isVisible(x, y), x + "," + y);
+			}
+		}
+
+		for (double yaw : new double[]{30, 170, 200, 350, -45}) {
+			watcher.setYaw(yaw);
+			Assert.assertEquals(engine.update(), 1);
+			Watcher fresh = new Watcher(15, 15, yaw, 1, 90, 100);
+			new VisibilityEngine(landscape).addWatcher(fresh);
+			fresh.update(engine.getQuery());
+			assertSameViewshed(watcher.getViewshed(), fresh.getViewshed(), landscape);
+		}
+	}
+
+	@Test
+	public void testLandscapeChangeInvalidatesCache() {
+		Landscape landscape = new Landscape(12, 1, new Landscape.Config(3, 1, 1, 1));
+		VisibilityEngine engine = new VisibilityEngine(landscape);
+		Watcher watcher = engine.addWatcher(new Watcher(0, 0, 90, 0.5, 90, 100));
+		engine.update();
+		Assert.assertTrue(watcher.getViewshed().isVisible(11, 0));
+
+		landscape.setSquare(6, 0, 3);
+
+		Assert.assertEquals(engine.update(), 1);
+		Assert.assertFalse(watcher.getViewshed().isVisible(11, 0));
+	}
+
+	@Test
+	public void testParallelUpdate() {
+		Landscape landscape = new Landscape(40, 40, new Landscape.Config(5, 1, 20, 40));
+		landscape.generate(4);
+		VisibilityEngine parallel = new VisibilityEngine(landscape);
+		VisibilityEngine sequential = new VisibilityEngine(landscape);
+		for (int i = 0; i < 8; i++) {
+			parallel.addWatcher(new Watcher(i * 5, 39 - i * 5, i * 45, 1, 120, 25));
+			sequential.addWatcher(new Watcher(i * 5, 39 - i * 5, i * 45, 1, 120, 25));
+		}
+
+		Assert.assertEquals(parallel.update(new ForkJoinPool(4)), 8);
+		sequential.update();
+
+		for (int i = 0; i < 8; i++) {
+			assertSameViewshed(parallel.getWatchers().get(i).getViewshed(),
+				sequential.getWatchers().get(i).getViewshed(), landscape);
+		}
+	}
+
+	private void assertSameViewshed(Viewshed actual, Viewshed expected, Landscape landscape) {
+		for (int i = 0; i < landscape.sizeX * landscape.sizeY; i++) {
+			Assert.assertEquals(actual.get(i), expected.get(i), "square " + i);
+		}
+	}
+}